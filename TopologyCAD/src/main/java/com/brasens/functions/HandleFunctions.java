@@ -111,7 +111,7 @@ public class HandleFunctions {
 
             // Cria/Atualiza o ponto fantasma
             this.tempEndPoint = new TopoPoint("GHOST", targetX, targetY);
-            canvasReference.redraw();
+            canvasReference.redrawOverlay();
         }
 
         // --- CORREÇÃO: Lógica de Mover Objeto (AGORA FORA DO BLOCO DE DESENHO) ---
@@ -130,6 +130,7 @@ public class HandleFunctions {
             // Atualiza o ponto de referência para o atual
             moveReferencePoint = new Vector2D(worldPos.x(), worldPos.y());
 
+            canvasReference.objectMoved(objectToMove);
             canvasReference.redraw();
         }
     }
@@ -11,10 +11,30 @@ import java.util.List;
 
 public class PointImporter {
 
+    /** Recebe as coordenadas de cada ponto lido, sem criar objetos (arquivos grandes). */
+    public interface PointVisitor {
+        void accept(double x, double y, double z) throws IOException;
+    }
+
     public static List<TopoPoint> importFromCSV(File file) throws IOException {
         List<TopoPoint> points = new ArrayList<>();
 
-        int sequence = 1;
+        forEachPoint(file, (x, y, z) -> {
+            String name = "PT-" + (points.size() + 1);
+            TopoPoint newPoint = new TopoPoint(name, x, y, z);
+
+            points.add(newPoint);
+        });
+        return points;
+    }
+
+    /**
+     * Lê o arquivo linha a linha e entrega cada ponto ao visitante. A memória usada não depende
+     * do tamanho do arquivo.
+     * @return número de pontos lidos
+     */
+    public static long forEachPoint(File file, PointVisitor visitor) throws IOException {
+        long count = 0;
 
         try (BufferedReader br = new BufferedReader(new FileReader(file))) {
             String line;
@@ -44,10 +64,8 @@ public class PointImporter {
                                 }
                             }
                         }
-                        String name = "PT-" + sequence++;
-                        TopoPoint newPoint = new TopoPoint(name, x, y, z);
-
-                        points.add(newPoint);
+                        visitor.accept(x, y, z);
+                        count++;
 
                     } catch (NumberFormatException e) {
                         System.err.println("Linha ignorada (formato numérico inválido): " + line);
@@ -55,6 +73,6 @@ public class PointImporter {
                 }
             }
         }
-        return points;
+        return count;
     }
-}
\ No newline at end of file
+}
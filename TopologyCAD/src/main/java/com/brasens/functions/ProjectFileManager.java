@@ -1,6 +1,9 @@
 package com.brasens.functions;
 
 import com.brasens.model.io.ProjectSaveState;
+import com.brasens.model.objects.TopoObject;
+import com.brasens.model.objects.TopoPoint;
+import com.brasens.utilities.math.TinSurface;
 import com.google.gson.*;
 import javafx.scene.image.Image;
 import javafx.scene.image.PixelReader;
@@ -13,6 +16,7 @@ import java.io.*;
 import java.nio.ByteBuffer;
 import java.time.LocalDate;
 import java.util.Base64;
+import java.util.List;
 
 import javafx.embed.swing.SwingFXUtils; // Requer módulo javafx.swing
 
@@ -22,6 +26,7 @@ public class ProjectFileManager {
         return new GsonBuilder()
                 .registerTypeAdapter(Image.class, new ImageAdapter())
                 .registerTypeAdapter(LocalDate.class, new LocalDateAdapter())
+                .registerTypeAdapter(byte[].class, new BytesAdapter())
                 .setPrettyPrinting()
                 .create();
     }
@@ -40,6 +45,20 @@ public class ProjectFileManager {
         }
     }
 
+    /** Guarda a superfície já triangulada junto do projeto, para não triangular de novo ao abrir. */
+    public static void storeSurface(ProjectSaveState state, TinSurface surface) {
+        state.setSurfaceHash(surface.getContentHash());
+        state.setSurfaceData(surface.encode());
+    }
+
+    /**
+     * Superfície gravada no projeto, se ainda corresponde aos pontos e linhas de quebra carregados.
+     * @return null se o projeto não tem superfície ou se ela precisa ser triangulada de novo
+     */
+    public static TinSurface restoreSurface(ProjectSaveState state, List<TopoPoint> points, List<TopoObject> breaklines) {
+        return TinSurface.restore(points, breaklines, state.getSurfaceHash(), state.getSurfaceData());
+    }
+
     private static class ImageAdapter implements JsonSerializer<Image>, JsonDeserializer<Image> {
         @Override
         public JsonElement serialize(Image src, java.lang.reflect.Type typeOfSrc, JsonSerializationContext context) {
@@ -80,4 +99,21 @@ public class ProjectFileManager {
             return LocalDate.parse(json.getAsString());
         }
     }
+
+    private static class BytesAdapter implements JsonSerializer<byte[]>, JsonDeserializer<byte[]> {
+        @Override
+        public JsonElement serialize(byte[] src, java.lang.reflect.Type typeOfSrc, JsonSerializationContext context) {
+            return new JsonPrimitive(Base64.getEncoder().encodeToString(src));
+        }
+
+        @Override
+        public byte[] deserialize(JsonElement json, java.lang.reflect.Type typeOfT, JsonDeserializationContext context) throws JsonParseException {
+            if (json.isJsonNull()) return null;
+            try {
+                return Base64.getDecoder().decode(json.getAsString());
+            } catch (IllegalArgumentException e) {
+                return null;
+            }
+        }
+    }
 }
\ No newline at end of file
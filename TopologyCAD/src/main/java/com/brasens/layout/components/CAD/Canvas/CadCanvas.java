@@ -5,8 +5,16 @@ import com.brasens.functions.HandleFunctions;
 import com.brasens.model.TopoLineType;
 import com.brasens.model.objects.TopoObject;
 import com.brasens.model.objects.TopoPoint;
+import com.brasens.utilities.math.ContourChange;
+import com.brasens.utilities.math.ContourSmoother;
+import com.brasens.utilities.math.GeometricPredicates;
+import com.brasens.utilities.math.LiveContours;
+import com.brasens.utilities.math.TinChange;
+import com.brasens.utilities.math.TinSurface;
 import com.brasens.utilities.math.Vector2D;
 import javafx.animation.AnimationTimer;
+import javafx.animation.PauseTransition;
+import javafx.application.Platform;
 import javafx.scene.canvas.Canvas;
 import javafx.scene.canvas.GraphicsContext;
 import javafx.scene.control.ContextMenu;
@@ -19,6 +27,7 @@ import javafx.scene.paint.Color;
 import javafx.scene.text.FontWeight;
 import javafx.scene.transform.Affine;
 import javafx.scene.transform.NonInvertibleTransformException;
+import javafx.util.Duration;
 import lombok.Getter;
 import lombok.Setter;
 
@@ -34,7 +43,9 @@ public class CadCanvas extends Canvas {
     private final HandleFunctions functions;
     private double lastMouseX, lastMouseY;
 
-    private final List<TopoObject> objects = new ArrayList<>();
+    // Objetos do desenho; a lista é a do índice espacial, que o redesenho usa para ver só a janela
+    private final SceneIndex sceneIndex = new SceneIndex();
+    private final List<TopoObject> objects = sceneIndex.getObjects();
     private TopoObject activePolyline = null;
 
     @Setter
@@ -50,6 +61,20 @@ public class CadCanvas extends Canvas {
     private boolean isDraggingConfirmed = false;
     private final double DRAG_THRESHOLD = 5.0;
 
+    // Folga da janela (pixels) para nomes de pontos e textos que passam da caixa do objeto
+    private static final double VIEW_MARGIN = 300.0;
+
+    // Durante pan e zoom, se o último quadro vetorial passou disso, a geometria vem dos
+    // ladrilhos; parado por IDLE_MS, volta o desenho vetorial
+    private static final long TILE_MODE_NANOS = 25_000_000L;
+    private static final double IDLE_MS = 250;
+    private final TileCache tileCache = new TileCache(this::redrawTiles);
+    private final PauseTransition idle = new PauseTransition(Duration.millis(IDLE_MS));
+    private boolean interacting = false;
+    private boolean slowFrame = false;
+    private List<TopoObject> pinned = null; // tabelas e selecionados, desenhados por cima dos ladrilhos
+    private List<TopoObject> lastVisible = List.of();
+
     private ContextMenu contextMenu;
 
     private Image compassImage;
@@ -58,8 +83,44 @@ public class CadCanvas extends Canvas {
 
     private final Map<String, Boolean> layerVisibility = new HashMap<>();
 
+    // Superfície TIN dos pontos levantados, construída sob demanda e atualizada a cada edição
+    private TinSurface surface = null;
+    // A camada TRIANGULACAO já pediu a superfície em segundo plano
+    private boolean surfaceBuilding = false;
+    private final List<Consumer<TinChange>> surfaceListeners = new ArrayList<>();
+
+    // Curvas de nível que acompanham as edições da superfície (null = curvas estáticas)
+    private LiveContours liveContours = null;
+    // Posição de cada curva na lista, para trocar as curvas refeitas sem varrer o desenho
+    private final Map<TopoObject, Integer> contourSlots = new IdentityHashMap<>();
+
+    private final ContourLabeler contourLabeler = new ContourLabeler();
+
+    // Fontes e rótulos da grade guardados entre quadros; grade da tela que descarta nomes amontoados
+    private final TextCache textCache = new TextCache();
+    private final OccupancyGrid labelGrid = new OccupancyGrid();
+
+    // Marcadores de ponto por sprite, no máximo um por pixel da tela
+    private final PointSprites pointSprites = new PointSprites();
+
+    // Linhas agrupadas por estilo: as do quadro vetorial e as desenhadas por cima dos ladrilhos
+    private final StrokeBatcher strokes = new StrokeBatcher();
+    private final StrokeBatcher pinnedStrokes = new StrokeBatcher();
+
+    // Camada TRIANGULACAO: arestas da superfície desenhadas direto das posições de triângulo
+    private final TinLayerRenderer triangulationLayer = new TinLayerRenderer(this::redrawTiles);
+
+    // Linhas de quebra: objetos desses tipos ou camadas entram na superfície como arestas restritas
+    private final Set<TopoLineType> breaklineTypes = EnumSet.of(
+            TopoLineType.ESTRADA, TopoLineType.RIO, TopoLineType.CORREGO, TopoLineType.VALA, TopoLineType.MURO);
+    private final Set<String> breaklineLayers = new HashSet<>();
+
     private boolean showBackgroundGrid = true;
 
+    // Curvas de nível suavizadas na tela conforme o zoom (os pontos das curvas não mudam)
+    private boolean smoothContours = false;
+    private final ContourSmoother contourSmoother = new ContourSmoother(4_000_000);
+
     private static final List<TopoObject> CLIPBOARD = new ArrayList<>();
 
     private enum ResizeHandle { NONE, RIGHT, BOTTOM, CORNER }
@@ -67,6 +128,21 @@ public class CadCanvas extends Canvas {
     private com.brasens.model.objects.TopoTableObject resizingTable = null;
     private Vector2D lastResizeMousePos = null;
 
+    // Redesenho agendado: no máximo um por pulso; a geometria e o que acompanha o mouse
+    // são marcados em separado
+    private boolean baseDirty = false;
+    private boolean overlayDirty = false;
+
+    // Canvas transparente por cima deste, com o que acompanha o mouse (fica junto no layout)
+    private final Canvas overlay = new Canvas();
+    private final AnimationTimer renderTimer = new AnimationTimer() {
+        @Override
+        public void handle(long now) {
+            stop();
+            render();
+        }
+    };
+
     private Color crossingSelectionColor = Color.GREEN;
     private Color selectionColor = Color.ALICEBLUE;
 
@@ -77,6 +153,22 @@ public class CadCanvas extends Canvas {
         super(100, 100);
         this.functions = functions;
 
+        overlay.setMouseTransparent(true);
+        overlay.widthProperty().bind(widthProperty());
+        overlay.heightProperty().bind(heightProperty());
+        overlay.layoutXProperty().bind(layoutXProperty());
+        overlay.layoutYProperty().bind(layoutYProperty());
+
+        sceneIndex.setDirtyListener(tileCache::invalidate);
+        sceneIndex.setObjectListener(obj -> {
+            contourSmoother.forget(obj);
+            contourLabeler.changed(obj);
+        });
+        idle.setOnFinished(e -> {
+            interacting = false;
+            redrawTiles();
+        });
+
         this.setOnMousePressed(this::handleMousePressed);
         this.setOnMouseDragged(this::handleMouseDragged);
         this.setOnMouseReleased(this::handleMouseReleased);
@@ -91,8 +183,11 @@ public class CadCanvas extends Canvas {
                     type == HandleFunctions.FunctionType.DEFINE_CONFRONTANTE ||  // Linha elástica do Vizinho
                     type == HandleFunctions.FunctionType.PLACE_SHEET) {          // Ghost da Folha
 
-                redraw();
+                redrawOverlay();
             }
+
+            // O pan pela borda só roda enquanto o mouse está perto dela
+            if (functions.isEdgePanEnabled()) functions.getEdgePanTimer().start();
         });
 
         layerVisibility.put("DEFAULT", true);
@@ -103,6 +198,11 @@ public class CadCanvas extends Canvas {
         layerVisibility.put("TABELA", true);
         layerVisibility.put("ROSA_VENTOS", true);
 
+        surfaceListeners.add(triangulationLayer::apply);
+        surfaceListeners.add(change -> {
+            if (change.isRebuilt()) stopLiveContours();
+        });
+
         try {
             compassImage = new Image(
                     CAD.class.getResourceAsStream("/mspm/icons/rosa-dos-ventos.png"),
@@ -112,21 +212,21 @@ public class CadCanvas extends Canvas {
             System.err.println("Imagem da Rosa dos Ventos não encontrada.");
         }
 
+        // Parado fora da borda (ou com o pan desligado), o timer se desliga até o próximo movimento do mouse
         functions.setEdgePanTimer(new AnimationTimer() {
             @Override
             public void handle(long now) {
-                if (functions.isEdgePanEnabled()) {
-                    functions.updateEdgePan(getWidth(), getHeight());
-                    double dx = functions.getEdgeDx();
-                    double dy = functions.getEdgeDy();
-                    if (dx != 0 || dy != 0) {
-                        trans.prependTranslation(dx, dy);
-                        redraw();
-                    }
+                if (functions.isEdgePanEnabled()) functions.updateEdgePan(getWidth(), getHeight());
+                double dx = functions.getEdgeDx();
+                double dy = functions.getEdgeDy();
+                if (!functions.isEdgePanEnabled() || (dx == 0 && dy == 0)) {
+                    stop();
+                    return;
                 }
+                trans.prependTranslation(dx, dy);
+                redrawView();
             }
         });
-        functions.getEdgePanTimer().start();
     }
 
     private void updateGlobalOffsets() {
@@ -143,6 +243,7 @@ public class CadCanvas extends Canvas {
     public void setObjects(List<TopoObject> newObjects) {
         this.objects.clear();
         this.objects.addAll(newObjects);
+        invalidateSurface();
 
         updateGlobalOffsets();
 
@@ -174,6 +275,7 @@ public class CadCanvas extends Canvas {
         perimetro.setLayerName("PERIMETRO");
 
         this.objects.add(perimetro);
+        addToSurface(perimetro);
 
         if (objects.size() == 1) {
             updateGlobalOffsets();
@@ -228,6 +330,8 @@ public class CadCanvas extends Canvas {
         line.setClosed(false);
 
         this.objects.add(line);
+        addToSurface(line, start);
+        addToSurface(line, end);
         redraw();
     }
 
@@ -240,6 +344,7 @@ public class CadCanvas extends Canvas {
         activePolyline.addPoint(startPoint);
 
         this.objects.add(activePolyline);
+        addToSurface(activePolyline, startPoint);
 
         redraw();
     }
@@ -260,6 +365,7 @@ public class CadCanvas extends Canvas {
                 System.out.println("Snap no ponto inicial! Fechando e parando comando...");
 
                 activePolyline.setClosed(true);
+                sceneIndex.refresh(activePolyline);
 
                 activePolyline = null;
 
@@ -273,6 +379,8 @@ public class CadCanvas extends Canvas {
             }
         }
         activePolyline.addPoint(point);
+        sceneIndex.refresh(activePolyline);
+        addToSurface(activePolyline, point);
         redraw();
     }
 
@@ -320,6 +428,7 @@ public class CadCanvas extends Canvas {
 
                 activePolyline.setClosed(true);
                 pts.remove(pts.size() - 1);
+                sceneIndex.refresh(activePolyline);
             }
         }
     }
@@ -332,6 +441,7 @@ public class CadCanvas extends Canvas {
 
     public void setLayerVisible(String layerName, boolean visible) {
         layerVisibility.put(layerName, visible);
+        tileCache.clear();
         redraw();
     }
 
@@ -339,6 +449,34 @@ public class CadCanvas extends Canvas {
         return layerVisibility.getOrDefault(layerName, true);
     }
 
+    /** Camadas do desenho cujos pontos formam o terreno (candidatas a linha de quebra). */
+    public List<String> getSurfaceLayerNames() {
+        Set<String> names = new TreeSet<>();
+        for (TopoObject obj : objects) {
+            if (obj.getLayerName() != null && isSurfaceLayer(obj.getLayerName())) names.add(obj.getLayerName());
+        }
+        return new ArrayList<>(names);
+    }
+
+    public boolean isBreaklineLayer(String layerName) {
+        return breaklineLayers.contains(layerName);
+    }
+
+    /**
+     * Liga ou desliga a camada como linha de quebra: os segmentos dos seus objetos passam a
+     * (ou deixam de) ser arestas restritas, só em volta deles.
+     */
+    public void setBreaklineLayer(String layerName, boolean breakline) {
+        List<TopoObject> layer = new ArrayList<>();
+        for (TopoObject obj : objects) {
+            if (layerName.equals(obj.getLayerName()) && !breaklineTypes.contains(obj.getType())) layer.add(obj);
+        }
+        boolean changed = breakline ? breaklineLayers.add(layerName) : breaklineLayers.remove(layerName);
+        if (!changed) return;
+        for (TopoObject obj : layer) breaklineChanged(obj);
+        redraw();
+    }
+
     public void createTableAt(double x, double y) {
         // Cria uma tabela vazia inicialmente.
         // Os dados serão injetados pelo DashboardView logo após a criação.
@@ -359,7 +497,57 @@ public class CadCanvas extends Canvas {
         redraw();
     }
 
+    /**
+     * Pede um redesenho completo. Só marca o canvas como sujo: o desenho acontece uma vez, no
+     * próximo pulso da interface, por mais pedidos que cheguem até lá.
+     */
     public void redraw() {
+        interacting = false;
+        pinned = null;
+        baseDirty = true;
+        scheduleRender();
+    }
+
+    /**
+     * Só a janela mudou (pan, zoom). Em desenhos pesados os quadros seguintes vêm dos ladrilhos
+     * até o mouse parar; qualquer {@link #redraw()} no meio (edição) volta ao vetorial.
+     */
+    private void redrawView() {
+        interacting = true;
+        idle.playFromStart();
+        redrawTiles();
+    }
+
+    // Redesenha a camada de baixo sem sair do modo atual (ladrilho que chegou, fim do pan)
+    private void redrawTiles() {
+        baseDirty = true;
+        scheduleRender();
+    }
+
+    /**
+     * Pede o redesenho só do que acompanha o mouse (linhas elásticas, caixa de seleção,
+     * fantasmas). A geometria não mudou, então a camada de baixo fica como está.
+     */
+    public void redrawOverlay() {
+        overlayDirty = true;
+        scheduleRender();
+    }
+
+    private void scheduleRender() {
+        if (Platform.isFxApplicationThread()) renderTimer.start();
+        else Platform.runLater(renderTimer::start);
+    }
+
+    // A geometria fica no próprio canvas entre um quadro e outro; só é refeita se foi marcada
+    private void render() {
+        boolean base = baseDirty;
+        baseDirty = false;
+        overlayDirty = false;
+        if (base) paintBase();
+        paintOverlay();
+    }
+
+    private void paintBase() {
         GraphicsContext gc = getGraphicsContext2D();
 
         // 1. Limpeza e Fundo
@@ -374,89 +562,277 @@ public class CadCanvas extends Canvas {
             drawGrid(gc);
         }
 
+        if (isLayerVisible("TRIANGULACAO")) {
+            drawTriangulation(gc);
+        }
+
+        if (interacting && slowFrame) {
+            paintTiles(gc);
+        } else {
+            long start = System.nanoTime();
+            lastVisible = visibleObjects(VIEW_MARGIN / trans.getMxx());
+            pinned = null;
+            paintGeometry(gc, lastVisible, strokes);
+            slowFrame = System.nanoTime() - start > TILE_MODE_NANOS;
+            if (slowFrame) {
+                tileCache.request(trans, sceneIndex, this::isLayerVisible, this::smoothedContour,
+                        getWidth(), getHeight(), globalOffsetX, globalOffsetY);
+            }
+        }
+
+        drawCompass(gc);
+    }
+
+    /**
+     * Quadro de interação: a geometria vem dos ladrilhos, na resolução do nível de zoom mais
+     * próximo; rótulos das curvas mestras, tabelas e objetos selecionados (do último quadro
+     * vetorial) vão por cima em vetor.
+     */
+    private void paintTiles(GraphicsContext gc) {
+        sceneIndex.sync();
+        gc.setTransform(new Affine());
+        tileCache.draw(gc, trans, sceneIndex, this::isLayerVisible, this::smoothedContour,
+                getWidth(), getHeight(), globalOffsetX, globalOffsetY);
+        gc.setTransform(trans);
+
+        if (isLayerVisible("CURVA_MESTRA")) {
+            labelGrid.reset(0, 0, getWidth(), getHeight());
+            contourLabeler.draw(gc, trans, objects, sceneIndex.version(), getWidth(), getHeight(), globalOffsetX, globalOffsetY, labelGrid);
+        }
+
+        if (pinned == null) {
+            pinned = new ArrayList<>();
+            for (TopoObject obj : lastVisible) {
+                if (obj instanceof com.brasens.model.objects.TopoTableObject || isObjectSelected(obj)) pinned.add(obj);
+            }
+        }
+        paintGeometry(gc, pinned, pinnedStrokes);
+    }
+
+    // Linhas, tabelas, rótulos, pontos e textos dos objetos dados, com a transformação já aplicada;
+    // cada lista desenhada a cada quadro tem seus próprios lotes de linhas
+    private void paintGeometry(GraphicsContext gc, List<TopoObject> visible, StrokeBatcher batcher) {
         double scale = trans.getMxx();
-        double pointSize = 5 / scale;
         double fontSize = 12 / scale;
         double textOffset = 8 / scale;
 
+        // Posição na tela (sem rotação) para a grade de ocupação dos textos
+        double tx = trans.getTx(), ty = trans.getTy();
+        labelGrid.reset(0, 0, getWidth(), getHeight());
+
         // =================================================================
         // LOOP 1: GEOMETRIA (LINHAS, POLILINHAS E TABELAS)
         // =================================================================
-        for (TopoObject obj : objects) {
+        // Linhas e polilinhas em lotes por estilo, selecionados por cima
+        batcher.update(visible, this::isLayerVisible, this::isObjectSelected);
+        batcher.draw(gc, scale, globalOffsetX, globalOffsetY, obj -> smoothedContour(obj, scale));
+
+        // Tabelas por cima das linhas
+        for (TopoObject obj : visible) {
+            if (!(obj instanceof com.brasens.model.objects.TopoTableObject)) continue;
             if (!isLayerVisible(obj.getLayerName())) continue;
+            com.brasens.model.objects.TopoTableObject tbl = (com.brasens.model.objects.TopoTableObject) obj;
 
-            // --- LÓGICA DE TABELA CORRIGIDA ---
-            if (obj instanceof com.brasens.model.objects.TopoTableObject) {
-                com.brasens.model.objects.TopoTableObject tbl = (com.brasens.model.objects.TopoTableObject) obj;
+            // Desenha a estrutura da tabela
+            drawTable(gc, tbl, scale);
 
-                // Desenha a estrutura da tabela
-                drawTable(gc, tbl, scale);
+            // SE ESTIVER SELECIONADA, DESENHA OS GRIPS DE RESIZE
+            if (isObjectSelected(tbl)) {
+                drawResizeHandles(gc, tbl, scale);
+            }
+        }
 
-                // SE ESTIVER SELECIONADA, DESENHA OS GRIPS DE RESIZE
-                if (isObjectSelected(tbl)) {
-                    drawResizeHandles(gc, tbl, scale);
-                }
+        // Rótulos de cota das curvas mestras (posições guardadas por faixa de zoom)
+        if (isLayerVisible("CURVA_MESTRA")) {
+            contourLabeler.draw(gc, trans, objects, sceneIndex.version(), getWidth(), getHeight(), globalOffsetX, globalOffsetY, labelGrid);
+        }
 
-                continue; // Pula o resto do loop para não tentar desenhar linhas/pontos neste objeto
-            }
+        // --- DESENHAR NOMES DOS CONFRONTANTES (RENDERIZAÇÃO) ---
+        // Adicione isso para ver os nomes que já foram salvos
+        gc.setFill(Color.YELLOW);
+        gc.setFont(textCache.font(FontWeight.BOLD, 10 / scale));
 
-            if ("TEXT".equals(obj.getLayerName())) continue;
+        for (TopoObject obj : visible) {
+            if (obj.getConfrontantes().isEmpty()) continue;
 
             List<TopoPoint> pts = obj.getPoints();
+            int n = pts.size();
+            for (Map.Entry<Integer, String> entry : obj.getConfrontantes().entrySet()) {
+                int idx = entry.getKey();
+                String nome = entry.getValue();
 
-            if (pts.size() < 2) continue;
+                if (idx < n) {
+                    TopoPoint p1 = pts.get(idx);
+                    TopoPoint p2 = pts.get((idx + 1) % n);
 
-            TopoLineType style = obj.getType();
-            boolean isSelected = isObjectSelected(obj);
+                    // Ponto médio
+                    double midX = (p1.getX() + p2.getX()) / 2.0;
+                    double midY = (p1.getY() + p2.getY()) / 2.0;
 
-            // Estilo da linha
-            if (isSelected) {
-                gc.setStroke(Color.ORANGERED);
-                gc.setLineWidth((style.getWidth() + 1.5) / scale);
-            } else {
-                gc.setStroke(style.getColor());
-                gc.setLineWidth(style.getWidth() / scale);
-            }
+                    // Desenha o texto um pouco deslocado para fora (simplificado)
+                    // (Para um deslocamento perfeito precisaríamos da normal do vetor,
+                    // mas desenhar no meio já ajuda a visualizar)
+                    double drawX = midX - globalOffsetX;
+                    double drawY = -(midY - globalOffsetY);
 
-            // Tracejado
-            if (style.getDashArray() != null) {
-                double[] originalDashes = style.getDashArray();
-                double[] scaledDashes = new double[originalDashes.length];
-                for (int i = 0; i < originalDashes.length; i++) {
-                    scaledDashes[i] = originalDashes[i] / scale;
+                    // Onde os nomes já se amontoam, este fica de fora
+                    if (!labelGrid.claimText(drawX * scale + tx, drawY * scale + ty, nome, 10)) continue;
+                    gc.fillText(nome, drawX, drawY);
                 }
-                gc.setLineDashes(scaledDashes);
-            } else {
-                gc.setLineDashes(null);
             }
+        }
 
-            // Desenha o caminho (Path)
-            gc.beginPath();
-            TopoPoint p0 = pts.get(0);
-            gc.moveTo(p0.getX() - globalOffsetX, -(p0.getY() - globalOffsetY));
+        // =================================================================
+        // LOOP 2: PONTOS E TEXTOS (RENDERIZADOS POR CIMA DAS LINHAS)
+        // =================================================================
+        gc.setFont(textCache.font(fontSize));
+        pointSprites.begin(getWidth(), getHeight());
+        String[] names = new String[64];
+        double[] nameXY = new double[128];
+        int nameCount = 0;
 
-            for (int i = 1; i < pts.size(); i++) {
-                TopoPoint p = pts.get(i);
-                gc.lineTo(p.getX() - globalOffsetX, -(p.getY() - globalOffsetY));
-            }
+        for (TopoObject obj : visible) {
+            if (!isLayerVisible(obj.getLayerName())) continue;
 
-            if (obj.isClosed()) gc.closePath();
-            gc.stroke();
-            gc.setLineDashes(null);
+            // Tabelas já foram desenhadas no Loop 1
+            if (obj instanceof com.brasens.model.objects.TopoTableObject) continue;
+
+            boolean isTextLayer = "TEXT".equals(obj.getLayerName());
+
+            TopoLineType style = obj.getType();
+            boolean isContour = (style == TopoLineType.CURVA_MESTRA || style == TopoLineType.CURVA_INTERMEDIARIA);
+
+            for (TopoPoint p : obj.getPoints()) {
+                double drawX = p.getX() - globalOffsetX;
+                double drawY = -(p.getY() - globalOffsetY);
+
+                if (isTextLayer) {
+                    // Texto UI
+                    if (p.isSelected()) gc.setFill(Color.ORANGERED);
+                    else gc.setFill(Color.WHITE);
+
+                    if (p.getName() != null) gc.fillText(p.getName(), drawX, drawY);
 
-            // Rótulos de cota (Curva Mestra)
-            if (style == TopoLineType.CURVA_MESTRA && pts.size() >= 2) {
-                TopoPoint p1 = pts.get(0);
-                TopoPoint p2 = pts.get(1);
-                double midX = (p1.getX() + p2.getX()) / 2.0;
-                double midY = (p1.getY() + p2.getY()) / 2.0;
+                    if (p.isSelected()) {
+                        double s = 3 / scale;
+                        gc.setStroke(Color.ORANGERED);
+                        gc.setLineWidth(1 / scale);
+                        gc.strokeLine(drawX - s, drawY - s, drawX + s, drawY + s);
+                        gc.strokeLine(drawX - s, drawY + s, drawX + s, drawY - s);
+                    }
+                } else {
+                    // Pontos de Geometria: o marcador é só anotado, sai em lote por sprites
+                    double screenX = drawX * scale + tx, screenY = drawY * scale + ty;
+                    if (isContour) {
+                        if (p.isSelected()) pointSprites.add(PointSprites.SELECTED, screenX, screenY);
+                        continue;
+                    }
 
-                gc.setFill(style.getColor());
-                gc.setFont(javafx.scene.text.Font.font("Arial", FontWeight.BOLD, fontSize));
-                gc.fillText(String.format("%.0f", p1.getZ()), midX - globalOffsetX, -(midY - globalOffsetY));
+                    pointSprites.add(p.isSelected() ? PointSprites.SELECTED : PointSprites.NORMAL, screenX, screenY);
+
+                    // Nome do Ponto (desenhado depois dos marcadores)
+                    if (p.getName() != null && !p.getName().isEmpty()) {
+                        if (!p.getName().startsWith("INT")
+                                && labelGrid.claimText(screenX + 8, screenY - 8, p.getName(), 12)) {
+                            if (nameCount == names.length) {
+                                names = Arrays.copyOf(names, 2 * nameCount);
+                                nameXY = Arrays.copyOf(nameXY, 4 * nameCount);
+                            }
+                            names[nameCount] = p.getName();
+                            nameXY[2 * nameCount] = drawX + textOffset;
+                            nameXY[2 * nameCount + 1] = drawY - textOffset;
+                            nameCount++;
+                        }
+                    }
+                }
             }
         }
 
+        gc.setTransform(new Affine());
+        pointSprites.flush(gc);
+        gc.setTransform(trans);
+
+        gc.setFill(Color.WHITE);
+        for (int i = 0; i < nameCount; i++) {
+            gc.fillText(names[i], nameXY[2 * i], nameXY[2 * i + 1]);
+        }
+    }
+
+    // =================================================================
+    // HUD (ROSA DOS VENTOS)
+    // =================================================================
+    private void drawCompass(GraphicsContext gc) {
+        if (isLayerVisible("ROSA_VENTOS") && compassImage != null) {
+            gc.setTransform(new Affine()); // Reseta para tela
+
+            double xPos = getWidth() - COMPASS_SIZE - COMPASS_MARGIN + 5;
+            double yPos = getHeight() - COMPASS_SIZE - COMPASS_MARGIN - 5;
+
+            double angleRad = Math.atan2(trans.getMyx(), trans.getMxx());
+            double angleDeg = Math.toDegrees(angleRad);
+
+            gc.save();
+            gc.translate(xPos + COMPASS_SIZE / 2, yPos + COMPASS_SIZE / 2);
+            gc.rotate(angleDeg);
+            gc.translate(-COMPASS_SIZE / 2, -COMPASS_SIZE / 2);
+            gc.drawImage(compassImage, 0, 0, COMPASS_SIZE, COMPASS_SIZE);
+            gc.restore();
+        }
+    }
+
+    /**
+     * Objetos cuja caixa cruza a janela, aumentada de margin (unidades do desenho) em cada lado,
+     * na ordem do desenho.
+     */
+    private List<TopoObject> visibleObjects(double margin) {
+        try {
+            javafx.geometry.Point2D p1 = trans.inverseTransform(0, 0);
+            javafx.geometry.Point2D p2 = trans.inverseTransform(getWidth(), getHeight());
+            double minX = Math.min(p1.getX(), p2.getX()) + globalOffsetX - margin;
+            double maxX = Math.max(p1.getX(), p2.getX()) + globalOffsetX + margin;
+            double minY = globalOffsetY - Math.max(p1.getY(), p2.getY()) - margin;
+            double maxY = globalOffsetY - Math.min(p1.getY(), p2.getY()) + margin;
+            return sceneIndex.visible(minX, minY, maxX, maxY);
+        } catch (NonInvertibleTransformException e) {
+            return objects;
+        }
+    }
+
+    /** Os pontos do objeto foram movidos por fora do canvas (ex.: ferramenta Mover). */
+    public void refreshBounds(TopoObject obj) {
+        sceneIndex.refresh(obj);
+    }
+
+    /**
+     * Os pontos do objeto foram deslocados (mover, rotacionar): além do índice, a superfície é
+     * corrigida ponto a ponto se o objeto faz parte dela. Textos, tabelas e curvas não a tocam.
+     */
+    public void objectMoved(TopoObject obj) {
+        sceneIndex.refresh(obj);
+        if (surface == null || !affectsSurface(obj)) return;
+        for (TopoPoint p : obj.getPoints()) surface.movePoint(p);
+    }
+
+    /** O ponto mudou sem sair do lugar (nome, texto): refaz o trecho dos objetos que o contêm. */
+    public void refreshBounds(TopoPoint p) {
+        sceneIndex.pointMoved(p, p.getX(), p.getY());
+    }
+
+    /**
+     * Camada de cima, num canvas transparente próprio: linhas elásticas, fantasmas e caixa de
+     * seleção. É limpa e redesenhada a cada pedido, sem tocar na geometria de baixo.
+     */
+    private void paintOverlay() {
+        GraphicsContext gc = overlay.getGraphicsContext2D();
+        gc.setTransform(new Affine());
+        gc.clearRect(0, 0, overlay.getWidth(), overlay.getHeight());
+        gc.setTransform(trans);
+
+        double scale = trans.getMxx();
+        gc.setFont(textCache.font(12 / scale));
+        gc.setFill(Color.WHITE);
+        gc.setLineDashes(null);
+
         // --- PREVIEW DA LINHA ELÁSTICA ---
         if ((functions.getFunctionSelected() == HandleFunctions.FunctionType.LINE
                 || functions.getFunctionSelected() == HandleFunctions.FunctionType.POLYLINE)
@@ -593,104 +969,6 @@ public class CadCanvas extends Canvas {
             }
         }
 
-        // --- DESENHAR NOMES DOS CONFRONTANTES (RENDERIZAÇÃO) ---
-        // Adicione isso para ver os nomes que já foram salvos
-        gc.setFill(Color.YELLOW);
-        gc.setFont(javafx.scene.text.Font.font("Arial", FontWeight.BOLD, 10 / scale));
-
-        for (TopoObject obj : objects) {
-            if (obj.getConfrontantes().isEmpty()) continue;
-
-            List<TopoPoint> pts = obj.getPoints();
-            int n = pts.size();
-            for (Map.Entry<Integer, String> entry : obj.getConfrontantes().entrySet()) {
-                int idx = entry.getKey();
-                String nome = entry.getValue();
-
-                if (idx < n) {
-                    TopoPoint p1 = pts.get(idx);
-                    TopoPoint p2 = pts.get((idx + 1) % n);
-
-                    // Ponto médio
-                    double midX = (p1.getX() + p2.getX()) / 2.0;
-                    double midY = (p1.getY() + p2.getY()) / 2.0;
-
-                    // Desenha o texto um pouco deslocado para fora (simplificado)
-                    // (Para um deslocamento perfeito precisaríamos da normal do vetor,
-                    // mas desenhar no meio já ajuda a visualizar)
-                    double drawX = midX - globalOffsetX;
-                    double drawY = -(midY - globalOffsetY);
-
-                    gc.fillText(nome, drawX, drawY);
-                }
-            }
-        }
-
-        // =================================================================
-        // LOOP 2: PONTOS E TEXTOS (RENDERIZADOS POR CIMA DAS LINHAS)
-        // =================================================================
-        gc.setFont(javafx.scene.text.Font.font("Arial", fontSize));
-
-        for (TopoObject obj : objects) {
-            if (!isLayerVisible(obj.getLayerName())) continue;
-
-            // Tabelas já foram desenhadas no Loop 1
-            if (obj instanceof com.brasens.model.objects.TopoTableObject) continue;
-
-            boolean isTextLayer = "TEXT".equals(obj.getLayerName());
-
-            TopoLineType style = obj.getType();
-            boolean isContour = (style == TopoLineType.CURVA_MESTRA || style == TopoLineType.CURVA_INTERMEDIARIA);
-
-            for (TopoPoint p : obj.getPoints()) {
-                double drawX = p.getX() - globalOffsetX;
-                double drawY = -(p.getY() - globalOffsetY);
-
-                if (isTextLayer) {
-                    // Texto UI
-                    if (p.isSelected()) gc.setFill(Color.ORANGERED);
-                    else gc.setFill(Color.WHITE);
-
-                    if (p.getName() != null) gc.fillText(p.getName(), drawX, drawY);
-
-                    if (p.isSelected()) {
-                        double s = 3 / scale;
-                        gc.setStroke(Color.ORANGERED);
-                        gc.setLineWidth(1 / scale);
-                        gc.strokeLine(drawX - s, drawY - s, drawX + s, drawY + s);
-                        gc.strokeLine(drawX - s, drawY + s, drawX + s, drawY - s);
-                    }
-                } else {
-                    // Pontos de Geometria
-                    if (isContour) {
-                        if (p.isSelected()) {
-                            gc.setFill(Color.ORANGERED);
-                            double selSize = pointSize * 1.5;
-                            gc.fillOval(drawX - selSize / 2, drawY - selSize / 2, selSize, selSize);
-                        }
-                        continue;
-                    }
-
-                    if (p.isSelected()) {
-                        gc.setFill(Color.ORANGERED);
-                        double selSize = pointSize * 1.5;
-                        gc.fillOval(drawX - selSize / 2, drawY - selSize / 2, selSize, selSize);
-                    } else {
-                        gc.setFill(Color.YELLOW);
-                        gc.fillOval(drawX - pointSize / 2, drawY - pointSize / 2, pointSize, pointSize);
-                    }
-
-                    // Nome do Ponto
-                    gc.setFill(Color.WHITE);
-                    if (p.getName() != null && !p.getName().isEmpty()) {
-                        if (!p.getName().startsWith("INT")) {
-                            gc.fillText(p.getName(), drawX + textOffset, drawY - textOffset);
-                        }
-                    }
-                }
-            }
-        }
-
         // =================================================================
         // DESENHO DA CAIXA DE SELEÇÃO (WINDOW / CROSSING)
         // =================================================================
@@ -723,26 +1001,62 @@ public class CadCanvas extends Canvas {
             gc.fillRect(x, y, w, h);
             gc.strokeRect(x, y, w, h);
         }
+    }
 
-        // =================================================================
-        // HUD (ROSA DOS VENTOS)
-        // =================================================================
-        if (isLayerVisible("ROSA_VENTOS") && compassImage != null) {
-            gc.setTransform(new Affine()); // Reseta para tela
+    // Malha da superfície por baixo da geometria. Sem superfície ela é triangulada em segundo
+    // plano, e até lá fica na tela a malha anterior
+    private void drawTriangulation(GraphicsContext gc) {
+        if (surface == null) buildSurfaceInBackground();
+        triangulationLayer.setSurface(surface);
+        triangulationLayer.draw(gc, trans, getWidth(), getHeight(), globalOffsetX, globalOffsetY);
+    }
 
-            double xPos = getWidth() - COMPASS_SIZE - COMPASS_MARGIN + 5;
-            double yPos = getHeight() - COMPASS_SIZE - COMPASS_MARGIN - 5;
+    private void buildSurfaceInBackground() {
+        if (surfaceBuilding) return;
+        surfaceBuilding = true;
 
-            double angleRad = Math.atan2(trans.getMyx(), trans.getMxx());
-            double angleDeg = Math.toDegrees(angleRad);
+        List<TopoPoint> points = getSurfacePoints();
+        List<TopoObject> breaklines = getBreaklines();
+        double[] coordinates = coordinatesOf(points, breaklines);
+        Thread thread = new Thread(() -> {
+            TinSurface built;
+            try {
+                built = new TinSurface(points, breaklines);
+            } catch (RuntimeException e) {
+                built = null;
+            }
+            TinSurface result = built;
+            Platform.runLater(() -> {
+                surfaceBuilding = false;
+                if (result == null) return;
+                // Adota só se o desenho não mudou nesse meio-tempo; senão o próximo quadro pede outra
+                if (surface == null && points.equals(getSurfacePoints()) && breaklines.equals(getBreaklines())
+                        && Arrays.equals(coordinates, coordinatesOf(points, breaklines))) {
+                    setSurface(result);
+                }
+                redrawTiles();
+            });
+        }, "surface-build");
+        thread.setDaemon(true);
+        thread.start();
+    }
 
-            gc.save();
-            gc.translate(xPos + COMPASS_SIZE / 2, yPos + COMPASS_SIZE / 2);
-            gc.rotate(angleDeg);
-            gc.translate(-COMPASS_SIZE / 2, -COMPASS_SIZE / 2);
-            gc.drawImage(compassImage, 0, 0, COMPASS_SIZE, COMPASS_SIZE);
-            gc.restore();
+    private static double[] coordinatesOf(List<TopoPoint> points, List<TopoObject> breaklines) {
+        int n = points.size();
+        for (TopoObject obj : breaklines) n += obj.getPoints().size();
+        double[] xy = new double[2 * n];
+        int k = 0;
+        for (TopoPoint p : points) {
+            xy[k++] = p.getX();
+            xy[k++] = p.getY();
+        }
+        for (TopoObject obj : breaklines) {
+            for (TopoPoint p : obj.getPoints()) {
+                xy[k++] = p.getX();
+                xy[k++] = p.getY();
+            }
         }
+        return xy;
     }
 
     private void drawResizeHandles(GraphicsContext gc, com.brasens.model.objects.TopoTableObject table, double scale) {
@@ -845,7 +1159,6 @@ public class CadCanvas extends Canvas {
 
             if (isCrossing) {
                 // MODO CROSSING (Verde): Basta tocar
-                // Verifica se a Bounding Box do objeto intercepta a da seleção
                 if (objectIntersectsRect(obj, worldMinX, worldMinY, worldMaxX, worldMaxY)) {
                     shouldSelect = true;
                 }
@@ -875,7 +1188,7 @@ public class CadCanvas extends Canvas {
         return true;
     }
 
-    // Verifica intersecção de Bounding Boxes (Simplificado para Crossing)
+    // Modo crossing: o objeto toca a seleção (vértice dentro ou segmento cruzando a borda)
     private boolean objectIntersectsRect(TopoObject obj, double rMinX, double rMinY, double rMaxX, double rMaxY) {
         // 1. Calcula Bounding Box do objeto
         double objMinX = Double.MAX_VALUE, objMinY = Double.MAX_VALUE;
@@ -887,9 +1200,30 @@ public class CadCanvas extends Canvas {
             objMaxY = Math.max(objMaxY, p.getY());
         }
 
-        // 2. Verifica intersecção de retângulos (AABB intersection)
-        return (objMinX <= rMaxX && objMaxX >= rMinX &&
-                objMinY <= rMaxY && objMaxY >= rMinY);
+        // 2. Verifica intersecção de retângulos (AABB intersection): descarte rápido
+        if (!(objMinX <= rMaxX && objMaxX >= rMinX &&
+                objMinY <= rMaxY && objMaxY >= rMinY)) return false;
+
+        // 3. Algum vértice dentro da seleção?
+        List<TopoPoint> pts = obj.getPoints();
+        for (TopoPoint p : pts) {
+            if (p.getX() >= rMinX && p.getX() <= rMaxX && p.getY() >= rMinY && p.getY() <= rMaxY) return true;
+        }
+
+        // 4. Algum segmento cruza a borda da seleção? (predicados exatos)
+        int segments = (obj.isClosed() && pts.size() > 2) ? pts.size() : pts.size() - 1;
+        for (int i = 0; i < segments; i++) {
+            TopoPoint a = pts.get(i);
+            TopoPoint b = pts.get((i + 1) % pts.size());
+            double ax = a.getX(), ay = a.getY(), bx = b.getX(), by = b.getY();
+            if (GeometricPredicates.segmentsIntersect(ax, ay, bx, by, rMinX, rMinY, rMaxX, rMinY)
+                    || GeometricPredicates.segmentsIntersect(ax, ay, bx, by, rMaxX, rMinY, rMaxX, rMaxY)
+                    || GeometricPredicates.segmentsIntersect(ax, ay, bx, by, rMaxX, rMaxY, rMinX, rMaxY)
+                    || GeometricPredicates.segmentsIntersect(ax, ay, bx, by, rMinX, rMaxY, rMinX, rMinY)) {
+                return true;
+            }
+        }
+        return false;
     }
 
     // Método auxiliar para adicionar um objeto de texto simples
@@ -1195,7 +1529,7 @@ public class CadCanvas extends Canvas {
         gc.setStroke(Color.WHITE);
         gc.setFill(Color.WHITE);
 
-        gc.setFont(javafx.scene.text.Font.font("Arial", FontWeight.NORMAL, table.getFontSize()));
+        gc.setFont(textCache.font(FontWeight.NORMAL, table.getFontSize()));
 
         // 1. Desenha Borda Externa
         gc.strokeRect(startX, startY, totalW, totalH);
@@ -1267,6 +1601,7 @@ public class CadCanvas extends Canvas {
             itemCut.setOnAction(ev -> {
                 copyObjectToClipboard(obj); // Copia
                 objects.remove(obj);        // Deleta
+                removeFromSurface(obj);
                 if (onContentChange != null) onContentChange.run();
                 redraw();
                 System.out.println("Objeto recortado.");
@@ -1292,6 +1627,7 @@ public class CadCanvas extends Canvas {
             itemDelete.setStyle("-fx-text-fill: red;");
             itemDelete.setOnAction(ev -> {
                 objects.remove(obj);
+                removeFromSurface(obj);
                 if (onContentChange != null) onContentChange.run();
                 redraw();
             });
@@ -1305,7 +1641,10 @@ public class CadCanvas extends Canvas {
                 icon.setStroke(Color.BLACK);
                 item.setGraphic(icon);
                 item.setOnAction(event -> {
+                    boolean wasBreakline = isBreakline(obj);
                     obj.setType(type);
+                    sceneIndex.refresh(obj);
+                    if (wasBreakline != isBreakline(obj)) breaklineChanged(obj);
                     redraw();
                 });
                 menuStyles.getItems().add(item);
@@ -1359,6 +1698,7 @@ public class CadCanvas extends Canvas {
 
         clone.setId(clone.getId() + "-COPY");
         this.objects.add(clone);
+        addToSurface(clone);
         redraw();
     }
 
@@ -1415,6 +1755,7 @@ public class CadCanvas extends Canvas {
             try {
                 double angleDeg = Double.parseDouble(val.replace(",", "."));
                 rotateObjectGeometry(obj, angleDeg);
+                objectMoved(obj);
                 redraw();
             } catch (NumberFormatException e) {
                 System.err.println("Ângulo inválido");
@@ -1448,6 +1789,7 @@ public class CadCanvas extends Canvas {
             p.setX(xNew);
             p.setY(yNew);
         }
+        sceneIndex.refresh(obj);
     }
 
     // --- LÓGICA DE PROPRIEDADES ---
@@ -1521,7 +1863,7 @@ public class CadCanvas extends Canvas {
             double step = calculateNiceStep(rawStep);
 
             double fontSize = 12 / scale;
-            gc.setFont(javafx.scene.text.Font.font("Arial", fontSize));
+            gc.setFont(textCache.font(fontSize));
             gc.setFill(Color.GRAY);
             gc.setStroke(Color.rgb(100, 100, 100, 0.2));
             gc.setLineWidth(1 / scale);
@@ -1535,8 +1877,7 @@ public class CadCanvas extends Canvas {
 
                 gc.strokeLine(drawX, minY_rel, drawX, maxY_rel);
 
-                String label = String.format("E %.0f", x_abs);
-                gc.fillText(label, drawX + textOffset, maxY_rel - (textOffset * 2));
+                gc.fillText(textCache.easting(x_abs), drawX + textOffset, maxY_rel - (textOffset * 2));
             }
 
             double y_abs_start = (-minY_rel) + globalOffsetY;
@@ -1552,8 +1893,7 @@ public class CadCanvas extends Canvas {
 
                 gc.strokeLine(minX_rel, drawY, maxX_rel, drawY);
 
-                String label = String.format("N %.0f", y_abs);
-                gc.fillText(label, minX_rel + textOffset, drawY - textOffset);
+                gc.fillText(textCache.northing(y_abs), minX_rel + textOffset, drawY - textOffset);
             }
 
         } catch (javafx.scene.transform.NonInvertibleTransformException e) {
@@ -1610,10 +1950,17 @@ public class CadCanvas extends Canvas {
 
         for (TopoObject obj : objects) {
             // 1. Remove apenas os pontos selecionados (que estão laranjas)
+            if (surface != null) {
+                for (TopoPoint p : obj.getPoints()) {
+                    if (p.isSelected()) surface.removePoint(p);
+                }
+            }
             boolean removed = obj.getPoints().removeIf(TopoPoint::isSelected);
 
             if (removed) {
                 somethingChanged = true;
+                sceneIndex.refresh(obj);
+                if (surface != null && isBreakline(obj)) surface.applyBreakline(obj);
             }
 
             if (obj.getPoints().isEmpty()) {
@@ -1632,6 +1979,13 @@ public class CadCanvas extends Canvas {
         if (somethingChanged || !objectsToRemove.isEmpty()) {
             objects.removeAll(objectsToRemove);
 
+            // Pontos que sobraram em objetos descartados também saem da superfície
+            if (surface != null) {
+                for (TopoObject obj : objectsToRemove) {
+                    for (TopoPoint p : obj.getPoints()) surface.removePoint(p);
+                }
+            }
+
             if (onContentChange != null) onContentChange.run();
             if (onSelectionChanged != null) onSelectionChanged.accept(null);
             redraw();
@@ -1945,7 +2299,7 @@ public class CadCanvas extends Canvas {
 
             try {
                 trans.prependTranslation(dx, dy);
-                redraw();
+                redrawView();
             } catch (Exception ex) {
                 ex.printStackTrace();
             }
@@ -1959,7 +2313,7 @@ public class CadCanvas extends Canvas {
         // 3. Seleção por Caixa (Se estiver ativa)
         if (functions.isSelectingBox()) {
             functions.setSelectionCurrentScreenPoint(new Vector2D(e.getX(), e.getY()));
-            redraw();
+            redrawOverlay();
             return;
         }
 
@@ -1983,8 +2337,13 @@ public class CadCanvas extends Canvas {
                 }
             }
 
-            functions.getPointBeingDragged().setX(worldPos.x());
-            functions.getPointBeingDragged().setY(worldPos.y());
+            TopoPoint dragged = functions.getPointBeingDragged();
+            double oldX = dragged.getX(), oldY = dragged.getY();
+            dragged.setX(worldPos.x());
+            dragged.setY(worldPos.y());
+            sceneIndex.pointMoved(dragged, oldX, oldY);
+
+            if (surface != null) surface.movePoint(functions.getPointBeingDragged());
 
             if (onSelectionChanged != null) {
                 onSelectionChanged.accept(functions.getPointBeingDragged());
@@ -2047,7 +2406,7 @@ public class CadCanvas extends Canvas {
         try {
             javafx.geometry.Point2D worldPoint = trans.inverseTransform(pivotX, pivotY);
             trans.appendScale(zoomFactor, zoomFactor, worldPoint.getX(), worldPoint.getY());
-            redraw();
+            redrawView();
         } catch (NonInvertibleTransformException ex) {
             ex.printStackTrace();
         }
@@ -2068,6 +2427,231 @@ public class CadCanvas extends Canvas {
         return getHeight();
     }
 
+    /**
+     * Superfície TIN dos pontos levantados. É construída na primeira chamada e depois mantida
+     * incrementalmente (arrastar, excluir e desenhar pontos alteram só a vizinhança editada).
+     */
+    public TinSurface getSurface() {
+        if (surface == null) {
+            surface = new TinSurface(getSurfacePoints(), getBreaklines());
+            surface.addListener(change -> surfaceListeners.forEach(l -> l.accept(change)));
+        }
+        return surface;
+    }
+
+    /** A superfície já foi construída (ou restaurada) e está sendo mantida? */
+    public boolean hasSurface() {
+        return surface != null;
+    }
+
+    /**
+     * Adota uma superfície já triangulada (ex.: a gravada no projeto), que passa a ser mantida
+     * como se tivesse sido construída aqui. Com null, ela é reconstruída no próximo uso.
+     */
+    public void setSurface(TinSurface restored) {
+        invalidateSurface();
+        if (restored == null) return;
+        surface = restored;
+        surface.addListener(change -> surfaceListeners.forEach(l -> l.accept(change)));
+        TinChange change = TinChange.rebuilt();
+        surfaceListeners.forEach(l -> l.accept(change));
+    }
+
+    /**
+     * Troca as curvas de nível do desenho pelas novas de uma só vez; as anteriores continuam na
+     * tela até aqui. Curvas não fazem parte da superfície, então ela não é refeita.
+     */
+    public void replaceContours(List<TopoObject> contours) {
+        replaceContours(contours, null);
+    }
+
+    /**
+     * Igual a {@link #replaceContours(List)}; com live, as curvas passam a ser refeitas só em volta
+     * de cada ponto incluído, movido ou excluído. Se a superfície do live já não é a do canvas,
+     * as curvas entram estáticas.
+     */
+    public void replaceContours(List<TopoObject> contours, LiveContours live) {
+        stopLiveContours();
+        objects.removeIf(obj -> isContourLayer(obj.getLayerName()));
+        contourSmoother.clear();
+        contourSlots.clear();
+        for (TopoObject contour : contours) contourSlots.put(contour, objects.size() + contourSlots.size());
+        objects.addAll(contours);
+        if (live != null) {
+            if (live.getSurface() == surface && live.follow(this::applyContourChange)) {
+                liveContours = live;
+            } else {
+                live.close();
+            }
+        }
+        redraw();
+    }
+
+    /**
+     * As curvas novas ocupam as posições das que saíram; as que sobram vão para o fim e as
+     * posições que sobram recebem a última curva da lista (a ordem entre curvas não aparece no
+     * desenho). Quem editou a superfície redesenha em seguida.
+     */
+    private void applyContourChange(ContourChange change) {
+        List<TopoObject> added = change.getAdded();
+        int next = 0;
+        List<Integer> freed = new ArrayList<>();
+        for (TopoObject old : change.getRemoved()) {
+            int i = contourIndex(old);
+            contourSlots.remove(old);
+            contourSmoother.forget(old);
+            if (i < 0) continue;
+            if (next < added.size()) {
+                TopoObject contour = added.get(next++);
+                objects.set(i, contour);
+                contourSlots.put(contour, i);
+            } else {
+                freed.add(i);
+            }
+        }
+
+        freed.sort(Comparator.reverseOrder());
+        for (int i : freed) {
+            int last = objects.size() - 1;
+            TopoObject tail = objects.get(last);
+            if (i != last && contourSlots.containsKey(tail)) {
+                objects.set(i, tail);
+                contourSlots.put(tail, i);
+                objects.remove(last);
+            } else {
+                objects.remove(i);
+            }
+        }
+
+        for (; next < added.size(); next++) {
+            contourSlots.put(added.get(next), objects.size());
+            objects.add(added.get(next));
+        }
+    }
+
+    // Posição atual da curva: a guardada, ou a mais próxima dela se a lista andou (exclusões)
+    private int contourIndex(TopoObject contour) {
+        Integer hint = contourSlots.get(contour);
+        if (hint == null) return objects.lastIndexOf(contour);
+        int size = objects.size();
+        for (int d = 0; hint - d >= 0 || hint + d < size; d++) {
+            if (hint - d >= 0 && hint - d < size && objects.get(hint - d) == contour) return hint - d;
+            if (d > 0 && hint + d < size && objects.get(hint + d) == contour) return hint + d;
+        }
+        return -1;
+    }
+
+    private static boolean isContourLayer(String layerName) {
+        return "CURVA_MESTRA".equals(layerName) || "CURVA_NORMAL".equals(layerName);
+    }
+
+    // Vértices da curva suavizada para a escala dada (null = desenhar os pontos)
+    private double[] smoothedContour(TopoObject obj, double scale) {
+        return (smoothContours && isContourLayer(obj.getLayerName())) ? contourSmoother.smooth(obj, scale) : null;
+    }
+
+    /** Liga ou desliga a suavização das curvas; os ladrilhos desenhados com a outra são descartados. */
+    public void setSmoothContours(boolean smoothContours) {
+        if (this.smoothContours == smoothContours) return;
+        this.smoothContours = smoothContours;
+        tileCache.clear();
+    }
+
+    private void stopLiveContours() {
+        if (liveContours == null) return;
+        liveContours.close();
+        liveContours = null;
+    }
+
+    public void addSurfaceListener(Consumer<TinChange> listener) {
+        surfaceListeners.add(listener);
+    }
+
+    /** Descarta a superfície (edições em massa); ela é reconstruída no próximo uso. */
+    public void invalidateSurface() {
+        if (surface == null) return;
+        surface = null;
+        TinChange change = TinChange.rebuilt();
+        surfaceListeners.forEach(l -> l.accept(change));
+    }
+
+    // Ponto novo do objeto dado (linha, polilinha em construção)
+    private void addToSurface(TopoObject owner, TopoPoint p) {
+        if (surface != null && isSurfaceLayer(owner.getLayerName())) surface.addPoint(p);
+    }
+
+    // Objeto que entrou no desenho: seus pontos e, se for linha de quebra, seus segmentos
+    private void addToSurface(TopoObject obj) {
+        if (surface == null || !isSurfaceLayer(obj.getLayerName())) return;
+        for (TopoPoint p : obj.getPoints()) surface.addPoint(p);
+        if (isBreakline(obj)) surface.addBreakline(obj);
+    }
+
+    // Objeto que saiu do desenho: os segmentos deixam de ser restritos e os pontos saem
+    private void removeFromSurface(TopoObject obj) {
+        if (surface == null || !isSurfaceLayer(obj.getLayerName())) return;
+        if (isBreakline(obj)) surface.removeBreakline(obj);
+        for (TopoPoint p : obj.getPoints()) surface.removePoint(p);
+    }
+
+    // O objeto passou a ser (ou deixou de ser) linha de quebra
+    private void breaklineChanged(TopoObject obj) {
+        if (surface == null || !isSurfaceLayer(obj.getLayerName())) return;
+        if (isBreakline(obj)) surface.addBreakline(obj);
+        else surface.removeBreakline(obj);
+    }
+
+    /**
+     * Pontos que formam o terreno: ignora textos, tabelas, folhas, malha de coordenadas e
+     * as próprias curvas de nível (senão as curvas geradas voltariam para a triangulação).
+     */
+    public List<TopoPoint> getSurfacePoints() {
+        List<TopoPoint> surfacePoints = new ArrayList<>();
+        Set<TopoPoint> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+
+        for (TopoObject obj : objects) {
+            if (!isSurfaceLayer(obj.getLayerName())) continue;
+            for (TopoPoint p : obj.getPoints()) {
+                if (seen.add(p)) surfacePoints.add(p);
+            }
+        }
+        return surfacePoints;
+    }
+
+    /** Objetos da superfície marcados como linha de quebra (por tipo de linha ou camada). */
+    public List<TopoObject> getBreaklines() {
+        List<TopoObject> breaklines = new ArrayList<>();
+        for (TopoObject obj : objects) {
+            if (isSurfaceLayer(obj.getLayerName()) && isBreakline(obj)) breaklines.add(obj);
+        }
+        return breaklines;
+    }
+
+    private boolean isBreakline(TopoObject obj) {
+        return breaklineTypes.contains(obj.getType()) || breaklineLayers.contains(obj.getLayerName());
+    }
+
+    // Objeto cujos pontos ou segmentos entram na superfície
+    private boolean affectsSurface(TopoObject obj) {
+        return isSurfaceLayer(obj.getLayerName()) || isBreakline(obj);
+    }
+
+    private boolean isSurfaceLayer(String layerName) {
+        if (layerName == null) return true;
+        if (layerName.startsWith("FOLHA")) return false;
+        switch (layerName) {
+            case "TEXT":
+            case "TABELA":
+            case "GRID":
+            case "CURVA_MESTRA":
+            case "CURVA_NORMAL":
+            case "TRIANGULACAO":
+                return false;
+            default:
+                return true;
+        }
+    }
+
     public List<TopoPoint> getAllPoints() {
         List<TopoPoint> all = new ArrayList<>();
         for(TopoObject obj : objects) {
@@ -0,0 +1,473 @@
+package com.brasens.layout.components.CAD.Canvas;
+
+import com.brasens.model.TopoLineType;
+import com.brasens.model.objects.TopoObject;
+import com.brasens.model.objects.TopoPoint;
+import com.brasens.utilities.math.RTree;
+import javafx.geometry.Bounds;
+import javafx.geometry.Point2D;
+import javafx.geometry.VPos;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.paint.Color;
+import javafx.scene.text.Font;
+import javafx.scene.text.FontWeight;
+import javafx.scene.text.Text;
+import javafx.scene.text.TextAlignment;
+import javafx.scene.transform.Affine;
+import javafx.scene.transform.NonInvertibleTransformException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Rótulos de cota das curvas mestras, sem sobreposição.
+ *
+ * Os candidatos ficam ao longo de cada curva mestra, a intervalos regulares na tela, com o texto
+ * girado na direção da curva. Um candidato é descartado se a curva faz curva demais sob o texto,
+ * se a caixa dele cruza a de um rótulo já aceito (R-tree das caixas) ou se outra curva mestra
+ * passa por baixo dele (R-tree de trechos das curvas). As intermediárias ficam encobertas pelo
+ * fundo do rótulo, como na prancha.
+ *
+ * A colocação é feita sob demanda, por células da tela onde a janela já passou, e fica guardada
+ * por faixa de zoom até as curvas mudarem; a cada quadro só são desenhados os rótulos na janela.
+ * Curvas que entram ou saem aparecem na versão da lista; as movidas ou giradas no lugar chegam
+ * por {@link #changed(TopoObject)}.
+ */
+class ContourLabeler {
+
+    private static final Font FONT = Font.font("Arial", FontWeight.BOLD, 12);
+    private static final Color BACKGROUND = Color.rgb(30, 30, 30);
+
+    // Distância entre rótulos da mesma curva e folga em volta do texto (pixels)
+    private static final double SPACING = 320;
+    private static final double PADDING = 3;
+
+    // Faixas de zoom de 1/4 de oitava; guarda as últimas usadas
+    private static final int ZOOM_STEPS_PER_OCTAVE = 4;
+    private static final int CACHED_ZOOMS = 8;
+
+    // Lado das células (pixels) em que a colocação é feita sob demanda
+    private static final double TILE = 1024;
+
+    // Pontos por trecho no índice das curvas
+    private static final int CHUNK = 32;
+
+    private int version = -1;
+    private final Map<TopoObject, Contour> contours = new IdentityHashMap<>();
+    private final Set<TopoObject> moved = Collections.newSetFromMap(new IdentityHashMap<>());
+    private final RTree<Chunk> linework = new RTree<>();
+    private final Map<String, Double> textWidths = new HashMap<>();
+    private double textHeight = -1;
+
+    private final LinkedHashMap<Integer, Placement> placements = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, Placement> eldest) {
+            return size() > CACHED_ZOOMS;
+        }
+    };
+
+    /**
+     * @param version  versão da lista de objetos: enquanto ela não muda, as curvas nem são
+     *                 percorridas
+     * @param occupied grade da tela onde cada rótulo desenhado marca a sua caixa, para os nomes
+     *                 desenhados depois não caírem em cima
+     */
+    void draw(GraphicsContext gc, Affine trans, List<TopoObject> objects, int version, double width, double height,
+              double offsetX, double offsetY, OccupancyGrid occupied) {
+        if (version != this.version || !moved.isEmpty()) {
+            this.version = version;
+            update(objects);
+        }
+        if (contours.isEmpty()) return;
+
+        double scale = trans.getMxx();
+        int zoom = (int) Math.round(Math.log(scale) / Math.log(2) * ZOOM_STEPS_PER_OCTAVE);
+        Placement placement = placements.computeIfAbsent(zoom, z -> new Placement(Math.pow(2, (double) z / ZOOM_STEPS_PER_OCTAVE)));
+
+        double minX, minY, maxX, maxY;
+        try {
+            Point2D a = trans.inverseTransform(0, 0);
+            Point2D b = trans.inverseTransform(width, height);
+            minX = Math.min(a.getX(), b.getX()) + offsetX;
+            maxX = Math.max(a.getX(), b.getX()) + offsetX;
+            minY = -Math.max(a.getY(), b.getY()) + offsetY;
+            maxY = -Math.min(a.getY(), b.getY()) + offsetY;
+        } catch (NonInvertibleTransformException e) {
+            return;
+        }
+
+        // Completa as células da janela ainda não processadas nesta faixa de zoom
+        double tile = TILE / placement.scale;
+        for (long ty = (long) Math.floor(minY / tile); ty <= (long) Math.floor(maxY / tile); ty++) {
+            for (long tx = (long) Math.floor(minX / tile); tx <= (long) Math.floor(maxX / tile); tx++) {
+                if (placement.tiles.add(tileKey(tx, ty))) placeTile(placement, tx, ty, tile);
+            }
+        }
+        if (placement.index.size() == 0) return;
+
+        gc.setFont(FONT);
+        gc.setTextAlign(TextAlignment.CENTER);
+        gc.setTextBaseline(VPos.CENTER);
+        Color color = TopoLineType.CURVA_MESTRA.getColor();
+        placement.index.search(minX, minY, maxX, maxY, label -> {
+            Point2D screen = trans.transform(label.x - offsetX, -(label.y - offsetY));
+            double cos = Math.cos(label.angle), sin = Math.sin(label.angle);
+            gc.setTransform(cos, sin, -sin, cos, screen.getX(), screen.getY());
+            gc.setFill(BACKGROUND);
+            gc.fillRect(-label.width / 2, -label.height / 2, label.width, label.height);
+            gc.setFill(color);
+            gc.fillText(label.text, 0, 0);
+
+            double hx = (Math.abs(cos) * label.width + Math.abs(sin) * label.height) / 2;
+            double hy = (Math.abs(sin) * label.width + Math.abs(cos) * label.height) / 2;
+            occupied.mark(screen.getX() - hx, screen.getY() - hy, screen.getX() + hx, screen.getY() + hy);
+        });
+        gc.setTextAlign(TextAlignment.LEFT);
+        gc.setTextBaseline(VPos.BASELINE);
+        gc.setTransform(trans);
+    }
+
+    /** Os pontos do objeto mudaram: se for uma curva indexada, ela é refeita no próximo quadro. */
+    void changed(TopoObject obj) {
+        if (contours.containsKey(obj)) moved.add(obj);
+    }
+
+    /**
+     * Acompanha as curvas mestras por identidade: as que sumiram, mudaram de número de pontos ou
+     * foram movidas saem do índice, as novas entram, e em cada faixa de zoom só as células perto
+     * delas (antes e depois) voltam a ser processadas. Uma edição na superfície não refaz os
+     * rótulos do resto do desenho.
+     */
+    private void update(List<TopoObject> objects) {
+        Set<TopoObject> present = Collections.newSetFromMap(new IdentityHashMap<>());
+        List<Contour> changed = new ArrayList<>();
+        int count = 0;
+        for (TopoObject obj : objects) {
+            if (!isMaster(obj) || !present.add(obj)) continue;
+            count++;
+            Contour contour = contours.get(obj);
+            if (contour != null && contour.count == obj.getPoints().size() && !moved.contains(obj)) continue;
+            if (contour != null) changed.add(retire(contour));
+            contour = new Contour(obj);
+            contours.put(obj, contour);
+            for (Chunk chunk : contour.chunks) linework.insert(chunk.minX, chunk.minY, chunk.maxX, chunk.maxY, chunk);
+            changed.add(contour);
+        }
+        for (Iterator<Contour> it = contours.values().iterator(); it.hasNext(); ) {
+            Contour contour = it.next();
+            if (present.contains(contour.obj)) continue;
+            it.remove();
+            changed.add(retire(contour));
+        }
+        moved.clear();
+
+        if (count == 0 || changed.size() > count / 2) {
+            placements.clear();
+            return;
+        }
+        for (Placement placement : placements.values()) {
+            for (Contour contour : changed) placement.invalidate(contour, SPACING / placement.scale);
+        }
+    }
+
+    private Contour retire(Contour contour) {
+        for (Chunk chunk : contour.chunks) linework.remove(chunk.minX, chunk.minY, chunk.maxX, chunk.maxY, chunk);
+        return contour;
+    }
+
+    private static boolean isMaster(TopoObject obj) {
+        return obj.getType() == TopoLineType.CURVA_MESTRA
+                && ("CURVA_MESTRA".equals(obj.getLayerName()) || "CURVA_NORMAL".equals(obj.getLayerName()));
+    }
+
+    /**
+     * Escolhe os rótulos da célula (tx, ty), gulosamente: candidatos a cada SPACING pixels ao
+     * longo de cada curva, contados a partir da ponta, e cujo ponto cai nesta célula. Os rótulos
+     * de células já processadas valem como obstáculo, então a ordem não cria sobreposições.
+     */
+    private void placeTile(Placement placement, long tx, long ty, double tile) {
+        double x0 = tx * tile, y0 = ty * tile, x1 = x0 + tile, y1 = y0 + tile;
+        double unit = 1 / placement.scale;
+        double spacing = SPACING * unit;
+        double height = (textHeight() + 2 * PADDING) * unit;
+
+        List<Chunk> chunks = new ArrayList<>();
+        linework.search(x0, y0, x1, y1, chunks::add);
+        for (Chunk chunk : chunks) {
+            Contour c = chunk.contour;
+            List<TopoPoint> pts = c.obj.getPoints();
+            double[] along = c.along;
+            double total = along[along.length - 1];
+            String text = c.text;
+            double width = (textWidth(text) + 2 * PADDING) * unit;
+            if (total < 1.5 * width) continue;
+
+            // Candidatos cuja posição ao longo da curva cai neste trecho
+            double first = Math.min(spacing / 2, total / 2);
+            double from = along[chunk.from];
+            double to = along[Math.min(along.length - 1, chunk.from + CHUNK)];
+            for (double s = first + Math.max(0, Math.ceil((from - first) / spacing)) * spacing; s < to; s += spacing) {
+                if (s > total - width / 2) break;
+                double[] anchor = pointAt(pts, along, segmentAt(along, s), s);
+                if (anchor[0] < x0 || anchor[0] >= x1 || anchor[1] < y0 || anchor[1] >= y1) continue;
+
+                // Se falhar, tenta um pouco antes e depois
+                for (double shift : new double[]{0, 0.25, -0.25}) {
+                    double at = s + shift * spacing;
+                    if (at < width / 2 || at > total - width / 2) continue;
+                    Label label = candidate(placement, c, pts, along, at, width, height, text, placement.scale);
+                    if (label != null) {
+                        label.tile = tileKey(tx, ty);
+                        placement.add(label);
+                        break;
+                    }
+                }
+            }
+        }
+    }
+
+    private Label candidate(Placement placement, Contour c, List<TopoPoint> pts, double[] along, double at, double width, double height,
+                            String text, double scale) {
+        // Corda entre as posições at - w/2 e at + w/2: centro e direção do texto
+        int first = segmentAt(along, at - width / 2);
+        int last = segmentAt(along, at + width / 2);
+        double[] a = pointAt(pts, along, first, at - width / 2);
+        double[] b = pointAt(pts, along, last, at + width / 2);
+        double dx = b[0] - a[0], dy = b[1] - a[1];
+        double length = Math.hypot(dx, dy);
+        if (length < 0.8 * width) return null; // curva dobra sob o texto
+
+        double ux = dx / length, uy = dy / length;
+        double cx = (a[0] + b[0]) / 2, cy = (a[1] + b[1]) / 2;
+        double hw = width / 2, hh = height / 2;
+
+        // A própria curva tem que ficar dentro da faixa do texto
+        for (int i = first + 1; i <= last; i++) {
+            TopoPoint p = pts.get(i % pts.size());
+            double v = -(p.getX() - cx) * uy + (p.getY() - cy) * ux;
+            if (Math.abs(v) > hh) return null;
+        }
+
+        double ex = Math.abs(ux) * hw + Math.abs(uy) * hh;
+        double ey = Math.abs(uy) * hw + Math.abs(ux) * hh;
+        Label label = new Label(cx, cy, ux, uy, hw, hh, text);
+        if (placement.index.any(cx - ex, cy - ey, cx + ex, cy + ey, label::overlaps)) return null;
+
+        boolean crossed = linework.any(cx - ex, cy - ey, cx + ex, cy + ey, chunk -> {
+            TopoObject other = chunk.contour.obj;
+            List<TopoPoint> otherPts = other.getPoints();
+            int segments = other.isClosed() ? otherPts.size() : otherPts.size() - 1;
+            int to = Math.min(segments, chunk.from + CHUNK);
+            for (int i = chunk.from; i < to; i++) {
+                if (chunk.contour == c && i >= first && i <= last) continue;
+                TopoPoint p = otherPts.get(i), q = otherPts.get((i + 1) % otherPts.size());
+                if (label.crosses(p.getX(), p.getY(), q.getX(), q.getY())) return true;
+            }
+            return false;
+        });
+        if (crossed) return null;
+
+        // Ângulo na tela (Y para baixo), sempre com o texto de pé
+        double angle = Math.atan2(-uy, ux);
+        if (angle > Math.PI / 2) angle -= Math.PI;
+        if (angle < -Math.PI / 2) angle += Math.PI;
+        label.angle = angle;
+        label.width = width * scale;
+        label.height = height * scale;
+        label.ex = ex;
+        label.ey = ey;
+        return label;
+    }
+
+    private static long tileKey(long tx, long ty) {
+        return (tx << 32) ^ (ty & 0xFFFFFFFFL);
+    }
+
+    // Segmento (pontos i, i+1) que contém a posição s ao longo da curva
+    private static int segmentAt(double[] along, double s) {
+        int lo = 0, hi = along.length - 2;
+        while (lo < hi) {
+            int mid = (lo + hi + 1) >>> 1;
+            if (along[mid] <= s) lo = mid; else hi = mid - 1;
+        }
+        return lo;
+    }
+
+    private static double[] pointAt(List<TopoPoint> pts, double[] along, int i, double s) {
+        TopoPoint p = pts.get(i % pts.size()), q = pts.get((i + 1) % pts.size());
+        double span = along[i + 1] - along[i];
+        double t = (span > 0) ? (s - along[i]) / span : 0;
+        return new double[]{p.getX() + t * (q.getX() - p.getX()), p.getY() + t * (q.getY() - p.getY())};
+    }
+
+    private double textWidth(String text) {
+        return textWidths.computeIfAbsent(text, s -> {
+            Text node = new Text(s);
+            node.setFont(FONT);
+            return node.getLayoutBounds().getWidth();
+        });
+    }
+
+    private double textHeight() {
+        if (textHeight < 0) {
+            Text node = new Text("0");
+            node.setFont(FONT);
+            Bounds bounds = node.getLayoutBounds();
+            textHeight = bounds.getHeight();
+        }
+        return textHeight;
+    }
+
+    // Rótulos de uma faixa de zoom, o índice das suas caixas e as células já processadas
+    private static final class Placement {
+        private final double scale;
+        private final RTree<Label> index = new RTree<>();
+        private final Set<Long> tiles = new HashSet<>();
+
+        Placement(double scale) {
+            this.scale = scale;
+        }
+
+        void add(Label label) {
+            index.insert(label.x - label.ex, label.y - label.ey, label.x + label.ex, label.y + label.ey, label);
+        }
+
+        /**
+         * Esquece as células em volta da curva (a margem cobre os rótulos vizinhos que ela passa
+         * a cruzar ou deixa de bloquear) e os rótulos colocados nelas.
+         */
+        void invalidate(Contour contour, double margin) {
+            double tile = TILE / scale;
+            long tx0 = (long) Math.floor((contour.minX - margin) / tile), tx1 = (long) Math.floor((contour.maxX + margin) / tile);
+            long ty0 = (long) Math.floor((contour.minY - margin) / tile), ty1 = (long) Math.floor((contour.maxY + margin) / tile);
+            Set<Long> stale = new HashSet<>();
+            for (long ty = ty0; ty <= ty1; ty++) {
+                for (long tx = tx0; tx <= tx1; tx++) {
+                    if (tiles.remove(tileKey(tx, ty))) stale.add(tileKey(tx, ty));
+                }
+            }
+            if (stale.isEmpty()) return;
+            List<Label> dropped = new ArrayList<>();
+            index.search(tx0 * tile - tile, ty0 * tile - tile, (tx1 + 2) * tile, (ty1 + 2) * tile, label -> {
+                if (stale.contains(label.tile)) dropped.add(label);
+            });
+            for (Label label : dropped) {
+                index.remove(label.x - label.ex, label.y - label.ey, label.x + label.ex, label.y + label.ey, label);
+            }
+        }
+    }
+
+    // Curva mestra indexada: comprimento acumulado até cada ponto, texto da cota e trechos
+    private static final class Contour {
+        private final TopoObject obj;
+        private final int count;
+        private final double[] along;
+        private final String text;
+        private final List<Chunk> chunks = new ArrayList<>();
+        private double minX = Double.MAX_VALUE, minY = Double.MAX_VALUE, maxX = -Double.MAX_VALUE, maxY = -Double.MAX_VALUE;
+
+        Contour(TopoObject obj) {
+            this.obj = obj;
+            List<TopoPoint> pts = obj.getPoints();
+            count = pts.size();
+            int n = (obj.isClosed() && count > 1) ? count + 1 : count;
+            along = new double[Math.max(1, n)];
+            for (int i = 1; i < n; i++) {
+                TopoPoint p = pts.get(i - 1), q = pts.get(i % count);
+                along[i] = along[i - 1] + Math.hypot(q.getX() - p.getX(), q.getY() - p.getY());
+            }
+            text = pts.isEmpty() ? "" : String.format("%.0f", pts.get(0).getZ());
+
+            // Trechos de CHUNK segmentos
+            int segments = obj.isClosed() ? count : count - 1;
+            for (int from = 0; from < segments; from += CHUNK) {
+                Chunk chunk = new Chunk(this, from);
+                for (int i = from, to = Math.min(segments, from + CHUNK); i <= to; i++) {
+                    TopoPoint p = pts.get(i % count);
+                    chunk.minX = Math.min(chunk.minX, p.getX());
+                    chunk.maxX = Math.max(chunk.maxX, p.getX());
+                    chunk.minY = Math.min(chunk.minY, p.getY());
+                    chunk.maxY = Math.max(chunk.maxY, p.getY());
+                }
+                chunks.add(chunk);
+                minX = Math.min(minX, chunk.minX);
+                maxX = Math.max(maxX, chunk.maxX);
+                minY = Math.min(minY, chunk.minY);
+                maxY = Math.max(maxY, chunk.maxY);
+            }
+        }
+    }
+
+    private static final class Chunk {
+        private final Contour contour;
+        private final int from;
+        private double minX = Double.MAX_VALUE, minY = Double.MAX_VALUE, maxX = -Double.MAX_VALUE, maxY = -Double.MAX_VALUE;
+
+        Chunk(Contour contour, int from) {
+            this.contour = contour;
+            this.from = from;
+        }
+    }
+
+    /** Caixa orientada do rótulo no mundo: centro, direção do texto e meias medidas. */
+    private static final class Label {
+        private final double x, y, ux, uy, hw, hh;
+        private final String text;
+        private double angle, width, height; // na tela
+        private double ex, ey;               // meias medidas da caixa alinhada aos eixos
+        private long tile;                   // célula em que foi colocado
+
+        Label(double x, double y, double ux, double uy, double hw, double hh, String text) {
+            this.x = x;
+            this.y = y;
+            this.ux = ux;
+            this.uy = uy;
+            this.hw = hw;
+            this.hh = hh;
+            this.text = text;
+        }
+
+        // Eixos separadores: as direções das duas caixas
+        boolean overlaps(Label o) {
+            double dx = o.x - x, dy = o.y - y;
+            return !separated(dx, dy, ux, uy, o) && !separated(dx, dy, -uy, ux, o)
+                    && !o.separated(-dx, -dy, o.ux, o.uy, this) && !o.separated(-dx, -dy, -o.uy, o.ux, this);
+        }
+
+        private boolean separated(double dx, double dy, double ax, double ay, Label o) {
+            double mine = Math.abs(ax * ux + ay * uy) * hw + Math.abs(-ax * uy + ay * ux) * hh;
+            double theirs = Math.abs(ax * o.ux + ay * o.uy) * o.hw + Math.abs(-ax * o.uy + ay * o.ux) * o.hh;
+            return Math.abs(dx * ax + dy * ay) > mine + theirs;
+        }
+
+        // Segmento (p, q) cruza a caixa? Recorte de Liang-Barsky no referencial do rótulo
+        boolean crosses(double px, double py, double qx, double qy) {
+            double u0 = (px - x) * ux + (py - y) * uy, v0 = -(px - x) * uy + (py - y) * ux;
+            double u1 = (qx - x) * ux + (qy - y) * uy, v1 = -(qx - x) * uy + (qy - y) * ux;
+            double du = u1 - u0, dv = v1 - v0;
+            double[] t = {0, 1};
+            return clip(-du, u0 + hw, t) && clip(du, hw - u0, t) && clip(-dv, v0 + hh, t) && clip(dv, hh - v0, t);
+        }
+
+        private static boolean clip(double p, double q, double[] t) {
+            if (p == 0) return q >= 0;
+            double r = q / p;
+            if (p < 0) {
+                if (r > t[1]) return false;
+                if (r > t[0]) t[0] = r;
+            } else {
+                if (r < t[0]) return false;
+                if (r < t[1]) t[1] = r;
+            }
+            return true;
+        }
+    }
+}
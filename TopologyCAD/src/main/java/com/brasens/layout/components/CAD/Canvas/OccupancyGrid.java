@@ -0,0 +1,84 @@
+package com.brasens.layout.components.CAD.Canvas;
+
+import java.util.Arrays;
+
+/**
+ * Grade de ocupação da tela para descartar textos onde eles já se amontoam.
+ *
+ * Cada texto pede a sua caixa (pixels); se alguma célula dela já foi tomada por um texto
+ * anterior, ele não é desenhado. Com o desenho afastado, sobra um nome por região em vez de
+ * uma mancha de milhares deles. Caixas fora da área também são recusadas.
+ */
+class OccupancyGrid {
+
+    static final double CELL = 8;
+    // Largura média de um caractere, em fração do tamanho da fonte (Arial)
+    private static final double CHAR_WIDTH = 0.6;
+
+    private double originX, originY;
+    private int cols, rows;
+    private long[] bits = new long[0];
+
+    /** Esvazia a grade e a faz cobrir a área dada (pixels). */
+    void reset(double minX, double minY, double maxX, double maxY) {
+        originX = minX;
+        originY = minY;
+        cols = Math.max(1, (int) Math.ceil((maxX - minX) / CELL));
+        rows = Math.max(1, (int) Math.ceil((maxY - minY) / CELL));
+        int words = (cols * rows + 63) >>> 6;
+        if (bits.length < words) bits = new long[words];
+        else Arrays.fill(bits, 0, words, 0L);
+    }
+
+    /**
+     * Reserva a caixa de um texto com a linha de base em (x, baseline) e o tamanho de fonte
+     * dado (pixels). Devolve false se ela cruza outro texto ou fica fora da área.
+     */
+    boolean claimText(double x, double baseline, String text, double fontSize) {
+        return claim(x, baseline - fontSize, x + textWidth(text, fontSize), baseline + fontSize * 0.25);
+    }
+
+    /** Largura estimada do texto (pixels) no tamanho de fonte dado. */
+    static double textWidth(String text, double fontSize) {
+        return text.length() * CHAR_WIDTH * fontSize;
+    }
+
+    /** Reserva a caixa se ela estiver livre. */
+    boolean claim(double minX, double minY, double maxX, double maxY) {
+        int c0 = (int) Math.floor((minX - originX) / CELL), c1 = (int) Math.floor((maxX - originX) / CELL);
+        int r0 = (int) Math.floor((minY - originY) / CELL), r1 = (int) Math.floor((maxY - originY) / CELL);
+        if (c1 < 0 || r1 < 0 || c0 >= cols || r0 >= rows) return false;
+        c0 = Math.max(c0, 0);
+        r0 = Math.max(r0, 0);
+        c1 = Math.min(c1, cols - 1);
+        r1 = Math.min(r1, rows - 1);
+
+        for (int r = r0; r <= r1; r++) {
+            for (int c = c0; c <= c1; c++) {
+                int i = r * cols + c;
+                if ((bits[i >>> 6] & (1L << i)) != 0) return false;
+            }
+        }
+        fill(c0, r0, c1, r1);
+        return true;
+    }
+
+    /** Marca a caixa como ocupada, livre ou não (textos que sempre são desenhados). */
+    void mark(double minX, double minY, double maxX, double maxY) {
+        int c0 = Math.max((int) Math.floor((minX - originX) / CELL), 0);
+        int r0 = Math.max((int) Math.floor((minY - originY) / CELL), 0);
+        int c1 = Math.min((int) Math.floor((maxX - originX) / CELL), cols - 1);
+        int r1 = Math.min((int) Math.floor((maxY - originY) / CELL), rows - 1);
+        if (c0 > c1 || r0 > r1) return;
+        fill(c0, r0, c1, r1);
+    }
+
+    private void fill(int c0, int r0, int c1, int r1) {
+        for (int r = r0; r <= r1; r++) {
+            for (int c = c0; c <= c1; c++) {
+                int i = r * cols + c;
+                bits[i >>> 6] |= 1L << i;
+            }
+        }
+    }
+}
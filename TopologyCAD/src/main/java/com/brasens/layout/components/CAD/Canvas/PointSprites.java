@@ -0,0 +1,163 @@
+package com.brasens.layout.components.CAD.Canvas;
+
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
+import javafx.scene.paint.Color;
+
+import java.util.Arrays;
+
+/**
+ * Marcadores de ponto carimbados a partir de imagens prontas, em vez de um fillOval por ponto.
+ *
+ * Há um sprite por estilo (ponto normal, ponto selecionado), rasterizado uma vez com borda
+ * suavizada. Durante o quadro os pontos só são anotados pelo pixel da tela em que caem; vários
+ * no mesmo pixel viram um só. No {@link #flush} os selecionados saem por cima dos normais:
+ * com poucos pontos, um drawImage por ponto; com muitos, os sprites são compostos num buffer do
+ * tamanho da tela, enviado num setPixels e desenhado com um único drawImage.
+ */
+class PointSprites {
+
+    static final int NORMAL = 0;
+    static final int SELECTED = 1;
+
+    // Acima disso, compor no buffer sai mais barato que um drawImage por ponto
+    private static final int STAMP_MAX = 4096;
+    // Amostras por eixo na cobertura da borda do sprite
+    private static final int SUBSAMPLES = 4;
+
+    private final Sprite[] sprites = {
+            new Sprite(Color.YELLOW, 5.0),
+            new Sprite(Color.ORANGERED, 7.5)
+    };
+
+    private int width, height;
+    private long[][] seen = new long[sprites.length][0];
+    private int[][] hits = new int[sprites.length][256];
+    private final int[] counts = new int[sprites.length];
+
+    private WritableImage image;
+    private int[] pixels;
+
+    /** Começa um quadro numa tela de width x height pixels. */
+    void begin(double width, double height) {
+        this.width = Math.max(0, (int) Math.ceil(width));
+        this.height = Math.max(0, (int) Math.ceil(height));
+        int words = (this.width * this.height + 63) >>> 6;
+        for (int s = 0; s < sprites.length; s++) {
+            if (seen[s].length < words) seen[s] = new long[words];
+            else Arrays.fill(seen[s], 0, words, 0L);
+            counts[s] = 0;
+        }
+    }
+
+    /** Anota um ponto em (x, y) da tela; fora dela ou num pixel já anotado, é ignorado. */
+    void add(int sprite, double x, double y) {
+        if (!(x >= 0 && y >= 0 && x < width && y < height)) return;
+
+        int i = (int) y * width + (int) x;
+        long[] bits = seen[sprite];
+        if ((bits[i >>> 6] & (1L << i)) != 0) return;
+        bits[i >>> 6] |= 1L << i;
+
+        if (counts[sprite] == hits[sprite].length) hits[sprite] = Arrays.copyOf(hits[sprite], 2 * counts[sprite]);
+        hits[sprite][counts[sprite]++] = i;
+    }
+
+    /** Desenha os pontos anotados. O gc deve estar com a transformação identidade. */
+    void flush(GraphicsContext gc) {
+        int total = 0;
+        for (int count : counts) total += count;
+        if (total == 0 || width == 0 || height == 0) return;
+
+        if (total <= STAMP_MAX) {
+            for (int s = 0; s < sprites.length; s++) {
+                Sprite sprite = sprites[s];
+                int half = sprite.size / 2;
+                for (int k = 0; k < counts[s]; k++) {
+                    int i = hits[s][k];
+                    gc.drawImage(sprite.image, i % width - half, i / width - half);
+                }
+            }
+            return;
+        }
+
+        if (image == null || (int) image.getWidth() != width || (int) image.getHeight() != height) {
+            image = new WritableImage(width, height);
+            pixels = new int[width * height];
+        } else {
+            Arrays.fill(pixels, 0);
+        }
+        for (int s = 0; s < sprites.length; s++) {
+            for (int k = 0; k < counts[s]; k++) {
+                int i = hits[s][k];
+                composite(sprites[s], i % width, i / width);
+            }
+        }
+        image.getPixelWriter().setPixels(0, 0, width, height, PixelFormat.getIntArgbPreInstance(), pixels, 0, width);
+        gc.drawImage(image, 0, 0);
+    }
+
+    // Sprite sobre o buffer (source-over, alfa pré-multiplicado), centrado no pixel (cx, cy)
+    private void composite(Sprite sprite, int cx, int cy) {
+        int size = sprite.size, half = size / 2;
+        for (int sy = 0; sy < size; sy++) {
+            int y = cy - half + sy;
+            if (y < 0 || y >= height) continue;
+            for (int sx = 0; sx < size; sx++) {
+                int x = cx - half + sx;
+                if (x < 0 || x >= width) continue;
+                int src = sprite.pixels[sy * size + sx];
+                int sa = src >>> 24;
+                if (sa == 0) continue;
+
+                int i = y * width + x;
+                if (sa == 255) {
+                    pixels[i] = src;
+                    continue;
+                }
+                int dst = pixels[i];
+                int inv = 255 - sa;
+                int a = sa + ((dst >>> 24) * inv + 127) / 255;
+                int r = ((src >> 16) & 0xff) + (((dst >> 16) & 0xff) * inv + 127) / 255;
+                int g = ((src >> 8) & 0xff) + (((dst >> 8) & 0xff) * inv + 127) / 255;
+                int b = (src & 0xff) + ((dst & 0xff) * inv + 127) / 255;
+                pixels[i] = (a << 24) | (r << 16) | (g << 8) | b;
+            }
+        }
+    }
+
+    // Círculo de diâmetro dado (pixels), num quadrado ímpar para o centro cair no meio de um pixel
+    private static final class Sprite {
+        private final int size;
+        private final int[] pixels;
+        private final WritableImage image;
+
+        Sprite(Color color, double diameter) {
+            size = 2 * (int) Math.ceil(diameter / 2) + 1;
+            pixels = new int[size * size];
+
+            double center = size / 2.0, radius = diameter / 2;
+            int red = (int) Math.round(color.getRed() * 255);
+            int green = (int) Math.round(color.getGreen() * 255);
+            int blue = (int) Math.round(color.getBlue() * 255);
+            for (int y = 0; y < size; y++) {
+                for (int x = 0; x < size; x++) {
+                    int inside = 0;
+                    for (int j = 0; j < SUBSAMPLES; j++) {
+                        for (int i = 0; i < SUBSAMPLES; i++) {
+                            double dx = x + (i + 0.5) / SUBSAMPLES - center;
+                            double dy = y + (j + 0.5) / SUBSAMPLES - center;
+                            if (dx * dx + dy * dy <= radius * radius) inside++;
+                        }
+                    }
+                    int a = 255 * inside / (SUBSAMPLES * SUBSAMPLES);
+                    pixels[y * size + x] = (a << 24) | ((red * a / 255) << 16) | ((green * a / 255) << 8) | (blue * a / 255);
+                }
+            }
+
+            image = new WritableImage(size, size);
+            image.getPixelWriter().setPixels(0, 0, size, size, PixelFormat.getIntArgbPreInstance(), pixels, 0, size);
+        }
+    }
+}
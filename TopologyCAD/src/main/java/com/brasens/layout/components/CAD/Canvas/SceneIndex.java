@@ -0,0 +1,429 @@
+package com.brasens.layout.components.CAD.Canvas;
+
+import com.brasens.model.objects.TopoObject;
+import com.brasens.model.objects.TopoPoint;
+import com.brasens.model.objects.TopoTableObject;
+import com.brasens.utilities.math.RTree;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
+
+/**
+ * Índice espacial dos objetos do canvas, para o redesenho visitar só o que cruza a janela.
+ *
+ * A lista de objetos é a própria do índice: ela anota cada objeto que entra ou sai e o índice
+ * aplica só essas anotações no próximo uso, sem varrer a lista. Inclusões no meio, ordenações e
+ * alterações que escapam da anotação (por uma sublista, por exemplo) fazem uma varredura
+ * completa, que também renumera a ordem de desenho; um projeto inteiro de uma vez entra por
+ * empacotamento STR. Quem move pontos de um objeto já na lista avisa com
+ * {@link #refresh(TopoObject)} ou {@link #pointMoved(TopoPoint, double, double)}; pontos
+ * excluídos só encolhem a caixa, que pode ficar maior até a próxima atualização.
+ *
+ * Tabelas mudam de tamanho sem mexer nos pontos, então ficam fora da árvore e são sempre
+ * visitadas (são poucas).
+ *
+ * Cada caixa que entra, sai ou muda é repassada a um {@link DirtyListener} (os ladrilhos do
+ * canvas se refazem só ali), e cada objeto que muda ou sai, a um {@link ObjectListener} (o que
+ * foi calculado a partir dos pontos dele é descartado).
+ */
+class SceneIndex {
+
+    // Abaixo disso, inserir um a um custa menos que refazer a árvore
+    private static final int BULK_LOAD_MIN = 1024;
+
+    private final TrackedList objects = new TrackedList();
+    private final RTree<Entry> tree = new RTree<>();
+    private final Map<TopoObject, Entry> entries = new IdentityHashMap<>();
+    private final List<Entry> unbounded = new ArrayList<>();
+    private int pass = 0;
+    private int nextOrder = 0;
+    private DirtyListener dirtyListener = (minX, minY, maxX, maxY) -> { };
+    private ObjectListener objectListener = obj -> { };
+
+    /** Recebe a caixa (coordenadas absolutas) de um trecho do desenho que mudou. */
+    interface DirtyListener {
+        void dirty(double minX, double minY, double maxX, double maxY);
+    }
+
+    /** Recebe o objeto cujos pontos mudaram ou que saiu da lista. */
+    interface ObjectListener {
+        void changed(TopoObject obj);
+    }
+
+    void setDirtyListener(DirtyListener dirtyListener) {
+        this.dirtyListener = dirtyListener;
+    }
+
+    void setObjectListener(ObjectListener objectListener) {
+        this.objectListener = objectListener;
+    }
+
+    List<TopoObject> getObjects() {
+        return objects;
+    }
+
+    /** Muda a cada inclusão, remoção ou troca de objeto na lista. */
+    int version() {
+        return objects.version();
+    }
+
+    /**
+     * Objetos cuja caixa cruza a janela (coordenadas absolutas), na ordem da lista: quem vem
+     * depois continua sendo desenhado por cima.
+     */
+    List<TopoObject> visible(double minX, double minY, double maxX, double maxY) {
+        sync();
+        List<Entry> hits = new ArrayList<>(unbounded);
+        tree.search(minX, minY, maxX, maxY, hits::add);
+        hits.sort(Comparator.comparingInt(entry -> entry.order));
+
+        List<TopoObject> visible = new ArrayList<>(hits.size());
+        for (Entry entry : hits) visible.add(entry.obj);
+        return visible;
+    }
+
+    /** Os pontos do objeto mudaram (movido, girado, ponto incluído). */
+    void refresh(TopoObject obj) {
+        objectListener.changed(obj);
+        Entry entry = entries.get(obj);
+        if (entry == null || entry.unbounded) return; // entra no próximo sync
+        if (entry.bounded) {
+            tree.remove(entry.minX, entry.minY, entry.maxX, entry.maxY, entry);
+            entry.notifyDirty(dirtyListener);
+        }
+        entry.measure();
+        if (entry.bounded) {
+            tree.insert(entry.minX, entry.minY, entry.maxX, entry.maxY, entry);
+            entry.notifyDirty(dirtyListener);
+        }
+    }
+
+    /** Um ponto saiu de (oldX, oldY): atualiza os objetos que o contêm. */
+    void pointMoved(TopoPoint p, double oldX, double oldY) {
+        sync();
+        List<Entry> owners = new ArrayList<>();
+        tree.search(oldX, oldY, oldX, oldY, entry -> {
+            for (TopoPoint q : entry.obj.getPoints()) {
+                if (q == p) {
+                    owners.add(entry);
+                    return;
+                }
+            }
+        });
+        for (Entry entry : owners) refresh(entry.obj);
+    }
+
+    /** Acerta o índice com a lista se ela mudou desde a última vez (as consultas já fazem isso). */
+    void sync() {
+        if (!objects.hasChanges()) return;
+        List<Entry> added = new ArrayList<>();
+        List<Entry> removed = new ArrayList<>();
+        if (objects.needsRescan()) {
+            rescan(added, removed);
+        } else {
+            applyChanges(added, removed);
+        }
+        objects.clearChanges();
+        added.removeIf(entry -> entry.count == 0);
+        for (Entry entry : added) entry.indexed = true;
+
+        // Troca grande (outro projeto, curvas refeitas): um aviso só, para o desenho todo
+        if (added.size() + removed.size() >= BULK_LOAD_MIN) {
+            dirtyListener.dirty(-Double.MAX_VALUE, -Double.MAX_VALUE, Double.MAX_VALUE, Double.MAX_VALUE);
+        } else {
+            for (Entry entry : removed) if (entry.bounded) entry.notifyDirty(dirtyListener);
+            for (Entry entry : added) if (entry.bounded) entry.notifyDirty(dirtyListener);
+        }
+
+        if (tree.size() == 0 && added.size() >= BULK_LOAD_MIN) {
+            List<Entry> bounded = new ArrayList<>(added.size());
+            double[] boxes = new double[4 * added.size()];
+            for (Entry entry : added) {
+                if (entry.unbounded) {
+                    unbounded.add(entry);
+                } else if (entry.bounded) {
+                    int k = 4 * bounded.size();
+                    boxes[k] = entry.minX;
+                    boxes[k + 1] = entry.minY;
+                    boxes[k + 2] = entry.maxX;
+                    boxes[k + 3] = entry.maxY;
+                    bounded.add(entry);
+                }
+            }
+            tree.load(bounded, boxes);
+            return;
+        }
+        for (Entry entry : added) {
+            if (entry.unbounded) unbounded.add(entry);
+            else if (entry.bounded) tree.insert(entry.minX, entry.minY, entry.maxX, entry.maxY, entry);
+        }
+    }
+
+    // Varre a lista inteira: objetos novos, objetos que sumiram e a ordem de desenho de todos
+    private void rescan(List<Entry> added, List<Entry> removed) {
+        pass++;
+        for (int i = 0; i < objects.size(); i++) {
+            TopoObject obj = objects.get(i);
+            Entry entry = entries.get(obj);
+            if (entry == null) {
+                entry = new Entry(obj);
+                entries.put(obj, entry);
+                added.add(entry);
+            }
+            if (entry.pass != pass) entry.count = 0;
+            entry.count++;
+            entry.order = i;
+            entry.pass = pass;
+        }
+        nextOrder = objects.size();
+
+        for (Iterator<Entry> it = entries.values().iterator(); it.hasNext(); ) {
+            Entry entry = it.next();
+            if (entry.pass == pass) continue;
+            it.remove();
+            unindex(entry, removed);
+        }
+    }
+
+    // Aplica só as entradas e saídas anotadas pela lista, na ordem em que aconteceram
+    private void applyChanges(List<Entry> added, List<Entry> removed) {
+        for (Change change : objects.changes) {
+            Entry entry = entries.get(change.obj);
+            if (change.added) {
+                if (entry == null) {
+                    entry = new Entry(change.obj);
+                    entries.put(change.obj, entry);
+                    added.add(entry);
+                }
+                entry.count++;
+                // Troca por set: o novo objeto fica no lugar do antigo, também no desenho
+                Entry previous = (change.replaced == null) ? null : entries.get(change.replaced);
+                entry.order = (previous != null) ? previous.order : nextOrder++;
+            } else if (entry != null && --entry.count == 0) {
+                entries.remove(change.obj);
+                if (entry.indexed) unindex(entry, removed);
+            }
+        }
+    }
+
+    // Tira da árvore um objeto que saiu da lista
+    private void unindex(Entry entry, List<Entry> removed) {
+        removed.add(entry);
+        objectListener.changed(entry.obj);
+        if (entry.unbounded) unbounded.remove(entry);
+        else if (entry.bounded) tree.remove(entry.minX, entry.minY, entry.maxX, entry.maxY, entry);
+    }
+
+    // Caixa do objeto e sua posição na lista; sem pontos, ele não entra na árvore até ganhar algum
+    private static final class Entry {
+        private final TopoObject obj;
+        private final boolean unbounded;
+        private boolean bounded;
+        private double minX, minY, maxX, maxY;
+        private int order, pass;
+        // Ocorrências na lista (o mesmo objeto pode entrar duas vezes); já está na árvore?
+        private int count;
+        private boolean indexed;
+
+        Entry(TopoObject obj) {
+            this.obj = obj;
+            this.unbounded = obj instanceof TopoTableObject;
+            if (!unbounded) measure();
+        }
+
+        void measure() {
+            List<TopoPoint> pts = obj.getPoints();
+            bounded = !pts.isEmpty();
+            minX = minY = Double.MAX_VALUE;
+            maxX = maxY = -Double.MAX_VALUE;
+            for (TopoPoint p : pts) {
+                minX = Math.min(minX, p.getX());
+                maxX = Math.max(maxX, p.getX());
+                minY = Math.min(minY, p.getY());
+                maxY = Math.max(maxY, p.getY());
+            }
+        }
+
+        void notifyDirty(DirtyListener listener) {
+            listener.dirty(minX, minY, maxX, maxY);
+        }
+    }
+
+    // Objeto que entrou (no lugar de replaced, se foi por set) ou saiu da lista
+    private static final class Change {
+        private final TopoObject obj;
+        private final TopoObject replaced;
+        private final boolean added;
+
+        Change(TopoObject obj, TopoObject replaced, boolean added) {
+            this.obj = obj;
+            this.replaced = replaced;
+            this.added = added;
+        }
+    }
+
+    // Lista que anota os objetos que entram e saem. Só inclusões no fim mantêm a ordem de desenho
+    // por anotação; o resto, e qualquer mudança do modCount que não passou por aqui (sublistas),
+    // pede uma varredura completa. O contador de versão soma as trocas por set, que não mexem no
+    // modCount (senão um ListIterator.set quebraria a iteração).
+    private static final class TrackedList extends ArrayList<TopoObject> {
+        private static final long serialVersionUID = 1L;
+
+        private final transient List<Change> changes = new ArrayList<>();
+        private int replaced = 0;
+        private int trackedModCount = 0;
+        private boolean rescan = true;
+
+        @Override
+        public boolean add(TopoObject element) {
+            track();
+            super.add(element);
+            changes.add(new Change(element, null, true));
+            tracked();
+            return true;
+        }
+
+        @Override
+        public void add(int index, TopoObject element) {
+            if (index != size()) rescan = true;
+            track();
+            super.add(index, element);
+            changes.add(new Change(element, null, true));
+            tracked();
+        }
+
+        @Override
+        public boolean addAll(Collection<? extends TopoObject> c) {
+            track();
+            boolean changed = super.addAll(c);
+            for (TopoObject obj : c) changes.add(new Change(obj, null, true));
+            tracked();
+            return changed;
+        }
+
+        @Override
+        public boolean addAll(int index, Collection<? extends TopoObject> c) {
+            if (index != size()) rescan = true;
+            track();
+            boolean changed = super.addAll(index, c);
+            for (TopoObject obj : c) changes.add(new Change(obj, null, true));
+            tracked();
+            return changed;
+        }
+
+        @Override
+        public TopoObject set(int index, TopoObject element) {
+            track();
+            TopoObject old = super.set(index, element);
+            replaced++;
+            changes.add(new Change(element, old, true));
+            changes.add(new Change(old, null, false));
+            tracked();
+            return old;
+        }
+
+        @Override
+        public TopoObject remove(int index) {
+            track();
+            TopoObject old = super.remove(index);
+            changes.add(new Change(old, null, false));
+            tracked();
+            return old;
+        }
+
+        @Override
+        public boolean remove(Object o) {
+            int index = indexOf(o);
+            if (index < 0) return false;
+            remove(index);
+            return true;
+        }
+
+        @Override
+        public boolean removeIf(Predicate<? super TopoObject> filter) {
+            Objects.requireNonNull(filter);
+            track();
+            boolean changed = super.removeIf(obj -> {
+                if (!filter.test(obj)) return false;
+                changes.add(new Change(obj, null, false));
+                return true;
+            });
+            tracked();
+            return changed;
+        }
+
+        @Override
+        public boolean removeAll(Collection<?> c) {
+            Objects.requireNonNull(c);
+            return removeIf(c::contains);
+        }
+
+        @Override
+        public boolean retainAll(Collection<?> c) {
+            Objects.requireNonNull(c);
+            return removeIf(obj -> !c.contains(obj));
+        }
+
+        @Override
+        protected void removeRange(int fromIndex, int toIndex) {
+            track();
+            for (int i = fromIndex; i < toIndex; i++) changes.add(new Change(get(i), null, false));
+            super.removeRange(fromIndex, toIndex);
+            tracked();
+        }
+
+        @Override
+        public void clear() {
+            rescan = true;
+            super.clear();
+        }
+
+        @Override
+        public void sort(Comparator<? super TopoObject> c) {
+            rescan = true;
+            super.sort(c);
+        }
+
+        @Override
+        public void replaceAll(UnaryOperator<TopoObject> operator) {
+            rescan = true;
+            super.replaceAll(operator);
+            replaced++;
+        }
+
+        int version() {
+            return modCount + replaced;
+        }
+
+        boolean hasChanges() {
+            return rescan || modCount != trackedModCount || !changes.isEmpty();
+        }
+
+        boolean needsRescan() {
+            return rescan || modCount != trackedModCount;
+        }
+
+        void clearChanges() {
+            changes.clear();
+            rescan = false;
+            trackedModCount = modCount;
+        }
+
+        // Alguma mudança escapou da anotação desde a última operação conhecida?
+        private void track() {
+            if (modCount != trackedModCount) rescan = true;
+        }
+
+        private void tracked() {
+            trackedModCount = modCount;
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package com.brasens.layout.components.CAD.Canvas;
+
+import com.brasens.model.TopoLineType;
+import com.brasens.model.objects.TopoObject;
+import com.brasens.model.objects.TopoPoint;
+import com.brasens.model.objects.TopoTableObject;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.paint.Color;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Linhas do desenho agrupadas por estilo, para o GraphicsContext trocar de cor, espessura e
+ * tracejado uma vez por grupo e não uma vez por objeto.
+ *
+ * Há um balde por {@link TopoLineType} e estado de seleção; cada balde sai num caminho só
+ * (partido a cada {@link #BATCH} vértices). Os selecionados vêm por último, por cima de tudo;
+ * entre os demais a ordem passa a ser a dos tipos, não a da lista.
+ *
+ * Os baldes duram de um quadro para outro: a cada {@link #update} só os objetos que entraram,
+ * saíram da janela ou trocaram de estilo/seleção mudam de balde. Os tracejados na escala da
+ * tela são refeitos só quando a escala muda.
+ */
+class StrokeBatcher {
+
+    private static final int BATCH = 4096;
+    private static final TopoLineType[] TYPES = TopoLineType.values();
+
+    private final Bucket[] buckets = new Bucket[2 * TYPES.length];
+    private final Map<TopoObject, Slot> slots = new IdentityHashMap<>();
+    private int pass = 0;
+
+    private double dashScale = Double.NaN;
+    private final double[][] scaledDashes = new double[TYPES.length][];
+
+    StrokeBatcher() {
+        for (int i = 0; i < buckets.length; i++) buckets[i] = new Bucket(TYPES[i / 2], i % 2 == 1);
+    }
+
+    /**
+     * Distribui os objetos visíveis nos baldes. Ficam de fora tabelas, textos e camadas
+     * desligadas.
+     */
+    void update(List<TopoObject> visible, Predicate<String> layerVisible, Predicate<TopoObject> selected) {
+        pass++;
+        for (TopoObject obj : visible) {
+            if (obj instanceof TopoTableObject || "TEXT".equals(obj.getLayerName())) continue;
+            if (!layerVisible.test(obj.getLayerName())) continue;
+
+            int b = 2 * obj.getType().ordinal() + (selected.test(obj) ? 1 : 0);
+            Slot slot = slots.get(obj);
+            if (slot == null) {
+                slot = new Slot();
+                slots.put(obj, slot);
+                buckets[b].add(obj, slot);
+            } else if (slot.bucket != buckets[b]) {
+                slot.bucket.remove(slot);
+                buckets[b].add(obj, slot);
+            }
+            slot.pass = pass;
+        }
+
+        for (Iterator<Slot> it = slots.values().iterator(); it.hasNext(); ) {
+            Slot slot = it.next();
+            if (slot.pass == pass) continue;
+            slot.bucket.remove(slot);
+            it.remove();
+        }
+    }
+
+    /**
+     * Desenha os baldes com a transformação já aplicada. smoothed devolve os vértices
+     * suavizados (x, y intercalados) do objeto, ou null para usar os pontos.
+     */
+    void draw(GraphicsContext gc, double scale, double offsetX, double offsetY,
+              Function<TopoObject, double[]> smoothed) {
+        if (scale != dashScale) {
+            dashScale = scale;
+            for (int t = 0; t < TYPES.length; t++) {
+                double[] dashes = TYPES[t].getDashArray();
+                if (dashes == null) {
+                    scaledDashes[t] = null;
+                    continue;
+                }
+                scaledDashes[t] = new double[dashes.length];
+                for (int i = 0; i < dashes.length; i++) scaledDashes[t][i] = dashes[i] / scale;
+            }
+        }
+
+        // Não selecionados primeiro, selecionados por cima
+        for (int selected = 0; selected < 2; selected++) {
+            for (int t = 0; t < TYPES.length; t++) {
+                Bucket bucket = buckets[2 * t + selected];
+                if (bucket.objects.isEmpty()) continue;
+
+                if (bucket.selected) {
+                    gc.setStroke(Color.ORANGERED);
+                    gc.setLineWidth((bucket.type.getWidth() + 1.5) / scale);
+                } else {
+                    gc.setStroke(bucket.type.getColor());
+                    gc.setLineWidth(bucket.type.getWidth() / scale);
+                }
+                gc.setLineDashes(scaledDashes[t]);
+                stroke(gc, bucket.objects, offsetX, offsetY, smoothed);
+            }
+        }
+        gc.setLineDashes(null);
+    }
+
+    /** Esquece os baldes (o próximo update refaz tudo). */
+    void clear() {
+        slots.clear();
+        for (Bucket bucket : buckets) {
+            bucket.objects.clear();
+            bucket.owners.clear();
+        }
+    }
+
+    private static void stroke(GraphicsContext gc, List<TopoObject> objects, double offsetX, double offsetY,
+                               Function<TopoObject, double[]> smoothed) {
+        int batch = 0;
+        gc.beginPath();
+        for (TopoObject obj : objects) {
+            List<TopoPoint> pts = obj.getPoints();
+            if (pts.size() < 2) continue;
+
+            double[] xy = smoothed.apply(obj);
+            if (xy != null) {
+                gc.moveTo(xy[0] - offsetX, -(xy[1] - offsetY));
+                for (int i = 2; i < xy.length; i += 2) {
+                    gc.lineTo(xy[i] - offsetX, -(xy[i + 1] - offsetY));
+                }
+                batch += xy.length / 2;
+            } else {
+                TopoPoint p0 = pts.get(0);
+                gc.moveTo(p0.getX() - offsetX, -(p0.getY() - offsetY));
+                for (int i = 1; i < pts.size(); i++) {
+                    TopoPoint p = pts.get(i);
+                    gc.lineTo(p.getX() - offsetX, -(p.getY() - offsetY));
+                }
+                batch += pts.size();
+            }
+            if (obj.isClosed()) gc.closePath();
+
+            if (batch >= BATCH) {
+                gc.stroke();
+                gc.beginPath();
+                batch = 0;
+            }
+        }
+        if (batch > 0) gc.stroke();
+    }
+
+    // Objetos de um estilo; a remoção troca com o último (a ordem dentro do balde não importa)
+    private static final class Bucket {
+        private final TopoLineType type;
+        private final boolean selected;
+        private final List<TopoObject> objects = new ArrayList<>();
+        private final List<Slot> owners = new ArrayList<>();
+
+        Bucket(TopoLineType type, boolean selected) {
+            this.type = type;
+            this.selected = selected;
+        }
+
+        void add(TopoObject obj, Slot slot) {
+            slot.bucket = this;
+            slot.index = objects.size();
+            objects.add(obj);
+            owners.add(slot);
+        }
+
+        void remove(Slot slot) {
+            int last = objects.size() - 1;
+            Slot moved = owners.get(last);
+            objects.set(slot.index, objects.get(last));
+            owners.set(slot.index, moved);
+            moved.index = slot.index;
+            objects.remove(last);
+            owners.remove(last);
+        }
+    }
+
+    // Onde o objeto está: balde, posição nele e último update que o viu
+    private static final class Slot {
+        private Bucket bucket;
+        private int index, pass;
+    }
+}
@@ -0,0 +1,66 @@
+package com.brasens.layout.components.CAD.Canvas;
+
+import javafx.scene.text.Font;
+import javafx.scene.text.FontWeight;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Fontes e rótulos numéricos reaproveitados entre quadros.
+ *
+ * Os textos do canvas são desenhados em unidades do desenho, então o tamanho da fonte muda a
+ * cada zoom. As fontes ficam guardadas por faixa de tamanho (1/16 de oitava, diferença que não
+ * se vê) e os rótulos da grade ("E 712300") por valor, em vez de um Font.font e um
+ * String.format por linha a cada quadro.
+ */
+class TextCache {
+
+    private static final String FAMILY = "Arial";
+    private static final int STEPS_PER_OCTAVE = 16;
+    private static final double LOG_STEP = Math.log(2) / STEPS_PER_OCTAVE;
+    // Acima disso os mapas são esvaziados (zoom/pan muito longe do que estava guardado)
+    private static final int MAX_ENTRIES = 1024;
+
+    private final Map<Long, Font> fonts = new HashMap<>();
+    private final Map<Long, String> eastings = new HashMap<>();
+    private final Map<Long, String> northings = new HashMap<>();
+
+    /** Fonte Arial do tamanho mais próximo na faixa de tamanho de size. */
+    Font font(FontWeight weight, double size) {
+        long bucket = Math.round(Math.log(size) / LOG_STEP);
+        long key = (bucket << 4) | weight.ordinal();
+        Font font = fonts.get(key);
+        if (font == null) {
+            if (fonts.size() >= MAX_ENTRIES) fonts.clear();
+            font = Font.font(FAMILY, weight, Math.exp(bucket * LOG_STEP));
+            fonts.put(key, font);
+        }
+        return font;
+    }
+
+    Font font(double size) {
+        return font(FontWeight.NORMAL, size);
+    }
+
+    /** Rótulo de uma linha vertical da grade, em metros inteiros. */
+    String easting(double x) {
+        return label(eastings, "E ", x);
+    }
+
+    /** Rótulo de uma linha horizontal da grade, em metros inteiros. */
+    String northing(double y) {
+        return label(northings, "N ", y);
+    }
+
+    private static String label(Map<Long, String> cache, String prefix, double value) {
+        long rounded = Math.round(value);
+        String label = cache.get(rounded);
+        if (label == null) {
+            if (cache.size() >= MAX_ENTRIES) cache.clear();
+            label = prefix + rounded;
+            cache.put(rounded, label);
+        }
+        return label;
+    }
+}
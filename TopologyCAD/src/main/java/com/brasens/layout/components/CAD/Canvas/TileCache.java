@@ -0,0 +1,572 @@
+package com.brasens.layout.components.CAD.Canvas;
+
+import com.brasens.model.TopoLineType;
+import com.brasens.model.objects.TopoObject;
+import com.brasens.model.objects.TopoPoint;
+import com.brasens.model.objects.TopoTableObject;
+import javafx.application.Platform;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
+import javafx.scene.transform.Affine;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.Ellipse2D;
+import java.awt.geom.Path2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.BiFunction;
+import java.util.function.Predicate;
+
+/**
+ * Ladrilhos rasterizados da geometria, para o pan e o zoom não redesenharem todos os vetores.
+ *
+ * O desenho é dividido em ladrilhos de {@link #TILE} pixels por nível de zoom (potências de 2
+ * da escala). Cada ladrilho é desenhado numa thread de fundo, com java.awt, numa imagem
+ * transparente: linhas com o estilo do tipo (curvas suavizadas na escala do nível, se for o
+ * caso), pontos, nomes e confrontantes, sem seleção (quem chama desenha os selecionados, as
+ * tabelas e os rótulos das curvas por cima, em vetor). Os prontos ficam num cache
+ * LRU; enquanto um ladrilho não chega, o de nível vizinho que já estiver no cache é esticado no
+ * lugar.
+ *
+ * A lista de objetos de cada ladrilho (e os vértices suavizados) sai do {@link SceneIndex} na
+ * thread da interface; a thread de fundo só lê os pontos. Se a geometria mudar no meio, o trecho é invalidado
+ * ({@link #invalidate}) e o resultado, que chega depois, é descartado.
+ *
+ * Os nomes que se amontoam são descartados uma vez por nível ({@link Labels}), não por ladrilho: um
+ * nome que cruza a borda entre dois ladrilhos sai inteiro nos dois ou em nenhum.
+ */
+class TileCache {
+
+    static final int TILE = 256;
+
+    // Folga (pixels do ladrilho) para nomes e traços de objetos que começam fora dele
+    private static final int PAD = 128;
+    // Até quantos níveis acima se procura um ladrilho para esticar no lugar do que falta
+    private static final int FALLBACK_LEVELS = 4;
+    private static final int MAX_TILES = 192;
+    // Níveis cujos rótulos ficam guardados; o que sai leva junto os seus ladrilhos
+    private static final int MAX_LABEL_LEVELS = 6;
+    private static final int WORKERS = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+
+    private static final Font NAME_FONT = new Font("Arial", Font.PLAIN, 12);
+    private static final Font CONFRONTANTE_FONT = new Font("Arial", Font.BOLD, 10);
+    private static final double POINT_SIZE = 5;
+    private static final double TEXT_OFFSET = 8;
+
+    private static final Map<TopoLineType, Color> COLORS = new EnumMap<>(TopoLineType.class);
+    private static final Map<TopoLineType, BasicStroke> STROKES = new EnumMap<>(TopoLineType.class);
+
+    static {
+        for (TopoLineType type : TopoLineType.values()) {
+            javafx.scene.paint.Color c = type.getColor();
+            COLORS.put(type, new Color((float) c.getRed(), (float) c.getGreen(), (float) c.getBlue(), (float) c.getOpacity()));
+
+            float[] dashes = null;
+            if (type.getDashArray() != null) {
+                dashes = new float[type.getDashArray().length];
+                for (int i = 0; i < dashes.length; i++) dashes[i] = (float) type.getDashArray()[i];
+            }
+            STROKES.put(type, new BasicStroke((float) type.getWidth(), BasicStroke.CAP_SQUARE, BasicStroke.JOIN_MITER, 10f, dashes, 0f));
+        }
+    }
+
+    private final ExecutorService workers = Executors.newFixedThreadPool(WORKERS, r -> {
+        Thread thread = new Thread(r, "tile-render");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // Só na thread da interface
+    private final Map<Key, WritableImage> tiles = new LinkedHashMap<>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, WritableImage> eldest) {
+            return size() > MAX_TILES;
+        }
+    };
+    private final Map<Key, Long> pending = new LinkedHashMap<>();
+    private final Map<Integer, Labels> labels = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, Labels> eldest) {
+            if (size() <= MAX_LABEL_LEVELS) return false;
+            int level = eldest.getKey();
+            tiles.keySet().removeIf(key -> key.level == level);
+            pending.keySet().removeIf(key -> key.level == level);
+            return true;
+        }
+    };
+    private long requests = 0;
+    private double offsetX = Double.NaN, offsetY = Double.NaN;
+
+    // Ladrilhos da última janela; pedidos que saíram dela são pulados pela thread de fundo
+    private volatile Set<Key> wanted = Set.of();
+
+    private final Runnable onTileReady;
+
+    /** onTileReady roda na thread da interface a cada ladrilho que fica pronto. */
+    TileCache(Runnable onTileReady) {
+        this.onTileReady = onTileReady;
+    }
+
+    /** Esquece todos os ladrilhos (camadas ligadas/desligadas, suavização, outro projeto). */
+    void clear() {
+        tiles.clear();
+        pending.clear();
+        labels.clear();
+    }
+
+    /** A geometria mudou dentro da caixa (coordenadas absolutas): refaz os ladrilhos que ela toca. */
+    void invalidate(double minX, double minY, double maxX, double maxY) {
+        if (Double.isNaN(offsetX)) return;
+        double dMinX = minX - offsetX, dMaxX = maxX - offsetX;
+        double dMinY = offsetY - maxY, dMaxY = offsetY - minY;
+        tiles.keySet().removeIf(key -> key.touches(dMinX, dMinY, dMaxX, dMaxY));
+        pending.keySet().removeIf(key -> key.touches(dMinX, dMinY, dMaxX, dMaxY));
+        // Rótulos que a mudança alcança são decididos de novo, e os ladrilhos que os mostram refeitos
+        labels.forEach((level, layout) -> {
+            double ts = Math.scalb(1.0, level);
+            double[] box = layout.drop(dMinX * ts, dMinY * ts, dMaxX * ts, dMaxY * ts);
+            if (box == null) return;
+            Predicate<Key> shows = key -> key.level == level
+                    && key.touches(box[0] / ts, box[1] / ts, box[2] / ts, box[3] / ts);
+            tiles.keySet().removeIf(shows);
+            pending.keySet().removeIf(shows);
+        });
+    }
+
+    /**
+     * Desenha os ladrilhos da janela com a transformação da tela (sem rotação) e pede os que
+     * faltam, mais um anel em volta para o pan. O gc deve estar com a transformação identidade.
+     * smoothed devolve os vértices suavizados do objeto na escala dada (null = os pontos).
+     */
+    void draw(GraphicsContext gc, Affine trans, SceneIndex index, Predicate<String> layerVisible,
+              BiFunction<TopoObject, Double, double[]> smoothed,
+              double width, double height, double globalOffsetX, double globalOffsetY) {
+        request(trans, index, layerVisible, smoothed, width, height, globalOffsetX, globalOffsetY);
+
+        double scale = trans.getMxx();
+        int level = level(scale);
+        double step = TILE * scale / Math.scalb(1.0, level); // lado do ladrilho na tela
+        double tx = trans.getTx(), ty = trans.getTy();
+        int c0 = (int) Math.floor(-tx / step), c1 = (int) Math.floor((width - tx) / step);
+        int r0 = (int) Math.floor(-ty / step), r1 = (int) Math.floor((height - ty) / step);
+
+        for (int r = r0; r <= r1; r++) {
+            double y0 = Math.round(ty + r * step), y1 = Math.round(ty + (r + 1) * step);
+            for (int c = c0; c <= c1; c++) {
+                double x0 = Math.round(tx + c * step), x1 = Math.round(tx + (c + 1) * step);
+                Key key = new Key(level, c, r);
+                if (tiles.containsKey(key)) {
+                    WritableImage image = tiles.get(key);
+                    if (image != null) gc.drawImage(image, x0, y0, x1 - x0, y1 - y0);
+                    continue;
+                }
+                drawFallback(gc, key, x0, y0, x1 - x0, y1 - y0);
+            }
+        }
+    }
+
+    /** Pede os ladrilhos da janela sem desenhar, para o pan começar com eles prontos. */
+    void request(Affine trans, SceneIndex index, Predicate<String> layerVisible,
+                 BiFunction<TopoObject, Double, double[]> smoothed,
+                 double width, double height, double globalOffsetX, double globalOffsetY) {
+        if (globalOffsetX != offsetX || globalOffsetY != offsetY) {
+            clear();
+            offsetX = globalOffsetX;
+            offsetY = globalOffsetY;
+        }
+
+        double scale = trans.getMxx();
+        int level = level(scale);
+        double step = TILE * scale / Math.scalb(1.0, level);
+        double tx = trans.getTx(), ty = trans.getTy();
+        int c0 = (int) Math.floor(-tx / step) - 1, c1 = (int) Math.floor((width - tx) / step) + 1;
+        int r0 = (int) Math.floor(-ty / step) - 1, r1 = (int) Math.floor((height - ty) / step) + 1;
+
+        Set<Key> view = new HashSet<>();
+        for (int r = r0; r <= r1; r++) {
+            for (int c = c0; c <= c1; c++) view.add(new Key(level, c, r));
+        }
+        wanted = view;
+
+        for (Key key : view) {
+            if (tiles.containsKey(key) || pending.containsKey(key)) continue;
+            submit(key, index, layerVisible, smoothed);
+        }
+    }
+
+    private void submit(Key key, SceneIndex index, Predicate<String> layerVisible,
+                        BiFunction<TopoObject, Double, double[]> smoothed) {
+        double ts = Math.scalb(1.0, key.level);
+        double pad = PAD / ts;
+        double dMinX = key.col * (double) TILE / ts - pad, dMaxX = (key.col + 1.0) * TILE / ts + pad;
+        double dMinY = key.row * (double) TILE / ts - pad, dMaxY = (key.row + 1.0) * TILE / ts + pad;
+
+        List<TopoObject> objs = index.visible(dMinX + offsetX, offsetY - dMaxY, dMaxX + offsetX, offsetY - dMinY);
+        objs.removeIf(obj -> obj instanceof TopoTableObject || !layerVisible.test(obj.getLayerName()));
+        if (objs.isEmpty()) {
+            tiles.put(key, null);
+            return;
+        }
+
+        // Os vértices suavizados não mudam depois de gerados, então a thread de fundo pode lê-los
+        Map<TopoObject, double[]> curves = new IdentityHashMap<>();
+        for (TopoObject obj : objs) {
+            double[] xy = smoothed.apply(obj, ts);
+            if (xy != null) curves.put(obj, xy);
+        }
+
+        long token = ++requests;
+        pending.put(key, token);
+        Labels layout = labels.computeIfAbsent(key.level, level -> new Labels());
+        int generation = layout.generation();
+        double originX = key.col * (double) TILE, originY = key.row * (double) TILE;
+        double ox = offsetX, oy = offsetY;
+        workers.execute(() -> {
+            int[] pixels = wanted.contains(key)
+                    ? rasterize(objs, curves, layout, generation, ts, originX, originY, ox, oy) : null;
+            Platform.runLater(() -> publish(key, token, pixels));
+        });
+    }
+
+    private void publish(Key key, long token, int[] pixels) {
+        Long current = pending.get(key);
+        if (current == null || current != token) return; // invalidado ou pedido de novo nesse meio-tempo
+        pending.remove(key);
+        if (pixels == null) return;
+
+        WritableImage image = new WritableImage(TILE, TILE);
+        image.getPixelWriter().setPixels(0, 0, TILE, TILE, PixelFormat.getIntArgbPreInstance(), pixels, 0, TILE);
+        tiles.put(key, image);
+        onTileReady.run();
+    }
+
+    // O ladrilho que falta é coberto por um ancestral (recortado) e pelos filhos que houver
+    private void drawFallback(GraphicsContext gc, Key key, double x, double y, double w, double h) {
+        for (int up = 1; up <= FALLBACK_LEVELS; up++) {
+            WritableImage parent = tiles.get(new Key(key.level - up, key.col >> up, key.row >> up));
+            if (parent == null) continue;
+            double size = (double) TILE / (1 << up);
+            double sx = (key.col - ((key.col >> up) << up)) * size;
+            double sy = (key.row - ((key.row >> up) << up)) * size;
+            gc.drawImage(parent, sx, sy, size, size, x, y, w, h);
+            break;
+        }
+        for (int dr = 0; dr < 2; dr++) {
+            for (int dc = 0; dc < 2; dc++) {
+                WritableImage child = tiles.get(new Key(key.level + 1, 2 * key.col + dc, 2 * key.row + dr));
+                if (child != null) gc.drawImage(child, x + dc * w / 2, y + dr * h / 2, w / 2, h / 2);
+            }
+        }
+    }
+
+    // Nível cuja escala (2^nível) fica mais perto da atual: o ladrilho estica no máximo ~1.4x
+    private static int level(double scale) {
+        return (int) Math.round(Math.log(scale) / Math.log(2));
+    }
+
+    // Roda na thread de fundo. Lista mexida durante a leitura, ou rótulos do nível invalidados
+    // depois do pedido, devolvem null; o ladrilho é pedido de novo no próximo quadro.
+    private static int[] rasterize(List<TopoObject> objs, Map<TopoObject, double[]> curves,
+                                   Labels layout, int generation, double ts,
+                                   double originX, double originY, double offsetX, double offsetY) {
+        BufferedImage image = new BufferedImage(TILE, TILE, BufferedImage.TYPE_INT_ARGB_PRE);
+        Graphics2D g = image.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+
+        try {
+            // Linhas
+            Path2D.Double path = new Path2D.Double();
+            for (TopoObject obj : objs) {
+                if ("TEXT".equals(obj.getLayerName())) continue;
+                List<TopoPoint> pts = obj.getPoints();
+                if (pts.size() < 2) continue;
+
+                path.reset();
+                double[] xy = curves.get(obj);
+                int n = (xy != null) ? xy.length / 2 : pts.size();
+                for (int i = 0; i < n; i++) {
+                    double px = (xy != null) ? xy[2 * i] : pts.get(i).getX();
+                    double py = (xy != null) ? xy[2 * i + 1] : pts.get(i).getY();
+                    double x = (px - offsetX) * ts - originX;
+                    double y = -(py - offsetY) * ts - originY;
+                    if (i == 0) path.moveTo(x, y);
+                    else path.lineTo(x, y);
+                }
+                if (obj.isClosed()) path.closePath();
+
+                g.setColor(COLORS.get(obj.getType()));
+                g.setStroke(STROKES.get(obj.getType()));
+                g.draw(path);
+            }
+
+            // Nomes dos confrontantes; como no canvas, onde já se amontoam os seguintes ficam de fora.
+            // Só os ancorados na folga contam: os de longe não alcançam o ladrilho.
+            g.setColor(Color.YELLOW);
+            g.setFont(CONFRONTANTE_FONT);
+            for (TopoObject obj : objs) {
+                if (obj.getConfrontantes().isEmpty()) continue;
+                List<TopoPoint> pts = obj.getPoints();
+                int n = pts.size();
+                for (Map.Entry<Integer, String> entry : obj.getConfrontantes().entrySet()) {
+                    int idx = entry.getKey();
+                    if (idx >= n) continue;
+                    TopoPoint p1 = pts.get(idx);
+                    TopoPoint p2 = pts.get((idx + 1) % n);
+                    double x = ((p1.getX() + p2.getX()) / 2.0 - offsetX) * ts - originX;
+                    double y = -((p1.getY() + p2.getY()) / 2.0 - offsetY) * ts - originY;
+                    if (x < -PAD || x >= TILE + PAD || y < -PAD || y >= TILE + PAD) continue;
+                    if (!layout.accept(new Edge(obj, idx), generation, x + originX, y + originY,
+                            x + originX, y + originY, entry.getValue(), CONFRONTANTE_FONT.getSize())) continue;
+                    g.drawString(entry.getValue(), (float) x, (float) y);
+                }
+            }
+
+            // Pontos e textos
+            g.setFont(NAME_FONT);
+            Ellipse2D.Double marker = new Ellipse2D.Double();
+            int side = TILE + 2 * PAD;
+            long[] marked = new long[(side * side + 63) >>> 6]; // um marcador por pixel
+            for (TopoObject obj : objs) {
+                boolean isTextLayer = "TEXT".equals(obj.getLayerName());
+                TopoLineType style = obj.getType();
+                if (!isTextLayer && (style == TopoLineType.CURVA_MESTRA || style == TopoLineType.CURVA_INTERMEDIARIA)) continue;
+
+                for (TopoPoint p : obj.getPoints()) {
+                    double x = (p.getX() - offsetX) * ts - originX;
+                    double y = -(p.getY() - offsetY) * ts - originY;
+                    if (x < -PAD || x >= TILE + PAD || y < -PAD || y >= TILE + PAD) continue;
+                    String name = p.getName();
+
+                    if (isTextLayer) {
+                        if (name == null) continue;
+                        g.setColor(Color.WHITE);
+                        g.drawString(name, (float) x, (float) y);
+                        continue;
+                    }
+
+                    int m = (int) (y + PAD) * side + (int) (x + PAD);
+                    if ((marked[m >>> 6] & (1L << m)) == 0) {
+                        marked[m >>> 6] |= 1L << m;
+                        g.setColor(Color.YELLOW);
+                        marker.setFrame(x - POINT_SIZE / 2, y - POINT_SIZE / 2, POINT_SIZE, POINT_SIZE);
+                        g.fill(marker);
+                    }
+
+                    if (name != null && !name.isEmpty() && !name.startsWith("INT")
+                            && layout.accept(p, generation, x + originX, y + originY,
+                            x + originX + TEXT_OFFSET, y + originY - TEXT_OFFSET, name, NAME_FONT.getSize())) {
+                        g.setColor(Color.WHITE);
+                        g.drawString(name, (float) (x + TEXT_OFFSET), (float) (y - TEXT_OFFSET));
+                    }
+                }
+            }
+        } catch (RuntimeException e) {
+            return null;
+        } finally {
+            g.dispose();
+        }
+        return ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+    }
+
+    /**
+     * Rótulos de um nível de zoom, decididos uma vez para todos os ladrilhos dele. O primeiro
+     * ladrilho que encontra um nome decide se ele cabe (numa ocupação do nível inteiro, em pixels
+     * do nível); os outros reaproveitam a decisão. Chave: o ponto, ou o lado do confrontante.
+     * As threads de fundo decidem em paralelo, sob o lock do objeto.
+     */
+    private static final class Labels {
+        private final Map<Object, Label> decided = new HashMap<>();
+        private final Map<Long, Object> cells = new HashMap<>(); // célula -> dono do rótulo
+        private int generation = 0;
+
+        synchronized int generation() {
+            return generation;
+        }
+
+        /**
+         * O texto com a linha de base em (x, baseline), ancorado em (anchorX, anchorY), é
+         * desenhado? Âncora ou texto diferentes dos da decisão anterior refazem a decisão. Pedido
+         * feito antes de uma invalidação é cancelado: poderia ocupar lugar de um nome que já saiu.
+         */
+        synchronized boolean accept(Object key, int generation, double anchorX, double anchorY,
+                                    double x, double baseline, String text, double fontSize) {
+            if (generation != this.generation) throw new CancellationException();
+            Label label = decided.get(key);
+            if (label != null) {
+                if (label.anchorX == anchorX && label.anchorY == anchorY && label.text.equals(text)) return label.accepted;
+                release(key, label);
+            }
+
+            double maxX = x + OccupancyGrid.textWidth(text, fontSize);
+            double minY = baseline - fontSize, maxY = baseline + fontSize * 0.25;
+            label = new Label(anchorX, anchorY, text,
+                    Math.min(anchorX, x), Math.min(anchorY, minY), Math.max(anchorX, maxX), Math.max(anchorY, maxY),
+                    cell(x), cell(minY), cell(maxX), cell(maxY));
+            label.accepted = isFree(label);
+            if (label.accepted) {
+                for (int r = label.r0; r <= label.r1; r++) {
+                    for (int c = label.c0; c <= label.c1; c++) cells.put(cellKey(c, r), key);
+                }
+            }
+            decided.put(key, label);
+            return label.accepted;
+        }
+
+        /**
+         * Esquece os rótulos cuja caixa (com a âncora) cruza a dada, em pixels do nível, e os
+         * recusados que cruzam a caixa dos que saíram (podem caber agora). Devolve a caixa de tudo
+         * o que foi esquecido, ou null.
+         */
+        synchronized double[] drop(double minX, double minY, double maxX, double maxY) {
+            generation++;
+            double[] released = null;
+            for (Map.Entry<Object, Label> entry : decided.entrySet()) {
+                Label label = entry.getValue();
+                if (label.accepted && label.crosses(minX, minY, maxX, maxY)) released = label.grow(released);
+            }
+            double[] dropped = null;
+            for (Iterator<Map.Entry<Object, Label>> it = decided.entrySet().iterator(); it.hasNext(); ) {
+                Map.Entry<Object, Label> entry = it.next();
+                Label label = entry.getValue();
+                if (!label.crosses(minX, minY, maxX, maxY)
+                        && (label.accepted || released == null
+                        || !label.crosses(released[0], released[1], released[2], released[3]))) continue;
+                release(entry.getKey(), label);
+                it.remove();
+                dropped = label.grow(dropped);
+            }
+            return dropped;
+        }
+
+        private boolean isFree(Label label) {
+            for (int r = label.r0; r <= label.r1; r++) {
+                for (int c = label.c0; c <= label.c1; c++) {
+                    if (cells.containsKey(cellKey(c, r))) return false;
+                }
+            }
+            return true;
+        }
+
+        private void release(Object key, Label label) {
+            if (!label.accepted) return;
+            for (int r = label.r0; r <= label.r1; r++) {
+                for (int c = label.c0; c <= label.c1; c++) cells.remove(cellKey(c, r), key);
+            }
+        }
+
+        private static int cell(double v) {
+            return (int) Math.floor(v / OccupancyGrid.CELL);
+        }
+
+        private static long cellKey(int c, int r) {
+            return ((long) c << 32) | (r & 0xffffffffL);
+        }
+    }
+
+    private static final class Label {
+        private final double anchorX, anchorY;
+        private final String text;
+        private final double minX, minY, maxX, maxY;
+        private final int c0, r0, c1, r1;
+        private boolean accepted;
+
+        Label(double anchorX, double anchorY, String text, double minX, double minY, double maxX, double maxY,
+              int c0, int r0, int c1, int r1) {
+            this.anchorX = anchorX;
+            this.anchorY = anchorY;
+            this.text = text;
+            this.minX = minX;
+            this.minY = minY;
+            this.maxX = maxX;
+            this.maxY = maxY;
+            this.c0 = c0;
+            this.r0 = r0;
+            this.c1 = c1;
+            this.r1 = r1;
+        }
+
+        boolean crosses(double minX, double minY, double maxX, double maxY) {
+            return this.minX <= maxX && this.maxX >= minX && this.minY <= maxY && this.maxY >= minY;
+        }
+
+        // Caixa que cobre a dada (null = vazia) e a deste rótulo
+        double[] grow(double[] box) {
+            if (box == null) return new double[]{minX, minY, maxX, maxY};
+            box[0] = Math.min(box[0], minX);
+            box[1] = Math.min(box[1], minY);
+            box[2] = Math.max(box[2], maxX);
+            box[3] = Math.max(box[3], maxY);
+            return box;
+        }
+    }
+
+    // Lado idx do objeto que leva o nome de um confrontante
+    private static final class Edge {
+        private final TopoObject obj;
+        private final int idx;
+
+        Edge(TopoObject obj, int idx) {
+            this.obj = obj;
+            this.idx = idx;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Edge)) return false;
+            Edge e = (Edge) o;
+            return obj == e.obj && idx == e.idx;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(obj) * 31 + idx;
+        }
+    }
+
+    private static final class Key {
+        private final int level, col, row;
+
+        Key(int level, int col, int row) {
+            this.level = level;
+            this.col = col;
+            this.row = row;
+        }
+
+        // Caixa do ladrilho (coordenadas do desenho, com a folga) cruza a caixa dada?
+        boolean touches(double minX, double minY, double maxX, double maxY) {
+            double ts = Math.scalb(1.0, level);
+            return (col * (double) TILE - PAD) / ts <= maxX && ((col + 1.0) * TILE + PAD) / ts >= minX
+                    && (row * (double) TILE - PAD) / ts <= maxY && ((row + 1.0) * TILE + PAD) / ts >= minY;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) return false;
+            Key k = (Key) o;
+            return level == k.level && col == k.col && row == k.row;
+        }
+
+        @Override
+        public int hashCode() {
+            return (level * 31 + col) * 31 + row;
+        }
+    }
+}
@@ -0,0 +1,598 @@
+package com.brasens.layout.components.CAD.Canvas;
+
+import com.brasens.model.objects.TopoPoint;
+import com.brasens.utilities.math.TinChange;
+import com.brasens.utilities.math.TinDecimation;
+import com.brasens.utilities.math.TinDecimator;
+import com.brasens.utilities.math.TinMesh;
+import com.brasens.utilities.math.TinSurface;
+import javafx.application.Platform;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
+import javafx.scene.paint.Color;
+import javafx.scene.transform.Affine;
+import javafx.scene.transform.NonInvertibleTransformException;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Desenho da camada TRIANGULACAO direto das posições de triângulo da {@link TinSurface}, sem
+ * criar TopoObjects.
+ *
+ * Cada aresta da malha sai por uma única posição ({@link TinSurface#getOwnedEdges}), e as
+ * posições são agrupadas numa grade regular pelo centro das suas arestas; as poucas que passam de
+ * duas células ficam numa lista à parte. A cada quadro só as células que cruzam a janela são
+ * visitadas e as arestas saem em lotes, um caminho por stroke.
+ *
+ * Uma edição da superfície só move na grade as posições que ela alterou. Quando a superfície é
+ * trocada ou refeita, a grade nova é montada em segundo plano e a anterior continua na tela até
+ * ela ficar pronta.
+ *
+ * Com o zoom afastado, desenha-se um nível de detalhe: a malha simplificada pelo
+ * {@link TinDecimator} com tolerâncias proporcionais à amplitude de cotas, do mais fino ao mais
+ * grosso, escolhido pelo comprimento médio de aresta na tela. Os níveis são montados em segundo
+ * plano quando o zoom os pede; depois de uma edição os anteriores continuam valendo até os novos
+ * ficarem prontos.
+ *
+ * Quando os triângulos ficam menores que um pixel, ou há arestas demais na janela, a malha é
+ * rasterizada numa imagem de cobertura do tamanho da tela e desenhada com um único drawImage.
+ */
+class TinLayerRenderer {
+
+    private static final int EDGES_PER_CELL = 8;
+    private static final int MAX_CELLS = 1 << 22;
+
+    // Abaixo desse comprimento médio de aresta na tela entra um nível de detalhe mais grosso
+    private static final double LOD_PIXELS = 6.0;
+    // Tolerâncias verticais dos níveis, em fração da amplitude de cotas, do mais fino ao mais grosso
+    private static final double[] LOD_TOLERANCES = {0.002, 0.01, 0.05};
+    // Abaixo desse comprimento médio de aresta na tela a malha vira mancha de densidade
+    private static final double COARSE_PIXELS = 2.0;
+    // Acima disso, stroke vetorial deixa de ser interativo
+    private static final int MAX_STROKED_EDGES = 150_000;
+    private static final int BATCH = 4096;
+    // Com mais arestas fora da grade que isso (edições além da caixa original), ela é refeita
+    private static final int MAX_LONG_EDGES = 4096;
+
+    private static final Color COLOR = Color.rgb(0, 190, 140, 0.55);
+
+    private final ExecutorService worker = daemon("tin-layer");
+    // Separado, para uma simplificação longa não atrasar a grade da malha inteira
+    private final ExecutorService lodWorker = daemon("tin-lod");
+
+    private final Runnable onReady;
+
+    // Só na thread da interface
+    private TinSurface surface = null;
+    private Grid grid = null;
+    private boolean stale = true;
+    private long generation = 0;
+    private boolean building = false;
+    // Posições alteradas enquanto a grade nova é montada; aplicadas quando ela chega
+    private int[] dirty = new int[64];
+    private int dirtyCount = 0;
+    // Níveis de detalhe, do mais fino ao mais grosso (null até o zoom pedir)
+    private Grid[] levels = null;
+    private boolean levelsStale = true;
+    private boolean levelsBuilding = false;
+    private long levelsGeneration = 0;
+
+    private WritableImage image;
+    private float[] coverage;
+    private int[] pixels;
+
+    private static ExecutorService daemon(String name) {
+        return Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, name);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /** onReady roda na thread da interface quando uma grade montada em segundo plano fica pronta. */
+    TinLayerRenderer(Runnable onReady) {
+        this.onReady = onReady;
+    }
+
+    /** Passa a acompanhar a superfície; se é outra, a grade é refeita no próximo desenho. */
+    void setSurface(TinSurface surface) {
+        if (surface == this.surface) return;
+        this.surface = surface;
+        invalidate();
+        levels = null;
+        levelsGeneration++;
+        levelsBuilding = false;
+    }
+
+    /** Alteração da superfície acompanhada: só as posições tocadas mudam de célula. */
+    void apply(TinChange change) {
+        levelsStale = true;
+        if (change.isRebuilt()) {
+            invalidate();
+            return;
+        }
+        int[] slots = change.getSlots();
+        if (building) {
+            if (dirtyCount + slots.length > dirty.length) dirty = Arrays.copyOf(dirty, Math.max(2 * dirty.length, dirtyCount + slots.length));
+            System.arraycopy(slots, 0, dirty, dirtyCount, slots.length);
+            dirtyCount += slots.length;
+        } else if (grid != null && !stale && surface != null) {
+            for (int slot : slots) grid.update(surface, slot);
+            if (grid.longEdges > MAX_LONG_EDGES && grid.longEdges > grid.edgeCount / 8) invalidate();
+        }
+    }
+
+    private void invalidate() {
+        stale = true;
+        generation++;
+        building = false;
+        dirtyCount = 0;
+    }
+
+    // Fotografa as posições aqui (a superfície só muda na thread da interface) e monta a grade fora
+    private void startBuild() {
+        if (!stale || building) return;
+        if (surface == null) return; // Fica a grade anterior até chegar uma superfície
+
+        int slotCount = surface.getSlotCount();
+        int[] tri = new int[3 * slotCount];
+        byte[] owned = new byte[slotCount];
+        for (int s = 0; s < slotCount; s++) {
+            owned[s] = (byte) surface.getOwnedEdges(s);
+            if (owned[s] == 0) continue;
+            for (int c = 0; c < 3; c++) tri[3 * s + c] = surface.getVertexIndex(s, c);
+        }
+        int n = surface.getVertexCount();
+        double[] vx = new double[n];
+        double[] vy = new double[n];
+        for (int v = 0; v < n; v++) {
+            TopoPoint p = surface.getVertex(v);
+            if (p == null) continue;
+            vx[v] = p.getX();
+            vy[v] = p.getY();
+        }
+
+        stale = false;
+        building = true;
+        long token = generation;
+        worker.execute(() -> {
+            Grid built = new Grid(tri, owned, slotCount, vx, vy);
+            Platform.runLater(() -> publish(built, token));
+        });
+    }
+
+    // Os níveis saem de uma cópia da malha feita aqui; a simplificação roda fora
+    private void startLevels() {
+        if (!levelsStale || levelsBuilding || surface == null) return;
+        TinMesh mesh = surface.toMesh();
+        levelsStale = false;
+        levelsBuilding = true;
+        long token = levelsGeneration;
+        lodWorker.execute(() -> {
+            Grid[] built = buildLevels(mesh);
+            Platform.runLater(() -> {
+                if (token != levelsGeneration) return; // Outra superfície
+                levelsBuilding = false;
+                levels = built;
+                onReady.run();
+            });
+        });
+    }
+
+    private static Grid[] buildLevels(TinMesh mesh) {
+        if (mesh.getTriangleCount() == 0) return new Grid[0];
+        double range = mesh.getMaxZ() - mesh.getMinZ();
+        double[] tolerances = new double[LOD_TOLERANCES.length];
+        for (int k = 0; k < tolerances.length; k++) tolerances[k] = LOD_TOLERANCES[k] * range;
+
+        List<TinDecimation> decimations = TinDecimator.levels(mesh, tolerances); // do mais grosso ao mais fino
+        Grid[] grids = new Grid[decimations.size()];
+        for (int k = 0; k < grids.length; k++) grids[k] = Grid.of(decimations.get(grids.length - 1 - k).getMesh());
+        return grids;
+    }
+
+    private void publish(Grid built, long token) {
+        if (token != generation) return; // A superfície mudou de novo nesse meio-tempo
+        building = false;
+        grid = built;
+        for (int k = 0; k < dirtyCount; k++) grid.update(surface, dirty[k]);
+        dirtyCount = 0;
+        onReady.run();
+    }
+
+    /**
+     * Desenha a malha na janela atual. Coordenadas como no resto do canvas: o ponto (X, Y) é
+     * desenhado em (X - offsetX, -(Y - offsetY)) sob a transformação de zoom/pan.
+     */
+    void draw(GraphicsContext gc, Affine trans, double width, double height, double offsetX, double offsetY) {
+        startBuild();
+        Grid g = grid;
+        if (g == null || g.edgeCount == 0) return;
+
+        // Zoom afastado: o nível mais fino cujas arestas ainda ficam visíveis (ou o mais grosso)
+        double scale = trans.getMxx();
+        if (g.meanLength() * scale < LOD_PIXELS) {
+            startLevels();
+            Grid[] available = levels;
+            if (available != null) {
+                for (Grid level : available) {
+                    if (level.edgeCount == 0) continue;
+                    g = level;
+                    if (level.meanLength() * scale >= LOD_PIXELS) break;
+                }
+            }
+        }
+
+        // Janela em coordenadas absolutas
+        double viewMinX, viewMaxX, viewMinY, viewMaxY;
+        try {
+            javafx.geometry.Point2D p1 = trans.inverseTransform(0, 0);
+            javafx.geometry.Point2D p2 = trans.inverseTransform(width, height);
+            viewMinX = Math.min(p1.getX(), p2.getX()) + offsetX;
+            viewMaxX = Math.max(p1.getX(), p2.getX()) + offsetX;
+            viewMinY = -Math.max(p1.getY(), p2.getY()) + offsetY;
+            viewMaxY = -Math.min(p1.getY(), p2.getY()) + offsetY;
+        } catch (NonInvertibleTransformException e) {
+            return;
+        }
+
+        // Células que podem ter arestas visíveis (a posição sai no máximo uma célula da sua)
+        double margin = g.cellSize;
+        int c0 = Math.max(0, (int) Math.floor((viewMinX - margin - g.originX) / g.cellSize));
+        int c1 = Math.min(g.cols - 1, (int) Math.floor((viewMaxX + margin - g.originX) / g.cellSize));
+        int r0 = Math.max(0, (int) Math.floor((viewMinY - margin - g.originY) / g.cellSize));
+        int r1 = Math.min(g.rows - 1, (int) Math.floor((viewMaxY + margin - g.originY) / g.cellSize));
+
+        int visible = 0;
+        for (int r = r0; r <= r1; r++) {
+            for (int c = c0; c <= c1; c++) visible += g.cellEdges[r * g.cols + c];
+        }
+
+        if (g.meanLength() * scale < COARSE_PIXELS || visible > MAX_STROKED_EDGES) {
+            drawCoverage(gc, g, trans, width, height, offsetX, offsetY, c0, c1, r0, r1);
+        } else {
+            drawEdges(gc, g, scale, offsetX, offsetY, c0, c1, r0, r1, viewMinX, viewMinY, viewMaxX, viewMaxY);
+        }
+    }
+
+    private void drawEdges(GraphicsContext gc, Grid g, double scale, double offsetX, double offsetY,
+                           int c0, int c1, int r0, int r1,
+                           double minX, double minY, double maxX, double maxY) {
+        gc.setStroke(COLOR);
+        gc.setLineWidth(1.0 / scale);
+        gc.setLineDashes(null);
+
+        int[] batch = {0};
+        gc.beginPath();
+        for (int r = r0; r <= r1; r++) {
+            for (int c = c0; c <= c1; c++) {
+                int cell = r * g.cols + c;
+                int[] slots = g.cellSlots[cell];
+                for (int k = 0; k < g.cellCount[cell]; k++) strokeSlot(gc, g, slots[k], offsetX, offsetY, batch);
+            }
+        }
+        // Posições fora da grade: só as que cruzam a janela
+        for (int k = 0; k < g.longCount; k++) {
+            int s = g.longSlots[k];
+            if (!g.crosses(s, minX, minY, maxX, maxY)) continue;
+            strokeSlot(gc, g, s, offsetX, offsetY, batch);
+        }
+        if (batch[0] > 0) gc.stroke();
+    }
+
+    private static void strokeSlot(GraphicsContext gc, Grid g, int s, double offsetX, double offsetY, int[] batch) {
+        int owned = g.owned[s];
+        for (int i = 0; i < 3; i++) {
+            if ((owned & (1 << i)) == 0) continue;
+            int p = g.tri[3 * s + (i + 1) % 3], q = g.tri[3 * s + (i + 2) % 3];
+            gc.moveTo(g.vx[p] - offsetX, -(g.vy[p] - offsetY));
+            gc.lineTo(g.vx[q] - offsetX, -(g.vy[q] - offsetY));
+            if (++batch[0] == BATCH) {
+                gc.stroke();
+                gc.beginPath();
+                batch[0] = 0;
+            }
+        }
+    }
+
+    // --- Representação grossa: imagem de cobertura (comprimento de aresta por pixel) ---
+
+    private void drawCoverage(GraphicsContext gc, Grid g, Affine trans, double width, double height,
+                              double offsetX, double offsetY, int c0, int c1, int r0, int r1) {
+        int w = (int) Math.ceil(width), h = (int) Math.ceil(height);
+        if (w <= 0 || h <= 0) return;
+        if (image == null || (int) image.getWidth() != w || (int) image.getHeight() != h) {
+            image = new WritableImage(w, h);
+            coverage = new float[w * h];
+            pixels = new int[w * h];
+        } else {
+            Arrays.fill(coverage, 0f);
+        }
+
+        // Tela = (mxx * (X - offsetX) + tx, myy * -(Y - offsetY) + ty)
+        double sx = trans.getMxx(), sy = trans.getMyy();
+        double tx = trans.getTx() - sx * offsetX;
+        double ty = trans.getTy() + sy * offsetY;
+        double cellPixels = g.cellSize * Math.abs(sx);
+
+        for (int r = r0; r <= r1; r++) {
+            for (int c = c0; c <= c1; c++) {
+                int cell = r * g.cols + c;
+                if (g.cellCount[cell] == 0) continue;
+
+                if (cellPixels <= 2.0) {
+                    // Célula do tamanho de um pixel: o comprimento inteiro cai no pixel do centro
+                    double cx = g.originX + (c + 0.5) * g.cellSize;
+                    double cy = g.originY + (r + 0.5) * g.cellSize;
+                    splat(w, h, sx * cx + tx, -sy * cy + ty, (float) (g.cellLength[cell] * Math.abs(sx)));
+                } else {
+                    int[] slots = g.cellSlots[cell];
+                    for (int k = 0; k < g.cellCount[cell]; k++) rasterizeSlot(w, h, g, slots[k], sx, sy, tx, ty);
+                }
+            }
+        }
+        for (int k = 0; k < g.longCount; k++) rasterizeSlot(w, h, g, g.longSlots[k], sx, sy, tx, ty);
+
+        int alpha = (int) Math.round(COLOR.getOpacity() * 255);
+        int red = (int) Math.round(COLOR.getRed() * 255);
+        int green = (int) Math.round(COLOR.getGreen() * 255);
+        int blue = (int) Math.round(COLOR.getBlue() * 255);
+        for (int i = 0; i < pixels.length; i++) {
+            float cov = coverage[i];
+            if (cov <= 0f) {
+                pixels[i] = 0;
+                continue;
+            }
+            int a = (int) (alpha * Math.min(1f, cov));
+            pixels[i] = (a << 24) | ((red * a / 255) << 16) | ((green * a / 255) << 8) | (blue * a / 255);
+        }
+        image.getPixelWriter().setPixels(0, 0, w, h, PixelFormat.getIntArgbPreInstance(), pixels, 0, w);
+
+        gc.save();
+        gc.setTransform(new Affine());
+        gc.drawImage(image, 0, 0);
+        gc.restore();
+    }
+
+    private void rasterizeSlot(int w, int h, Grid g, int s, double sx, double sy, double tx, double ty) {
+        int owned = g.owned[s];
+        for (int i = 0; i < 3; i++) {
+            if ((owned & (1 << i)) == 0) continue;
+            int p = g.tri[3 * s + (i + 1) % 3], q = g.tri[3 * s + (i + 2) % 3];
+            rasterize(w, h, sx * g.vx[p] + tx, -sy * g.vy[p] + ty, sx * g.vx[q] + tx, -sy * g.vy[q] + ty);
+        }
+    }
+
+    private void splat(int w, int h, double px, double py, float amount) {
+        if (px < 0 || py < 0 || px >= w || py >= h) return;
+        coverage[(int) py * w + (int) px] += amount;
+    }
+
+    // Linha de 1 pixel por DDA: cada passo cobre um pixel
+    private void rasterize(int w, int h, double x0, double y0, double x1, double y1) {
+        double dx = x1 - x0, dy = y1 - y0;
+        if (Math.max(x0, x1) < 0 || Math.min(x0, x1) >= w || Math.max(y0, y1) < 0 || Math.min(y0, y1) >= h) return;
+        int steps = Math.max(1, (int) Math.ceil(Math.max(Math.abs(dx), Math.abs(dy))));
+        double stepX = dx / steps, stepY = dy / steps;
+        double px = x0 + stepX / 2, py = y0 + stepY / 2;
+        for (int i = 0; i < steps; i++) {
+            splat(w, h, px, py, 1f);
+            px += stepX;
+            py += stepY;
+        }
+    }
+
+    /**
+     * Posições de triângulo distribuídas nas células (cópia própria dos vértices e das
+     * coordenadas, então a grade anterior continua desenhável enquanto a nova é montada).
+     * Montada em qualquer thread; depois, só alterada na thread da interface.
+     */
+    static final class Grid {
+        private static final int NONE = -1;
+        private static final int LONG = -2;
+
+        double[] vx, vy;
+        int[] tri;
+        byte[] owned;
+        // Célula da posição (ou NONE / LONG), índice nela e comprimento das suas arestas
+        int[] cellOf, indexOf;
+        float[] length;
+
+        final double originX, originY, cellSize;
+        final int cols, rows;
+        final int[][] cellSlots;
+        final int[] cellCount, cellEdges;
+        final float[] cellLength;
+        int[] longSlots = new int[16];
+        int longCount = 0, longEdges = 0;
+
+        int edgeCount = 0;
+        double totalLength = 0;
+
+        Grid(int[] tri, byte[] owned, int slotCount, double[] vx, double[] vy) {
+            this.tri = tri;
+            this.owned = owned;
+            this.vx = vx;
+            this.vy = vy;
+            cellOf = new int[slotCount];
+            indexOf = new int[slotCount];
+            length = new float[slotCount];
+
+            // 1. Limites e total de arestas
+            double x0 = Double.MAX_VALUE, y0 = Double.MAX_VALUE;
+            double x1 = -Double.MAX_VALUE, y1 = -Double.MAX_VALUE;
+            int edges = 0;
+            for (int s = 0; s < slotCount; s++) {
+                if (owned[s] == 0) continue;
+                for (int c = 0; c < 3; c++) {
+                    int v = tri[3 * s + c];
+                    if (v < 0) continue;
+                    x0 = Math.min(x0, vx[v]); x1 = Math.max(x1, vx[v]);
+                    y0 = Math.min(y0, vy[v]); y1 = Math.max(y1, vy[v]);
+                }
+                edges += Integer.bitCount(owned[s]);
+            }
+
+            // 2. Grade com ~EDGES_PER_CELL arestas por célula
+            if (edges == 0) {
+                x0 = y0 = 0;
+                x1 = y1 = 1;
+            }
+            double width = Math.max(x1 - x0, 1e-9);
+            double height = Math.max(y1 - y0, 1e-9);
+            double size = Math.max(Math.sqrt(width * height * EDGES_PER_CELL / Math.max(1, edges)), Math.max(width, height) / 4096.0);
+            while ((long) (width / size + 1) * (long) (height / size + 1) > MAX_CELLS) size *= 1.5;
+            cellSize = size;
+            cols = (int) (width / size) + 1;
+            rows = (int) (height / size) + 1;
+            originX = x0;
+            originY = y0;
+
+            int cellCountTotal = cols * rows;
+            cellSlots = new int[cellCountTotal][];
+            cellCount = new int[cellCountTotal];
+            cellEdges = new int[cellCountTotal];
+            cellLength = new float[cellCountTotal];
+
+            // 3. Distribui as posições
+            for (int s = 0; s < slotCount; s++) {
+                cellOf[s] = NONE;
+                place(s);
+            }
+        }
+
+        /** Grade de uma malha pronta (um nível de detalhe); cada aresta sai por um triângulo só. */
+        static Grid of(TinMesh mesh) {
+            int count = mesh.getTriangleCount();
+            int[] tri = Arrays.copyOf(mesh.getTriangles(), 3 * count);
+            byte[] owned = new byte[count];
+            for (int t = 0; t < count; t++) {
+                for (int i = 0; i < 3; i++) {
+                    int p = tri[3 * t + (i + 1) % 3], q = tri[3 * t + (i + 2) % 3];
+                    if (p < q || mesh.neighbour(t, i) < 0) owned[t] |= (byte) (1 << i);
+                }
+            }
+            return new Grid(tri, owned, count, mesh.getX(), mesh.getY());
+        }
+
+        double meanLength() {
+            return (edgeCount > 0) ? totalLength / edgeCount : 0;
+        }
+
+        /** Relê a posição da superfície e a move para a sua célula. */
+        void update(TinSurface surface, int s) {
+            if (s >= owned.length) grow(Math.max(s + 1, 2 * owned.length));
+            unplace(s);
+
+            owned[s] = (byte) surface.getOwnedEdges(s);
+            if (owned[s] == 0) return;
+            int n = surface.getVertexCount();
+            if (n > vx.length) {
+                vx = Arrays.copyOf(vx, Math.max(n, 2 * vx.length));
+                vy = Arrays.copyOf(vy, vx.length);
+            }
+            for (int c = 0; c < 3; c++) {
+                int v = surface.getVertexIndex(s, c);
+                tri[3 * s + c] = v;
+                if (v < 0) continue;
+                TopoPoint p = surface.getVertex(v);
+                vx[v] = p.getX();
+                vy[v] = p.getY();
+            }
+            place(s);
+        }
+
+        private void place(int s) {
+            if (owned[s] == 0) return;
+
+            double x0 = Double.MAX_VALUE, y0 = Double.MAX_VALUE;
+            double x1 = -Double.MAX_VALUE, y1 = -Double.MAX_VALUE;
+            float sum = 0;
+            int edges = 0;
+            for (int i = 0; i < 3; i++) {
+                if ((owned[s] & (1 << i)) == 0) continue;
+                int p = tri[3 * s + (i + 1) % 3], q = tri[3 * s + (i + 2) % 3];
+                x0 = Math.min(x0, Math.min(vx[p], vx[q])); x1 = Math.max(x1, Math.max(vx[p], vx[q]));
+                y0 = Math.min(y0, Math.min(vy[p], vy[q])); y1 = Math.max(y1, Math.max(vy[p], vy[q]));
+                sum += (float) Math.hypot(vx[q] - vx[p], vy[q] - vy[p]);
+                edges++;
+            }
+            length[s] = sum;
+            edgeCount += edges;
+            totalLength += sum;
+
+            double limitX = originX + cols * cellSize, limitY = originY + rows * cellSize;
+            if (x1 - x0 > 2 * cellSize || y1 - y0 > 2 * cellSize
+                    || x0 < originX || y0 < originY || x1 > limitX || y1 > limitY) {
+                if (longCount == longSlots.length) longSlots = Arrays.copyOf(longSlots, 2 * longCount);
+                cellOf[s] = LONG;
+                indexOf[s] = longCount;
+                longSlots[longCount++] = s;
+                longEdges += edges;
+                return;
+            }
+
+            int c = Math.min(cols - 1, (int) (((x0 + x1) / 2 - originX) / cellSize));
+            int r = Math.min(rows - 1, (int) (((y0 + y1) / 2 - originY) / cellSize));
+            int cell = r * cols + c;
+            int[] slots = cellSlots[cell];
+            if (slots == null) slots = cellSlots[cell] = new int[4];
+            else if (cellCount[cell] == slots.length) slots = cellSlots[cell] = Arrays.copyOf(slots, 2 * slots.length);
+            cellOf[s] = cell;
+            indexOf[s] = cellCount[cell];
+            slots[cellCount[cell]++] = s;
+            cellEdges[cell] += edges;
+            cellLength[cell] += sum;
+        }
+
+        /** Alguma aresta da posição pode cruzar a caixa dada? */
+        boolean crosses(int s, double x0, double y0, double x1, double y1) {
+            for (int i = 0; i < 3; i++) {
+                if ((owned[s] & (1 << i)) == 0) continue;
+                int p = tri[3 * s + (i + 1) % 3], q = tri[3 * s + (i + 2) % 3];
+                if (Math.max(vx[p], vx[q]) < x0 || Math.min(vx[p], vx[q]) > x1
+                        || Math.max(vy[p], vy[q]) < y0 || Math.min(vy[p], vy[q]) > y1) continue;
+                return true;
+            }
+            return false;
+        }
+
+        // Tira a posição da célula (troca com a última); usa os valores guardados, não as coordenadas atuais
+        private void unplace(int s) {
+            int cell = cellOf[s];
+            if (cell == NONE) return;
+            int edges = Integer.bitCount(owned[s]);
+            edgeCount -= edges;
+            totalLength -= length[s];
+
+            if (cell == LONG) {
+                int last = longSlots[--longCount];
+                longSlots[indexOf[s]] = last;
+                indexOf[last] = indexOf[s];
+                longEdges -= edges;
+            } else {
+                int[] slots = cellSlots[cell];
+                int last = slots[--cellCount[cell]];
+                slots[indexOf[s]] = last;
+                indexOf[last] = indexOf[s];
+                cellEdges[cell] -= edges;
+                cellLength[cell] -= length[s];
+            }
+            cellOf[s] = NONE;
+        }
+
+        private void grow(int slots) {
+            int old = owned.length;
+            tri = Arrays.copyOf(tri, 3 * slots);
+            owned = Arrays.copyOf(owned, slots);
+            cellOf = Arrays.copyOf(cellOf, slots);
+            indexOf = Arrays.copyOf(indexOf, slots);
+            length = Arrays.copyOf(length, slots);
+            Arrays.fill(cellOf, old, slots, NONE);
+        }
+    }
+}
@@ -18,12 +18,22 @@ import com.brasens.model.objects.TopoPoint;
 import com.brasens.model.report.ProjectData;
 import com.brasens.utilities.common.SheetManager;
 import com.brasens.utilities.math.ContourGenerator;
+import com.brasens.utilities.math.ContourMonitor;
 import com.brasens.utilities.math.CoordinateConversion;
+import com.brasens.utilities.math.GridContourGenerator;
+import com.brasens.utilities.math.LiveContours;
+import com.brasens.utilities.math.MappedTin;
+import com.brasens.utilities.math.OutOfCoreTriangulator;
 import com.brasens.utilities.math.ScaleCalculator;
+import com.brasens.utilities.math.TinDecimation;
+import com.brasens.utilities.math.TinDecimator;
+import com.brasens.utilities.math.TinMesh;
+import com.brasens.utilities.math.TinSurface;
 import com.brasens.utilities.math.TopologyMath;
 import com.brasens.utils.Page;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
+import javafx.concurrent.Task;
 import javafx.event.EventHandler;
 import javafx.geometry.Insets;
 import javafx.geometry.Orientation;
@@ -39,7 +49,9 @@ import javafx.scene.text.Font;
 import javafx.scene.text.FontWeight;
 import javafx.scene.text.Text;
 import javafx.stage.FileChooser;
+import javafx.stage.Modality;
 import javafx.util.Pair;
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.Setter;
 
@@ -114,6 +126,10 @@ public class DashboardView extends Page {
     private Label lblToolTip;
     private StackPane tipsContainer;
 
+    // Geração de curvas em andamento (só uma por vez)
+    @Getter(AccessLevel.NONE) @Setter(AccessLevel.NONE)
+    private ContourTask contourTask = null;
+
     Color colorDefault = Color.TRANSPARENT;
     Color colorHover = Color.TRANSPARENT;
     Color colorActive = Color.web("#0078D7");
@@ -163,7 +179,7 @@ public class DashboardView extends Page {
         createInfoOverlay();
         createTipsOverlay();
 
-        canvasContainer.getChildren().addAll(cadCanvas, infoOverlay, tipsContainer);
+        canvasContainer.getChildren().addAll(cadCanvas, cadCanvas.getOverlay(), infoOverlay, tipsContainer);
 
         tipsContainer.layoutXProperty().bind(canvasContainer.widthProperty().subtract(tipsContainer.widthProperty()).divide(2));
         tipsContainer.layoutYProperty().bind(canvasContainer.heightProperty().subtract(tipsContainer.heightProperty()));
@@ -301,6 +317,7 @@ public class DashboardView extends Page {
         result.ifPresent(newText -> {
             if (!newText.isEmpty()) {
                 textPoint.setName(newText);
+                cadCanvas.refreshBounds(textPoint);
                 cadCanvas.redraw();
 
                 System.out.println("Texto alterado para: " + newText);
@@ -637,10 +654,13 @@ public class DashboardView extends Page {
         MenuItem itemImport = new MenuItem("Importar Pontos");
         itemImport.setOnAction(e -> btnImport.getOnMouseClicked().handle(null));
 
+        MenuItem itemLargeContours = new MenuItem("Curvas de Nível de Nuvem Grande...");
+        itemLargeContours.setOnAction(e -> handleLargeCloudContours());
+
         MenuItem itemExit = new MenuItem("Sair");
         itemExit.setOnAction(e -> System.exit(0));
 
-        menuFile.getItems().addAll(itemOpen, itemSaveProject, new SeparatorMenuItem(), itemImport, new SeparatorMenuItem(), itemExit);
+        menuFile.getItems().addAll(itemOpen, itemSaveProject, new SeparatorMenuItem(), itemImport, itemLargeContours, new SeparatorMenuItem(), itemExit);
 
         Menu menuTools = new Menu("Modos");
         ToggleGroup modeGroup = new ToggleGroup();
@@ -696,6 +716,9 @@ public class DashboardView extends Page {
                 List<TopoObject> mapObjects = cadCanvas.getObjects();
 
                 ProjectSaveState state = new ProjectSaveState(this.projectData, mapObjects);
+                if (cadCanvas.hasSurface()) {
+                    ProjectFileManager.storeSurface(state, cadCanvas.getSurface());
+                }
 
                 ProjectFileManager.saveProject(file, state);
 
@@ -725,6 +748,8 @@ public class DashboardView extends Page {
 
                     List<TopoObject> loadedObjects = state.getMapObjects();
                     cadCanvas.setObjects(loadedObjects);
+                    // Superfície gravada: reaproveitada se os pontos não mudaram, senão triangulada no primeiro uso
+                    cadCanvas.setSurface(ProjectFileManager.restoreSurface(state, cadCanvas.getSurfacePoints(), cadCanvas.getBreaklines()));
                     cadCanvas.zoomExtents();
                     cadCanvas.redraw();
 
@@ -875,6 +900,17 @@ public class DashboardView extends Page {
         itemNormal.setSelected(cadCanvas.isLayerVisible("CURVA_NORMAL"));
         itemNormal.setOnAction(ev -> cadCanvas.setLayerVisible("CURVA_NORMAL", itemNormal.isSelected()));
 
+        CheckMenuItem itemTin = new CheckMenuItem("Triangulação (TIN)");
+        itemTin.setSelected(cadCanvas.isLayerVisible("TRIANGULACAO"));
+        itemTin.setOnAction(ev -> cadCanvas.setLayerVisible("TRIANGULACAO", itemTin.isSelected()));
+
+        CheckMenuItem itemSmooth = new CheckMenuItem("Suavizar Curvas de Nível");
+        itemSmooth.setSelected(cadCanvas.isSmoothContours());
+        itemSmooth.setOnAction(ev -> {
+            cadCanvas.setSmoothContours(itemSmooth.isSelected());
+            cadCanvas.redraw();
+        });
+
         CheckMenuItem itemDefault = new CheckMenuItem("Pontos & Perímetro");
         itemDefault.setSelected(cadCanvas.isLayerVisible("DEFAULT"));
         itemDefault.setOnAction(ev -> cadCanvas.setLayerVisible("DEFAULT", itemDefault.isSelected()));
@@ -887,48 +923,281 @@ public class DashboardView extends Page {
         itemCompass.setSelected(cadCanvas.isLayerVisible("ROSA_VENTOS"));
         itemCompass.setOnAction(ev -> cadCanvas.setLayerVisible("ROSA_VENTOS", itemCompass.isSelected()));
 
-        layerMenu.getItems().addAll(itemMestra, itemNormal, new SeparatorMenuItem(), itemDefault, itemText,new SeparatorMenuItem(),
+        // Camadas do terreno cujos segmentos a triangulação não pode cruzar
+        Menu menuBreaklines = new Menu("Linhas de Quebra");
+        for (String layer : cadCanvas.getSurfaceLayerNames()) {
+            CheckMenuItem item = new CheckMenuItem(layer);
+            item.setSelected(cadCanvas.isBreaklineLayer(layer));
+            item.setOnAction(ev -> cadCanvas.setBreaklineLayer(layer, item.isSelected()));
+            menuBreaklines.getItems().add(item);
+        }
+        menuBreaklines.setDisable(menuBreaklines.getItems().isEmpty());
+
+        layerMenu.getItems().addAll(itemMestra, itemNormal, itemSmooth, itemTin, menuBreaklines, new SeparatorMenuItem(), itemDefault, itemText,new SeparatorMenuItem(),
                 itemCompass);
 
         layerMenu.show(btnLayers, Side.BOTTOM, 0, 0);
     }
 
     public void handleCreateContourCurves() {
+        if (contourTask != null && contourTask.isRunning()) {
+            showAlert("Aviso", "Já existe uma geração de curvas em andamento.");
+            return;
+        }
+
         TextInputDialog dialog = new TextInputDialog("1.0");
         dialog.setTitle("Gerar Curvas de Nível");
         dialog.setHeaderText("Altimetria Automática (TIN)");
         dialog.setContentText("Digite a Equidistância Vertical (m):");
 
         dialog.showAndWait().ifPresent(intervalStr -> {
+            double interval, tolerance, cellSize;
+            boolean grid;
             try {
-                double interval = Double.parseDouble(intervalStr.replace(",", "."));
+                interval = Double.parseDouble(intervalStr.replace(",", "."));
+
+                // Grade regular: para MDEs densos e uniformes (ex.: drone) o corte da TIN é desnecessário
+                String methodTin = "Malha triangular (TIN)";
+                String methodGrid = "Grade regular (MDE denso)";
+                ChoiceDialog<String> methodDialog = new ChoiceDialog<>(methodTin, methodTin, methodGrid);
+                methodDialog.setTitle("Gerar Curvas de Nível");
+                methodDialog.setHeaderText("Método de Geração");
+                methodDialog.setContentText("Método:");
+                grid = methodGrid.equals(methodDialog.showAndWait().orElse(methodTin));
+
+                if (grid) {
+                    TextInputDialog cellDialog = new TextInputDialog("0");
+                    cellDialog.setTitle("Gerar Curvas de Nível");
+                    cellDialog.setHeaderText("Grade Regular");
+                    cellDialog.setContentText("Tamanho da célula (m, 0 = automático):");
+                    cellSize = Double.parseDouble(cellDialog.showAndWait().orElse("0").replace(",", "."));
+                    tolerance = 0;
+                } else {
+                    // Simplificação opcional: malhas densas quase planas geram curvas iguais com bem menos triângulos
+                    TextInputDialog toleranceDialog = new TextInputDialog("0");
+                    toleranceDialog.setTitle("Gerar Curvas de Nível");
+                    toleranceDialog.setHeaderText("Simplificação da Superfície");
+                    toleranceDialog.setContentText("Tolerância vertical (m, 0 = malha completa):");
+                    tolerance = Double.parseDouble(toleranceDialog.showAndWait().orElse("0").replace(",", "."));
+                    cellSize = 0;
+                }
+            } catch (NumberFormatException ex) {
+                showAlert("Erro", "Número inválido. Use ponto para decimais (ex: 0.5).");
+                return;
+            }
 
-                List<TopoPoint> allPoints = cadCanvas.getAllPoints();
+            // A superfície mantida pelo canvas é copiada aqui, na thread da interface. Sem ela, os
+            // pontos são fotografados e a triangulação também vai para segundo plano.
+            // Sem simplificação as curvas ficam presas à superfície e acompanham as edições;
+            // simplificadas ou pela grade, elas são estáticas. A grade é a rasterização da malha,
+            // salvo num MDE sem linhas de quebra, que já é a própria grade.
+            TinSurface surface = cadCanvas.hasSurface() ? cadCanvas.getSurface() : null;
+            LiveContours current = (surface != null && tolerance <= 0 && !grid) ? new LiveContours(surface, interval) : null;
+            TinMesh currentMesh = (surface != null && current == null) ? surface.toMesh() : null;
+            List<TopoPoint> points = cadCanvas.getSurfacePoints();
+            List<TopoObject> breaklines = cadCanvas.getBreaklines();
+
+            System.out.println("Iniciando triangulação e curvas com intervalo: " + interval);
+
+            ContourTask task = new ContourTask() {
+                private TinSurface built = null;
+                private LiveContours live = current;
+
+                @Override protected List<TopoObject> call() {
+                    if (grid && breaklines.isEmpty()) {
+                        List<TopoObject> dem = GridContourGenerator.generateFromDem(points, interval, cellSize, this);
+                        if (dem != null) return dem;
+                    }
 
-                if (allPoints.size() < 3) {
-                    showAlert("Dados Insuficientes", "São necessários pelo menos 3 pontos com cota para triangular.");
-                    return;
+                    TinMesh mesh = currentMesh;
+                    if (live == null && mesh == null) {
+                        progress(Phase.TRIANGULATING, -1);
+                        built = new TinSurface(points, breaklines);
+                        if (tolerance <= 0 && !grid) {
+                            live = new LiveContours(built, interval);
+                        } else {
+                            mesh = built.toMesh();
+                        }
+                    }
+                    int triangles = (live != null) ? live.getTriangleCount() : mesh.getTriangleCount();
+                    if (triangles == 0) {
+                        throw new IllegalStateException("São necessários pelo menos 3 pontos com cota para triangular.");
+                    }
+
+                    if (live != null) return live.build(this);
+                    if (grid) return GridContourGenerator.generateContours(mesh, interval, cellSize, this);
+
+                    progress(Phase.SIMPLIFYING, -1);
+                    TinDecimation decimation = TinDecimator.decimate(mesh, tolerance);
+                    detail("Superfície simplificada: " + decimation.getSummary());
+                    return ContourGenerator.generateContours(decimation.getMesh(), interval, this);
                 }
 
-                System.out.println("Iniciando triangulação e curvas com intervalo: " + interval);
+                @Override protected void succeeded() {
+                    super.succeeded();
+                    setCursor(Cursor.DEFAULT);
 
-                List<TopoObject> curvas = ContourGenerator.generateContours(allPoints, interval);
+                    // Adota a superfície triangulada aqui se o desenho não mudou enquanto isso
+                    if (built != null && !cadCanvas.hasSurface()
+                            && points.equals(cadCanvas.getSurfacePoints()) && breaklines.equals(cadCanvas.getBreaklines())) {
+                        cadCanvas.setSurface(built);
+                    }
 
-                if (curvas.isEmpty()) {
-                    showAlert("Aviso", "Nenhuma curva gerada. Verifique se os pontos têm variação de cota Z.");
-                } else {
-                    cadCanvas.getObjects().addAll(curvas);
-                    cadCanvas.redraw();
+                    List<TopoObject> curvas = getValue();
+                    if (curvas.isEmpty()) {
+                        if (live != null) live.close();
+                        showAlert("Aviso", "Nenhuma curva gerada. Verifique se os pontos têm variação de cota Z.");
+                    } else {
+                        // Troca atômica: as curvas anteriores ficaram na tela até agora
+                        cadCanvas.replaceContours(curvas, live);
+                        System.out.println("Sucesso: " + curvas.size() + " curvas geradas.");
+                    }
+                }
 
-                    System.out.println("Sucesso: " + curvas.size() + " segmentos gerados.");
+                @Override protected void cancelled() {
+                    super.cancelled();
+                    setCursor(Cursor.DEFAULT);
+                    if (live != null) live.close();
                 }
 
+                @Override protected void failed() {
+                    super.failed();
+                    setCursor(Cursor.DEFAULT);
+                    if (live != null) live.close();
+                    showAlert("Erro", "Falha ao gerar as curvas: " + getException().getMessage());
+                }
+            };
+
+            contourTask = task;
+            startContourTask(task, "Gerando Curvas de Nível");
+        });
+    }
+
+    /**
+     * Curvas de nível direto de um arquivo de pontos grande demais para importar: a malha é
+     * triangulada em disco (ao lado do arquivo) e só as curvas entram no desenho.
+     */
+    public void handleLargeCloudContours() {
+        if (contourTask != null && contourTask.isRunning()) {
+            showAlert("Aviso", "Já existe uma geração de curvas em andamento.");
+            return;
+        }
+
+        FileChooser fileChooser = new FileChooser();
+        fileChooser.setTitle("Nuvem de Pontos para Curvas de Nível");
+        fileChooser.getExtensionFilters().add(
+                new FileChooser.ExtensionFilter("Arquivos de Texto", "*.txt", "*.csv", "*.xyz")
+        );
+
+        File file = fileChooser.showOpenDialog(getScene().getWindow());
+        if (file == null) return;
+
+        TextInputDialog dialog = new TextInputDialog("1.0");
+        dialog.setTitle("Gerar Curvas de Nível");
+        dialog.setHeaderText("Nuvem de Pontos: " + file.getName());
+        dialog.setContentText("Digite a Equidistância Vertical (m):");
+
+        dialog.showAndWait().ifPresent(intervalStr -> {
+            double interval;
+            try {
+                interval = Double.parseDouble(intervalStr.replace(",", "."));
             } catch (NumberFormatException ex) {
                 showAlert("Erro", "Número inválido. Use ponto para decimais (ex: 0.5).");
+                return;
             }
+
+            File tinFile = new File(file.getParentFile(), file.getName() + ".tin");
+            ContourTask task = new ContourTask() {
+                @Override protected List<TopoObject> call() throws Exception {
+                    progress(Phase.TRIANGULATING, -1);
+                    try (MappedTin tin = OutOfCoreTriangulator.triangulate(file, tinFile)) {
+                        detail("Malha em disco: " + tin.getVertexCount() + " pontos, " + tin.getTriangleCount() + " triângulos");
+                        return ContourGenerator.generateContours(tin, interval, this);
+                    }
+                }
+
+                @Override protected void succeeded() {
+                    super.succeeded();
+                    setCursor(Cursor.DEFAULT);
+
+                    List<TopoObject> curvas = getValue();
+                    if (curvas.isEmpty()) {
+                        showAlert("Aviso", "Nenhuma curva gerada. Verifique se os pontos têm variação de cota Z.");
+                    } else {
+                        // Troca atômica, como nas curvas da superfície do desenho
+                        cadCanvas.replaceContours(curvas, null);
+
+                        System.out.println("Sucesso: " + curvas.size() + " curvas geradas.");
+                    }
+                }
+
+                @Override protected void cancelled() {
+                    super.cancelled();
+                    setCursor(Cursor.DEFAULT);
+                }
+
+                @Override protected void failed() {
+                    super.failed();
+                    setCursor(Cursor.DEFAULT);
+                    showAlert("Erro", "Falha ao processar a nuvem de pontos: " + getException().getMessage());
+                }
+            };
+
+            contourTask = task;
+            startContourTask(task, "Curvas de Nível de Nuvem Grande");
         });
     }
 
+    // Geração de curvas em segundo plano: as fases do gerador viram mensagem e barra de progresso
+    private abstract static class ContourTask extends Task<List<TopoObject>> implements ContourMonitor {
+        // Resultado da etapa anterior (malha simplificada, malha em disco), mostrado abaixo da fase
+        private volatile String detail = null;
+
+        @Override
+        public void progress(Phase phase, double fraction) {
+            updateMessage(phase.getLabel() + "..." + (detail != null ? "\n" + detail : ""));
+            updateProgress(fraction < 0 ? -1 : fraction, 1);
+        }
+
+        protected void detail(String text) {
+            detail = text;
+        }
+    }
+
+    // Roda a tarefa numa thread própria com uma janela não modal de progresso e botão Cancelar
+    private void startContourTask(ContourTask task, String title) {
+        Dialog<ButtonType> progressDialog = new Dialog<>();
+        progressDialog.setTitle(title);
+        progressDialog.initModality(Modality.NONE);
+        progressDialog.initOwner(getScene().getWindow());
+
+        Label lblPhase = new Label();
+        lblPhase.textProperty().bind(task.messageProperty());
+        ProgressBar progressBar = new ProgressBar();
+        progressBar.setPrefWidth(320);
+        progressBar.progressProperty().bind(task.progressProperty());
+
+        VBox content = new VBox(10, lblPhase, progressBar);
+        content.setPadding(new Insets(10));
+        progressDialog.getDialogPane().setContent(content);
+        progressDialog.getDialogPane().getButtonTypes().add(ButtonType.CANCEL);
+
+        // Fechar a janela (ou Cancelar) interrompe a tarefa; o fim da tarefa fecha a janela
+        progressDialog.setOnHidden(ev -> {
+            if (task.isRunning()) task.cancel();
+        });
+        task.runningProperty().addListener((obs, wasRunning, running) -> {
+            if (!running) progressDialog.close();
+        });
+
+        setCursor(Cursor.WAIT);
+        progressDialog.show();
+
+        Thread thread = new Thread(task);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
     private void handleConfigVertices() {
         selectTool(btnConfigVertices, HandleFunctions.FunctionType.CONFIG_VERTICES);
 
@@ -1157,7 +1426,7 @@ public class DashboardView extends Page {
                     // Pega todos os objetos visíveis
                     List<TopoObject> mapObjects = cadCanvas.getObjects();
 
-                    com.brasens.model.io.PdfMapPlotter.export(mapObjects, projectData, file);
+                    com.brasens.model.io.PdfMapPlotter.export(mapObjects, projectData, file, cadCanvas.isSmoothContours());
 
                     Alert alert = new Alert(Alert.AlertType.INFORMATION);
                     alert.setTitle("Sucesso");
@@ -1881,6 +2150,7 @@ public class DashboardView extends Page {
                     java.util.Optional<String> result = dialog.showAndWait();
                     result.ifPresent(nome -> {
                         obj.setConfrontante(idx, nome);
+                        cadCanvas.refreshBounds(obj);
                         System.out.println("Confrontante '" + nome + "' definido para o segmento " + idx);
                         cadCanvas.redraw();
                     });
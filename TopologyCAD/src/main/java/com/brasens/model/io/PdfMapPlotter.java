@@ -4,6 +4,7 @@ import com.brasens.model.objects.TopoObject;
 import com.brasens.model.objects.TopoPoint;
 import com.brasens.model.objects.TopoTableObject;
 import com.brasens.model.report.ProjectData;
+import com.brasens.utilities.math.ContourSmoother;
 import com.lowagie.text.*;
 import com.lowagie.text.Font;
 import com.lowagie.text.pdf.*;
@@ -25,6 +26,11 @@ public class PdfMapPlotter {
     private static final float MAP_HEIGHT = PAGE_HEIGHT - (MARGIN * 2);
 
     public static void export(List<TopoObject> objects, ProjectData data, File file) throws IOException, DocumentException {
+        export(objects, data, file, false);
+    }
+
+    /** Com smoothContours, as curvas de nível saem suavizadas conforme a escala da plotagem. */
+    public static void export(List<TopoObject> objects, ProjectData data, File file, boolean smoothContours) throws IOException, DocumentException {
         Document document = new Document(PageSize.A3.rotate(), MARGIN, MARGIN, MARGIN, MARGIN);
         PdfWriter writer = PdfWriter.getInstance(document, new FileOutputStream(file));
         document.open();
@@ -45,7 +51,8 @@ public class PdfMapPlotter {
         double offsetY = MARGIN + (MAP_HEIGHT - drawingHeight) / 2.0;
 
         // 3. Desenhar Objetos do Canvas (Linhas, Polígonos e Tabelas)
-        drawMapObjects(cb, objects, bounds, scale, offsetX, offsetY);
+        ContourSmoother smoother = smoothContours ? new ContourSmoother(Long.MAX_VALUE) : null;
+        drawMapObjects(cb, objects, bounds, scale, offsetX, offsetY, smoother);
 
         document.close();
     }
@@ -111,7 +118,8 @@ public class PdfMapPlotter {
         ct.addElement(p);
     }
 
-    private static void drawMapObjects(PdfContentByte cb, List<TopoObject> objects, double[] bounds, double scale, double offX, double offY) throws DocumentException, IOException {
+    private static void drawMapObjects(PdfContentByte cb, List<TopoObject> objects, double[] bounds, double scale, double offX, double offY,
+                                       ContourSmoother smoother) throws DocumentException, IOException {
         double minX = bounds[0];
         double minY = bounds[1]; // No mundo, Y sobe. No PDF, Y sobe.
 
@@ -137,15 +145,24 @@ public class PdfMapPlotter {
                 }
 
                 List<TopoPoint> pts = obj.getPoints();
-                double startX = offX + (pts.get(0).getX() - minX) * scale;
-                double startY = offY + (pts.get(0).getY() - minY) * scale;
-
-                cb.moveTo((float) startX, (float) startY);
-
-                for (int i = 1; i < pts.size(); i++) {
-                    double px = offX + (pts.get(i).getX() - minX) * scale;
-                    double py = offY + (pts.get(i).getY() - minY) * scale;
-                    cb.lineTo((float) px, (float) py);
+                boolean contour = "CURVA_MESTRA".equals(obj.getLayerName()) || "CURVA_NORMAL".equals(obj.getLayerName());
+                double[] smoothed = (smoother != null && contour) ? smoother.smooth(obj, scale) : null;
+                if (smoothed != null) {
+                    cb.moveTo((float) (offX + (smoothed[0] - minX) * scale), (float) (offY + (smoothed[1] - minY) * scale));
+                    for (int i = 2; i < smoothed.length; i += 2) {
+                        cb.lineTo((float) (offX + (smoothed[i] - minX) * scale), (float) (offY + (smoothed[i + 1] - minY) * scale));
+                    }
+                } else {
+                    double startX = offX + (pts.get(0).getX() - minX) * scale;
+                    double startY = offY + (pts.get(0).getY() - minY) * scale;
+
+                    cb.moveTo((float) startX, (float) startY);
+
+                    for (int i = 1; i < pts.size(); i++) {
+                        double px = offX + (pts.get(i).getX() - minX) * scale;
+                        double py = offY + (pts.get(i).getY() - minY) * scale;
+                        cb.lineTo((float) px, (float) py);
+                    }
                 }
 
                 if (obj.isClosed()) {
@@ -14,4 +14,14 @@ import java.util.List;
 public class ProjectSaveState {
     private ProjectData projectData;
     private List<TopoObject> mapObjects;
+
+    // Superfície TIN já calculada (TinSurface.encode) e o hash dos pontos e linhas de quebra
+    // que a geraram; ausentes em projetos salvos antes da triangulação
+    private String surfaceHash;
+    private byte[] surfaceData;
+
+    public ProjectSaveState(ProjectData projectData, List<TopoObject> mapObjects) {
+        this.projectData = projectData;
+        this.mapObjects = mapObjects;
+    }
 }
\ No newline at end of file
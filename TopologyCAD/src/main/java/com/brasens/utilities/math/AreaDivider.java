@@ -180,34 +180,40 @@ public class AreaDivider {
         return new CutResult(topPoly, bottomPoly);
     }
 
-    // Sutherland-Hodgman para cortar polígono em Y
+    // Sutherland-Hodgman para cortar polígono em Y. O lado de cada vértice vem do predicado de
+    // orientação exato; a interseção só é criada quando a aresta atravessa a reta de fato, então um
+    // vértice exatamente sobre a linha de corte não gera um ponto repetido (aresta de comprimento zero).
     private static List<TopoPoint> clipPoly(List<TopoPoint> subjectPoly, double clipY, boolean keepBottom) {
         List<TopoPoint> outputList = new ArrayList<>();
 
         int n = subjectPoly.size();
         TopoPoint prev = subjectPoly.get(n - 1);
+        int prevSide = sideOf(prev, clipY, keepBottom);
 
         for (TopoPoint curr : subjectPoly) {
-            boolean currInside = keepBottom ? (curr.getY() <= clipY) : (curr.getY() >= clipY);
-            boolean prevInside = keepBottom ? (prev.getY() <= clipY) : (prev.getY() >= clipY);
-
-            if (currInside) {
-                if (!prevInside) {
-                    // Entrou na região: Adiciona interseção
-                    double xInt = prev.getX() + (clipY - prev.getY()) * (curr.getX() - prev.getX()) / (curr.getY() - prev.getY());
-                    outputList.add(new TopoPoint("INT", xInt, clipY));
-                }
-                outputList.add(new TopoPoint(curr.getName(), curr.getX(), curr.getY()));
-            } else if (prevInside) {
-                // Saiu da região: Adiciona interseção
+            int currSide = sideOf(curr, clipY, keepBottom);
+
+            if (prevSide * currSide < 0) {
+                // Entrou ou saiu da região: adiciona a interseção
                 double xInt = prev.getX() + (clipY - prev.getY()) * (curr.getX() - prev.getX()) / (curr.getY() - prev.getY());
                 outputList.add(new TopoPoint("INT", xInt, clipY));
             }
+            if (currSide >= 0) {
+                outputList.add(new TopoPoint(curr.getName(), curr.getX(), curr.getY()));
+            }
             prev = curr;
+            prevSide = currSide;
         }
         return outputList;
     }
 
+    // 1 = lado mantido, 0 = sobre a linha de corte, -1 = lado descartado
+    private static int sideOf(TopoPoint p, double clipY, boolean keepBottom) {
+        // Reta de corte orientada para +X: positivo acima dela
+        double side = Math.signum(GeometricPredicates.orient2d(0, clipY, 1, clipY, p.getX(), p.getY()));
+        return (int) (keepBottom ? -side : side);
+    }
+
     private static List<TopoPoint> rotatePoints(List<TopoPoint> points, double angleRad) {
         List<TopoPoint> rotated = new ArrayList<>();
         double cos = Math.cos(angleRad);
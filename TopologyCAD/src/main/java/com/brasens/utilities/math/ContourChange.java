@@ -0,0 +1,18 @@
+package com.brasens.utilities.math;
+
+import com.brasens.model.objects.TopoObject;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * Alteração das curvas de uma {@link LiveContours} depois de uma edição da superfície: as
+ * polilinhas que deixaram de valer e as que entram no lugar delas. As demais não mudam.
+ */
+@Getter
+@AllArgsConstructor
+public class ContourChange {
+    private final List<TopoObject> removed;
+    private final List<TopoObject> added;
+}
@@ -5,83 +5,434 @@ import com.brasens.model.objects.TopoObject;
 import com.brasens.model.objects.TopoPoint;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class ContourGenerator {
 
-    public static List<TopoObject> generateContours(List<TopoPoint> points, double interval) {
-        List<TopoObject> contours = new ArrayList<>();
+    // Abaixo disso o caminho sequencial é mais rápido (criar o pool não compensa)
+    private static final int PARALLEL_MIN_TRIANGLES = 100_000;
+
+    // Triângulos mínimos por tarefa de varredura
+    private static final int SWEEP_CHUNK = 16_384;
+
+    // Triângulos entre dois avisos de progresso (e verificações de cancelamento)
+    private static final int SWEEP_STEP = 4_096;
+
+    // Número de threads usadas na geração de curvas (1 = sempre sequencial)
+    private static int parallelism = Runtime.getRuntime().availableProcessors();
+
+    public static int getParallelism() {
+        return parallelism;
+    }
 
+    public static void setParallelism(int parallelism) {
+        ContourGenerator.parallelism = Math.max(1, parallelism);
+    }
+
+    public static List<TopoObject> generateContours(List<TopoPoint> points, double interval) {
         // Validação básica
-        if (points.size() < 3 || interval <= 0) return contours;
+        if (points.size() < 3 || interval <= 0) return new ArrayList<>();
 
         // 1. Gera a Malha TIN (Triangulated Irregular Network)
-        List<Triangle> mesh = DelaunayTriangulator.triangulate(points);
+        return generateContours(DelaunayTriangulator.triangulateMesh(points), interval);
+    }
 
-        // 2. Determina Cota Mínima e Máxima do terreno
-        double minZ = Double.MAX_VALUE;
-        double maxZ = -Double.MAX_VALUE;
-        for (TopoPoint p : points) {
-            if (p.getZ() < minZ) minZ = p.getZ();
-            if (p.getZ() > maxZ) maxZ = p.getZ();
+    /** Curvas de nível da malha: uma polilinha por curva, fechada quando a curva se fecha na malha. */
+    public static List<TopoObject> generateContours(TinMesh mesh, double interval) {
+        return generateContours(mesh, interval, parallelism, ContourMonitor.NONE);
+    }
+
+    /**
+     * Igual a {@link #generateContours(TinMesh, double)}, informando o progresso ao monitor. Se ele
+     * pedir o cancelamento, a geração para na próxima verificação com {@link CancellationException}.
+     */
+    public static List<TopoObject> generateContours(TinMesh mesh, double interval, ContourMonitor monitor) {
+        return generateContours(mesh, interval, parallelism, monitor);
+    }
+
+    public static List<TopoObject> generateContours(TinMesh mesh, double interval, int parallelism) {
+        return generateContours(mesh, interval, parallelism, ContourMonitor.NONE);
+    }
+
+    /**
+     * Igual a {@link #generateContours(TinMesh, double)}, com o número de threads explícito.
+     *
+     * A varredura é dividida em faixas contíguas de triângulos e a costura em faixas de cotas.
+     * As partes são juntadas na ordem em que o caminho sequencial as produziria, então o
+     * resultado é idêntico a ele (mesmas curvas, mesmos pontos, mesma ordem).
+     */
+    public static List<TopoObject> generateContours(TinMesh mesh, double interval, int parallelism, ContourMonitor monitor) {
+        int count = mesh.getTriangleCount();
+        if (count == 0 || interval <= 0) return new ArrayList<>();
+
+        Tracker sweeping = new Tracker(monitor, ContourMonitor.Phase.SWEEPING, count);
+        if (parallelism <= 1 || count < PARALLEL_MIN_TRIANGLES) {
+            Segments segments = new Segments();
+            sweep(mesh, null, interval, 0, count, segments, sweeping);
+            return segments.toObjects(interval, null, 1, monitor);
         }
 
-        // Arredonda o início para um múltiplo do intervalo (ex: se minZ=103.5 e interval=1, começa em 104.0)
-        double startZ = Math.ceil(minZ / interval) * interval;
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            // 1. Varredura por faixas de triângulos
+            int chunks = Math.max(1, Math.min(4 * parallelism, count / SWEEP_CHUNK));
+            List<Callable<Segments>> tasks = new ArrayList<>();
+            for (int c = 0; c < chunks; c++) {
+                int from = (int) ((long) count * c / chunks);
+                int to = (int) ((long) count * (c + 1) / chunks);
+                tasks.add(() -> {
+                    Segments part = new Segments();
+                    sweep(mesh, null, interval, from, to, part, sweeping);
+                    return part;
+                });
+            }
+            Segments segments = new Segments();
+            for (Segments part : invokeAll(pool, tasks)) segments.append(part);
 
-        // 3. Itera sobre cada cota (Z)
-        for (double z = startZ; z <= maxZ; z += interval) {
+            // 2. Costura por faixas de cotas
+            return segments.toObjects(interval, pool, parallelism, monitor);
+        } finally {
+            pool.shutdown();
+        }
+    }
 
-            // Determina se é Curva Mestra (múltiplo de 5x o intervalo)
-            // Ex: Se intervalo=1m, cotas 100, 105, 110 são mestras.
-            boolean isMestra = Math.abs(z % (interval * 5)) < 0.001;
+    /**
+     * Curvas de uma malha gravada em disco, bloco a bloco: só um bloco fica em memória por vez.
+     * As cotas são múltiplos inteiros do intervalo e as arestas são identificadas pelos índices
+     * globais dos vértices, então as curvas de blocos vizinhos se emendam na costura.
+     */
+    public static List<TopoObject> generateContours(MappedTin tin, double interval) {
+        return generateContours(tin, interval, ContourMonitor.NONE);
+    }
 
-            TopoLineType tipoCurva = isMestra ? TopoLineType.CURVA_MESTRA : TopoLineType.CURVA_INTERMEDIARIA;
-            String layerName = isMestra ? "CURVA_MESTRA" : "CURVA_NORMAL";
+    public static List<TopoObject> generateContours(MappedTin tin, double interval, ContourMonitor monitor) {
+        if (tin.getTriangleCount() == 0 || interval <= 0) return new ArrayList<>();
 
-            // 4. Verifica interseção com CADA triângulo da malha
-            for (Triangle t : mesh) {
-                List<TopoPoint> intersections = new ArrayList<>();
+        Segments segments = new Segments();
+        Tracker sweeping = new Tracker(monitor, ContourMonitor.Phase.SWEEPING, tin.getTriangleCount());
+        int[][] ids = new int[1][];
+        for (int block = 0; block < tin.getBlockCount(); block++) {
+            TinMesh mesh = tin.loadBlock(block, ids);
+            sweep(mesh, ids[0], interval, 0, mesh.getTriangleCount(), segments, sweeping);
+        }
+        if (parallelism <= 1) return segments.toObjects(interval, null, 1, monitor);
+
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            return segments.toObjects(interval, pool, parallelism, monitor);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Varredura única: cada triângulo é visitado uma vez e só corta as cotas dentro da sua faixa
+     * de Z. A cota k vale k * interval; o custo é proporcional a triângulos + segmentos gerados,
+     * não a cotas × triângulos.
+     *
+     * Um vértice com cota igual à da curva conta como acima dela. Assim todo triângulo que a
+     * curva atravessa tem exatamente duas arestas cortadas e as curvas não se partem nos vértices.
+     */
+    private static void sweep(TinMesh mesh, int[] ids, double interval, int fromTriangle, int toTriangle,
+                              Segments out, Tracker tracker) {
+        double[] x = mesh.getX();
+        double[] y = mesh.getY();
+        double[] zs = mesh.getZ();
+        int[] tri = mesh.getTriangles();
 
-                checkIntersection(t.p1, t.p2, z, intersections);
-                checkIntersection(t.p2, t.p3, z, intersections);
-                checkIntersection(t.p3, t.p1, z, intersections);
+        // Buffers reutilizados: 2 interseções (x, y) por triângulo e a aresta de cada uma
+        double[] hit = new double[4];
+        long[] edges = new long[2];
 
-                // Um plano corta um triângulo em, no máximo, 2 pontos (formando um segmento)
-                if (intersections.size() == 2) {
-                    TopoObject segment = new TopoObject();
-                    segment.setLayerName(layerName);
-                    segment.setType(tipoCurva); // Define cor e espessura
-                    segment.setClosed(false);
+        for (int step = fromTriangle; step < toTriangle; step += SWEEP_STEP) {
+            int stepEnd = Math.min(toTriangle, step + SWEEP_STEP);
+            for (int t = 3 * step; t < 3 * stepEnd; t += 3) {
+                int a = tri[t], b = tri[t + 1], c = tri[t + 2];
+                double minZ = Math.min(zs[a], Math.min(zs[b], zs[c]));
+                double maxZ = Math.max(zs[a], Math.max(zs[b], zs[c]));
 
-                    // Adiciona os pontos calculados
-                    segment.addPoint(intersections.get(0));
-                    segment.addPoint(intersections.get(1));
+                // Cotas em (minZ, maxZ]; triângulo plano não gera nada
+                long first = (long) Math.floor(minZ / interval);
+                long last = (long) Math.floor(maxZ / interval);
+                for (long k = first; k <= last; k++) {
+                    double z = k * interval;
+                    if (z <= minZ) continue;
+                    if (z > maxZ) break;
 
-                    contours.add(segment);
+                    int count = 0;
+                    count = checkIntersection(x, y, zs, ids, a, b, z, hit, edges, count);
+                    count = checkIntersection(x, y, zs, ids, b, c, z, hit, edges, count);
+                    count = checkIntersection(x, y, zs, ids, c, a, z, hit, edges, count);
+
+                    // Um plano corta um triângulo em, no máximo, 2 pontos (formando um segmento)
+                    if (count == 2) out.add(k, hit, edges);
                 }
             }
+            tracker.advance(stepEnd - step);
         }
-        return contours;
     }
 
-    // Calcula onde a cota Z corta a aresta (p1-p2)
-    private static void checkIntersection(TopoPoint p1, TopoPoint p2, double targetZ, List<TopoPoint> results) {
-        double z1 = p1.getZ();
-        double z2 = p2.getZ();
+    /**
+     * A cota corta a aresta (v1-v2) quando um vértice fica abaixo dela e o outro não. Grava (x, y)
+     * em hit e a chave da aresta em edges; retorna o novo total. A interpolação parte sempre do
+     * menor índice, então os dois triângulos da aresta calculam o mesmo ponto, bit a bit.
+     */
+    private static int checkIntersection(double[] xs, double[] ys, double[] zs, int[] ids, int v1, int v2,
+                                         double targetZ, double[] hit, long[] edges, int count) {
+        if ((zs[v1] < targetZ) == (zs[v2] < targetZ) || count >= 2) return count;
+        if (v2 < v1) {
+            int tmp = v1;
+            v1 = v2;
+            v2 = tmp;
+        }
 
-        double min = Math.min(z1, z2);
-        double max = Math.max(z1, z2);
+        // Interpolação Linear: Onde está o Z ao longo da reta?
+        double t = (targetZ - zs[v1]) / (zs[v2] - zs[v1]);
 
-        // Se targetZ está fora do intervalo vertical da aresta, não cruza
-        if (targetZ <= min || targetZ >= max) return;
+        hit[2 * count] = xs[v1] + t * (xs[v2] - xs[v1]);
+        hit[2 * count + 1] = ys[v1] + t * (ys[v2] - ys[v1]);
 
-        // Interpolação Linear: Onde está o Z ao longo da reta?
-        double t = (targetZ - z1) / (z2 - z1);
+        // Índices globais crescem com os locais, então a chave sai igual em qualquer bloco
+        long g1 = (ids == null) ? v1 : ids[v1];
+        long g2 = (ids == null) ? v2 : ids[v2];
+        edges[count] = (g1 << 32) | g2;
+        return count + 1;
+    }
+
+    /**
+     * Segmentos em vetores primitivos (cota, dois pontos e a aresta da malha de cada ponto). Os
+     * TopoObjects só nascem no fim, já emendados em polilinhas.
+     */
+    static final class Segments {
+        private long[] levels = new long[1024];
+        private double[] coords = new double[4 * 1024];
+        private long[] edges = new long[2 * 1024];
+        private int count = 0;
+
+        void add(long level, double[] hit, long[] edge) {
+            if (count == levels.length) {
+                levels = Arrays.copyOf(levels, 2 * count);
+                coords = Arrays.copyOf(coords, 8 * count);
+                edges = Arrays.copyOf(edges, 4 * count);
+            }
+            levels[count] = level;
+            System.arraycopy(hit, 0, coords, 4 * count, 4);
+            edges[2 * count] = edge[0];
+            edges[2 * count + 1] = edge[1];
+            count++;
+        }
+
+        void append(Segments other) {
+            if (count + other.count > levels.length) {
+                int capacity = Math.max(2 * levels.length, count + other.count);
+                levels = Arrays.copyOf(levels, capacity);
+                coords = Arrays.copyOf(coords, 4 * capacity);
+                edges = Arrays.copyOf(edges, 2 * capacity);
+            }
+            System.arraycopy(other.levels, 0, levels, count, other.count);
+            System.arraycopy(other.coords, 0, coords, 4 * count, 4 * other.count);
+            System.arraycopy(other.edges, 0, edges, 2 * count, 2 * other.count);
+            count += other.count;
+        }
+
+        /**
+         * Saída agrupada por cota, da mais baixa para a mais alta. Com pool, as cotas são
+         * divididas em faixas de tamanho parecido (em segmentos) e costuradas em paralelo.
+         */
+        List<TopoObject> toObjects(double interval, ForkJoinPool pool, int parallelism, ContourMonitor monitor) {
+            if (count == 0) return new ArrayList<>();
+
+            long minLevel = Long.MAX_VALUE, maxLevel = Long.MIN_VALUE;
+            for (int i = 0; i < count; i++) {
+                minLevel = Math.min(minLevel, levels[i]);
+                maxLevel = Math.max(maxLevel, levels[i]);
+            }
+            int levelCount = (int) (maxLevel - minLevel + 1);
+            int[] start = new int[levelCount + 1];
+            for (int i = 0; i < count; i++) start[(int) (levels[i] - minLevel) + 1]++;
+            for (int l = 0; l < levelCount; l++) start[l + 1] += start[l];
+            int[] order = new int[count];
+            int[] fill = Arrays.copyOf(start, levelCount);
+            for (int i = 0; i < count; i++) order[fill[(int) (levels[i] - minLevel)]++] = i;
 
-        double x = p1.getX() + t * (p2.getX() - p1.getX());
-        double y = p1.getY() + t * (p2.getY() - p1.getY());
+            long base = minLevel;
+            Tracker stitching = new Tracker(monitor, ContourMonitor.Phase.STITCHING, count);
+            if (pool == null) return stitchLevels(order, start, 0, levelCount, base, interval, stitching);
 
-        results.add(new TopoPoint("INT", x, y, targetZ));
+            // Faixas de cotas com ~count / bands segmentos cada
+            int bands = Math.max(1, Math.min(levelCount, 4 * parallelism));
+            List<Callable<List<TopoObject>>> tasks = new ArrayList<>();
+            int from = 0;
+            for (int b = 1; b <= bands && from < levelCount; b++) {
+                long target = (long) count * b / bands;
+                int to = from + 1;
+                while (to < levelCount && start[to] < target) to++;
+                if (b == bands) to = levelCount;
+                int first = from, last = to;
+                tasks.add(() -> stitchLevels(order, start, first, last, base, interval, stitching));
+                from = to;
+            }
+
+            List<TopoObject> contours = new ArrayList<>();
+            for (List<TopoObject> part : invokeAll(pool, tasks)) contours.addAll(part);
+            return contours;
+        }
+
+        private List<TopoObject> stitchLevels(int[] order, int[] start, int fromLevel, int toLevel, long minLevel,
+                                              double interval, Tracker tracker) {
+            List<TopoObject> contours = new ArrayList<>();
+            int largest = 0;
+            for (int l = fromLevel; l < toLevel; l++) largest = Math.max(largest, start[l + 1] - start[l]);
+            if (largest == 0) return contours;
+
+            Stitcher stitcher = new Stitcher(largest);
+            for (int l = fromLevel; l < toLevel; l++) {
+                if (start[l] == start[l + 1]) continue;
+                long level = minLevel + l;
+                stitcher.stitch(this, order, start[l], start[l + 1], level, level * interval, contours);
+                tracker.advance(start[l + 1] - start[l]);
+            }
+            return contours;
+        }
+    }
+
+    /**
+     * Emenda os segmentos de uma cota em polilinhas. Cada ponto de corte fica numa aresta da
+     * malha, compartilhada por no máximo dois segmentos: uma tabela hash pela chave da aresta
+     * liga as duas pontas em tempo linear e depois as cadeias são percorridas.
+     */
+    private static final class Stitcher {
+        private final int[] link;         // ponta ligada a cada ponta (-1 = ponta solta)
+        private final boolean[] visited;
+        private final long[] keys;
+        private final int[] values;
+
+        Stitcher(int maxSegments) {
+            link = new int[2 * maxSegments];
+            visited = new boolean[maxSegments];
+            keys = new long[capacity(maxSegments)];
+            values = new int[keys.length];
+        }
+
+        // Potência de 2 com folga para as 2m pontas (ocupação até 1/2)
+        private static int capacity(int segments) {
+            return Integer.highestOneBit(Math.max(4 * segments, 16) - 1) << 1;
+        }
+
+        // Ponta j do grupo = ponta (j & 1) do segmento order[from + j / 2]
+        void stitch(Segments segments, int[] order, int from, int to, long level, double z, List<TopoObject> out) {
+            int m = to - from;
+            int ends = 2 * m;
+
+            // 1. Junção pela aresta (chave 0 nunca ocorre: a aresta liga dois vértices distintos).
+            //    A tabela usa só o trecho do tamanho desta cota, então limpar custa O(m).
+            int mask = capacity(m) - 1;
+            Arrays.fill(keys, 0, mask + 1, 0L);
+            Arrays.fill(link, 0, ends, -1);
+            Arrays.fill(visited, 0, m, false);
+            for (int j = 0; j < ends; j++) {
+                long key = segments.edges[2 * order[from + j / 2] + (j & 1)];
+                int slot = (int) ((key * 0x9E3779B97F4A7C15L) >>> 32) & mask;
+                while (keys[slot] != 0 && keys[slot] != key) slot = (slot + 1) & mask;
+                if (keys[slot] == key) {
+                    int other = values[slot];
+                    link[j] = other;
+                    link[other] = j;
+                } else {
+                    keys[slot] = key;
+                    values[slot] = j;
+                }
+            }
+
+            // 2. Cadeias abertas começam numa ponta solta; o que sobra são laços fechados
+            for (int j = 0; j < ends; j++) {
+                if (link[j] < 0 && !visited[j / 2]) emit(segments, order, from, j, false, level, z, out);
+            }
+            for (int s = 0; s < m; s++) {
+                if (!visited[s]) emit(segments, order, from, 2 * s, true, level, z, out);
+            }
+        }
+
+        private void emit(Segments segments, int[] order, int from, int in, boolean closed,
+                          long level, double z, List<TopoObject> out) {
+            List<TopoPoint> points = new ArrayList<>();
+            addPoint(points, segments, order, from, in, z);
+            while (true) {
+                visited[in / 2] = true;
+                int exit = in ^ 1;
+                addPoint(points, segments, order, from, exit, z);
+                int next = link[exit];
+                if (next < 0 || visited[next / 2]) break;
+                in = next;
+            }
+
+            if (closed && points.size() > 1) {
+                TopoPoint first = points.get(0), last = points.get(points.size() - 1);
+                if (first.getX() == last.getX() && first.getY() == last.getY()) points.remove(points.size() - 1);
+            }
+            // Curva que só toca um vértice da malha vira um ponto: não desenha nada
+            if (points.size() < 2) return;
+            if (points.size() < 3) closed = false;
+
+            // Curva Mestra a cada 5 intervalos (ex: intervalo=1m -> cotas 100, 105, 110)
+            boolean isMestra = Math.floorMod(level, 5L) == 0;
+
+            TopoObject contour = new TopoObject(points, closed);
+            contour.setLayerName(isMestra ? "CURVA_MESTRA" : "CURVA_NORMAL");
+            contour.setType(isMestra ? TopoLineType.CURVA_MESTRA : TopoLineType.CURVA_INTERMEDIARIA);
+            out.add(contour);
+        }
+
+        // Pontos repetidos (emenda entre segmentos ou curva passando num vértice) entram uma vez
+        private void addPoint(List<TopoPoint> points, Segments segments, int[] order, int from, int end, double z) {
+            int base = 4 * order[from + end / 2] + 2 * (end & 1);
+            double px = segments.coords[base], py = segments.coords[base + 1];
+            if (!points.isEmpty()) {
+                TopoPoint last = points.get(points.size() - 1);
+                if (last.getX() == px && last.getY() == py) return;
+            }
+            points.add(new TopoPoint("INT", px, py, z));
+        }
+    }
+
+    static <T> List<T> invokeAll(ForkJoinPool pool, List<Callable<T>> tasks) {
+        List<T> results = new ArrayList<>();
+        try {
+            for (Future<T> future : pool.invokeAll(tasks)) results.add(future.get());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Geração de curvas interrompida", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof CancellationException) throw (CancellationException) e.getCause();
+            throw new IllegalStateException("Falha na geração paralela de curvas", e.getCause());
+        }
+        return results;
+    }
+
+    // Progresso de uma fase, somado entre as tarefas; cada aviso também verifica o cancelamento
+    static final class Tracker {
+        private final ContourMonitor monitor;
+        private final ContourMonitor.Phase phase;
+        private final long total;
+        private final AtomicLong done = new AtomicLong();
+
+        Tracker(ContourMonitor monitor, ContourMonitor.Phase phase, long total) {
+            this.monitor = monitor;
+            this.phase = phase;
+            this.total = total;
+        }
+
+        void advance(long amount) {
+            if (monitor.isCancelled()) throw new CancellationException("Geração de curvas cancelada");
+            long current = done.addAndGet(amount);
+            monitor.progress(phase, (total > 0) ? Math.min(1.0, (double) current / total) : 1.0);
+        }
     }
-}
\ No newline at end of file
+}
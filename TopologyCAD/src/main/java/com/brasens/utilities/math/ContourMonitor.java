@@ -0,0 +1,42 @@
+package com.brasens.utilities.math;
+
+/**
+ * Acompanhamento de uma geração de curvas longa: recebe a fase atual e a fração concluída e
+ * pode pedir o cancelamento. As chamadas podem vir de várias threads ao mesmo tempo.
+ */
+public interface ContourMonitor {
+
+    enum Phase {
+        TRIANGULATING("Triangulando"),
+        RASTERIZING("Rasterizando a superfície"),
+        SIMPLIFYING("Simplificando a superfície"),
+        SWEEPING("Cortando as cotas"),
+        STITCHING("Emendando as curvas");
+
+        private final String label;
+
+        Phase(String label) {
+            this.label = label;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+    }
+
+    /** Fração em [0, 1], ou negativa se a fase não tem como medir o progresso. */
+    void progress(Phase phase, double fraction);
+
+    boolean isCancelled();
+
+    ContourMonitor NONE = new ContourMonitor() {
+        @Override
+        public void progress(Phase phase, double fraction) {
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return false;
+        }
+    };
+}
@@ -0,0 +1,183 @@
+package com.brasens.utilities.math;
+
+import com.brasens.model.objects.TopoObject;
+import com.brasens.model.objects.TopoPoint;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Suavização de curvas de nível só para exibição e plotagem: os pontos do objeto não mudam.
+ *
+ * Cada polilinha é suavizada por Chaikin (corte de cantos), sob demanda, com um número de
+ * iterações que depende de quantas unidades de saída (pixels na tela, pontos no PDF) cada
+ * segmento ocupa: longe, a curva fica como está; perto, cada iteração divide os segmentos ao
+ * meio até ficarem com poucas unidades. O resultado de cada nível é guardado num cache LRU
+ * limitado pelo total de pontos gerados (cada curva conta também uma parcela fixa, mesmo sem
+ * nível guardado).
+ *
+ * Quem move os pontos de uma curva ou a tira do desenho chama {@link #forget(TopoObject)}; a
+ * impressão dos pontos guardada em cada entrada só pega o que escapar disso.
+ */
+public class ContourSmoother {
+
+    // Comprimento (em unidades de saída) que um segmento suavizado deve ter, no máximo
+    private static final double TARGET_SEGMENT = 3.0;
+
+    // Cada iteração dobra os pontos: 4 iterações = 16x
+    private static final int MAX_LEVEL = 4;
+
+    // Quanto cada entrada conta no limite do cache, além dos níveis guardados
+    private static final int ENTRY_POINTS = 16;
+
+    private final long maxCachedPoints;
+    private long cachedPoints = 0;
+
+    // Ordem de acesso: o primeiro é o usado há mais tempo
+    private final LinkedHashMap<TopoObject, Entry> cache = new LinkedHashMap<>(256, 0.75f, true);
+
+    public ContourSmoother(long maxCachedPoints) {
+        this.maxCachedPoints = maxCachedPoints;
+    }
+
+    /**
+     * Pontos da polilinha suavizada para a escala dada, intercalados (x0, y0, x1, y1...) nas
+     * coordenadas do objeto. Uma curva fechada continua fechada (o último ponto não repete o
+     * primeiro); uma aberta mantém as pontas.
+     * @param unitsPerWorld unidades de saída por unidade do desenho (ex.: trans.getMxx())
+     * @return null se nessa escala a suavização não aparece (desenhar os pontos originais)
+     */
+    public double[] smooth(TopoObject obj, double unitsPerWorld) {
+        List<TopoPoint> points = obj.getPoints();
+        if (points.size() < 3) return null;
+
+        Entry entry = cache.get(obj);
+        if (entry == null || !entry.matches(points)) {
+            if (entry != null) release(entry);
+            entry = new Entry(points);
+            cache.put(obj, entry);
+            cachedPoints += ENTRY_POINTS;
+            evict(entry);
+        }
+
+        int level = level(entry.meanSegment * unitsPerWorld);
+        if (level == 0) return null;
+        if (entry.levels[level] == null) {
+            double[] xy = chaikin(entry.raw(points), obj.isClosed(), level);
+            entry.levels[level] = xy;
+            cachedPoints += xy.length / 2;
+            evict(entry);
+        }
+        return entry.levels[level];
+    }
+
+    /** Os pontos do objeto mudaram ou ele saiu do desenho: descarta o que foi suavizado dele. */
+    public void forget(TopoObject obj) {
+        Entry entry = cache.remove(obj);
+        if (entry != null) release(entry);
+    }
+
+    public void clear() {
+        cache.clear();
+        cachedPoints = 0;
+    }
+
+    // Iterações para que um segmento que ocupa `length` unidades fique com até TARGET_SEGMENT
+    static int level(double length) {
+        if (!(length > 2 * TARGET_SEGMENT)) return 0;
+        int level = (int) Math.ceil(Math.log(length / TARGET_SEGMENT) / Math.log(2));
+        return Math.min(MAX_LEVEL, level);
+    }
+
+    /**
+     * Chaikin: cada segmento (p, q) vira os pontos a 1/4 e 3/4 dele. Numa polilinha aberta a
+     * primeira e a última ponta são mantidas, para a curva continuar chegando à borda da malha.
+     */
+    static double[] chaikin(double[] xy, boolean closed, int iterations) {
+        for (int it = 0; it < iterations; it++) {
+            int n = xy.length / 2;
+            int segments = closed ? n : n - 1;
+            double[] out = new double[2 * (2 * segments + (closed ? 0 : 2))];
+            int k = 0;
+            if (!closed) {
+                out[k++] = xy[0];
+                out[k++] = xy[1];
+            }
+            for (int i = 0; i < segments; i++) {
+                int j = (i + 1) % n;
+                double px = xy[2 * i], py = xy[2 * i + 1];
+                double qx = xy[2 * j], qy = xy[2 * j + 1];
+                out[k++] = 0.75 * px + 0.25 * qx;
+                out[k++] = 0.75 * py + 0.25 * qy;
+                out[k++] = 0.25 * px + 0.75 * qx;
+                out[k++] = 0.25 * py + 0.75 * qy;
+            }
+            if (!closed) {
+                out[k++] = xy[2 * n - 2];
+                out[k] = xy[2 * n - 1];
+            }
+            xy = out;
+        }
+        return xy;
+    }
+
+    // Descarta os níveis usados há mais tempo até caber no limite (nunca o que acabou de ser gerado)
+    private void evict(Entry keep) {
+        Iterator<Map.Entry<TopoObject, Entry>> it = cache.entrySet().iterator();
+        while (cachedPoints > maxCachedPoints && it.hasNext()) {
+            Entry entry = it.next().getValue();
+            if (entry == keep) continue;
+            release(entry);
+            it.remove();
+        }
+    }
+
+    private void release(Entry entry) {
+        cachedPoints -= ENTRY_POINTS;
+        for (double[] xy : entry.levels) if (xy != null) cachedPoints -= xy.length / 2;
+    }
+
+    // Níveis suavizados de um objeto e uma impressão dos seus pontos para notar edições
+    private static final class Entry {
+        private final double[][] levels = new double[MAX_LEVEL + 1][];
+        private final int count;
+        private final double firstX, firstY, middleX, middleY, lastX, lastY;
+        private final double meanSegment;
+
+        Entry(List<TopoPoint> points) {
+            count = points.size();
+            TopoPoint first = points.get(0), middle = points.get(count / 2), last = points.get(count - 1);
+            firstX = first.getX();
+            firstY = first.getY();
+            middleX = middle.getX();
+            middleY = middle.getY();
+            lastX = last.getX();
+            lastY = last.getY();
+
+            double length = 0;
+            for (int i = 1; i < count; i++) {
+                length += Math.hypot(points.get(i).getX() - points.get(i - 1).getX(), points.get(i).getY() - points.get(i - 1).getY());
+            }
+            meanSegment = length / (count - 1);
+        }
+
+        boolean matches(List<TopoPoint> points) {
+            if (points.size() != count) return false;
+            TopoPoint first = points.get(0), middle = points.get(count / 2), last = points.get(count - 1);
+            return first.getX() == firstX && first.getY() == firstY
+                    && middle.getX() == middleX && middle.getY() == middleY
+                    && last.getX() == lastX && last.getY() == lastY;
+        }
+
+        double[] raw(List<TopoPoint> points) {
+            double[] xy = new double[2 * count];
+            for (int i = 0; i < count; i++) {
+                xy[2 * i] = points.get(i).getX();
+                xy[2 * i + 1] = points.get(i).getY();
+            }
+            return xy;
+        }
+    }
+}
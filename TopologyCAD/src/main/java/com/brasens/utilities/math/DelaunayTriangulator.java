@@ -2,91 +2,247 @@ package com.brasens.utilities.math;
 
 import com.brasens.model.objects.TopoPoint;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Random;
 
 public class DelaunayTriangulator {
 
+    // Semente fixa: a ordem de inserção (e portanto o resultado) é sempre a mesma para a mesma entrada
+    private static final long BRIO_SEED = 0x5DEECE66DL;
+
+    // Rodadas BRIO menores que isso não são reordenadas (não compensa)
+    private static final int BRIO_MIN_ROUND = 64;
+
+    // Abaixo disso o caminho sequencial é mais rápido (a costura entre fatias não compensa)
+    private static final int PARALLEL_MIN_POINTS = 200_000;
+
+    // Número de threads usadas na triangulação de nuvens grandes (1 = sempre sequencial)
+    private static int parallelism = Runtime.getRuntime().availableProcessors();
+
+    public static int getParallelism() {
+        return parallelism;
+    }
+
+    public static void setParallelism(int parallelism) {
+        DelaunayTriangulator.parallelism = Math.max(1, parallelism);
+    }
+
     public static List<Triangle> triangulate(List<TopoPoint> points) {
-        List<Triangle> triangles = new ArrayList<>();
-        if (points == null || points.size() < 3) return triangles;
+        if (points == null || points.size() < 3) return new ArrayList<>();
+        return triangulateMesh(points).toTriangles();
+    }
+
+    /**
+     * Triangula os pontos e devolve a malha compacta (vetores primitivos).
+     * Os índices de vértice da malha correspondem às posições na lista de entrada.
+     */
+    public static TinMesh triangulateMesh(List<TopoPoint> points) {
+        return triangulateMesh(points, parallelism);
+    }
+
+    /**
+     * Igual a {@link #triangulateMesh(List)}, com o número de threads explícito. O resultado é
+     * idêntico ao do caminho sequencial: a triangulação é única (desempate simbólico nos pontos
+     * cocirculares) e a malha é sempre emitida em ordem canônica.
+     */
+    public static TinMesh triangulateMesh(List<TopoPoint> points, int parallelism) {
+        int n = (points == null) ? 0 : points.size();
 
-        // 1. Determina os limites (Bounding Box) para criar o Super Triângulo
+        // 1. Coordenadas em vetores primitivos, relativas ao centro do conjunto quando o
+        //    deslocamento é exato (UTM bruto, E ~ 500000 / N ~ 7500000); senão, as originais
         double minX = Double.MAX_VALUE, minY = Double.MAX_VALUE;
         double maxX = -Double.MAX_VALUE, maxY = -Double.MAX_VALUE;
 
-        for (TopoPoint p : points) {
+        for (int i = 0; i < n; i++) {
+            TopoPoint p = points.get(i);
             if (p.getX() < minX) minX = p.getX();
             if (p.getY() < minY) minY = p.getY();
             if (p.getX() > maxX) maxX = p.getX();
             if (p.getY() > maxY) maxY = p.getY();
         }
 
-        double dx = maxX - minX;
-        double dy = maxY - minY;
-        double deltaMax = Math.max(dx, dy);
-        double midX = (minX + maxX) / 2;
-        double midY = (minY + maxY) / 2;
+        double midX = GeometricPredicates.exactOrigin(minX, maxX);
+        double midY = GeometricPredicates.exactOrigin(minY, maxY);
+
+        double[] x = new double[n];
+        double[] y = new double[n];
+        double[] z = new double[n];
+        double[] localX = new double[n];
+        double[] localY = new double[n];
+        for (int i = 0; i < n; i++) {
+            TopoPoint p = points.get(i);
+            x[i] = p.getX();
+            y[i] = p.getY();
+            z[i] = p.getZ();
+            localX[i] = x[i] - midX;
+            localY[i] = y[i] - midY;
+        }
 
-        // Super Triângulo deve ser grande o suficiente para englobar todos os pontos
-        TopoPoint p1 = new TopoPoint("Super1", midX - 20 * deltaMax, midY - deltaMax);
-        TopoPoint p2 = new TopoPoint("Super2", midX, midY + 20 * deltaMax);
-        TopoPoint p3 = new TopoPoint("Super3", midX + 20 * deltaMax, midY - deltaMax);
+        if (n < 3) return TinMesh.empty(x, y, z, points);
 
-        Triangle superTriangle = new Triangle(p1, p2, p3);
-        triangles.add(superTriangle);
+        // Nuvens grandes: fatias trianguladas em paralelo e costuradas
+        if (parallelism > 1 && n >= PARALLEL_MIN_POINTS) {
+            int[] triangles = ParallelTriangulator.triangulate(localX, localY, parallelism);
+            return TinMesh.fromTriangles(triangles, triangles.length / 3, x, y, z, points);
+        }
 
-        // 2. Processa ponto a ponto
-        for (TopoPoint p : points) {
-            List<Triangle> badTriangles = new ArrayList<>();
+        // 2. Ordem de inserção espacial (BRIO + curva de Hilbert), sem pontos duplicados
+        int[] order = insertionOrder(localX, localY);
 
-            // Encontra triângulos que são invalidados pelo novo ponto
-            for (Triangle t : triangles) {
-                if (t.isInCircumcircle(p)) {
-                    badTriangles.add(t);
-                }
-            }
+        // 3. Inserção incremental com localização por caminhada na malha
+        TinBuilder builder = build(localX, localY, order);
+        if (builder == null) return TinMesh.empty(x, y, z, points); // Todos os pontos colineares
 
-            List<Edge> polygon = new ArrayList<>();
+        // 4. Malha final sem os triângulos fantasmas
+        return TinMesh.fromBuilder(builder, x, y, z, points);
+    }
 
-            // Encontra a fronteira do "buraco" deixado pelos triângulos ruins
-            for (Triangle t : badTriangles) {
-                addEdgeToPolygon(polygon, t.p1, t.p2);
-                addEdgeToPolygon(polygon, t.p2, t.p3);
-                addEdgeToPolygon(polygon, t.p3, t.p1);
-            }
+    /**
+     * Insere os vértices na ordem dada. Os três primeiros pontos não colineares formam o
+     * triângulo inicial. Retorna null se não houver triângulo possível.
+     */
+    static TinBuilder build(double[] x, double[] y, int[] order) {
+        return build(x, y, null, order);
+    }
 
-            triangles.removeAll(badTriangles);
+    /** Como {@link #build(double[], double[], int[])}, com os índices globais usados no desempate. */
+    static TinBuilder build(double[] x, double[] y, int[] rank, int[] order) {
+        TinBuilder builder = new TinBuilder(x, y, rank, order.length);
 
-            // Retriangula o buraco conectando ao novo ponto
-            for (Edge edge : polygon) {
-                triangles.add(new Triangle(edge.p1, edge.p2, p));
-            }
+        int seed = findInitialTriangle(builder, order);
+        if (seed < 0) return null;
+
+        int a = order[0], b = order[1], c = order[seed];
+        builder.init(a, b, c);
+
+        for (int i = 2; i < order.length; i++) {
+            if (i == seed) continue;
+            builder.insert(order[i]);
+        }
+        return builder;
+    }
+
+    // Garante que order[0] e order[1] são distintos e retorna a posição do primeiro ponto não colinear
+    private static int findInitialTriangle(TinBuilder builder, int[] order) {
+        if (order.length < 3) return -1;
+
+        for (int i = 2; i < order.length; i++) {
+            if (builder.orient(order[0], order[1], order[i]) != 0) return i;
+        }
+        return -1;
+    }
+
+    /**
+     * Ordem BRIO (Biased Randomized Insertion Order): os pontos são embaralhados e divididos em
+     * rodadas de tamanho crescente; cada rodada é ordenada pela curva de Hilbert. Isso mantém a
+     * caminhada de localização curta sem perder a robustez da inserção aleatória.
+     * Pontos com coordenadas repetidas são descartados (fica o de menor índice).
+     */
+    static int[] insertionOrder(double[] x, double[] y) {
+        long[] hilbert = hilbertKeys(x, y);
+        int[] unique = removeDuplicates(x, y, hilbert);
+
+        // Embaralhamento determinístico (Fisher-Yates)
+        Random random = new Random(BRIO_SEED);
+        for (int i = unique.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int tmp = unique[i]; unique[i] = unique[j]; unique[j] = tmp;
         }
 
-        // 3. Limpeza: Remove triângulos conectados ao Super Triângulo original
-        triangles.removeIf(t -> t.p1 == p1 || t.p2 == p1 || t.p3 == p1 ||
-                t.p1 == p2 || t.p2 == p2 || t.p3 == p2 ||
-                t.p1 == p3 || t.p2 == p3 || t.p3 == p3);
+        // Rodadas: [.., n/8), [n/8, n/4), [n/4, n/2), [n/2, n)
+        int end = unique.length;
+        while (end > 0) {
+            int begin = (end > BRIO_MIN_ROUND) ? end / 2 : 0;
+            sortByHilbert(unique, begin, end, hilbert);
+            end = begin;
+        }
+        return unique;
+    }
 
-        return triangles;
+    /** Índices dos pontos distintos, em ordem crescente (entre repetidos, fica o de menor índice). */
+    static int[] uniqueVertices(double[] x, double[] y) {
+        return removeDuplicates(x, y, hilbertKeys(x, y));
     }
 
-    // Gerencia arestas para encontrar o contorno do polígono
-    private static void addEdgeToPolygon(List<Edge> polygon, TopoPoint p1, TopoPoint p2) {
-        for (int i = 0; i < polygon.size(); i++) {
-            Edge edge = polygon.get(i);
-            // Se a aresta já existe (em sentido inverso), é uma aresta interna -> remove
-            if ((edge.p1 == p1 && edge.p2 == p2) || (edge.p1 == p2 && edge.p2 == p1)) {
-                polygon.remove(i);
-                return;
+    // Posição de cada ponto na curva de Hilbert sobre a caixa envolvente
+    static long[] hilbertKeys(double[] x, double[] y) {
+        int n = x.length;
+
+        double minX = Double.MAX_VALUE, minY = Double.MAX_VALUE;
+        double maxX = -Double.MAX_VALUE, maxY = -Double.MAX_VALUE;
+        for (int i = 0; i < n; i++) {
+            minX = Math.min(minX, x[i]); maxX = Math.max(maxX, x[i]);
+            minY = Math.min(minY, y[i]); maxY = Math.max(maxY, y[i]);
+        }
+        double size = Math.max(maxX - minX, maxY - minY);
+        double cellScale = (size > 0) ? 65535.0 / size : 0;
+
+        long[] hilbert = new long[n];
+        for (int i = 0; i < n; i++) {
+            int hx = (int) ((x[i] - minX) * cellScale);
+            int hy = (int) ((y[i] - minY) * cellScale);
+            hilbert[i] = hilbertIndex(hx, hy);
+        }
+        return hilbert;
+    }
+
+    private static int[] removeDuplicates(double[] x, double[] y, long[] hilbert) {
+        int n = x.length;
+        long[] keys = new long[n];
+        for (int i = 0; i < n; i++) keys[i] = (hilbert[i] << 31) | i;
+        Arrays.sort(keys);
+
+        // Pontos iguais caem na mesma célula de Hilbert: basta comparar dentro de cada célula
+        boolean[] duplicate = new boolean[n];
+        int count = n;
+        int runStart = 0;
+        for (int k = 1; k <= n; k++) {
+            if (k < n && (keys[k] >>> 31) == (keys[runStart] >>> 31)) continue;
+            for (int a = runStart; a < k; a++) {
+                int i = (int) (keys[a] & 0x7FFFFFFFL);
+                if (duplicate[i]) continue;
+                for (int b = a + 1; b < k; b++) {
+                    int j = (int) (keys[b] & 0x7FFFFFFFL);
+                    if (!duplicate[j] && x[i] == x[j] && y[i] == y[j]) {
+                        duplicate[j] = true;
+                        count--;
+                    }
+                }
             }
+            runStart = k;
+        }
+
+        int[] unique = new int[count];
+        int u = 0;
+        for (int i = 0; i < n; i++) {
+            if (!duplicate[i]) unique[u++] = i;
         }
-        // Se não existe, é aresta de borda -> adiciona
-        polygon.add(new Edge(p1, p2));
+        return unique;
     }
 
-    private static class Edge {
-        TopoPoint p1, p2;
-        Edge(TopoPoint p1, TopoPoint p2) { this.p1 = p1; this.p2 = p2; }
+    private static void sortByHilbert(int[] ids, int begin, int end, long[] hilbert) {
+        long[] keys = new long[end - begin];
+        for (int i = begin; i < end; i++) keys[i - begin] = (hilbert[ids[i]] << 31) | ids[i];
+        Arrays.sort(keys);
+        for (int i = begin; i < end; i++) ids[i] = (int) (keys[i - begin] & 0x7FFFFFFFL);
+    }
+
+    // Posição de (x, y) ao longo da curva de Hilbert numa grade de 65536 x 65536
+    private static long hilbertIndex(int x, int y) {
+        long d = 0;
+        for (int s = 1 << 15; s > 0; s >>= 1) {
+            int rx = (x & s) > 0 ? 1 : 0;
+            int ry = (y & s) > 0 ? 1 : 0;
+            d += (long) s * s * ((3 * rx) ^ ry);
+            if (ry == 0) {
+                if (rx == 1) {
+                    x = s - 1 - x;
+                    y = s - 1 - y;
+                }
+                int t = x; x = y; y = t;
+            }
+        }
+        return d;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,198 @@
+package com.brasens.utilities.math;
+
+import java.util.Arrays;
+
+/**
+ * Predicados geométricos robustos (orientação e circuncírculo).
+ *
+ * Cada teste é primeiro calculado em ponto flutuante e comparado com um limite de erro
+ * (filtro de Shewchuk): se o resultado está longe de zero o sinal é garantidamente correto.
+ * Só nos casos quase degenerados o determinante é recalculado em aritmética exata, então as
+ * decisões topológicas (lado de uma reta, dentro do círculo) são sempre consistentes entre si.
+ */
+public final class GeometricPredicates {
+
+    // Erro relativo de um arredondamento em double (2^-53)
+    private static final double EPSILON = Math.ulp(1.0) / 2;
+
+    // Limites de erro do cálculo direto (Shewchuk, "Adaptive Precision Floating-Point Arithmetic")
+    private static final double ORIENT_BOUND = (3 + 16 * EPSILON) * EPSILON;
+    private static final double INCIRCLE_BOUND = (10 + 96 * EPSILON) * EPSILON;
+
+    private GeometricPredicates() {
+    }
+
+    /**
+     * Positivo se a, b, c estão em sentido anti-horário, negativo se horário e zero se colineares.
+     * Só o sinal é garantido (no caso exato o valor é -1, 0 ou 1).
+     */
+    public static double orient2d(double ax, double ay, double bx, double by, double cx, double cy) {
+        double detLeft = (ax - cx) * (by - cy);
+        double detRight = (ay - cy) * (bx - cx);
+        double det = detLeft - detRight;
+
+        double detSum = Math.abs(detLeft) + Math.abs(detRight);
+        if (Math.abs(det) >= ORIENT_BOUND * detSum) return det;
+
+        return orient2dExact(ax, ay, bx, by, cx, cy);
+    }
+
+    /**
+     * Positivo se d está dentro do círculo que passa por a, b, c (em sentido anti-horário),
+     * negativo se fora e zero se os quatro pontos são cocirculares. Só o sinal é garantido.
+     */
+    public static double incircle(double ax, double ay, double bx, double by,
+                                  double cx, double cy, double dx, double dy) {
+        double adx = ax - dx, ady = ay - dy;
+        double bdx = bx - dx, bdy = by - dy;
+        double cdx = cx - dx, cdy = cy - dy;
+
+        double bdxcdy = bdx * cdy, cdxbdy = cdx * bdy;
+        double cdxady = cdx * ady, adxcdy = adx * cdy;
+        double adxbdy = adx * bdy, bdxady = bdx * ady;
+
+        double alift = adx * adx + ady * ady;
+        double blift = bdx * bdx + bdy * bdy;
+        double clift = cdx * cdx + cdy * cdy;
+
+        double det = alift * (bdxcdy - cdxbdy)
+                + blift * (cdxady - adxcdy)
+                + clift * (adxbdy - bdxady);
+
+        double permanent = (Math.abs(bdxcdy) + Math.abs(cdxbdy)) * alift
+                + (Math.abs(cdxady) + Math.abs(adxcdy)) * blift
+                + (Math.abs(adxbdy) + Math.abs(bdxady)) * clift;
+        if (Math.abs(det) > INCIRCLE_BOUND * permanent) return det;
+
+        return incircleExact(ax, ay, bx, by, cx, cy, dx, dy);
+    }
+
+    /** Os segmentos (a, b) e (c, d) se tocam (incluindo extremidades e sobreposição colinear)? */
+    public static boolean segmentsIntersect(double ax, double ay, double bx, double by,
+                                            double cx, double cy, double dx, double dy) {
+        double o1 = Math.signum(orient2d(ax, ay, bx, by, cx, cy));
+        double o2 = Math.signum(orient2d(ax, ay, bx, by, dx, dy));
+        double o3 = Math.signum(orient2d(cx, cy, dx, dy, ax, ay));
+        double o4 = Math.signum(orient2d(cx, cy, dx, dy, bx, by));
+
+        if (o1 != o2 && o3 != o4) return true;
+
+        // Casos colineares: o ponto precisa estar dentro da caixa do outro segmento
+        if (o1 == 0 && inBox(ax, ay, bx, by, cx, cy)) return true;
+        if (o2 == 0 && inBox(ax, ay, bx, by, dx, dy)) return true;
+        if (o3 == 0 && inBox(cx, cy, dx, dy, ax, ay)) return true;
+        return o4 == 0 && inBox(cx, cy, dx, dy, bx, by);
+    }
+
+    /**
+     * Origem para aproximar de zero as coordenadas do intervalo [min, max] sem arredondar
+     * nenhuma: o centro do intervalo, quando toda subtração x - centro é exata, ou 0. Com uma
+     * origem arredondada os predicados julgariam outros pontos que não os da entrada.
+     */
+    public static double exactOrigin(double min, double max) {
+        if (!(min <= max)) return 0;
+        double mid = min / 2 + max / 2;
+        return (exactShift(min, mid) && exactShift(max, mid)) ? mid : 0;
+    }
+
+    /**
+     * x - origin é exato em double? Vale pelo lema de Sterbenz (origin/2 <= x <= 2 origin) e,
+     * trivialmente, para origem 0.
+     */
+    public static boolean exactShift(double x, double origin) {
+        if (origin == 0) return true;
+        if (Math.abs(origin) < Double.MIN_NORMAL) return false;
+        return (origin > 0) ? (x >= origin / 2 && x <= 2 * origin)
+                            : (x <= origin / 2 && x >= 2 * origin);
+    }
+
+    private static boolean inBox(double ax, double ay, double bx, double by, double px, double py) {
+        return px >= Math.min(ax, bx) && px <= Math.max(ax, bx)
+                && py >= Math.min(ay, by) && py <= Math.max(ay, by);
+    }
+
+    // --- Caminho exato: expansões de Shewchuk (soma de doubles sem sobreposição, em ordem
+    //     crescente de magnitude; o sinal é o do último componente) ---
+
+    private static double orient2dExact(double ax, double ay, double bx, double by, double cx, double cy) {
+        double[] acx = twoDiff(ax, cx), acy = twoDiff(ay, cy);
+        double[] bcx = twoDiff(bx, cx), bcy = twoDiff(by, cy);
+        return sign(sum(product(acx, bcy), negate(product(acy, bcx))));
+    }
+
+    private static double incircleExact(double ax, double ay, double bx, double by,
+                                        double cx, double cy, double dx, double dy) {
+        double[] adx = twoDiff(ax, dx), ady = twoDiff(ay, dy);
+        double[] bdx = twoDiff(bx, dx), bdy = twoDiff(by, dy);
+        double[] cdx = twoDiff(cx, dx), cdy = twoDiff(cy, dy);
+
+        double[] alift = sum(product(adx, adx), product(ady, ady));
+        double[] blift = sum(product(bdx, bdx), product(bdy, bdy));
+        double[] clift = sum(product(cdx, cdx), product(cdy, cdy));
+
+        double[] bc = sum(product(bdx, cdy), negate(product(cdx, bdy)));
+        double[] ca = sum(product(cdx, ady), negate(product(adx, cdy)));
+        double[] ab = sum(product(adx, bdy), negate(product(bdx, ady)));
+
+        return sign(sum(sum(product(alift, bc), product(blift, ca)), product(clift, ab)));
+    }
+
+    private static double[] twoDiff(double a, double b) {
+        double x = a - b;
+        double bVirtual = a - x;
+        double aVirtual = x + bVirtual;
+        double y = (a - aVirtual) + (bVirtual - b);
+        return (y == 0) ? new double[]{x} : new double[]{y, x};
+    }
+
+    // e + f (cada componente de f é acrescentado a e)
+    private static double[] sum(double[] e, double[] f) {
+        double[] h = e;
+        for (double component : f) h = grow(h, component);
+        return h;
+    }
+
+    // e + b, sem componentes nulos
+    private static double[] grow(double[] e, double b) {
+        double[] h = new double[e.length + 1];
+        int count = 0;
+        double q = b;
+        for (double component : e) {
+            double s = q + component;
+            double bVirtual = s - q;
+            double tail = (q - (s - bVirtual)) + (component - bVirtual);
+            if (tail != 0) h[count++] = tail;
+            q = s;
+        }
+        if (q != 0 || count == 0) h[count++] = q;
+        return (count == h.length) ? h : Arrays.copyOf(h, count);
+    }
+
+    // e * b (cada produto é exato: parte alta + erro de arredondamento via fma)
+    private static double[] scale(double[] e, double b) {
+        double[] h = new double[0];
+        for (double component : e) {
+            double high = component * b;
+            double low = Math.fma(component, b, -high);
+            if (low != 0) h = grow(h, low);
+            h = grow(h, high);
+        }
+        return h;
+    }
+
+    private static double[] product(double[] e, double[] f) {
+        double[] h = new double[0];
+        for (double component : f) h = sum(h, scale(e, component));
+        return h;
+    }
+
+    private static double[] negate(double[] e) {
+        double[] h = new double[e.length];
+        for (int i = 0; i < e.length; i++) h[i] = -e[i];
+        return h;
+    }
+
+    private static double sign(double[] e) {
+        return (e.length == 0) ? 0 : Math.signum(e[e.length - 1]);
+    }
+}
@@ -0,0 +1,381 @@
+package com.brasens.utilities.math;
+
+import com.brasens.model.objects.TopoObject;
+import com.brasens.model.objects.TopoPoint;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Curvas de nível por grade regular (marching squares), alternativa ao corte da TIN para
+ * superfícies densas e uniformes, como os MDEs exportados de drone.
+ *
+ * A malha é rasterizada numa grade de cotas em float (NaN fora da malha) e cada célula é
+ * cortada pelas cotas que passam por ela. A grade é processada em blocos, em paralelo; cada
+ * ponto de corte é identificado pela aresta da grade, que é global, então a costura (a mesma do
+ * {@link ContourGenerator}) emenda as curvas entre blocos como se fosse um bloco só. A saída
+ * tem as mesmas camadas e tipos de linha do corte da TIN.
+ *
+ * Um MDE sem linhas de quebra, com um ponto em cada nó de uma grade retangular, já é a grade:
+ * {@link #generateFromDem} a monta direto dos pontos, sem triangular, e dá as mesmas cotas que
+ * a rasterização da TIN daria (cada nó cai num vértice). Qualquer outra nuvem passa pela TIN.
+ */
+public class GridContourGenerator {
+
+    // Lado (em células) dos blocos processados por tarefa; na rasterização, altura das faixas
+    private static final int TILE = 256;
+
+    // Limite de nós da grade (em float, ~64 MB); a célula cresce até caber
+    private static final long MAX_NODES = 16_000_000L;
+
+    // Folga das coordenadas baricêntricas: nós sobre a aresta entram nos dois triângulos
+    private static final double EDGE_EPSILON = 1e-9;
+
+    // Folga (em células) para um ponto contar como sobre o nó da grade do MDE
+    private static final double NODE_EPSILON = 1e-6;
+
+    public static List<TopoObject> generateContours(TinMesh mesh, double interval) {
+        return generateContours(mesh, interval, 0, ContourGenerator.getParallelism(), ContourMonitor.NONE);
+    }
+
+    public static List<TopoObject> generateContours(TinMesh mesh, double interval, double cellSize, ContourMonitor monitor) {
+        return generateContours(mesh, interval, cellSize, ContourGenerator.getParallelism(), monitor);
+    }
+
+    /**
+     * Curvas da malha reamostrada numa grade.
+     * @param cellSize lado da célula (unidades do desenho); 0 = espaçamento médio dos vértices
+     */
+    public static List<TopoObject> generateContours(TinMesh mesh, double interval, double cellSize, int parallelism,
+                                                    ContourMonitor monitor) {
+        if (mesh.getTriangleCount() == 0 || interval <= 0) return new ArrayList<>();
+
+        Grid grid = Grid.covering(mesh, cellSize);
+        ForkJoinPool pool = (parallelism > 1) ? new ForkJoinPool(parallelism) : null;
+        try {
+            rasterize(mesh, grid, pool, monitor);
+            ContourGenerator.Segments segments = sweep(grid, interval, pool, monitor);
+            return segments.toObjects(interval, pool, parallelism, monitor);
+        } finally {
+            if (pool != null) pool.shutdown();
+        }
+    }
+
+    public static List<TopoObject> generateFromDem(List<TopoPoint> points, double interval, double cellSize,
+                                                   ContourMonitor monitor) {
+        return generateFromDem(points, interval, cellSize, ContourGenerator.getParallelism(), monitor);
+    }
+
+    /**
+     * Curvas de um MDE cujos pontos são exatamente os nós de uma grade retangular completa, sem
+     * montar a TIN. As linhas de quebra não entram: com elas, use a malha.
+     * @param cellSize passo da grade (unidades do desenho); 0 = menor espaçamento entre os pontos
+     * @return null se os pontos não formam essa grade (faltam nós, sobram pontos ou há pontos
+     *         fora dos nós); aí as curvas saem da TIN
+     */
+    public static List<TopoObject> generateFromDem(List<TopoPoint> points, double interval, double cellSize,
+                                                   int parallelism, ContourMonitor monitor) {
+        if (points.size() < 4 || interval <= 0) return null;
+
+        Grid grid = Grid.lattice(points, cellSize);
+        if (grid == null) return null;
+        ForkJoinPool pool = (parallelism > 1) ? new ForkJoinPool(parallelism) : null;
+        try {
+            ContourGenerator.Segments segments = sweep(grid, interval, pool, monitor);
+            return segments.toObjects(interval, pool, parallelism, monitor);
+        } finally {
+            if (pool != null) pool.shutdown();
+        }
+    }
+
+    /**
+     * Interpola a cota de cada nó no triângulo que o contém. O trabalho é dividido em faixas de
+     * linhas da grade e cada triângulo entra nas faixas que cruza, então cada nó é escrito por
+     * uma única tarefa e o resultado não depende da ordem das threads.
+     */
+    private static void rasterize(TinMesh mesh, Grid grid, ForkJoinPool pool, ContourMonitor monitor) {
+        double[] y = mesh.getY();
+        int[] tri = mesh.getTriangles();
+        int count = mesh.getTriangleCount();
+        int bands = (grid.ny + TILE - 1) / TILE;
+
+        // Triângulos por faixa (contagem e preenchimento, como um counting sort)
+        int[] start = new int[bands + 1];
+        for (int pass = 0; pass < 2; pass++) {
+            int[] fill = (pass == 0) ? null : start.clone();
+            int[] members = (pass == 0) ? null : new int[start[bands]];
+            for (int t = 0; t < count; t++) {
+                double minY = Math.min(y[tri[3 * t]], Math.min(y[tri[3 * t + 1]], y[tri[3 * t + 2]]));
+                double maxY = Math.max(y[tri[3 * t]], Math.max(y[tri[3 * t + 1]], y[tri[3 * t + 2]]));
+                int r0 = Math.max(0, (int) Math.ceil((minY - grid.y0) / grid.cell));
+                int r1 = Math.min(grid.ny - 1, (int) Math.floor((maxY - grid.y0) / grid.cell));
+                for (int b = r0 / TILE; r0 <= r1 && b <= r1 / TILE; b++) {
+                    if (pass == 0) start[b + 1]++;
+                    else members[fill[b]++] = t;
+                }
+            }
+            if (pass == 0) {
+                for (int b = 0; b < bands; b++) start[b + 1] += start[b];
+                continue;
+            }
+
+            ContourGenerator.Tracker tracker = new ContourGenerator.Tracker(monitor, ContourMonitor.Phase.RASTERIZING, bands);
+            List<Callable<Void>> tasks = new ArrayList<>();
+            for (int b = 0; b < bands; b++) {
+                int band = b;
+                tasks.add(() -> {
+                    int fromRow = band * TILE, toRow = Math.min(grid.ny, fromRow + TILE);
+                    for (int m = start[band]; m < start[band + 1]; m++) fillTriangle(mesh, members[m], grid, fromRow, toRow);
+                    tracker.advance(1);
+                    return null;
+                });
+            }
+            run(pool, tasks);
+        }
+    }
+
+    // Nós do triângulo t nas linhas [fromRow, toRow), por coordenadas baricêntricas
+    private static void fillTriangle(TinMesh mesh, int t, Grid grid, int fromRow, int toRow) {
+        double[] x = mesh.getX(), y = mesh.getY(), z = mesh.getZ();
+        int[] tri = mesh.getTriangles();
+        int a = tri[3 * t], b = tri[3 * t + 1], c = tri[3 * t + 2];
+        double det = (y[b] - y[c]) * (x[a] - x[c]) + (x[c] - x[b]) * (y[a] - y[c]);
+        if (det == 0) return;
+
+        double minX = Math.min(x[a], Math.min(x[b], x[c])), maxX = Math.max(x[a], Math.max(x[b], x[c]));
+        double minY = Math.min(y[a], Math.min(y[b], y[c])), maxY = Math.max(y[a], Math.max(y[b], y[c]));
+        int i0 = Math.max(0, (int) Math.ceil((minX - grid.x0) / grid.cell));
+        int i1 = Math.min(grid.nx - 1, (int) Math.floor((maxX - grid.x0) / grid.cell));
+        int j0 = Math.max(fromRow, (int) Math.ceil((minY - grid.y0) / grid.cell));
+        int j1 = Math.min(toRow - 1, (int) Math.floor((maxY - grid.y0) / grid.cell));
+
+        for (int j = j0; j <= j1; j++) {
+            double py = grid.y0 + j * grid.cell;
+            for (int i = i0; i <= i1; i++) {
+                double px = grid.x0 + i * grid.cell;
+                double la = ((y[b] - y[c]) * (px - x[c]) + (x[c] - x[b]) * (py - y[c])) / det;
+                double lb = ((y[c] - y[a]) * (px - x[c]) + (x[a] - x[c]) * (py - y[c])) / det;
+                double lc = 1 - la - lb;
+                if (la < -EDGE_EPSILON || lb < -EDGE_EPSILON || lc < -EDGE_EPSILON) continue;
+                grid.z[j * grid.nx + i] = (float) (la * z[a] + lb * z[b] + lc * z[c]);
+            }
+        }
+    }
+
+    // Blocos de TILE x TILE células, juntados em ordem de linha para a saída não depender das threads
+    private static ContourGenerator.Segments sweep(Grid grid, double interval, ForkJoinPool pool, ContourMonitor monitor) {
+        int cellsX = grid.nx - 1, cellsY = grid.ny - 1;
+        ContourGenerator.Segments segments = new ContourGenerator.Segments();
+        if (cellsX <= 0 || cellsY <= 0) return segments;
+
+        int tilesX = (cellsX + TILE - 1) / TILE, tilesY = (cellsY + TILE - 1) / TILE;
+        ContourGenerator.Tracker tracker = new ContourGenerator.Tracker(monitor, ContourMonitor.Phase.SWEEPING, (long) tilesX * tilesY);
+        List<Callable<ContourGenerator.Segments>> tasks = new ArrayList<>();
+        for (int ty = 0; ty < tilesY; ty++) {
+            for (int tx = 0; tx < tilesX; tx++) {
+                int i0 = tx * TILE, j0 = ty * TILE;
+                int i1 = Math.min(cellsX, i0 + TILE), j1 = Math.min(cellsY, j0 + TILE);
+                tasks.add(() -> {
+                    ContourGenerator.Segments part = new ContourGenerator.Segments();
+                    sweepTile(grid, interval, i0, j0, i1, j1, part);
+                    tracker.advance(1);
+                    return part;
+                });
+            }
+        }
+        for (ContourGenerator.Segments part : run(pool, tasks)) segments.append(part);
+        return segments;
+    }
+
+    /**
+     * Marching squares nas células [i0, i1) x [j0, j1). Cantos da célula: a (i, j), b (i+1, j),
+     * c (i+1, j+1), d (i, j+1); como no corte da TIN, um nó com a cota da curva conta como acima.
+     *
+     * Sela (a e c de um lado, b e d do outro): a média dos quatro cantos decide quais cantos
+     * ficam ligados; a curva isola os dois cantos do lado oposto ao do centro.
+     */
+    private static void sweepTile(Grid grid, double interval, int i0, int j0, int i1, int j1,
+                                  ContourGenerator.Segments out) {
+        float[] zs = grid.z;
+        int nx = grid.nx;
+        int[] sides = new int[4];
+        double[] cross = new double[8];     // (x, y) do corte em cada lado: baixo, direita, cima, esquerda
+        long[] keys = new long[4];
+        double[] hit = new double[4];
+        long[] edges = new long[2];
+
+        for (int j = j0; j < j1; j++) {
+            for (int i = i0; i < i1; i++) {
+                int a = j * nx + i, b = a + 1, d = a + nx, c = d + 1;
+                float za = zs[a], zb = zs[b], zc = zs[c], zd = zs[d];
+                if (Float.isNaN(za) || Float.isNaN(zb) || Float.isNaN(zc) || Float.isNaN(zd)) continue; // fora da malha
+
+                double minZ = Math.min(Math.min(za, zb), Math.min(zc, zd));
+                double maxZ = Math.max(Math.max(za, zb), Math.max(zc, zd));
+                long first = (long) Math.floor(minZ / interval);
+                long last = (long) Math.floor(maxZ / interval);
+                for (long k = first; k <= last; k++) {
+                    double level = k * interval;
+                    if (level <= minZ) continue;
+                    if (level > maxZ) break;
+
+                    // Lados: baixo (a-b), direita (b-c), cima (d-c), esquerda (a-d); a aresta é
+                    // sempre percorrida a partir do nó de menor índice
+                    int crossed = 0;
+                    if (crossing(grid, a, b, 2L * a + 1, level, cross, keys, 0)) sides[crossed++] = 0;
+                    if (crossing(grid, b, c, 2L * b + 2, level, cross, keys, 1)) sides[crossed++] = 1;
+                    if (crossing(grid, d, c, 2L * d + 1, level, cross, keys, 2)) sides[crossed++] = 2;
+                    if (crossing(grid, a, d, 2L * a + 2, level, cross, keys, 3)) sides[crossed++] = 3;
+
+                    if (crossed == 2) {
+                        emit(cross, keys, sides[0], sides[1], k, hit, edges, out);
+                    } else if (crossed == 4) {
+                        boolean acAbove = za >= level;
+                        boolean centerAbove = (za + zb + zc + zd) / 4.0 >= level;
+                        if (acAbove != centerAbove) {
+                            // Isola a (esquerda-baixo) e c (direita-cima)
+                            emit(cross, keys, 3, 0, k, hit, edges, out);
+                            emit(cross, keys, 1, 2, k, hit, edges, out);
+                        } else {
+                            // Isola b (baixo-direita) e d (cima-esquerda)
+                            emit(cross, keys, 0, 1, k, hit, edges, out);
+                            emit(cross, keys, 2, 3, k, hit, edges, out);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    // A cota corta a aresta (n1, n2)? Grava o ponto e a chave no lado indicado
+    private static boolean crossing(Grid grid, int n1, int n2, long key, double level, double[] cross, long[] keys, int side) {
+        double z1 = grid.z[n1], z2 = grid.z[n2];
+        if ((z1 >= level) == (z2 >= level)) return false;
+
+        double t = (level - z1) / (z2 - z1);
+        double x1 = grid.x0 + (n1 % grid.nx) * grid.cell, y1 = grid.y0 + (n1 / grid.nx) * grid.cell;
+        double x2 = grid.x0 + (n2 % grid.nx) * grid.cell, y2 = grid.y0 + (n2 / grid.nx) * grid.cell;
+        cross[2 * side] = x1 + t * (x2 - x1);
+        cross[2 * side + 1] = y1 + t * (y2 - y1);
+        keys[side] = key;
+        return true;
+    }
+
+    private static void emit(double[] cross, long[] keys, int from, int to, long level, double[] hit, long[] edges,
+                             ContourGenerator.Segments out) {
+        hit[0] = cross[2 * from];
+        hit[1] = cross[2 * from + 1];
+        hit[2] = cross[2 * to];
+        hit[3] = cross[2 * to + 1];
+        edges[0] = keys[from];
+        edges[1] = keys[to];
+        out.add(level, hit, edges);
+    }
+
+    private static <T> List<T> run(ForkJoinPool pool, List<Callable<T>> tasks) {
+        if (pool != null) return ContourGenerator.invokeAll(pool, tasks);
+        List<T> results = new ArrayList<>();
+        for (Callable<T> task : tasks) {
+            try {
+                results.add(task.call());
+            } catch (RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new IllegalStateException("Falha na geração de curvas pela grade", e);
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Grade de cotas: nó (i, j) em (x0 + i * cell, y0 + j * cell), cota em z[j * nx + i].
+     * A origem é um múltiplo da célula, então um MDE com esse passo cai exatamente nos nós.
+     */
+    private static final class Grid {
+        private final double x0, y0, cell;
+        private final int nx, ny;
+        private final float[] z;
+
+        private Grid(double x0, double y0, double cell, int nx, int ny) {
+            this.x0 = x0;
+            this.y0 = y0;
+            this.cell = cell;
+            this.nx = nx;
+            this.ny = ny;
+            this.z = new float[nx * ny];
+            Arrays.fill(z, Float.NaN);
+        }
+
+        static Grid covering(TinMesh mesh, double cellSize) {
+            return covering(mesh.getX(), mesh.getY(), cellSize);
+        }
+
+        static Grid covering(double[] x, double[] y, double cellSize) {
+            double minX = Double.MAX_VALUE, minY = Double.MAX_VALUE, maxX = -Double.MAX_VALUE, maxY = -Double.MAX_VALUE;
+            for (int v = 0; v < x.length; v++) {
+                minX = Math.min(minX, x[v]);
+                maxX = Math.max(maxX, x[v]);
+                minY = Math.min(minY, y[v]);
+                maxY = Math.max(maxY, y[v]);
+            }
+            double width = maxX - minX, height = maxY - minY;
+
+            double cell = cellSize;
+            if (!(cell > 0)) {
+                // Espaçamento médio dos vértices, com 2 algarismos (o passo do MDE, em geral)
+                cell = Math.sqrt(Math.max(width * height, Double.MIN_NORMAL) / x.length);
+                double magnitude = Math.pow(10, Math.floor(Math.log10(cell)) - 1);
+                cell = Math.round(cell / magnitude) * magnitude;
+            }
+            while ((width / cell + 2) * (height / cell + 2) > MAX_NODES) cell *= 1.25;
+
+            double x0 = Math.ceil(minX / cell) * cell, y0 = Math.ceil(minY / cell) * cell;
+            int nx = Math.max(1, (int) Math.floor((maxX - x0) / cell) + 1);
+            int ny = Math.max(1, (int) Math.floor((maxY - y0) / cell) + 1);
+            return new Grid(x0, y0, cell, nx, ny);
+        }
+
+        /** Grade cujos nós são os pontos, cada um com a sua cota; null se não há uma assim. */
+        static Grid lattice(List<TopoPoint> points, double cellSize) {
+            int n = points.size();
+            double[] x = new double[n], y = new double[n];
+            for (int v = 0; v < n; v++) {
+                x[v] = points.get(v).getX();
+                y[v] = points.get(v).getY();
+            }
+            double cell = (cellSize > 0) ? cellSize : Math.min(smallestGap(x), smallestGap(y));
+            if (!(cell > 0) || Double.isInfinite(cell)) return null;
+
+            double minX = Arrays.stream(x).min().getAsDouble(), maxX = Arrays.stream(x).max().getAsDouble();
+            double minY = Arrays.stream(y).min().getAsDouble(), maxY = Arrays.stream(y).max().getAsDouble();
+            long nx = Math.round((maxX - minX) / cell) + 1, ny = Math.round((maxY - minY) / cell) + 1;
+            if (nx < 2 || ny < 2 || nx * ny != n || nx * ny > MAX_NODES) return null;
+
+            Grid grid = new Grid(minX, minY, cell, (int) nx, (int) ny);
+            for (int v = 0; v < n; v++) {
+                double fi = (x[v] - minX) / cell, fj = (y[v] - minY) / cell;
+                long i = Math.round(fi), j = Math.round(fj);
+                if (Math.abs(fi - i) > NODE_EPSILON || Math.abs(fj - j) > NODE_EPSILON) return null;
+                int node = (int) (j * nx + i);
+                if (!Float.isNaN(grid.z[node])) return null; // dois pontos no mesmo nó
+                grid.z[node] = (float) points.get(v).getZ();
+            }
+            return grid;
+        }
+
+        // Menor diferença positiva entre os valores (o passo, numa grade)
+        private static double smallestGap(double[] values) {
+            double[] sorted = values.clone();
+            Arrays.sort(sorted);
+            double gap = Double.POSITIVE_INFINITY;
+            for (int k = 1; k < sorted.length; k++) {
+                double d = sorted[k] - sorted[k - 1];
+                if (d > 0 && d < gap) gap = d;
+            }
+            return gap;
+        }
+    }
+}
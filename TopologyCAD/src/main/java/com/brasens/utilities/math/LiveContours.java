@@ -0,0 +1,506 @@
+package com.brasens.utilities.math;
+
+import com.brasens.model.TopoLineType;
+import com.brasens.model.objects.TopoObject;
+import com.brasens.model.objects.TopoPoint;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.function.Consumer;
+
+/**
+ * Curvas de nível presas a uma {@link TinSurface}. Cada edição da superfície refaz os segmentos
+ * só das posições de triângulo alteradas e reemenda só as polilinhas que passavam por elas (ou
+ * que agora se ligam a elas); as outras continuam sendo os mesmos objetos.
+ *
+ * Segue as regras do {@link ContourGenerator}: cota k vale k * intervalo, vértice na cota conta
+ * como acima dela e o ponto de corte é interpolado a partir do menor índice da aresta.
+ *
+ * Uso: criar na thread dona da superfície (fotografa a malha e passa a ouvir as edições), chamar
+ * {@link #build} em qualquer thread e, de volta à thread da superfície, {@link #follow}. Edições
+ * feitas enquanto isso ficam guardadas e são aplicadas no follow. Uma reconstrução da superfície
+ * desliga as curvas, que ficam como estão.
+ */
+public class LiveContours {
+
+    // Posições entre dois avisos de progresso (e verificações de cancelamento)
+    private static final int BUILD_STEP = 4_096;
+
+    // segLine de um segmento na lista livre
+    private static final int DEAD = -2;
+
+    private final TinSurface surface;
+    private final double interval;
+    private final Consumer<TinChange> listener = this::onChange;
+
+    // Fotografia da malha para build(); descartada no follow
+    private int[] snapshot;
+    private final int triangleCount;
+
+    // Coordenadas dos vértices (índices da superfície), atualizadas a cada edição
+    private double[] vx, vy, vz;
+
+    // Segmentos: cota, aresta de cada ponta, próximo segmento da mesma posição, polilinha
+    // (-1 = nenhuma) e a ponta ligada a cada ponta 2s e 2s + 1 (-1 = solta)
+    private long[] segLevel = new long[1024];
+    private long[] segEdge = new long[2 * 1024];
+    private int[] segNext = new int[1024];
+    private int[] segLine = new int[1024];
+    private int[] link = new int[2 * 1024];
+    private int[] visit = new int[1024];
+    private int segCount = 0;
+    private int freeSegment = -1;
+
+    // Primeiro segmento de cada posição de triângulo (-1 = nenhum)
+    private int[] slotHead = new int[0];
+    private int[] slotVisit = new int[0];
+    private int stamp = 0;
+
+    // Pontas soltas por (cota, aresta): hash aberto, remoção por deslocamento
+    private long[] looseLevel = new long[1024];
+    private long[] looseEdge = new long[1024];
+    private int[] looseEnd = filled(1024);
+    private int looseCount = 0;
+
+    // Polilinhas atuais (null = posição livre)
+    private final List<TopoObject> lines = new ArrayList<>();
+    private int[] freeLines = new int[16];
+    private int freeLineCount = 0;
+
+    // Trabalho de uma atualização: segmentos a reemendar, polilinhas aposentadas e o trecho percorrido
+    // (a construção inicial emenda tudo, então não guarda sementes)
+    private boolean recordSeeds = false;
+    private int[] seeds = new int[64];
+    private int seedCount = 0;
+    private int[] retired = new int[16];
+    private int retiredCount = 0;
+    private int[] chain = new int[64];
+
+    // Edições recebidas antes do follow (posições, com repetição)
+    private int[] pending = new int[64];
+    private int pendingCount = 0;
+    private Consumer<ContourChange> sink = null;
+    private boolean detached = false;
+
+    public LiveContours(TinSurface surface, double interval) {
+        this.surface = surface;
+        this.interval = interval;
+        this.snapshot = surface.copySlotTriangles();
+
+        int count = 0;
+        for (int t = 0; t < snapshot.length; t += 3) if (snapshot[t] >= 0) count++;
+        this.triangleCount = count;
+
+        int n = surface.getVertexCount();
+        vx = new double[n];
+        vy = new double[n];
+        vz = new double[n];
+        for (int v = 0; v < n; v++) readVertex(v);
+
+        surface.addListener(listener);
+    }
+
+    public TinSurface getSurface() {
+        return surface;
+    }
+
+    /** Triângulos da malha fotografada na criação. */
+    public int getTriangleCount() {
+        return triangleCount;
+    }
+
+    /**
+     * Gera as curvas da malha fotografada. Se o monitor pedir o cancelamento, para na próxima
+     * verificação com {@link CancellationException}.
+     */
+    public List<TopoObject> build(ContourMonitor monitor) {
+        int slots = snapshot.length / 3;
+        ensureSlots(slots);
+        for (int step = 0; step < slots; step += BUILD_STEP) {
+            checkCancelled(monitor);
+            monitor.progress(ContourMonitor.Phase.SWEEPING, (double) step / slots);
+            int stepEnd = Math.min(slots, step + BUILD_STEP);
+            for (int t = step; t < stepEnd; t++) {
+                if (snapshot[3 * t] >= 0) sweep(t, snapshot[3 * t], snapshot[3 * t + 1], snapshot[3 * t + 2]);
+            }
+        }
+        stamp++;
+        for (int s = 0; s < segCount; s++) {
+            if ((s % BUILD_STEP) == 0) {
+                checkCancelled(monitor);
+                monitor.progress(ContourMonitor.Phase.STITCHING, (double) s / segCount);
+            }
+            if (segLine[s] != DEAD && visit[s] != stamp) emitChain(s, null);
+        }
+        retiredCount = 0;
+        monitor.progress(ContourMonitor.Phase.STITCHING, 1.0);
+
+        List<TopoObject> contours = new ArrayList<>(lines.size());
+        for (TopoObject line : lines) if (line != null) contours.add(line);
+        return contours;
+    }
+
+    /**
+     * Passa a avisar o destino a cada edição da superfície, começando pelas edições guardadas
+     * desde a criação. Chamar na thread da superfície, depois de {@link #build}.
+     * @return false se a superfície foi reconstruída nesse meio tempo (as curvas não a seguem mais)
+     */
+    public boolean follow(Consumer<ContourChange> sink) {
+        if (detached) return false;
+        snapshot = null;
+        this.sink = sink;
+        recordSeeds = true;
+        if (pendingCount > 0) {
+            ContourChange change = update(pending, pendingCount);
+            pending = null;
+            pendingCount = 0;
+            sink.accept(change);
+        }
+        return true;
+    }
+
+    /** Para de ouvir a superfície; as curvas ficam como estão. */
+    public void close() {
+        detached = true;
+        sink = null;
+        surface.removeListener(listener);
+    }
+
+    private void onChange(TinChange change) {
+        if (detached) return;
+        if (change.isRebuilt()) {
+            close();
+            return;
+        }
+        int[] slots = change.getSlots();
+        if (sink == null) {
+            if (pendingCount + slots.length > pending.length) {
+                pending = Arrays.copyOf(pending, Math.max(2 * pending.length, pendingCount + slots.length));
+            }
+            System.arraycopy(slots, 0, pending, pendingCount, slots.length);
+            pendingCount += slots.length;
+            return;
+        }
+        sink.accept(update(slots, slots.length));
+    }
+
+    /**
+     * 1. Apaga os segmentos das posições alteradas (as pontas vizinhas ficam soltas);
+     * 2. varre de novo as que ainda têm triângulo, ligando as pontas novas às soltas;
+     * 3. reemenda as cadeias que tocam em algum segmento apagado ou novo.
+     */
+    private ContourChange update(int[] slots, int count) {
+        List<TopoObject> removed = new ArrayList<>();
+        List<TopoObject> added = new ArrayList<>();
+        ensureSlots(surface.getSlotCount());
+        ensureVertices(surface.getVertexCount());
+        seedCount = 0;
+        retiredCount = 0;
+        stamp++;
+
+        for (int i = 0; i < count; i++) {
+            int t = slots[i];
+            if (slotVisit[t] == stamp) continue;
+            slotVisit[t] = stamp;
+            for (int s = slotHead[t]; s >= 0; ) {
+                int next = segNext[s];
+                removeSegment(s);
+                s = next;
+            }
+            slotHead[t] = -1;
+        }
+
+        // Vértices movidos têm todas as posições em volta na lista, então basta relê-los aqui
+        for (int i = 0; i < count; i++) {
+            int t = slots[i];
+            if (slotVisit[t] != stamp || !surface.isTriangle(t)) continue;
+            for (int c = 0; c < 3; c++) readVertex(surface.getVertexIndex(t, c));
+        }
+        stamp++;
+        for (int i = 0; i < count; i++) {
+            int t = slots[i];
+            if (slotVisit[t] == stamp || !surface.isTriangle(t)) continue;
+            slotVisit[t] = stamp;
+            sweep(t, surface.getVertexIndex(t, 0), surface.getVertexIndex(t, 1), surface.getVertexIndex(t, 2));
+        }
+
+        for (int i = 0; i < seedCount; i++) {
+            int s = seeds[i];
+            if (segLine[s] != DEAD && visit[s] != stamp) emitChain(s, added);
+        }
+        for (int i = 0; i < retiredCount; i++) {
+            int line = retired[i];
+            removed.add(lines.get(line));
+            lines.set(line, null);
+            freeLines = ensure(freeLines, freeLineCount + 1);
+            freeLines[freeLineCount++] = line;
+        }
+        retiredCount = 0;
+        return new ContourChange(removed, added);
+    }
+
+    // Mesmo corte do ContourGenerator: cotas em (minZ, maxZ], duas arestas cortadas por cota
+    private void sweep(int slot, int a, int b, int c) {
+        double minZ = Math.min(vz[a], Math.min(vz[b], vz[c]));
+        double maxZ = Math.max(vz[a], Math.max(vz[b], vz[c]));
+        long first = (long) Math.floor(minZ / interval);
+        long last = (long) Math.floor(maxZ / interval);
+        for (long k = first; k <= last; k++) {
+            double z = k * interval;
+            if (z <= minZ) continue;
+            if (z > maxZ) break;
+
+            long e0 = 0, e1 = 0;
+            int count = 0;
+            if ((vz[a] < z) != (vz[b] < z)) { e0 = edgeKey(a, b); count++; }
+            if ((vz[b] < z) != (vz[c] < z)) { if (count == 0) e0 = edgeKey(b, c); else e1 = edgeKey(b, c); count++; }
+            if ((vz[c] < z) != (vz[a] < z) && count == 1) { e1 = edgeKey(c, a); count++; }
+            if (count == 2) addSegment(slot, k, e0, e1);
+        }
+    }
+
+    private void addSegment(int slot, long level, long e0, long e1) {
+        int s = freeSegment;
+        if (s >= 0) {
+            freeSegment = segNext[s];
+        } else {
+            if (segCount == segLevel.length) growSegments();
+            s = segCount++;
+        }
+        segLevel[s] = level;
+        segEdge[2 * s] = e0;
+        segEdge[2 * s + 1] = e1;
+        segLine[s] = -1;
+        segNext[s] = slotHead[slot];
+        slotHead[slot] = s;
+
+        for (int end = 2 * s; end <= 2 * s + 1; end++) {
+            int at = findLoose(level, segEdge[end]);
+            if (at >= 0) {
+                int other = looseEnd[at];
+                removeLooseAt(at);
+                link[end] = other;
+                link[other] = end;
+                addSeed(other >> 1);
+            } else {
+                link[end] = -1;
+                putLoose(level, segEdge[end], end);
+            }
+        }
+        addSeed(s);
+    }
+
+    private void removeSegment(int s) {
+        retire(segLine[s]);
+        for (int end = 2 * s; end <= 2 * s + 1; end++) {
+            int other = link[end];
+            if (other >= 0) {
+                link[other] = -1;
+                link[end] = -1;
+                putLoose(segLevel[s], segEdge[other], other);
+                addSeed(other >> 1);
+            } else {
+                removeLooseAt(findLoose(segLevel[s], segEdge[end]));
+            }
+        }
+        segLine[s] = DEAD;
+        segNext[s] = freeSegment;
+        freeSegment = s;
+    }
+
+    /**
+     * Percorre a cadeia que passa por seed (de uma ponta solta até a outra, ou o laço inteiro),
+     * aposenta as polilinhas antigas dos seus segmentos e cria a nova.
+     */
+    private void emitChain(int seed, List<TopoObject> added) {
+        // Volta até o começo: ponta sem ligação, ou o próprio seed num laço fechado
+        int in = 2 * seed;
+        boolean closed = false;
+        while (link[in] >= 0) {
+            in = link[in] ^ 1;
+            if ((in >> 1) == seed) {
+                closed = true;
+                break;
+            }
+        }
+
+        long level = segLevel[seed];
+        double z = level * interval;
+        List<TopoPoint> points = new ArrayList<>();
+        int length = 0;
+        addPoint(points, segEdge[in], z);
+        while (true) {
+            int s = in >> 1;
+            visit[s] = stamp;
+            retire(segLine[s]);
+            chain = ensure(chain, length + 1);
+            chain[length++] = s;
+
+            int exit = in ^ 1;
+            addPoint(points, segEdge[exit], z);
+            int next = link[exit];
+            if (next < 0 || visit[next >> 1] == stamp) break;
+            in = next;
+        }
+
+        if (closed && points.size() > 1) {
+            TopoPoint first = points.get(0), last = points.get(points.size() - 1);
+            if (first.getX() == last.getX() && first.getY() == last.getY()) points.remove(points.size() - 1);
+        }
+        int line = -1;
+        if (points.size() >= 2) {
+            boolean isMestra = Math.floorMod(level, 5L) == 0;
+            TopoObject contour = new TopoObject(points, closed && points.size() >= 3);
+            contour.setLayerName(isMestra ? "CURVA_MESTRA" : "CURVA_NORMAL");
+            contour.setType(isMestra ? TopoLineType.CURVA_MESTRA : TopoLineType.CURVA_INTERMEDIARIA);
+            if (freeLineCount > 0) {
+                line = freeLines[--freeLineCount];
+                lines.set(line, contour);
+            } else {
+                line = lines.size();
+                lines.add(contour);
+            }
+            if (added != null) added.add(contour);
+        }
+        for (int i = 0; i < length; i++) segLine[chain[i]] = line;
+    }
+
+    // Polilinha antiga deixa de valer; a posição só é reutilizada no fim da atualização
+    private void retire(int line) {
+        if (line < 0 || lines.get(line) == null) return;
+        for (int i = 0; i < retiredCount; i++) if (retired[i] == line) return;
+        retired = ensure(retired, retiredCount + 1);
+        retired[retiredCount++] = line;
+    }
+
+    private void addPoint(List<TopoPoint> points, long edge, double z) {
+        int v1 = (int) (edge >>> 32), v2 = (int) edge;
+        double t = (z - vz[v1]) / (vz[v2] - vz[v1]);
+        double px = vx[v1] + t * (vx[v2] - vx[v1]);
+        double py = vy[v1] + t * (vy[v2] - vy[v1]);
+        if (!points.isEmpty()) {
+            TopoPoint last = points.get(points.size() - 1);
+            if (last.getX() == px && last.getY() == py) return;
+        }
+        points.add(new TopoPoint("INT", px, py, z));
+    }
+
+    private void addSeed(int s) {
+        if (!recordSeeds) return;
+        seeds = ensure(seeds, seedCount + 1);
+        seeds[seedCount++] = s;
+    }
+
+    private static long edgeKey(int v1, int v2) {
+        return (v1 < v2) ? ((long) v1 << 32) | v2 : ((long) v2 << 32) | v1;
+    }
+
+    // --- Pontas soltas ---
+
+    private static int hash(long level, long edge) {
+        return (int) (((edge ^ (level * 0xC2B2AE3D27D4EB4FL)) * 0x9E3779B97F4A7C15L) >>> 32);
+    }
+
+    private int findLoose(long level, long edge) {
+        int mask = looseEnd.length - 1;
+        for (int i = hash(level, edge) & mask; looseEnd[i] >= 0; i = (i + 1) & mask) {
+            if (looseEdge[i] == edge && looseLevel[i] == level) return i;
+        }
+        return -1;
+    }
+
+    private void putLoose(long level, long edge, int end) {
+        if (2 * (looseCount + 1) > looseEnd.length) growLoose();
+        int mask = looseEnd.length - 1;
+        int i = hash(level, edge) & mask;
+        while (looseEnd[i] >= 0) i = (i + 1) & mask;
+        looseLevel[i] = level;
+        looseEdge[i] = edge;
+        looseEnd[i] = end;
+        looseCount++;
+    }
+
+    // Sondagem linear: puxa para o buraco as entradas seguintes que podem ocupá-lo
+    private void removeLooseAt(int i) {
+        int mask = looseEnd.length - 1;
+        int j = i;
+        while (true) {
+            j = (j + 1) & mask;
+            if (looseEnd[j] < 0) break;
+            int home = hash(looseLevel[j], looseEdge[j]) & mask;
+            if (((j - home) & mask) >= ((j - i) & mask)) {
+                looseLevel[i] = looseLevel[j];
+                looseEdge[i] = looseEdge[j];
+                looseEnd[i] = looseEnd[j];
+                i = j;
+            }
+        }
+        looseEnd[i] = -1;
+        looseCount--;
+    }
+
+    private void growLoose() {
+        long[] levels = looseLevel, edges = looseEdge;
+        int[] ends = looseEnd;
+        looseLevel = new long[2 * ends.length];
+        looseEdge = new long[2 * ends.length];
+        looseEnd = filled(2 * ends.length);
+        looseCount = 0;
+        for (int i = 0; i < ends.length; i++) {
+            if (ends[i] >= 0) putLoose(levels[i], edges[i], ends[i]);
+        }
+    }
+
+    // --- Capacidade ---
+
+    private void growSegments() {
+        int capacity = 2 * segLevel.length;
+        segLevel = Arrays.copyOf(segLevel, capacity);
+        segEdge = Arrays.copyOf(segEdge, 2 * capacity);
+        segNext = Arrays.copyOf(segNext, capacity);
+        segLine = Arrays.copyOf(segLine, capacity);
+        link = Arrays.copyOf(link, 2 * capacity);
+        visit = Arrays.copyOf(visit, capacity);
+    }
+
+    private void ensureSlots(int slots) {
+        if (slots <= slotHead.length) return;
+        int old = slotHead.length;
+        int capacity = Math.max(slots, old + old / 2);
+        slotHead = Arrays.copyOf(slotHead, capacity);
+        Arrays.fill(slotHead, old, capacity, -1);
+        slotVisit = Arrays.copyOf(slotVisit, capacity);
+    }
+
+    private void ensureVertices(int n) {
+        if (n <= vx.length) return;
+        int capacity = Math.max(n, vx.length + vx.length / 2);
+        vx = Arrays.copyOf(vx, capacity);
+        vy = Arrays.copyOf(vy, capacity);
+        vz = Arrays.copyOf(vz, capacity);
+    }
+
+    private void readVertex(int v) {
+        TopoPoint p = surface.getVertex(v);
+        if (p == null) return;
+        vx[v] = p.getX();
+        vy[v] = p.getY();
+        vz[v] = p.getZ();
+    }
+
+    private static void checkCancelled(ContourMonitor monitor) {
+        if (monitor.isCancelled()) throw new CancellationException("Geração de curvas cancelada");
+    }
+
+    private static int[] ensure(int[] array, int size) {
+        return (size <= array.length) ? array : Arrays.copyOf(array, Math.max(size, 2 * array.length));
+    }
+
+    private static int[] filled(int length) {
+        int[] array = new int[length];
+        Arrays.fill(array, -1);
+        return array;
+    }
+}
@@ -0,0 +1,74 @@
+package com.brasens.utilities.math;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Arquivo mapeado em memória, acessado por posição em bytes (long). Um MappedByteBuffer cobre no
+ * máximo 2 GB, então o arquivo é mapeado em segmentos de 1 GB; valores alinhados ao seu tamanho
+ * (double em múltiplos de 8, int em múltiplos de 4) nunca ficam divididos entre dois segmentos.
+ * As páginas são carregadas pelo sistema operacional sob demanda, fora do heap.
+ */
+final class MappedFile implements Closeable {
+
+    private static final int SEGMENT_SHIFT = 30;
+    private static final long SEGMENT_SIZE = 1L << SEGMENT_SHIFT;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer[] segments;
+
+    /** Mapeia o arquivo inteiro; com {@code size >= 0} ele é criado/redimensionado para leitura e escrita. */
+    MappedFile(Path path, long size) throws IOException {
+        boolean writable = size >= 0;
+        channel = writable
+                ? FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)
+                : FileChannel.open(path, StandardOpenOption.READ);
+        if (writable) {
+            channel.truncate(size);
+            // Estende o arquivo até o tamanho pedido (o mapeamento não cresce sozinho)
+            if (channel.size() < size) channel.write(ByteBuffer.wrap(new byte[1]), size - 1);
+        }
+        long length = channel.size();
+
+        int count = (int) ((length + SEGMENT_SIZE - 1) >>> SEGMENT_SHIFT);
+        segments = new MappedByteBuffer[count];
+        FileChannel.MapMode mode = writable ? FileChannel.MapMode.READ_WRITE : FileChannel.MapMode.READ_ONLY;
+        for (int s = 0; s < count; s++) {
+            long start = (long) s << SEGMENT_SHIFT;
+            segments[s] = channel.map(mode, start, Math.min(SEGMENT_SIZE, length - start));
+        }
+    }
+
+    double getDouble(long position) {
+        return segments[(int) (position >>> SEGMENT_SHIFT)].getDouble((int) (position & (SEGMENT_SIZE - 1)));
+    }
+
+    void putDouble(long position, double value) {
+        segments[(int) (position >>> SEGMENT_SHIFT)].putDouble((int) (position & (SEGMENT_SIZE - 1)), value);
+    }
+
+    int getInt(long position) {
+        return segments[(int) (position >>> SEGMENT_SHIFT)].getInt((int) (position & (SEGMENT_SIZE - 1)));
+    }
+
+    void putInt(long position, int value) {
+        segments[(int) (position >>> SEGMENT_SHIFT)].putInt((int) (position & (SEGMENT_SIZE - 1)), value);
+    }
+
+    long getLong(long position) {
+        return segments[(int) (position >>> SEGMENT_SHIFT)].getLong((int) (position & (SEGMENT_SIZE - 1)));
+    }
+
+    @Override
+    public void close() throws IOException {
+        for (MappedByteBuffer segment : segments) {
+            if (segment != null && !segment.isReadOnly()) segment.force();
+        }
+        channel.close();
+    }
+}
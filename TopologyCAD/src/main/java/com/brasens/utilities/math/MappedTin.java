@@ -0,0 +1,168 @@
+package com.brasens.utilities.math;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Malha TIN gravada em disco e lida por mapeamento de memória: só as páginas usadas são
+ * carregadas, então malhas maiores que o heap podem ser percorridas por regiões.
+ *
+ * Formato (big-endian):
+ * <pre>
+ *   0   int magic "TIN1", int versão
+ *   8   long vértices, long triângulos
+ *   24  int blocos, int reservado
+ *   32  double minX, minY, maxX, maxY, minZ, maxZ
+ *   80  blocos: long primeiro triângulo, long quantidade, double minX, minY, maxX, maxY
+ *   ..  vértices: double x, y, z (coordenadas absolutas)
+ *   ..  triângulos: int a, b, c (anti-horário)
+ * </pre>
+ * Os triângulos de cada bloco estão próximos no espaço (um bloco por ladrilho da triangulação).
+ */
+@Getter
+public class MappedTin implements Closeable {
+
+    static final int MAGIC = 0x54494E31;
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 80;
+    static final int BLOCK_SIZE = 48;
+    static final int VERTEX_SIZE = 24;
+    static final int TRIANGLE_SIZE = 12;
+
+    private final long vertexCount;
+    private final long triangleCount;
+    private final int blockCount;
+    private final double minX, minY, maxX, maxY, minZ, maxZ;
+
+    @Getter(AccessLevel.NONE)
+    private final MappedFile file;
+    @Getter(AccessLevel.NONE)
+    private final long vertexOffset;
+    @Getter(AccessLevel.NONE)
+    private final long triangleOffset;
+
+    private MappedTin(MappedFile file) throws IOException {
+        this.file = file;
+        if (file.getInt(0) != MAGIC || file.getInt(4) != VERSION) {
+            file.close();
+            throw new IOException("Arquivo TIN inválido ou de versão desconhecida");
+        }
+        vertexCount = file.getLong(8);
+        triangleCount = file.getLong(16);
+        blockCount = file.getInt(24);
+        minX = file.getDouble(32);
+        minY = file.getDouble(40);
+        maxX = file.getDouble(48);
+        maxY = file.getDouble(56);
+        minZ = file.getDouble(64);
+        maxZ = file.getDouble(72);
+        vertexOffset = HEADER_SIZE + (long) BLOCK_SIZE * blockCount;
+        triangleOffset = vertexOffset + VERTEX_SIZE * vertexCount;
+    }
+
+    public static MappedTin open(File file) throws IOException {
+        return new MappedTin(new MappedFile(file.toPath(), -1));
+    }
+
+    public double getX(int v) {
+        return file.getDouble(vertexOffset + (long) VERTEX_SIZE * v);
+    }
+
+    public double getY(int v) {
+        return file.getDouble(vertexOffset + (long) VERTEX_SIZE * v + 8);
+    }
+
+    public double getZ(int v) {
+        return file.getDouble(vertexOffset + (long) VERTEX_SIZE * v + 16);
+    }
+
+    public int vertex(long triangle, int corner) {
+        return file.getInt(triangleOffset + TRIANGLE_SIZE * triangle + 4L * corner);
+    }
+
+    public long getBlockFirstTriangle(int block) {
+        return file.getLong(HEADER_SIZE + (long) BLOCK_SIZE * block);
+    }
+
+    public long getBlockTriangleCount(int block) {
+        return file.getLong(HEADER_SIZE + (long) BLOCK_SIZE * block + 8);
+    }
+
+    /** Caixa envolvente do bloco: {minX, minY, maxX, maxY}. */
+    public double[] getBlockBounds(int block) {
+        long base = HEADER_SIZE + (long) BLOCK_SIZE * block + 16;
+        return new double[]{file.getDouble(base), file.getDouble(base + 8), file.getDouble(base + 16), file.getDouble(base + 24)};
+    }
+
+    /** Carrega um bloco como malha em memória (vértices renumerados de 0 em diante). */
+    public TinMesh loadBlock(int block) {
+        return load(new int[]{block}, null);
+    }
+
+    /** Como {@link #loadBlock(int)}, devolvendo em globalIds[0] o índice global de cada vértice. */
+    TinMesh loadBlock(int block, int[][] globalIds) {
+        return load(new int[]{block}, globalIds);
+    }
+
+    /** Carrega os blocos que tocam a janela dada como uma única malha em memória. */
+    public TinMesh loadRegion(double regionMinX, double regionMinY, double regionMaxX, double regionMaxY) {
+        int[] blocks = new int[blockCount];
+        int count = 0;
+        for (int b = 0; b < blockCount; b++) {
+            double[] bounds = getBlockBounds(b);
+            if (bounds[0] <= regionMaxX && bounds[2] >= regionMinX && bounds[1] <= regionMaxY && bounds[3] >= regionMinY) {
+                blocks[count++] = b;
+            }
+        }
+        return load(Arrays.copyOf(blocks, count), null);
+    }
+
+    private TinMesh load(int[] blocks, int[][] globalIds) {
+        long total = 0;
+        for (int b : blocks) total += getBlockTriangleCount(b);
+        if (3 * total > Integer.MAX_VALUE - 8) throw new IllegalStateException("Região grande demais para carregar de uma vez");
+
+        // 1. Triângulos com os índices globais
+        int[] triangles = new int[(int) (3 * total)];
+        int k = 0;
+        for (int b : blocks) {
+            long first = getBlockFirstTriangle(b);
+            long count = getBlockTriangleCount(b);
+            for (long t = first; t < first + count; t++) {
+                triangles[k++] = vertex(t, 0);
+                triangles[k++] = vertex(t, 1);
+                triangles[k++] = vertex(t, 2);
+            }
+        }
+
+        // 2. Renumera os vértices usados (em ordem crescente do índice global)
+        int[] used = triangles.clone();
+        Arrays.sort(used);
+        int unique = 0;
+        for (int i = 0; i < used.length; i++) {
+            if (i == 0 || used[i] != used[i - 1]) used[unique++] = used[i];
+        }
+        for (int i = 0; i < triangles.length; i++) triangles[i] = Arrays.binarySearch(used, 0, unique, triangles[i]);
+
+        double[] x = new double[unique];
+        double[] y = new double[unique];
+        double[] z = new double[unique];
+        for (int v = 0; v < unique; v++) {
+            x[v] = getX(used[v]);
+            y[v] = getY(used[v]);
+            z[v] = getZ(used[v]);
+        }
+        if (globalIds != null) globalIds[0] = Arrays.copyOf(used, unique);
+        return TinMesh.fromTriangles(triangles, (int) total, x, y, z, null);
+    }
+
+    @Override
+    public void close() throws IOException {
+        file.close();
+    }
+}
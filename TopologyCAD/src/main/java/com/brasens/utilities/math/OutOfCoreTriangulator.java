@@ -0,0 +1,754 @@
+package com.brasens.utilities.math;
+
+import com.brasens.functions.PointImporter;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Triangulação de Delaunay de nuvens maiores que o heap, gravada como {@link MappedTin}.
+ *
+ * 1. Os pontos do arquivo são copiados para disco e distribuídos numa quadtree adaptativa: uma
+ *    folha é dividida enquanto tem mais de {@link #LEAF_POINTS} pontos, então regiões densas
+ *    ganham folhas menores. Os pontos são gravados folha a folha num arquivo mapeado.
+ * 2. Os ladrilhos são os maiores nós da árvore com até {@code tilePoints} pontos. Cada um é
+ *    triangulado junto com um halo em volta, que encolhe onde a vizinhança é densa demais. Um
+ *    triângulo é definitivo quando seu circuncírculo cabe na região carregada: nenhum ponto de
+ *    fora pode estar dentro dele. Cada triângulo é gravado por um único ladrilho ({@link Level#emitter}).
+ * 3. Vértices do ladrilho com algum triângulo não definitivo formam a "costura", gravada em disco.
+ *    Uma costura pequena é triangulada de uma vez; uma grande vira um novo nível, ladrilhado do
+ *    mesmo jeito, cuja costura é tratada da mesma forma. Os triângulos a partir do segundo nível
+ *    são testados contra os pontos em disco e contra os ladrilhos dos níveis anteriores.
+ *
+ * Só um ladrilho (mais o halo), a árvore de cada nível e a costura final ficam no heap, qualquer
+ * que seja o tamanho ou a concentração da nuvem. O resultado é uma triangulação de Delaunay da
+ * nuvem inteira: o desempate dos casos cocirculares usa a posição do ponto no arquivo ordenado,
+ * igual em todos os ladrilhos.
+ */
+public final class OutOfCoreTriangulator {
+
+    // Máximo de pontos por folha da árvore (as buscas varrem folhas inteiras)
+    private static final int LEAF_POINTS = 256;
+
+    // Máximo de pontos por ladrilho (e no seu halo); costura triangulada de uma vez até esse tamanho
+    private static final int TILE_POINTS = 1 << 18;
+    private static final int SEAM_POINTS = 1 << 22;
+
+    // Halo inicial, em fração do lado do ladrilho, e o mínimo a que encolhe em vizinhança densa
+    private static final double HALO_FRACTION = 1.0 / 8;
+    private static final double MIN_HALO_FRACTION = 1.0 / 256;
+
+    // Níveis divididos de uma vez numa passada, passadas de contagem e profundidade máximas
+    private static final int MAX_SPLIT_LEVELS = 8;
+    private static final int MAX_PASSES = 32;
+    private static final int MAX_DEPTH = 48;
+
+    // Uma costura que não encolhe pelo menos isso em relação ao nível é triangulada de uma vez
+    private static final double MIN_SEAM_SHRINK = 0.75;
+
+    private final Path workDir;
+    private final int tilePoints;
+    private final int seamPoints;
+
+    private long pointCount;
+    private double minX = Double.MAX_VALUE, minY = Double.MAX_VALUE, minZ = Double.MAX_VALUE;
+    private double maxX = -Double.MAX_VALUE, maxY = -Double.MAX_VALUE, maxZ = -Double.MAX_VALUE;
+
+    // Coordenadas locais (absoluta - origem), iguais para todos os ladrilhos
+    private double originX, originY;
+
+    // Pontos na ordem das folhas do primeiro nível; a posição no arquivo é o índice global
+    private MappedFile points;
+
+    // Níveis já ladrilhados: o primeiro com todos os pontos, cada outro com a costura do anterior
+    private final List<Level> levels = new ArrayList<>();
+
+    private DataOutputStream triangleOut;
+    private long triangleCount;
+    private final List<double[]> blocks = new ArrayList<>();
+
+    private OutOfCoreTriangulator(Path workDir, int tilePoints, int seamPoints) {
+        this.workDir = workDir;
+        this.tilePoints = tilePoints;
+        this.seamPoints = seamPoints;
+    }
+
+    /**
+     * Triangula os pontos do arquivo texto (mesmo formato da importação de pontos) e grava a
+     * malha em {@code tinFile}. Os arquivos temporários ficam ao lado dele e são apagados no fim.
+     */
+    public static MappedTin triangulate(File pointsFile, File tinFile) throws IOException {
+        return triangulate(pointsFile, tinFile, TILE_POINTS, SEAM_POINTS);
+    }
+
+    /** Igual a {@link #triangulate(File, File)}, com os limites de ladrilho e de costura explícitos. */
+    static MappedTin triangulate(File pointsFile, File tinFile, int tilePoints, int seamPoints) throws IOException {
+        Path target = tinFile.toPath().toAbsolutePath();
+        Path workDir = Files.createTempDirectory(target.getParent(), "tin-");
+        try {
+            new OutOfCoreTriangulator(workDir, tilePoints, seamPoints).run(pointsFile, target);
+        } finally {
+            deleteDirectory(workDir);
+        }
+        return MappedTin.open(tinFile);
+    }
+
+    private void run(File pointsFile, Path target) throws IOException {
+        Path raw = workDir.resolve("points.raw");
+        Path sorted = workDir.resolve("points.bin");
+        Path triangles = workDir.resolve("triangles.bin");
+
+        // 1. Cópia binária sequencial dos pontos (x, y, z) e caixa envolvente
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(raw), 1 << 16))) {
+            PointImporter.forEachPoint(pointsFile, (x, y, z) -> {
+                out.writeDouble(x);
+                out.writeDouble(y);
+                out.writeDouble(z);
+                minX = Math.min(minX, x); maxX = Math.max(maxX, x);
+                minY = Math.min(minY, y); maxY = Math.max(maxY, y);
+                minZ = Math.min(minZ, z); maxZ = Math.max(maxZ, z);
+                pointCount++;
+            });
+        }
+        if (pointCount >= Integer.MAX_VALUE) throw new IOException("Nuvem com pontos demais (máximo " + Integer.MAX_VALUE + ")");
+
+        // 2. Árvore do primeiro nível e pontos gravados folha a folha
+        originX = (pointCount > 0) ? GeometricPredicates.exactOrigin(minX, maxX) : 0;
+        originY = (pointCount > 0) ? GeometricPredicates.exactOrigin(minY, maxY) : 0;
+        points = new MappedFile(sorted, MappedTin.VERTEX_SIZE * pointCount);
+        Level base = null;
+        if (pointCount > 0) {
+            base = new Level(0, minX - originX, minY - originY, maxX - originX, maxY - originY);
+            base.build(sink -> forEachRaw(raw, (x, y, z) -> sink.accept(x - originX, y - originY)));
+            bucketPoints(base, raw);
+        }
+        Files.delete(raw);
+
+        // 3. Ladrilhos, nível a nível, e a costura final
+        try {
+            triangleOut = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(triangles), 1 << 16));
+            if (pointCount >= 3) triangulateLevels(base);
+            triangleOut.close();
+            points.close();
+            points = null;
+
+            writeTin(target, sorted, triangles);
+        } finally {
+            if (triangleOut != null) triangleOut.close();
+            if (points != null) points.close();
+        }
+    }
+
+    private void bucketPoints(Level level, Path raw) throws IOException {
+        long[] fill = level.start.clone();
+        forEachRaw(raw, (x, y, z) -> {
+            long position = MappedTin.VERTEX_SIZE * fill[level.leafOf(x - originX, y - originY)]++;
+            points.putDouble(position, x);
+            points.putDouble(position + 8, y);
+            points.putDouble(position + 16, z);
+        });
+    }
+
+    private void triangulateLevels(Level level) throws IOException {
+        long input = pointCount;
+        while (true) {
+            levels.add(level);
+            Seam seam = new Seam(workDir.resolve("seam" + levels.size() + ".bin"));
+            for (int tile = 0; tile < level.tileCount; tile++) triangulateTile(level, tile, seam);
+            seam.close();
+            level.releaseIds();
+
+            if (seam.count < 3) return;
+            if (seam.count <= seamPoints || seam.count > MIN_SEAM_SHRINK * input) {
+                triangulateSeam(seam);
+                return;
+            }
+
+            // Costura grande: vira o próximo nível
+            Level next = new Level(levels.size(), seam.minX, seam.minY, seam.maxX, seam.maxY);
+            next.build(sink -> seam.forEach(id -> sink.accept(pointX(id), pointY(id))));
+            next.bucketIds(seam);
+            Files.delete(seam.path);
+            input = seam.count;
+            level = next;
+        }
+    }
+
+    private void triangulateTile(Level level, int tile, Seam seam) throws IOException {
+        long own0 = level.tileStart[tile], own1 = level.tileStart[tile + 1];
+        if (own0 == own1) return;
+
+        // 1. Pontos das folhas que tocam a região carregada (ladrilho + halo)
+        int[] leaves = level.leavesIn(level.tileBounds[4 * tile], level.tileBounds[4 * tile + 1],
+                level.tileBounds[4 * tile + 2], level.tileBounds[4 * tile + 3]);
+        long total = 0;
+        for (int leaf : leaves) total += level.count[leaf];
+        int m = (int) total;
+        double[] lx = new double[m];
+        double[] ly = new double[m];
+        int[] ids = new int[m];
+        boolean[] owned = new boolean[m];
+        int k = 0;
+        for (int leaf : leaves) {
+            for (long p = level.start[leaf]; p < level.start[leaf] + level.count[leaf]; p++) {
+                int id = level.id(p);
+                lx[k] = pointX(id);
+                ly[k] = pointY(id);
+                ids[k] = id;
+                owned[k] = p >= own0 && p < own1;
+                k++;
+            }
+        }
+
+        // 2. Triangulação local
+        int[] order = DelaunayTriangulator.insertionOrder(lx, ly);
+        TinBuilder builder = DelaunayTriangulator.build(lx, ly, ids, order);
+        boolean[] inSeam = new boolean[m];
+        if (builder == null) {
+            // Pontos colineares: tudo vai para a costura
+            for (int v : order) inSeam[v] = owned[v];
+        } else {
+            // 3. Triângulos definitivos emitidos por este ladrilho; os outros marcam a costura
+            double[] block = {Double.MAX_VALUE, Double.MAX_VALUE, -Double.MAX_VALUE, -Double.MAX_VALUE};
+            long first = triangleCount;
+            double[] circle = new double[3];
+            for (int t = 0; t < builder.triCount; t++) {
+                int a = builder.tri[3 * t], b = builder.tri[3 * t + 1], c = builder.tri[3 * t + 2];
+                boolean done = false;
+                if (!builder.isGhost(t)) {
+                    // Circuncírculo degenerado (quase colinear): fica para a costura, que o descarta
+                    done = circumcircle(ids[a], lx[a], ly[a], ids[b], lx[b], ly[b], ids[c], lx[c], ly[c], circle)
+                            && level.contains(tile, circle);
+                    if (done && level.emitter(ids[a], lx[a], ly[a], ids[b], lx[b], ly[b], ids[c], lx[c], ly[c], circle) == tile
+                            && (level.index == 0 || isNew(level.index, ids[a], lx[a], ly[a], ids[b], lx[b], ly[b], ids[c], lx[c], ly[c], circle))) {
+                        writeTriangle(ids[a], ids[b], ids[c]);
+                        for (int v : new int[]{a, b, c}) expand(block, lx[v], ly[v]);
+                    }
+                }
+                if (done) continue;
+                if (a != TinBuilder.GHOST && owned[a]) inSeam[a] = true;
+                if (b != TinBuilder.GHOST && owned[b]) inSeam[b] = true;
+                if (c != TinBuilder.GHOST && owned[c]) inSeam[c] = true;
+            }
+            addBlock(first, block);
+        }
+        for (int v = 0; v < m; v++) {
+            if (inSeam[v]) seam.add(ids[v], lx[v], ly[v]);
+        }
+    }
+
+    private void triangulateSeam(Seam seam) throws IOException {
+        int m = (int) seam.count;
+        int[] ids = new int[m];
+        int[] k = {0};
+        seam.forEach(id -> ids[k[0]++] = id);
+        double[] lx = new double[m];
+        double[] ly = new double[m];
+        for (int i = 0; i < m; i++) {
+            lx[i] = pointX(ids[i]);
+            ly[i] = pointY(ids[i]);
+        }
+
+        TinBuilder builder = DelaunayTriangulator.build(lx, ly, ids, DelaunayTriangulator.insertionOrder(lx, ly));
+        if (builder == null) return;
+
+        // Triângulos que nenhum ladrilho emitiu e cujo circuncírculo está vazio
+        double[] block = {Double.MAX_VALUE, Double.MAX_VALUE, -Double.MAX_VALUE, -Double.MAX_VALUE};
+        long first = triangleCount;
+        double[] circle = new double[3];
+        for (int t = 0; t < builder.triCount; t++) {
+            if (builder.isGhost(t)) continue;
+            int a = builder.tri[3 * t], b = builder.tri[3 * t + 1], c = builder.tri[3 * t + 2];
+            if (!circumcircle(ids[a], lx[a], ly[a], ids[b], lx[b], ly[b], ids[c], lx[c], ly[c], circle)) continue;
+            if (!isNew(levels.size(), ids[a], lx[a], ly[a], ids[b], lx[b], ly[b], ids[c], lx[c], ly[c], circle)) continue;
+
+            writeTriangle(ids[a], ids[b], ids[c]);
+            for (int v : new int[]{a, b, c}) expand(block, lx[v], ly[v]);
+        }
+        addBlock(first, block);
+    }
+
+    /**
+     * O triângulo ainda não foi gravado por nenhum dos primeiros {@code levelCount} níveis e é da
+     * triangulação da nuvem inteira (circuncírculo vazio)?
+     */
+    private boolean isNew(int levelCount, int a, double ax, double ay, int b, double bx, double by,
+                          int c, double cx, double cy, double[] circle) {
+        for (int j = 0; j < levelCount; j++) {
+            if (levels.get(j).emitter(a, ax, ay, b, bx, by, c, cx, cy, circle) >= 0) return false;
+        }
+        return isEmpty(a, ax, ay, b, bx, by, c, cx, cy, circle);
+    }
+
+    /** Nenhum ponto em disco está dentro do circuncírculo? (Pontos repetidos dos vértices não contam.) */
+    private boolean isEmpty(int a, double ax, double ay, int b, double bx, double by,
+                            int c, double cx, double cy, double[] circle) {
+        double r = Math.sqrt(circle[2]);
+        r += 1e-7 * r + 1e-12 * (Math.abs(circle[0]) + Math.abs(circle[1]));
+        double r2 = r * r;
+
+        double[] qx = {ax, bx, cx, 0};
+        double[] qy = {ay, by, cy, 0};
+        int[] rank = {a, b, c, 0};
+
+        Level base = levels.get(0);
+        for (int leaf : base.leavesIn(circle[0] - r, circle[1] - r, circle[0] + r, circle[1] + r)) {
+            for (long p = base.start[leaf]; p < base.start[leaf] + base.count[leaf]; p++) {
+                double px = pointX(p), py = pointY(p);
+                if ((px == ax && py == ay) || (px == bx && py == by) || (px == cx && py == cy)) continue;
+                double dx = px - circle[0], ey = py - circle[1];
+                if (dx * dx + ey * ey > r2) continue;
+                qx[3] = px;
+                qy[3] = py;
+                rank[3] = (int) p;
+                if (TinBuilder.inCircle(qx, qy, rank, 0, 1, 2, 3)) return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Centro e raio² do circuncírculo em {@code out}, calculados sempre a partir do vértice de
+     * menor índice global, para que o mesmo triângulo dê o mesmo resultado em qualquer ladrilho.
+     */
+    private static boolean circumcircle(int a, double ax, double ay, int b, double bx, double by,
+                                        int c, double cx, double cy, double[] out) {
+        if (b < a && b < c) {
+            return circumcircle(b, bx, by, c, cx, cy, a, ax, ay, out);
+        } else if (c < a && c < b) {
+            return circumcircle(c, cx, cy, a, ax, ay, b, bx, by, out);
+        }
+        double ux0 = bx - ax, uy0 = by - ay;
+        double vx0 = cx - ax, vy0 = cy - ay;
+        double d = 2 * (ux0 * vy0 - uy0 * vx0);
+        if (!(d > 0)) return false;
+
+        double b2 = ux0 * ux0 + uy0 * uy0;
+        double c2 = vx0 * vx0 + vy0 * vy0;
+        double ux = (vy0 * b2 - uy0 * c2) / d;
+        double uy = (ux0 * c2 - vx0 * b2) / d;
+
+        out[0] = ax + ux;
+        out[1] = ay + uy;
+        out[2] = ux * ux + uy * uy;
+        return Double.isFinite(out[2]);
+    }
+
+    private double pointX(long p) {
+        return points.getDouble(MappedTin.VERTEX_SIZE * p) - originX;
+    }
+
+    private double pointY(long p) {
+        return points.getDouble(MappedTin.VERTEX_SIZE * p + 8) - originY;
+    }
+
+    private void writeTriangle(int a, int b, int c) throws IOException {
+        triangleOut.writeInt(a);
+        triangleOut.writeInt(b);
+        triangleOut.writeInt(c);
+        triangleCount++;
+    }
+
+    private void expand(double[] block, double x, double y) {
+        block[0] = Math.min(block[0], x + originX);
+        block[1] = Math.min(block[1], y + originY);
+        block[2] = Math.max(block[2], x + originX);
+        block[3] = Math.max(block[3], y + originY);
+    }
+
+    private void addBlock(long first, double[] bounds) {
+        if (triangleCount == first) return;
+        blocks.add(new double[]{first, triangleCount - first, bounds[0], bounds[1], bounds[2], bounds[3]});
+    }
+
+    // Cabeçalho + índice de blocos, seguidos dos vértices e triângulos já gravados
+    private void writeTin(Path target, Path vertices, Path triangles) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(MappedTin.HEADER_SIZE + MappedTin.BLOCK_SIZE * blocks.size());
+        header.putInt(MappedTin.MAGIC).putInt(MappedTin.VERSION);
+        header.putLong(pointCount).putLong(triangleCount);
+        header.putInt(blocks.size()).putInt(0);
+        header.putDouble(minX).putDouble(minY).putDouble(maxX).putDouble(maxY).putDouble(minZ).putDouble(maxZ);
+        for (double[] block : blocks) {
+            header.putLong((long) block[0]).putLong((long) block[1]);
+            header.putDouble(block[2]).putDouble(block[3]).putDouble(block[4]).putDouble(block[5]);
+        }
+        header.flip();
+
+        try (FileChannel out = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (header.hasRemaining()) out.write(header);
+            append(out, vertices);
+            append(out, triangles);
+        }
+    }
+
+    private static void append(FileChannel out, Path source) throws IOException {
+        try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ)) {
+            long position = 0, size = in.size();
+            while (position < size) position += in.transferTo(position, size - position, out);
+        }
+    }
+
+    private void forEachRaw(Path raw, PointImporter.PointVisitor visitor) throws IOException {
+        try (DataInputStream in = open(raw)) {
+            for (long i = 0; i < pointCount; i++) visitor.accept(in.readDouble(), in.readDouble(), in.readDouble());
+        }
+    }
+
+    private static DataInputStream open(Path path) throws IOException {
+        return new DataInputStream(new BufferedInputStream(Files.newInputStream(path), 1 << 16));
+    }
+
+    private static void deleteDirectory(Path dir) {
+        try (Stream<Path> files = Files.walk(dir)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        } catch (IOException e) {
+            System.err.println("Não foi possível apagar os temporários em " + dir + ": " + e.getMessage());
+        }
+    }
+
+    private interface PointSink {
+        void accept(double x, double y) throws IOException;
+    }
+
+    private interface PointSource {
+        void forEach(PointSink sink) throws IOException;
+    }
+
+    private interface IdVisitor {
+        void accept(int id) throws IOException;
+    }
+
+    /** Índices da costura gravados em disco à medida que os ladrilhos os marcam, com a caixa envolvente. */
+    private static final class Seam {
+        private final Path path;
+        private final DataOutputStream out;
+        private long count;
+        private double minX = Double.MAX_VALUE, minY = Double.MAX_VALUE;
+        private double maxX = -Double.MAX_VALUE, maxY = -Double.MAX_VALUE;
+
+        Seam(Path path) throws IOException {
+            this.path = path;
+            this.out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path), 1 << 16));
+        }
+
+        void add(int id, double x, double y) throws IOException {
+            out.writeInt(id);
+            count++;
+            minX = Math.min(minX, x); maxX = Math.max(maxX, x);
+            minY = Math.min(minY, y); maxY = Math.max(maxY, y);
+        }
+
+        void close() throws IOException {
+            out.close();
+        }
+
+        void forEach(IdVisitor visitor) throws IOException {
+            try (DataInputStream in = open(path)) {
+                for (long i = 0; i < count; i++) visitor.accept(in.readInt());
+            }
+        }
+    }
+
+    /**
+     * Um nível de ladrilhos: quadtree sobre os pontos do nível (coordenadas locais), com as folhas
+     * em ordem de profundidade. Cada nó cobre uma faixa contínua de posições; no primeiro nível a
+     * posição é o índice global do ponto, nos outros ela aponta para um arquivo de índices.
+     *
+     * Os filhos de um nó são quatro nós consecutivos (SO, SE, NO, NE), sempre depois do pai.
+     */
+    private final class Level {
+        private final int index;
+        private final double x0, y0, size;
+        private final double boundsMinX, boundsMinY, boundsMaxX, boundsMaxY;
+
+        private int nodeCount = 1;
+        private int[] child = {-1};
+        private int[] count = {0};
+        private byte[] depth = {0};
+        private long[] start;
+
+        // Ladrilho de cada nó (-1 se não é um); faixa de posições e região carregada de cada ladrilho
+        private int[] tileOfNode;
+        private int tileCount;
+        private long[] tileStart;
+        private double[] tileBounds;
+
+        private Path idsPath;
+        private MappedFile ids;
+
+        Level(int index, double minX, double minY, double maxX, double maxY) {
+            this.index = index;
+            this.boundsMinX = minX;
+            this.boundsMinY = minY;
+            this.boundsMaxX = maxX;
+            this.boundsMaxY = maxY;
+            double side = Math.max(maxX - minX, maxY - minY);
+            this.x0 = minX;
+            this.y0 = minY;
+            this.size = (side > 0) ? side : 1;
+        }
+
+        int id(long position) {
+            return (ids == null) ? (int) position : ids.getInt(4 * position);
+        }
+
+        /**
+         * Conta os pontos por folha e divide as folhas cheias (com pontos distintos), várias
+         * camadas por passada conforme o excesso, até nenhuma passar de LEAF_POINTS.
+         */
+        void build(PointSource source) throws IOException {
+            for (int pass = 0; ; pass++) {
+                Arrays.fill(count, 0, nodeCount, 0);
+                double[] firstX = new double[nodeCount];
+                double[] firstY = new double[nodeCount];
+                boolean[] distinct = new boolean[nodeCount];
+                source.forEach((x, y) -> {
+                    int leaf = leafOf(x, y);
+                    if (count[leaf]++ == 0) {
+                        firstX[leaf] = x;
+                        firstY[leaf] = y;
+                    } else if (x != firstX[leaf] || y != firstY[leaf]) {
+                        distinct[leaf] = true;
+                    }
+                });
+                if (pass == MAX_PASSES) break;
+
+                boolean split = false;
+                int nodes = nodeCount;
+                for (int n = 0; n < nodes; n++) {
+                    if (child[n] >= 0 || count[n] <= LEAF_POINTS || !distinct[n] || depth[n] >= MAX_DEPTH) continue;
+                    double excess = (double) count[n] / LEAF_POINTS;
+                    int layers = (int) Math.ceil(Math.log(excess) / Math.log(4));
+                    split(n, Math.max(1, Math.min(Math.min(MAX_SPLIT_LEVELS, layers), MAX_DEPTH - depth[n])));
+                    split = true;
+                }
+                if (!split) break;
+            }
+
+            // Contagem dos nós internos (filhos sempre depois do pai) e posição de cada nó
+            for (int n = nodeCount - 1; n >= 0; n--) {
+                if (child[n] >= 0) count[n] = count[child[n]] + count[child[n] + 1] + count[child[n] + 2] + count[child[n] + 3];
+            }
+            start = new long[nodeCount];
+            for (int n = 0; n < nodeCount; n++) {
+                if (child[n] < 0) continue;
+                long position = start[n];
+                for (int k = 0; k < 4; k++) {
+                    start[child[n] + k] = position;
+                    position += count[child[n] + k];
+                }
+            }
+            buildTiles();
+        }
+
+        private void split(int n, int layers) {
+            if (nodeCount + 4 > child.length) {
+                int capacity = Math.max(2 * child.length, nodeCount + 4);
+                child = Arrays.copyOf(child, capacity);
+                count = Arrays.copyOf(count, capacity);
+                depth = Arrays.copyOf(depth, capacity);
+            }
+            int first = nodeCount;
+            nodeCount += 4;
+            child[n] = first;
+            for (int k = 0; k < 4; k++) {
+                child[first + k] = -1;
+                count[first + k] = 0;
+                depth[first + k] = (byte) (depth[n] + 1);
+            }
+            if (layers > 1) {
+                for (int k = 0; k < 4; k++) split(first + k, layers - 1);
+            }
+        }
+
+        /** Folha que contém o ponto (quem está sobre a divisão vai para o lado de cima/direita). */
+        int leafOf(double x, double y) {
+            return descend(x, y, false);
+        }
+
+        /** Ladrilho que contém o ponto. */
+        int tileAt(double x, double y) {
+            return tileOfNode[descend(x, y, true)];
+        }
+
+        private int descend(double x, double y, boolean toTile) {
+            int n = 0;
+            double nx = x0, ny = y0, s = size;
+            while (child[n] >= 0 && !(toTile && tileOfNode[n] >= 0)) {
+                s /= 2;
+                int k = 0;
+                if (x >= nx + s) {
+                    nx += s;
+                    k |= 1;
+                }
+                if (y >= ny + s) {
+                    ny += s;
+                    k |= 2;
+                }
+                n = child[n] + k;
+            }
+            return n;
+        }
+
+        // Maiores nós com até tilePoints pontos (ou folhas), em ordem de posição, com o halo de cada um
+        private void buildTiles() {
+            tileOfNode = new int[nodeCount];
+            Arrays.fill(tileOfNode, -1);
+            List<double[]> found = new ArrayList<>();
+            int[] stack = new int[4 * MAX_DEPTH + 8];
+            double[] geometry = new double[3 * stack.length];
+            int top = push(stack, geometry, 0, 0, x0, y0, size);
+            while (top > 0) {
+                top--;
+                int n = stack[top];
+                double nx = geometry[3 * top], ny = geometry[3 * top + 1], s = geometry[3 * top + 2];
+                if (child[n] < 0 || count[n] <= tilePoints) {
+                    tileOfNode[n] = found.size();
+                    found.add(new double[]{n, nx, ny, s});
+                    continue;
+                }
+                double h = s / 2;
+                // Empilhados ao contrário, para sair na ordem das posições
+                top = push(stack, geometry, top, child[n] + 3, nx + h, ny + h, h);
+                top = push(stack, geometry, top, child[n] + 2, nx, ny + h, h);
+                top = push(stack, geometry, top, child[n] + 1, nx + h, ny, h);
+                top = push(stack, geometry, top, child[n], nx, ny, h);
+            }
+
+            tileCount = found.size();
+            tileStart = new long[tileCount + 1];
+            tileBounds = new double[4 * tileCount];
+            for (int t = 0; t < tileCount; t++) {
+                double[] tile = found.get(t);
+                int n = (int) tile[0];
+                double nx = tile[1], ny = tile[2], s = tile[3];
+                tileStart[t] = start[n];
+                tileStart[t + 1] = start[n] + count[n];
+
+                // Halo que encolhe até a vizinhança caber no limite (ou chegar ao mínimo)
+                double halo = s * HALO_FRACTION;
+                while (halo > s * MIN_HALO_FRACTION
+                        && countIn(nx - halo, ny - halo, nx + s + halo, ny + s + halo) - count[n] > tilePoints) {
+                    halo /= 2;
+                }
+                // Além da caixa dos pontos do nível não há ninguém: a região é ilimitada daquele lado
+                tileBounds[4 * t] = (nx - halo <= boundsMinX) ? Double.NEGATIVE_INFINITY : nx - halo;
+                tileBounds[4 * t + 1] = (ny - halo <= boundsMinY) ? Double.NEGATIVE_INFINITY : ny - halo;
+                tileBounds[4 * t + 2] = (nx + s + halo >= boundsMaxX) ? Double.POSITIVE_INFINITY : nx + s + halo;
+                tileBounds[4 * t + 3] = (ny + s + halo >= boundsMaxY) ? Double.POSITIVE_INFINITY : ny + s + halo;
+            }
+        }
+
+        private int push(int[] stack, double[] geometry, int top, int n, double nx, double ny, double s) {
+            stack[top] = n;
+            geometry[3 * top] = nx;
+            geometry[3 * top + 1] = ny;
+            geometry[3 * top + 2] = s;
+            return top + 1;
+        }
+
+        /** Pontos das folhas que tocam a caixa (o total carregado para ela). */
+        private long countIn(double minX, double minY, double maxX, double maxY) {
+            long total = 0;
+            int[] stack = new int[4 * MAX_DEPTH + 8];
+            double[] geometry = new double[3 * stack.length];
+            int top = push(stack, geometry, 0, 0, x0, y0, size);
+            while (top > 0) {
+                top--;
+                int n = stack[top];
+                double nx = geometry[3 * top], ny = geometry[3 * top + 1], s = geometry[3 * top + 2];
+                if (count[n] == 0 || nx > maxX || ny > maxY || nx + s < minX || ny + s < minY) continue;
+                if (child[n] < 0 || (nx >= minX && ny >= minY && nx + s <= maxX && ny + s <= maxY)) {
+                    total += count[n];
+                    continue;
+                }
+                double h = s / 2;
+                for (int k = 0; k < 4; k++) top = push(stack, geometry, top, child[n] + k, nx + ((k & 1) != 0 ? h : 0), ny + ((k & 2) != 0 ? h : 0), h);
+            }
+            return total;
+        }
+
+        /** Folhas não vazias que tocam a caixa, em ordem de posição. */
+        int[] leavesIn(double minX, double minY, double maxX, double maxY) {
+            int[] leaves = new int[16];
+            int found = 0;
+            int[] stack = new int[4 * MAX_DEPTH + 8];
+            double[] geometry = new double[3 * stack.length];
+            int top = push(stack, geometry, 0, 0, x0, y0, size);
+            while (top > 0) {
+                top--;
+                int n = stack[top];
+                double nx = geometry[3 * top], ny = geometry[3 * top + 1], s = geometry[3 * top + 2];
+                if (count[n] == 0 || nx > maxX || ny > maxY || nx + s < minX || ny + s < minY) continue;
+                if (child[n] < 0) {
+                    if (found == leaves.length) leaves = Arrays.copyOf(leaves, 2 * found);
+                    leaves[found++] = n;
+                    continue;
+                }
+                double h = s / 2;
+                for (int k = 3; k >= 0; k--) top = push(stack, geometry, top, child[n] + k, nx + ((k & 1) != 0 ? h : 0), ny + ((k & 2) != 0 ? h : 0), h);
+            }
+            return Arrays.copyOf(leaves, found);
+        }
+
+        /** Grava os índices da costura folha a folha, no arquivo de índices deste nível. */
+        void bucketIds(Seam seam) throws IOException {
+            idsPath = workDir.resolve("level" + index + ".ids");
+            ids = new MappedFile(idsPath, 4 * seam.count);
+            long[] fill = start.clone();
+            seam.forEach(id -> ids.putInt(4 * fill[leafOf(pointX(id), pointY(id))]++, id));
+        }
+
+        // Depois dos ladrilhos, só a árvore e as regiões continuam valendo (para o emissor)
+        void releaseIds() throws IOException {
+            if (ids == null) return;
+            ids.close();
+            ids = null;
+            Files.delete(idsPath);
+        }
+
+        /** O circuncírculo cabe estritamente na região carregada do ladrilho (nó + halo)? */
+        boolean contains(int tile, double[] circle) {
+            double r = Math.sqrt(circle[2]);
+            double margin = 1e-9 * (r + Math.abs(circle[0]) + Math.abs(circle[1]));
+            return circle[0] - r - margin > tileBounds[4 * tile] && circle[0] + r + margin < tileBounds[4 * tile + 2]
+                    && circle[1] - r - margin > tileBounds[4 * tile + 1] && circle[1] + r + margin < tileBounds[4 * tile + 3];
+        }
+
+        /**
+         * Ladrilho que grava o triângulo: o dono do vértice de menor índice, se o circuncírculo
+         * cabe na região dele; senão o primeiro dono dos outros vértices em que ele cabe; -1 se
+         * nenhum (o triângulo fica para a costura). Depende só do triângulo, então todos concordam.
+         */
+        int emitter(int a, double ax, double ay, int b, double bx, double by, int c, double cx, double cy, double[] circle) {
+            int lowest = Math.min(a, Math.min(b, c));
+            int first = (lowest == a) ? tileAt(ax, ay) : (lowest == b) ? tileAt(bx, by) : tileAt(cx, cy);
+            if (contains(first, circle)) return first;
+
+            int best = -1;
+            if (a != lowest) best = better(best, first, tileAt(ax, ay), circle);
+            if (b != lowest) best = better(best, first, tileAt(bx, by), circle);
+            if (c != lowest) best = better(best, first, tileAt(cx, cy), circle);
+            return best;
+        }
+
+        private int better(int best, int first, int tile, double[] circle) {
+            return (tile != first && (best < 0 || tile < best) && contains(tile, circle)) ? tile : best;
+        }
+    }
+}
@@ -0,0 +1,370 @@
+package com.brasens.utilities.math;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Triangulação de Delaunay em paralelo por fatias verticais.
+ *
+ * 1. Os pontos são divididos em fatias pela mediana de x e cada fatia é triangulada numa thread.
+ * 2. Um triângulo da fatia é definitivo quando seu circuncírculo cabe estritamente entre o maior x
+ *    da fatia anterior e o menor x da seguinte: nenhum ponto de outra fatia pode estar dentro dele.
+ * 3. Os vértices dos demais triângulos (a "costura") são triangulados juntos; dessa triangulação
+ *    entram os triângulos vazios em relação a todos os pontos que ainda não foram emitidos.
+ *
+ * Todo vértice fora da costura tem a estrela completa de triângulos definitivos, então os triângulos
+ * que faltam têm os três vértices na costura e aparecem na triangulação dela.
+ */
+final class ParallelTriangulator {
+
+    // Mais fatias que threads equilibram melhor a carga; a costura cresce com o número de fatias
+    private static final int SLABS_PER_THREAD = 2;
+
+    // Pontos por célula da grade usada no teste de circuncírculo vazio
+    private static final double POINTS_PER_CELL = 2.0;
+
+    private final double[] x;
+    private final double[] y;
+    private final ForkJoinPool pool;
+    private final int parallelism;
+
+    private int[] slabOf;
+    private double[] leftBound;
+    private double[] rightBound;
+    private boolean[] seam;
+
+    // Grade de todos os pontos (listas compactas por célula)
+    private double gridMinX, gridMinY, cellSize;
+    private int columns, rows;
+    private int[] cellStart;
+    private int[] cellPoints;
+
+    private ParallelTriangulator(double[] x, double[] y, ForkJoinPool pool, int parallelism) {
+        this.x = x;
+        this.y = y;
+        this.pool = pool;
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Triangula os pontos (coordenadas já relativas ao centro) e retorna os triângulos
+     * anti-horários como trincas de índices.
+     */
+    static int[] triangulate(double[] x, double[] y, int parallelism) {
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            return new ParallelTriangulator(x, y, pool, parallelism).run();
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private int[] run() {
+        int[] unique = DelaunayTriangulator.uniqueVertices(x, y);
+        int[][] slabs = partition(unique);
+        seam = new boolean[x.length];
+
+        // 1. Fatias em paralelo (cada uma marca seus próprios vértices de costura)
+        List<Callable<TriangleBuffer>> slabTasks = new ArrayList<>();
+        for (int s = 0; s < slabs.length; s++) {
+            int slab = s;
+            slabTasks.add(() -> triangulateSlab(slab, slabs[slab]));
+        }
+        buildGrid(unique);
+        List<TriangleBuffer> parts = invokeAll(slabTasks);
+
+        // 2. Costura
+        int seamCount = 0;
+        for (int v : unique) if (seam[v]) seamCount++;
+        int[] seamIds = new int[seamCount];
+        int k = 0;
+        for (int v : unique) if (seam[v]) seamIds[k++] = v;
+
+        parts.addAll(triangulateSeam(seamIds));
+
+        int total = 0;
+        for (TriangleBuffer part : parts) total += part.size;
+        int[] triangles = new int[total];
+        int offset = 0;
+        for (TriangleBuffer part : parts) {
+            System.arraycopy(part.data, 0, triangles, offset, part.size);
+            offset += part.size;
+        }
+        return triangles;
+    }
+
+    // Divide pela mediana de x; pontos com o mesmo x ficam sempre na mesma fatia
+    private int[][] partition(int[] unique) {
+        int n = unique.length;
+        double[] sortedX = new double[n];
+        for (int i = 0; i < n; i++) sortedX[i] = x[unique[i]];
+        Arrays.parallelSort(sortedX);
+
+        int wanted = Math.max(1, Math.min(parallelism * SLABS_PER_THREAD, n / 1000));
+        double[] splits = new double[wanted - 1];
+        int splitCount = 0;
+        for (int s = 1; s < wanted; s++) {
+            double value = sortedX[(int) ((long) s * n / wanted)];
+            if (splitCount == 0 || value > splits[splitCount - 1]) splits[splitCount++] = value;
+        }
+        splits = Arrays.copyOf(splits, splitCount);
+        int slabCount = splitCount + 1;
+
+        slabOf = new int[x.length];
+        Arrays.fill(slabOf, -1);
+        int[] sizes = new int[slabCount];
+        double[] minX = new double[slabCount];
+        double[] maxX = new double[slabCount];
+        Arrays.fill(minX, Double.MAX_VALUE);
+        Arrays.fill(maxX, -Double.MAX_VALUE);
+        for (int v : unique) {
+            int pos = Arrays.binarySearch(splits, x[v]);
+            int s = (pos >= 0) ? pos + 1 : -pos - 1;
+            slabOf[v] = s;
+            sizes[s]++;
+            minX[s] = Math.min(minX[s], x[v]);
+            maxX[s] = Math.max(maxX[s], x[v]);
+        }
+
+        leftBound = new double[slabCount];
+        rightBound = new double[slabCount];
+        int[][] slabs = new int[slabCount][];
+        for (int s = 0; s < slabCount; s++) {
+            slabs[s] = new int[sizes[s]];
+            leftBound[s] = (s == 0) ? Double.NEGATIVE_INFINITY : maxX[s - 1];
+            rightBound[s] = (s == slabCount - 1) ? Double.POSITIVE_INFINITY : minX[s + 1];
+        }
+        int[] fill = new int[slabCount];
+        for (int v : unique) {
+            int s = slabOf[v];
+            slabs[s][fill[s]++] = v;
+        }
+        return slabs;
+    }
+
+    private TriangleBuffer triangulateSlab(int slab, int[] ids) {
+        TriangleBuffer result = new TriangleBuffer(6 * ids.length);
+
+        int m = ids.length;
+        double[] lx = new double[m];
+        double[] ly = new double[m];
+        for (int i = 0; i < m; i++) {
+            lx[i] = x[ids[i]];
+            ly[i] = y[ids[i]];
+        }
+
+        TinBuilder builder = DelaunayTriangulator.build(lx, ly, ids, DelaunayTriangulator.insertionOrder(lx, ly));
+        if (builder == null) {
+            // Fatia degenerada (pontos colineares): tudo vai para a costura
+            for (int v : ids) seam[v] = true;
+            return result;
+        }
+
+        double[] circle = new double[3];
+        for (int t = 0; t < builder.triCount; t++) {
+            int a = builder.tri[3 * t], b = builder.tri[3 * t + 1], c = builder.tri[3 * t + 2];
+            if (!builder.isGhost(t)) {
+                a = ids[a]; b = ids[b]; c = ids[c];
+                if (isFinal(slab, a, b, c, circle)) {
+                    result.add(a, b, c);
+                    continue;
+                }
+            } else {
+                a = (a == TinBuilder.GHOST) ? a : ids[a];
+                b = (b == TinBuilder.GHOST) ? b : ids[b];
+                c = (c == TinBuilder.GHOST) ? c : ids[c];
+            }
+            if (a != TinBuilder.GHOST) seam[a] = true;
+            if (b != TinBuilder.GHOST) seam[b] = true;
+            if (c != TinBuilder.GHOST) seam[c] = true;
+        }
+        return result;
+    }
+
+    private List<TriangleBuffer> triangulateSeam(int[] ids) {
+        List<TriangleBuffer> parts = new ArrayList<>();
+
+        int m = ids.length;
+        double[] lx = new double[m];
+        double[] ly = new double[m];
+        for (int i = 0; i < m; i++) {
+            lx[i] = x[ids[i]];
+            ly[i] = y[ids[i]];
+        }
+
+        TinBuilder builder = (m < 3) ? null
+                : DelaunayTriangulator.build(lx, ly, ids, DelaunayTriangulator.insertionOrder(lx, ly));
+        if (builder == null) return parts;
+
+        // Candidatos: triângulos da costura que ainda não foram emitidos por uma fatia
+        TriangleBuffer candidates = new TriangleBuffer(6 * m);
+        double[] circle = new double[3];
+        for (int t = 0; t < builder.triCount; t++) {
+            if (builder.isGhost(t)) continue;
+            int a = ids[builder.tri[3 * t]], b = ids[builder.tri[3 * t + 1]], c = ids[builder.tri[3 * t + 2]];
+            if (slabOf[a] == slabOf[b] && slabOf[b] == slabOf[c] && isFinal(slabOf[a], a, b, c, circle)) continue;
+            candidates.add(a, b, c);
+        }
+
+        // Teste de circuncírculo vazio contra todos os pontos, em blocos paralelos
+        int count = candidates.size / 3;
+        int chunks = Math.max(1, Math.min(4 * parallelism, count / 256));
+        List<Callable<TriangleBuffer>> tasks = new ArrayList<>();
+        for (int k = 0; k < chunks; k++) {
+            int from = (int) ((long) k * count / chunks);
+            int to = (int) ((long) (k + 1) * count / chunks);
+            tasks.add(() -> {
+                TriangleBuffer accepted = new TriangleBuffer(3 * (to - from));
+                double[] buffer = new double[3];
+                for (int t = from; t < to; t++) {
+                    int a = candidates.data[3 * t], b = candidates.data[3 * t + 1], c = candidates.data[3 * t + 2];
+                    if (isEmpty(a, b, c, buffer)) accepted.add(a, b, c);
+                }
+                return accepted;
+            });
+        }
+        parts.addAll(invokeAll(tasks));
+        return parts;
+    }
+
+    /** O circuncírculo de (a, b, c) cabe estritamente entre as fatias vizinhas? */
+    private boolean isFinal(int slab, int a, int b, int c, double[] circle) {
+        if (!circumcircle(a, b, c, circle)) return false;
+        double r = Math.sqrt(circle[2]);
+        double margin = 1e-9 * (r + Math.abs(circle[0]));
+        return circle[0] - r - margin > leftBound[slab] && circle[0] + r + margin < rightBound[slab];
+    }
+
+    /** Nenhum ponto do conjunto está dentro do circuncírculo de (a, b, c)? */
+    private boolean isEmpty(int a, int b, int c, double[] circle) {
+        if (!circumcircle(a, b, c, circle)) return false;
+        double cx = circle[0], cy = circle[1];
+        double r = Math.sqrt(circle[2]);
+        r += 1e-7 * r + 1e-9 * cellSize; // folga para o arredondamento do centro
+        double r2 = r * r;
+
+        int row0 = clamp(Math.floor((cy - r - gridMinY) / cellSize), rows);
+        int row1 = clamp(Math.floor((cy + r - gridMinY) / cellSize), rows);
+        for (int row = row0; row <= row1; row++) {
+            // Faixa horizontal do círculo dentro desta linha de células
+            double y0 = gridMinY + row * cellSize;
+            double y1 = y0 + cellSize;
+            double dy = (cy < y0) ? y0 - cy : (cy > y1 ? cy - y1 : 0);
+            double h2 = r2 - dy * dy;
+            if (h2 < 0) continue;
+            double h = Math.sqrt(h2);
+
+            int col0 = clamp(Math.floor((cx - h - gridMinX) / cellSize), columns);
+            int col1 = clamp(Math.floor((cx + h - gridMinX) / cellSize), columns);
+            for (int cell = row * columns + col0; cell <= row * columns + col1; cell++) {
+                for (int k = cellStart[cell]; k < cellStart[cell + 1]; k++) {
+                    int p = cellPoints[k];
+                    if (p == a || p == b || p == c) continue;
+                    double dx = x[p] - cx, ey = y[p] - cy;
+                    if (dx * dx + ey * ey > r2) continue;
+                    if (TinBuilder.inCircle(x, y, null, a, b, c, p)) return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Centro e raio² do circuncírculo em {@code out}. O cálculo parte sempre do menor índice,
+     * para que o mesmo triângulo dê o mesmo resultado em qualquer fatia.
+     */
+    private boolean circumcircle(int a, int b, int c, double[] out) {
+        if (b < a && b < c) {
+            int t = a; a = b; b = c; c = t;
+        } else if (c < a && c < b) {
+            int t = c; c = b; b = a; a = t;
+        }
+        double bx = x[b] - x[a], by = y[b] - y[a];
+        double cx = x[c] - x[a], cy = y[c] - y[a];
+        double d = 2 * (bx * cy - by * cx);
+        if (!(d > 0)) return false;
+
+        double b2 = bx * bx + by * by;
+        double c2 = cx * cx + cy * cy;
+        double ux = (cy * b2 - by * c2) / d;
+        double uy = (bx * c2 - cx * b2) / d;
+
+        out[0] = x[a] + ux;
+        out[1] = y[a] + uy;
+        out[2] = ux * ux + uy * uy;
+        return Double.isFinite(out[2]);
+    }
+
+    private void buildGrid(int[] unique) {
+        double minX = Double.MAX_VALUE, minY = Double.MAX_VALUE;
+        double maxX = -Double.MAX_VALUE, maxY = -Double.MAX_VALUE;
+        for (int v : unique) {
+            minX = Math.min(minX, x[v]); maxX = Math.max(maxX, x[v]);
+            minY = Math.min(minY, y[v]); maxY = Math.max(maxY, y[v]);
+        }
+        double width = Math.max(maxX - minX, 1e-9);
+        double height = Math.max(maxY - minY, 1e-9);
+
+        cellSize = Math.sqrt(width * height * POINTS_PER_CELL / unique.length);
+        cellSize = Math.max(cellSize, Math.max(width, height) / 65536);
+        columns = (int) (width / cellSize) + 1;
+        rows = (int) (height / cellSize) + 1;
+        gridMinX = minX;
+        gridMinY = minY;
+
+        int[] cellOf = new int[unique.length];
+        cellStart = new int[columns * rows + 1];
+        for (int i = 0; i < unique.length; i++) {
+            int v = unique[i];
+            int col = clamp(Math.floor((x[v] - minX) / cellSize), columns);
+            int row = clamp(Math.floor((y[v] - minY) / cellSize), rows);
+            cellOf[i] = row * columns + col;
+            cellStart[cellOf[i] + 1]++;
+        }
+        for (int c = 0; c < columns * rows; c++) cellStart[c + 1] += cellStart[c];
+
+        cellPoints = new int[unique.length];
+        int[] fill = Arrays.copyOf(cellStart, columns * rows);
+        for (int i = 0; i < unique.length; i++) cellPoints[fill[cellOf[i]]++] = unique[i];
+    }
+
+    private static int clamp(double value, int size) {
+        if (!(value > 0)) return 0;
+        return (value >= size - 1) ? size - 1 : (int) value;
+    }
+
+    private List<TriangleBuffer> invokeAll(List<Callable<TriangleBuffer>> tasks) {
+        List<TriangleBuffer> results = new ArrayList<>();
+        try {
+            for (Future<TriangleBuffer> future : pool.invokeAll(tasks)) results.add(future.get());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Triangulação interrompida", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Falha na triangulação paralela", e.getCause());
+        }
+        return results;
+    }
+
+    // Lista crescente de trincas de índices
+    private static final class TriangleBuffer {
+        int[] data;
+        int size;
+
+        TriangleBuffer(int capacity) {
+            data = new int[Math.max(3, capacity)];
+        }
+
+        void add(int a, int b, int c) {
+            if (size + 3 > data.length) data = Arrays.copyOf(data, Math.max(size + 3, data.length * 2));
+            data[size++] = a;
+            data[size++] = b;
+            data[size++] = c;
+        }
+    }
+}
@@ -0,0 +1,332 @@
+package com.brasens.utilities.math;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Índice espacial de retângulos alinhados aos eixos (R-tree com divisão quadrática).
+ * Cada nó guarda as caixas dos filhos em vetores primitivos; a busca só desce nos nós cuja
+ * caixa cruza a janela pedida.
+ */
+public class RTree<T> {
+
+    private static final int MAX_ENTRIES = 16;
+    private static final int MIN_ENTRIES = 6;
+
+    private Node root = new Node(true);
+    private int size = 0;
+
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        root = new Node(true);
+        size = 0;
+    }
+
+    public void insert(double minX, double minY, double maxX, double maxY, T value) {
+        Node sibling = insert(root, minX, minY, maxX, maxY, value);
+        if (sibling != null) {
+            Node grown = new Node(false);
+            grown.add(root.boundMinX(), root.boundMinY(), root.boundMaxX(), root.boundMaxY(), root);
+            grown.add(sibling.boundMinX(), sibling.boundMinY(), sibling.boundMaxX(), sibling.boundMaxY(), sibling);
+            root = grown;
+        }
+        size++;
+    }
+
+    /**
+     * Troca o conteúdo pelos valores dados de uma vez (empacotamento STR): ordena por X em
+     * fatias verticais, cada fatia por Y, e enche os nós em sequência. Bem mais rápido que
+     * inserir um a um, e os nós saem cheios e pouco sobrepostos.
+     * @param boxes caixa de cada valor, intercalada (minX, minY, maxX, maxY)
+     */
+    public void load(List<T> values, double[] boxes) {
+        int n = values.size();
+        Object[] items = values.toArray();
+        double[] minX = new double[n], minY = new double[n], maxX = new double[n], maxY = new double[n];
+        for (int i = 0; i < n; i++) {
+            minX[i] = boxes[4 * i];
+            minY[i] = boxes[4 * i + 1];
+            maxX[i] = boxes[4 * i + 2];
+            maxY[i] = boxes[4 * i + 3];
+        }
+
+        boolean leaf = true;
+        while (n > MAX_ENTRIES) {
+            Node[] nodes = pack(items, minX, minY, maxX, maxY, n, leaf);
+            n = nodes.length;
+            items = nodes;
+            minX = new double[n];
+            minY = new double[n];
+            maxX = new double[n];
+            maxY = new double[n];
+            for (int i = 0; i < n; i++) {
+                minX[i] = nodes[i].boundMinX();
+                minY[i] = nodes[i].boundMinY();
+                maxX[i] = nodes[i].boundMaxX();
+                maxY[i] = nodes[i].boundMaxY();
+            }
+            leaf = false;
+        }
+        root = new Node(leaf);
+        for (int i = 0; i < n; i++) root.add(minX[i], minY[i], maxX[i], maxY[i], items[i]);
+        size = values.size();
+    }
+
+    /**
+     * Remove o valor (comparado por identidade) inserido com essa caixa. Nós que ficam vazios
+     * saem da árvore; os demais só têm a caixa ajustada, sem reinserção.
+     */
+    public boolean remove(double minX, double minY, double maxX, double maxY, T value) {
+        if (!remove(root, minX, minY, maxX, maxY, value)) return false;
+        size--;
+        while (!root.leaf && root.count == 1) root = (Node) root.children[0];
+        if (root.count == 0) root = new Node(true);
+        return true;
+    }
+
+    /** Visita os valores cuja caixa cruza a janela (bordas encostadas contam). */
+    public void search(double minX, double minY, double maxX, double maxY, Consumer<T> visitor) {
+        any(minX, minY, maxX, maxY, value -> {
+            visitor.accept(value);
+            return false;
+        });
+    }
+
+    /**
+     * Algum valor cuja caixa cruza a janela satisfaz o teste? A busca para no primeiro que
+     * satisfizer.
+     */
+    @SuppressWarnings("unchecked")
+    public boolean any(double minX, double minY, double maxX, double maxY, Predicate<T> test) {
+        Node[] stack = new Node[64];
+        int top = 0;
+        stack[top++] = root;
+        while (top > 0) {
+            Node node = stack[--top];
+            for (int i = 0; i < node.count; i++) {
+                if (node.minX[i] > maxX || node.maxX[i] < minX || node.minY[i] > maxY || node.maxY[i] < minY) continue;
+                if (node.leaf) {
+                    if (test.test((T) node.children[i])) return true;
+                } else {
+                    if (top == stack.length) stack = Arrays.copyOf(stack, 2 * top);
+                    stack[top++] = (Node) node.children[i];
+                }
+            }
+        }
+        return false;
+    }
+
+    // Só desce nos filhos cuja caixa contém a do valor
+    private boolean remove(Node node, double minX, double minY, double maxX, double maxY, Object value) {
+        for (int i = 0; i < node.count; i++) {
+            if (node.minX[i] > minX || node.maxX[i] < maxX || node.minY[i] > minY || node.maxY[i] < maxY) continue;
+            if (node.leaf) {
+                if (node.children[i] != value) continue;
+                node.removeAt(i);
+                return true;
+            }
+            Node child = (Node) node.children[i];
+            if (!remove(child, minX, minY, maxX, maxY, value)) continue;
+            if (child.count == 0) {
+                node.removeAt(i);
+            } else {
+                node.minX[i] = child.boundMinX();
+                node.minY[i] = child.boundMinY();
+                node.maxX[i] = child.boundMaxX();
+                node.maxY[i] = child.boundMaxY();
+            }
+            return true;
+        }
+        return false;
+    }
+
+    // Desce pelo filho que menos cresce; devolve o irmão criado se o nó estourou
+    private Node insert(Node node, double minX, double minY, double maxX, double maxY, Object value) {
+        if (node.leaf) {
+            node.add(minX, minY, maxX, maxY, value);
+        } else {
+            int best = 0;
+            double bestGrowth = Double.MAX_VALUE, bestArea = Double.MAX_VALUE;
+            for (int i = 0; i < node.count; i++) {
+                double area = (node.maxX[i] - node.minX[i]) * (node.maxY[i] - node.minY[i]);
+                double grown = (Math.max(maxX, node.maxX[i]) - Math.min(minX, node.minX[i]))
+                        * (Math.max(maxY, node.maxY[i]) - Math.min(minY, node.minY[i]));
+                double growth = grown - area;
+                if (growth < bestGrowth || (growth == bestGrowth && area < bestArea)) {
+                    best = i;
+                    bestGrowth = growth;
+                    bestArea = area;
+                }
+            }
+            Node child = (Node) node.children[best];
+            Node sibling = insert(child, minX, minY, maxX, maxY, value);
+            node.minX[best] = child.boundMinX();
+            node.minY[best] = child.boundMinY();
+            node.maxX[best] = child.boundMaxX();
+            node.maxY[best] = child.boundMaxY();
+            if (sibling != null) {
+                node.add(sibling.boundMinX(), sibling.boundMinY(), sibling.boundMaxX(), sibling.boundMaxY(), sibling);
+            }
+        }
+        return (node.count > MAX_ENTRIES) ? split(node) : null;
+    }
+
+    // Um nível do STR: ceil(sqrt(nós)) fatias por X, cada uma ordenada por Y e cortada em nós cheios
+    private static Node[] pack(Object[] items, double[] minX, double[] minY, double[] maxX, double[] maxY, int n, boolean leaf) {
+        long[] order = new long[n];
+        for (int i = 0; i < n; i++) order[i] = sortKey(minX[i] + maxX[i], i);
+        Arrays.sort(order);
+
+        int nodeCount = (n + MAX_ENTRIES - 1) / MAX_ENTRIES;
+        int slices = (int) Math.ceil(Math.sqrt(nodeCount));
+        int perSlice = slices * MAX_ENTRIES;
+        List<Node> nodes = new ArrayList<>(nodeCount);
+        for (int from = 0; from < n; from += perSlice) {
+            int to = Math.min(n, from + perSlice);
+            for (int k = from; k < to; k++) {
+                int i = (int) order[k];
+                order[k] = sortKey(minY[i] + maxY[i], i);
+            }
+            Arrays.sort(order, from, to);
+            for (int start = from; start < to; start += MAX_ENTRIES) {
+                Node node = new Node(leaf);
+                for (int k = start; k < Math.min(to, start + MAX_ENTRIES); k++) {
+                    int i = (int) order[k];
+                    node.add(minX[i], minY[i], maxX[i], maxY[i], items[i]);
+                }
+                nodes.add(node);
+            }
+        }
+        return nodes.toArray(new Node[0]);
+    }
+
+    // Chave que ordena como a coordenada (em float, que basta para o STR) e carrega o índice
+    private static long sortKey(double coordinate, int index) {
+        int bits = Float.floatToIntBits((float) coordinate);
+        bits ^= (bits >> 31) & 0x7FFFFFFF;
+        return ((long) bits << 32) | (index & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Divisão quadrática: as sementes são o par que desperdiça mais área juntas; os demais vão,
+     * um a um, para o grupo que menos cresce (respeitando o mínimo de cada grupo).
+     */
+    private Node split(Node node) {
+        int n = node.count;
+        double[] minX = node.minX.clone(), minY = node.minY.clone(), maxX = node.maxX.clone(), maxY = node.maxY.clone();
+        Object[] children = node.children.clone();
+
+        int seedA = 0, seedB = 1;
+        double worst = -Double.MAX_VALUE;
+        for (int i = 0; i < n; i++) {
+            for (int j = i + 1; j < n; j++) {
+                double joined = (Math.max(maxX[i], maxX[j]) - Math.min(minX[i], minX[j]))
+                        * (Math.max(maxY[i], maxY[j]) - Math.min(minY[i], minY[j]));
+                double waste = joined - (maxX[i] - minX[i]) * (maxY[i] - minY[i]) - (maxX[j] - minX[j]) * (maxY[j] - minY[j]);
+                if (waste > worst) {
+                    worst = waste;
+                    seedA = i;
+                    seedB = j;
+                }
+            }
+        }
+
+        Node sibling = new Node(node.leaf);
+        node.count = 0;
+        node.add(minX[seedA], minY[seedA], maxX[seedA], maxY[seedA], children[seedA]);
+        sibling.add(minX[seedB], minY[seedB], maxX[seedB], maxY[seedB], children[seedB]);
+
+        boolean[] assigned = new boolean[n];
+        assigned[seedA] = true;
+        assigned[seedB] = true;
+        int remaining = n - 2;
+        while (remaining > 0) {
+            Node target = null;
+            if (node.count + remaining == MIN_ENTRIES) target = node;
+            if (sibling.count + remaining == MIN_ENTRIES) target = sibling;
+            for (int i = 0; i < n; i++) {
+                if (assigned[i]) continue;
+                Node into = target;
+                if (into == null) {
+                    double growA = node.growth(minX[i], minY[i], maxX[i], maxY[i]);
+                    double growB = sibling.growth(minX[i], minY[i], maxX[i], maxY[i]);
+                    into = (growA < growB || (growA == growB && node.count <= sibling.count)) ? node : sibling;
+                }
+                into.add(minX[i], minY[i], maxX[i], maxY[i], children[i]);
+                assigned[i] = true;
+                remaining--;
+                if (target == null) break;
+            }
+        }
+        for (int i = node.count; i < children.length; i++) node.children[i] = null;
+        return sibling;
+    }
+
+    private static final class Node {
+        private final boolean leaf;
+        private int count = 0;
+        private final double[] minX = new double[MAX_ENTRIES + 1];
+        private final double[] minY = new double[MAX_ENTRIES + 1];
+        private final double[] maxX = new double[MAX_ENTRIES + 1];
+        private final double[] maxY = new double[MAX_ENTRIES + 1];
+        private final Object[] children = new Object[MAX_ENTRIES + 1];
+
+        Node(boolean leaf) {
+            this.leaf = leaf;
+        }
+
+        void add(double x0, double y0, double x1, double y1, Object child) {
+            minX[count] = x0;
+            minY[count] = y0;
+            maxX[count] = x1;
+            maxY[count] = y1;
+            children[count++] = child;
+        }
+
+        void removeAt(int i) {
+            count--;
+            minX[i] = minX[count];
+            minY[i] = minY[count];
+            maxX[i] = maxX[count];
+            maxY[i] = maxY[count];
+            children[i] = children[count];
+            children[count] = null;
+        }
+
+        // Aumento de área da caixa do nó ao incluir o retângulo
+        double growth(double x0, double y0, double x1, double y1) {
+            double ax = boundMinX(), ay = boundMinY(), bx = boundMaxX(), by = boundMaxY();
+            return (Math.max(bx, x1) - Math.min(ax, x0)) * (Math.max(by, y1) - Math.min(ay, y0)) - (bx - ax) * (by - ay);
+        }
+
+        double boundMinX() {
+            double v = Double.MAX_VALUE;
+            for (int i = 0; i < count; i++) v = Math.min(v, minX[i]);
+            return v;
+        }
+
+        double boundMinY() {
+            double v = Double.MAX_VALUE;
+            for (int i = 0; i < count; i++) v = Math.min(v, minY[i]);
+            return v;
+        }
+
+        double boundMaxX() {
+            double v = -Double.MAX_VALUE;
+            for (int i = 0; i < count; i++) v = Math.max(v, maxX[i]);
+            return v;
+        }
+
+        double boundMaxY() {
+            double v = -Double.MAX_VALUE;
+            for (int i = 0; i < count; i++) v = Math.max(v, maxY[i]);
+            return v;
+        }
+    }
+}
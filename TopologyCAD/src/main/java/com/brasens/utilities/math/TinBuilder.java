@@ -0,0 +1,1032 @@
+package com.brasens.utilities.math;
+
+import java.util.Arrays;
+
+/**
+ * Núcleo da triangulação de Delaunay incremental (Bowyer-Watson) sobre vetores primitivos.
+ *
+ * Cada triângulo ocupa 3 posições em {@code tri} (vértices em sentido anti-horário) e 3 posições
+ * em {@code nbr}, onde {@code nbr[3t + i]} é o vizinho oposto ao vértice {@code tri[3t + i]}.
+ * O exterior do fecho convexo é coberto por triângulos "fantasmas" que usam o vértice
+ * {@link #GHOST} (ponto no infinito), de modo que todo triângulo sempre tem 3 vizinhos.
+ */
+final class TinBuilder {
+
+    static final int GHOST = -1;
+
+    // Marca de posição livre (triângulo removido, aguardando reutilização)
+    static final int FREE = -2;
+
+    double[] x;
+    double[] y;
+
+    // Índice global de cada vértice para o desempate simbólico (null = o próprio índice)
+    final int[] rank;
+
+    int[] tri;
+    int[] nbr;
+    int triCount = 0;
+
+    // Arestas restritas (linhas de quebra), por meia-aresta como em nbr; null enquanto não houver
+    boolean[] constrained;
+
+    // Último triângulo criado: ponto de partida da caminhada (pontos vêm em ordem espacial)
+    private int lastTriangle = -1;
+
+    // Buffers reutilizados entre inserções (evita alocação por ponto)
+    private int[] visit;
+    private int visitStamp = 0;
+    private int[] cavity = new int[64];
+    private int[] boundaryA = new int[64];
+    private int[] boundaryB = new int[64];
+    private int[] boundaryN = new int[64];
+    private int[] boundaryK = new int[64];
+    private boolean[] boundaryC = new boolean[64];
+    private int[] created = new int[64];
+    private int[] freeSlots = new int[16];
+    private int freeCount = 0;
+
+    // Estrela do vértice em edição (triângulos e vértices do contorno)
+    private int[] starTriangles = new int[16];
+    private int[] starLink = new int[16];
+    private int[] flipStack = new int[64];
+
+    // Posições alteradas desde que changedCount foi zerado (só registradas em malhas editáveis)
+    boolean recordChanges = false;
+    int[] changed = new int[64];
+    int changedCount = 0;
+
+    // Um triângulo incidente a cada vértice (também usado para ligar os triângulos da cavidade)
+    private int[] vertexTriangle;
+
+    TinBuilder(double[] x, double[] y, int expectedVertices) {
+        this(x, y, null, expectedVertices);
+    }
+
+    TinBuilder(double[] x, double[] y, int[] rank, int expectedVertices) {
+        this.x = x;
+        this.y = y;
+        this.rank = rank;
+        int capacity = Math.max(16, 2 * expectedVertices + 8);
+        this.tri = new int[3 * capacity];
+        this.nbr = new int[3 * capacity];
+        this.visit = new int[capacity];
+        this.vertexTriangle = new int[x.length];
+    }
+
+    /**
+     * Reconstrói a triangulação a partir dos triângulos reais (anti-horários, sem fantasmas), como
+     * gravados por {@link TinMesh}: as vizinhanças são refeitas pelas arestas e cada aresta sem
+     * par é fecho convexo, coberta por um triângulo fantasma.
+     * @param constrained arestas restritas por meia-aresta (3t + i dos triângulos dados), ou null
+     * @return null se os triângulos não formam uma malha válida
+     */
+    static TinBuilder fromTriangles(double[] x, double[] y, int[] triangles, int count, boolean[] constrained) {
+        int n = x.length;
+        for (int i = 0; i < 3 * count; i++) {
+            if (triangles[i] < 0 || triangles[i] >= n) return null;
+        }
+        TinBuilder builder = new TinBuilder(x, y, Math.max(n, count));
+        for (int t = 0; t < count; t++) builder.newTriangle(triangles[3 * t], triangles[3 * t + 1], triangles[3 * t + 2]);
+
+        // 1. Pares entre os triângulos reais; a meia-aresta (p, q) sem par ganha o fantasma (q, p, GHOST)
+        int[][] index = builder.halfEdgeIndex();
+        int[] twins = new int[3 * count];
+        int[] ghostFrom = new int[n];
+        int[] ghostTo = new int[n];
+        Arrays.fill(twins, -1);
+        Arrays.fill(ghostFrom, -1);
+        Arrays.fill(ghostTo, -1);
+        for (int e = 0; e < 3 * count; e++) {
+            if (twins[e] >= 0) continue;
+            int twin = builder.twinOf(index, e / 3, e % 3);
+            if (twin == -2) return null;
+            if (twin >= 0) {
+                // O par já tinha outro par: aresta repetida no mesmo sentido
+                if (twins[twin] >= 0) return null;
+                twins[twin] = e;
+                builder.nbr[twin] = e / 3;
+            } else {
+                int p = triangles[3 * (e / 3) + (e % 3 + 1) % 3];
+                int q = triangles[3 * (e / 3) + (e % 3 + 2) % 3];
+                // O fecho passa uma única vez por cada vértice
+                if (ghostFrom[q] >= 0 || ghostTo[p] >= 0) return null;
+                int g = builder.newTriangle(q, p, GHOST);
+                ghostFrom[q] = ghostTo[p] = g;
+                builder.nbr[3 * g + 2] = e / 3;
+                twin = 3 * g + 2;
+            }
+            twins[e] = twin;
+            builder.nbr[e] = twin / 3;
+        }
+
+        // 2. Fantasmas vizinhos ao longo do fecho: (q, p, G) encosta em (p, r, G) e em (s, q, G)
+        for (int g = count; g < builder.triCount; g++) {
+            int next = ghostFrom[builder.tri[3 * g + 1]];
+            int previous = ghostTo[builder.tri[3 * g]];
+            if (next < 0 || previous < 0) return null;
+            builder.nbr[3 * g] = next;
+            builder.nbr[3 * g + 1] = previous;
+        }
+
+        if (constrained != null) {
+            builder.constrained = new boolean[builder.tri.length];
+            for (int e = 0; e < 3 * count; e++) {
+                if (constrained[e]) builder.constrained[e] = builder.constrained[twins[e]] = true;
+            }
+        }
+        for (int t = builder.triCount - 1; t >= 0; t--) {
+            for (int i = 0; i < 3; i++) {
+                if (builder.tri[3 * t + i] != GHOST) builder.vertexTriangle[builder.tri[3 * t + i]] = t;
+            }
+        }
+        builder.lastTriangle = 0;
+        return builder;
+    }
+
+    // Meias-arestas agrupadas pelo vértice de origem (o fantasma no grupo 0): {início, meias-arestas, destinos}
+    private int[][] halfEdgeIndex() {
+        int n = x.length;
+        int[] start = new int[n + 2];
+        for (int t = 0; t < triCount; t++) {
+            for (int i = 0; i < 3; i++) start[tri[3 * t + (i + 1) % 3] + 2]++;
+        }
+        for (int v = 0; v <= n; v++) start[v + 1] += start[v];
+        int[] edges = new int[3 * triCount];
+        int[] destinations = new int[3 * triCount];
+        int[] fill = Arrays.copyOf(start, n + 1);
+        for (int t = 0; t < triCount; t++) {
+            for (int i = 0; i < 3; i++) {
+                int k = fill[tri[3 * t + (i + 1) % 3] + 1]++;
+                edges[k] = 3 * t + i;
+                destinations[k] = tri[3 * t + (i + 2) % 3];
+            }
+        }
+        return new int[][]{start, edges, destinations};
+    }
+
+    // Meia-aresta (q, p) que forma par com a aresta (p, q) do canto i de t; -1 se não há, -2 se há mais de uma
+    private int twinOf(int[][] index, int t, int i) {
+        int p = tri[3 * t + (i + 1) % 3], q = tri[3 * t + (i + 2) % 3];
+        int[] start = index[0], edges = index[1], destinations = index[2];
+        int twin = -1;
+        for (int k = start[q + 1]; k < start[q + 2]; k++) {
+            if (destinations[k] != p) continue;
+            if (twin >= 0) return -2;
+            twin = edges[k];
+        }
+        return twin;
+    }
+
+    boolean isInitialized() {
+        return triCount > 0;
+    }
+
+    /**
+     * Cria o triângulo inicial (a, b, c) e os três triângulos fantasmas que o envolvem.
+     * Os pontos não podem ser colineares.
+     */
+    void init(int a, int b, int c) {
+        if (orient(a, b, c) < 0) {
+            int tmp = b; b = c; c = tmp;
+        }
+
+        int t0 = newTriangle(a, b, c);
+        int g0 = newTriangle(c, b, GHOST); // oposto a 'a'
+        int g1 = newTriangle(a, c, GHOST); // oposto a 'b'
+        int g2 = newTriangle(b, a, GHOST); // oposto a 'c'
+
+        int[] all = {t0, g0, g1, g2};
+        for (int t : all) {
+            for (int i = 0; i < 3; i++) {
+                int ea = tri[3 * t + (i + 1) % 3];
+                int eb = tri[3 * t + (i + 2) % 3];
+                for (int o : all) {
+                    if (o != t && edgeIndex(o, eb, ea) >= 0) {
+                        nbr[3 * t + i] = o;
+                    }
+                }
+            }
+        }
+        lastTriangle = t0;
+    }
+
+    /**
+     * Insere o vértice {@code p} (índice nos vetores de coordenadas).
+     * @return false se o ponto coincide com um vértice já existente.
+     */
+    boolean insert(int p) {
+        int start = locate(x[p], y[p]);
+
+        // Ponto duplicado: coincide com um vértice do triângulo encontrado
+        for (int i = 0; i < 3; i++) {
+            int v = tri[3 * start + i];
+            if (v != GHOST && x[v] == x[p] && y[v] == y[p]) return false;
+        }
+
+        // Ponto exatamente sobre uma aresta restrita: ela é dividida em duas
+        int splitU = GHOST, splitW = GHOST;
+        if (constrained != null && !isGhost(start)) {
+            for (int i = 0; i < 3; i++) {
+                int u = tri[3 * start + (i + 1) % 3], w = tri[3 * start + (i + 2) % 3];
+                if (constrained[3 * start + i] && orient(u, w, x[p], y[p]) == 0) {
+                    splitU = u;
+                    splitW = w;
+                }
+            }
+        }
+
+        // 1. Cavidade: triângulos cujo circuncírculo contém p (busca em largura pela vizinhança,
+        //    sem atravessar arestas restritas)
+        int stampIn = ++visitStamp;
+        int stampOut = ++visitStamp;
+        int cavitySize = 0;
+        int boundarySize = 0;
+
+        cavity = ensure(cavity, cavitySize + 1);
+        cavity[cavitySize++] = start;
+        visit[start] = stampIn;
+
+        for (int c = 0; c < cavitySize; c++) {
+            int t = cavity[c];
+            for (int i = 0; i < 3; i++) {
+                int n = nbr[3 * t + i];
+                if (visit[n] == stampIn) continue;
+
+                boolean blocked = constrained != null && constrained[3 * t + i]
+                        && !isEdge(t, i, splitU, splitW);
+                if (!blocked && visit[n] != stampOut) {
+                    if (inCircumcircle(n, p)) {
+                        visit[n] = stampIn;
+                        cavity = ensure(cavity, cavitySize + 1);
+                        cavity[cavitySize++] = n;
+                        continue;
+                    }
+                    visit[n] = stampOut;
+                }
+
+                // Aresta de fronteira da cavidade
+                if (boundarySize == boundaryA.length) growBoundary();
+                boundaryA[boundarySize] = tri[3 * t + (i + 1) % 3];
+                boundaryB[boundarySize] = tri[3 * t + (i + 2) % 3];
+                boundaryN[boundarySize] = n;
+                boundaryK[boundarySize] = neighbourIndex(n, t);
+                boundaryC[boundarySize] = blocked;
+                boundarySize++;
+            }
+        }
+
+        // 2. Retriangula a cavidade ligando cada aresta de fronteira ao novo ponto
+        int ghostStart = -1;
+        created = ensure(created, boundarySize);
+        for (int j = 0; j < boundarySize; j++) {
+            int t = (j < cavitySize) ? cavity[j] : newSlot();
+            int a = boundaryA[j];
+            int b = boundaryB[j];
+
+            tri[3 * t] = a;
+            tri[3 * t + 1] = b;
+            tri[3 * t + 2] = p;
+
+            int outside = boundaryN[j];
+            nbr[3 * t + 2] = outside;
+            nbr[3 * outside + boundaryK[j]] = t;
+            if (constrained != null) {
+                constrained[3 * t + 2] = boundaryC[j];
+                constrained[3 * t] = (b != GHOST) && (b == splitU || b == splitW);
+                constrained[3 * t + 1] = (a != GHOST) && (a == splitU || a == splitW);
+            }
+
+            if (a == GHOST) {
+                ghostStart = t;
+            } else {
+                vertexTriangle[a] = t;
+            }
+            created[j] = t;
+        }
+
+        // 3. Liga os novos triângulos entre si: (a, b, p) encontra (b, c, p) pela aresta (b, p)
+        for (int j = 0; j < boundarySize; j++) {
+            int t = created[j];
+            int b = tri[3 * t + 1];
+            int s = (b == GHOST) ? ghostStart : vertexTriangle[b];
+            nbr[3 * t] = s;
+            nbr[3 * s + 1] = t;
+        }
+
+        for (int j = 0; j < boundarySize; j++) {
+            if (!isGhost(created[j])) {
+                lastTriangle = created[j];
+                break;
+            }
+        }
+        vertexTriangle[p] = lastTriangle;
+
+        if (recordChanges) {
+            for (int j = 0; j < boundarySize; j++) recordChange(created[j]);
+        }
+        return true;
+    }
+
+    /**
+     * Remove o vértice v e retriangula a estrela por recorte de orelhas de Delaunay: a cada passo
+     * é recortada uma orelha convexa cujo circuncírculo não contém nenhum outro vértice do contorno.
+     * Se v está no fecho convexo, a parte do contorno que sobra vira fecho (triângulos fantasmas).
+     * @return false, sem alterar a malha, se a remoção a deixaria degenerada (reconstruir).
+     */
+    boolean remove(int v) {
+        int k = star(v);
+
+        // Vértice que dividia uma aresta restrita: a aresta é refeita entre os dois vizinhos
+        int splitU = GHOST, splitW = GHOST, spokes = 0;
+        for (int i = 0; i < k; i++) {
+            if (starLink[i] == GHOST || !isConstrainedSpoke(v, i)) continue;
+            if (spokes++ == 0) splitU = starLink[i]; else splitW = starLink[i];
+        }
+        boolean rejoin = spokes == 2 && orient(splitU, splitW, v) == 0;
+
+        // 1. Contorno a retriangular (com v no fecho, começa logo depois do vértice fantasma)
+        int[] poly = new int[k];
+        int ghostAt = -1;
+        for (int i = 0; i < k; i++) if (starLink[i] == GHOST) ghostAt = i;
+        boolean onHull = ghostAt >= 0;
+        int size = 0;
+        for (int i = 0; i < k; i++) {
+            int u = starLink[(i + ghostAt + 1 + k) % k];
+            if (u != GHOST) poly[size++] = u;
+        }
+
+        // 2. Recorte das orelhas (planejado antes de alterar a malha)
+        int[] planned = new int[3 * k];
+        int plannedCount = 0;
+        while (onHull ? size > 2 : size > 3) {
+            int ear = -1, fallback = -1;
+            int limit = onHull ? size - 2 : size;
+            for (int i = 0; i < limit && ear < 0; i++) {
+                int a = poly[i], b = poly[(i + 1) % size], c = poly[(i + 2) % size];
+                if (!(orient(a, b, c) > 0)) continue;
+                if (fallback < 0) fallback = i;
+                boolean empty = true;
+                for (int j = 0; j < size && empty; j++) {
+                    int d = poly[j];
+                    if (d != a && d != b && d != c && inCircle(x, y, rank, a, b, c, d)) empty = false;
+                }
+                if (empty) ear = i;
+            }
+            if (ear < 0) {
+                if (onHull && fallback < 0) break; // Contorno restante já é convexo: vira fecho
+                if (fallback < 0) return false;
+                ear = fallback;
+            }
+            planned[plannedCount++] = poly[ear];
+            planned[plannedCount++] = poly[(ear + 1) % size];
+            planned[plannedCount++] = poly[(ear + 2) % size];
+            int removeAt = (ear + 1) % size;
+            System.arraycopy(poly, removeAt + 1, poly, removeAt, size - removeAt - 1);
+            size--;
+        }
+
+        if (onHull) {
+            // Cada aresta restante do contorno passa a ser aresta do fecho
+            for (int i = 0; i + 1 < size; i++) {
+                int outer = outerOf(v, poly[i], poly[i + 1], k);
+                if (outer >= 0 && isGhost(outer)) return false;
+                planned[plannedCount++] = poly[i];
+                planned[plannedCount++] = poly[i + 1];
+                planned[plannedCount++] = GHOST;
+            }
+        } else {
+            if (!(orient(poly[0], poly[1], poly[2]) > 0)) return false;
+            planned[plannedCount++] = poly[0];
+            planned[plannedCount++] = poly[1];
+            planned[plannedCount++] = poly[2];
+        }
+        if (plannedCount != 3 * (k - 2)) return false;
+
+        // 3. Vizinhos externos de cada aresta do contorno, antes de sobrescrever a estrela
+        int[] outerA = new int[k], outerB = new int[k], outerN = new int[k], outerK = new int[k];
+        int[] slots = Arrays.copyOf(starTriangles, k);
+        for (int i = 0; i < k; i++) {
+            int t = slots[i];
+            int c = cornerOf(t, v);
+            outerA[i] = starLink[i];
+            outerB[i] = starLink[(i + 1) % k];
+            outerN[i] = nbr[3 * t + c];
+            outerK[i] = neighbourIndex(outerN[i], t);
+        }
+
+        // 4. Grava os novos triângulos nas posições da estrela e libera as duas que sobram
+        int newCount = k - 2;
+        for (int j = 0; j < newCount; j++) {
+            int t = slots[j];
+            System.arraycopy(planned, 3 * j, tri, 3 * t, 3);
+        }
+        for (int j = newCount; j < k; j++) freeSlot(slots[j]);
+
+        for (int j = 0; j < newCount; j++) {
+            int t = slots[j];
+            for (int i = 0; i < 3; i++) {
+                int a = tri[3 * t + (i + 1) % 3];
+                int b = tri[3 * t + (i + 2) % 3];
+                int link = -1;
+                for (int o = 0; o < newCount && link < 0; o++) {
+                    if (o != j && edgeIndex(slots[o], b, a) >= 0) link = slots[o];
+                }
+                boolean restricted = false;
+                if (link < 0) {
+                    for (int o = 0; o < k; o++) {
+                        if (outerA[o] == a && outerB[o] == b) {
+                            link = outerN[o];
+                            nbr[3 * link + outerK[o]] = t;
+                            restricted = constrained != null && constrained[3 * link + outerK[o]];
+                            break;
+                        }
+                    }
+                }
+                nbr[3 * t + i] = link;
+                if (constrained != null) constrained[3 * t + i] = restricted;
+            }
+            for (int i = 0; i < 3; i++) {
+                int u = tri[3 * t + i];
+                if (u != GHOST) vertexTriangle[u] = t;
+            }
+            if (!isGhost(t)) lastTriangle = t;
+        }
+        if (isGhost(lastTriangle) || isFree(lastTriangle)) lastTriangle = slots[0];
+        vertexTriangle[v] = -1;
+
+        if (recordChanges) {
+            for (int j = 0; j < k; j++) recordChange(slots[j]);
+        }
+        if (rejoin) insertConstraint(splitU, splitW);
+        return true;
+    }
+
+    /**
+     * Move o vértice v para (px, py) mantendo a conectividade, se v é interior e continua dentro
+     * do núcleo da sua estrela; a propriedade de Delaunay é restaurada por flips (Lawson).
+     * @return false, sem alterar a malha, se o movimento exige remover e reinserir o vértice.
+     */
+    boolean moveInPlace(int v, double px, double py) {
+        int k = star(v);
+        for (int i = 0; i < k; i++) {
+            int a = starLink[i], b = starLink[(i + 1) % k];
+            if (a == GHOST || b == GHOST) return false;
+            if (!(orient(a, b, px, py) > 0)) return false;
+            if (isConstrainedSpoke(v, i)) return false;
+        }
+
+        x[v] = px;
+        y[v] = py;
+
+        int stackSize = 0;
+        for (int i = 0; i < k; i++) {
+            int t = starTriangles[i];
+            if (recordChanges) recordChange(t);
+            for (int c = 0; c < 3; c++) {
+                flipStack = ensure(flipStack, stackSize + 1);
+                flipStack[stackSize++] = 3 * t + c;
+            }
+        }
+        restoreDelaunay(stackSize);
+        return true;
+    }
+
+    /**
+     * Flips de Lawson a partir das arestas empilhadas em flipStack (codificadas como 3t + canto)
+     * até que todas sejam localmente de Delaunay.
+     */
+    void restoreDelaunay(int stackSize) {
+        while (stackSize > 0) {
+            int code = flipStack[--stackSize];
+            int t = code / 3, i = code % 3;
+            if (isFree(t) || isGhost(t)) continue;
+
+            int u = nbr[3 * t + i];
+            if (isGhost(u) || !canFlip(t, i)) continue;
+
+            int j = neighbourIndex(u, t);
+            if (!inCircle(x, y, rank, tri[3 * t], tri[3 * t + 1], tri[3 * t + 2], tri[3 * u + j])) continue;
+
+            flip(t, i);
+            if (recordChanges) {
+                recordChange(t);
+                recordChange(u);
+            }
+            flipStack = ensure(flipStack, stackSize + 4);
+            // Arestas externas do novo quadrilátero: t = (a, b, d) e u = (a, d, c)
+            flipStack[stackSize++] = 3 * t;
+            flipStack[stackSize++] = 3 * t + 2;
+            flipStack[stackSize++] = 3 * u;
+            flipStack[stackSize++] = 3 * u + 1;
+        }
+    }
+
+    boolean canFlip(int t, int i) {
+        return constrained == null || !constrained[3 * t + i];
+    }
+
+    /**
+     * Troca a diagonal do quadrilátero formado por t e o vizinho oposto ao canto i.
+     * Com t = (a, b, c) e o vizinho = (d, c, b), o resultado é t = (a, b, d) e vizinho = (a, d, c).
+     */
+    void flip(int t, int i) {
+        int u = nbr[3 * t + i];
+        int j = neighbourIndex(u, t);
+
+        int a = tri[3 * t + i];
+        int b = tri[3 * t + (i + 1) % 3];
+        int c = tri[3 * t + (i + 2) % 3];
+        int d = tri[3 * u + j];
+
+        int nCA = nbr[3 * t + (i + 1) % 3]; // oposto a b
+        int nAB = nbr[3 * t + (i + 2) % 3]; // oposto a c
+        int nDC = nbr[3 * u + (j + 2) % 3]; // oposto a b em u
+        int nBD = nbr[3 * u + (j + 1) % 3]; // oposto a c em u
+
+        if (constrained != null) {
+            boolean cCA = constrained[3 * t + (i + 1) % 3], cAB = constrained[3 * t + (i + 2) % 3];
+            boolean cDC = constrained[3 * u + (j + 2) % 3], cBD = constrained[3 * u + (j + 1) % 3];
+            constrained[3 * t] = cBD; constrained[3 * t + 1] = false; constrained[3 * t + 2] = cAB;
+            constrained[3 * u] = cDC; constrained[3 * u + 1] = cCA; constrained[3 * u + 2] = false;
+        }
+
+        tri[3 * t] = a; tri[3 * t + 1] = b; tri[3 * t + 2] = d;
+        nbr[3 * t] = nBD; nbr[3 * t + 1] = u; nbr[3 * t + 2] = nAB;
+
+        tri[3 * u] = a; tri[3 * u + 1] = d; tri[3 * u + 2] = c;
+        nbr[3 * u] = nDC; nbr[3 * u + 1] = nCA; nbr[3 * u + 2] = t;
+
+        nbr[3 * nBD + neighbourIndex(nBD, u)] = t;
+        nbr[3 * nCA + neighbourIndex(nCA, t)] = u;
+
+        vertexTriangle[a] = t;
+        vertexTriangle[b] = t;
+        vertexTriangle[c] = u;
+        vertexTriangle[d] = t;
+        lastTriangle = t;
+    }
+
+    /**
+     * Percorre os triângulos ao redor de v em sentido anti-horário. Preenche starTriangles e
+     * starLink, onde starLink[i] é o vértice seguinte a v em starTriangles[i]. Retorna o grau.
+     */
+    int star(int v) {
+        int first = vertexTriangle[v];
+        int t = first;
+        int k = 0;
+        do {
+            int c = cornerOf(t, v);
+            if (k == starTriangles.length) {
+                starTriangles = Arrays.copyOf(starTriangles, 2 * k);
+                starLink = Arrays.copyOf(starLink, 2 * k);
+            }
+            starTriangles[k] = t;
+            starLink[k] = tri[3 * t + (c + 1) % 3];
+            k++;
+            t = nbr[3 * t + (c + 1) % 3];
+        } while (t != first);
+        return k;
+    }
+
+    int vertexTriangle(int v) {
+        return vertexTriangle[v];
+    }
+
+    /**
+     * Força a aresta (a, b) na triangulação (Delaunay restrita). A aresta é recuperada trocando
+     * as diagonais que a cruzam (Sloan), sem criar pontos; depois os flips de Lawson restauram a
+     * propriedade de Delaunay em volta dela. Vértices exatamente sobre o segmento o dividem.
+     * @return false se o segmento cruza outra aresta restrita (exigiria um ponto novo).
+     */
+    boolean insertConstraint(int a, int b) {
+        if (constrained == null) constrained = new boolean[tri.length];
+
+        while (a != b) {
+            // 1. Triângulo da estrela de a na direção de b (ou vértice colinear no caminho)
+            int k = star(a);
+            int first = -1, target = -1;
+            for (int i = 0; i < k && first < 0 && target < 0; i++) {
+                int u = starLink[i], w = starLink[(i + 1) % k];
+                if (u == GHOST) continue;
+                if (u == b || (orient(a, b, u) == 0 && isAhead(a, b, u))) {
+                    target = u;
+                } else if (w != GHOST && orient(a, u, b) > 0 && orient(a, w, b) < 0) {
+                    first = starTriangles[i];
+                }
+            }
+            if (target < 0 && first < 0) return false;
+
+            // 2. Arestas cruzadas pelo segmento, caminhando de triângulo em triângulo
+            int crossingCount = 0;
+            int[] crossing = new int[16];
+            if (target < 0) {
+                int t = first;
+                int right = tri[3 * t + (cornerOf(t, a) + 1) % 3];
+                int left = tri[3 * t + (cornerOf(t, a) + 2) % 3];
+                while (true) {
+                    int c = cornerOf(t, opposite(t, left, right));
+                    if (constrained[3 * t + c]) return false;
+                    crossing = ensure(crossing, 2 * crossingCount + 2);
+                    crossing[2 * crossingCount] = right;
+                    crossing[2 * crossingCount + 1] = left;
+                    crossingCount++;
+
+                    int next = nbr[3 * t + c];
+                    int w = opposite(next, right, left);
+                    t = next;
+                    if (w == b) {
+                        target = b;
+                        break;
+                    }
+                    double side = orient(a, b, w);
+                    if (side == 0) {
+                        target = w;
+                        break;
+                    }
+                    if (side > 0) left = w; else right = w;
+                }
+            }
+
+            // 3. Troca as diagonais cruzadas até a aresta (a, target) aparecer
+            int[] created = new int[2 * crossingCount];
+            int createdCount = 0;
+            int queueHead = 0, queueTail = crossingCount;
+            int[] queue = Arrays.copyOf(crossing, 2 * crossingCount);
+            int guard = 0, limit = 16 * crossingCount * crossingCount + 64;
+            while (queueHead != queueTail) {
+                if (++guard > limit) return false;
+                int slot = queueHead % crossingCount;
+                int p = queue[2 * slot], q = queue[2 * slot + 1];
+                queueHead++;
+
+                int code = findEdge(p, q);
+                int t = code / 3, i = code % 3;
+                int u = nbr[3 * t + i];
+                int r = tri[3 * t + i];
+                int s2 = tri[3 * u + neighbourIndex(u, t)];
+
+                // Quadrilátero não convexo: tenta de novo depois
+                if (!separates(r, s2, p, q)) {
+                    int back = queueTail % crossingCount;
+                    queue[2 * back] = p;
+                    queue[2 * back + 1] = q;
+                    queueTail++;
+                    continue;
+                }
+
+                flip(t, i);
+                if (recordChanges) {
+                    recordChange(t);
+                    recordChange(u);
+                }
+                if (crosses(a, target, r, s2)) {
+                    int back = queueTail % crossingCount;
+                    queue[2 * back] = r;
+                    queue[2 * back + 1] = s2;
+                    queueTail++;
+                } else {
+                    created[2 * createdCount] = r;
+                    created[2 * createdCount + 1] = s2;
+                    createdCount++;
+                }
+            }
+
+            // 4. Marca a aresta e restaura Delaunay nas diagonais novas
+            int code = findEdge(a, target);
+            int t = code / 3, i = code % 3;
+            int u = nbr[3 * t + i];
+            constrained[3 * t + i] = true;
+            constrained[3 * u + neighbourIndex(u, t)] = true;
+
+            int stackSize = 0;
+            for (int e = 0; e < createdCount; e++) {
+                int p = created[2 * e], q = created[2 * e + 1];
+                if ((p == a && q == target) || (p == target && q == a)) continue;
+                flipStack = ensure(flipStack, stackSize + 1);
+                flipStack[stackSize++] = findEdge(p, q);
+            }
+            restoreDelaunay(stackSize);
+
+            a = target;
+        }
+        return true;
+    }
+
+    /**
+     * Desfaz a aresta restrita (a, b), inclusive os trechos entre vértices colineares do caminho,
+     * e restaura Delaunay a partir dela. Para no primeiro trecho que não está restrito.
+     * @return false se algum trecho do caminho não era restrito
+     */
+    boolean removeConstraint(int a, int b) {
+        if (constrained == null) return false;
+        int stackSize = 0;
+        boolean complete = true;
+        while (a != b) {
+            int k = star(a);
+            int next = -1;
+            for (int i = 0; i < k && next < 0; i++) {
+                int u = starLink[i];
+                if (u != GHOST && (u == b || (orient(a, b, u) == 0 && isAhead(a, b, u)))) next = u;
+            }
+            int code = (next < 0) ? -1 : findEdge(a, next);
+            if (code < 0 || !constrained[code]) {
+                complete = false;
+                break;
+            }
+            int t = code / 3, u = nbr[code];
+            constrained[code] = false;
+            constrained[3 * u + neighbourIndex(u, t)] = false;
+            if (recordChanges) {
+                recordChange(t);
+                recordChange(u);
+            }
+            flipStack = ensure(flipStack, stackSize + 1);
+            flipStack[stackSize++] = code;
+            a = next;
+        }
+        restoreDelaunay(stackSize);
+        return complete;
+    }
+
+    /**
+     * Meia-aresta (p, q): retorna 3t + i, onde a aresta oposta ao canto i do triângulo t vai de p
+     * para q. A aresta precisa existir.
+     */
+    int findEdge(int p, int q) {
+        int first = vertexTriangle[p];
+        int t = first;
+        do {
+            int c = cornerOf(t, p);
+            if (tri[3 * t + (c + 1) % 3] == q) return 3 * t + (c + 2) % 3;
+            if (tri[3 * t + (c + 2) % 3] == q) {
+                int u = nbr[3 * t + (c + 1) % 3];
+                return 3 * u + neighbourIndex(u, t);
+            }
+            t = nbr[3 * t + (c + 1) % 3];
+        } while (t != first);
+        return -1;
+    }
+
+    // O segmento (a, b) cruza o segmento (p, q) no interior dos dois?
+    private boolean crosses(int a, int b, int p, int q) {
+        return separates(a, b, p, q) && separates(p, q, a, b);
+    }
+
+    // p e q estão estritamente em lados opostos da reta (a, b)? (compara sinais, sem multiplicar)
+    private boolean separates(int a, int b, int p, int q) {
+        double op = orient(a, b, p), oq = orient(a, b, q);
+        return (op > 0 && oq < 0) || (op < 0 && oq > 0);
+    }
+
+    // u (colinear com a e b) está entre a e b, no sentido de a para b?
+    private boolean isAhead(int a, int b, int u) {
+        double dot = (x[u] - x[a]) * (x[b] - x[a]) + (y[u] - y[a]) * (y[b] - y[a]);
+        double len = (x[b] - x[a]) * (x[b] - x[a]) + (y[b] - y[a]) * (y[b] - y[a]);
+        return dot > 0 && dot < len;
+    }
+
+    // Vértice de t que não é u nem w
+    private int opposite(int t, int u, int w) {
+        for (int i = 0; i < 3; i++) {
+            int v = tri[3 * t + i];
+            if (v != u && v != w) return v;
+        }
+        return GHOST;
+    }
+
+    private boolean isEdge(int t, int i, int u, int w) {
+        int a = tri[3 * t + (i + 1) % 3], b = tri[3 * t + (i + 2) % 3];
+        return u != GHOST && ((a == u && b == w) || (a == w && b == u));
+    }
+
+    // A aresta entre v e starLink[i] (da última chamada de star(v)) é restrita?
+    private boolean isConstrainedSpoke(int v, int i) {
+        if (constrained == null) return false;
+        int t = starTriangles[i];
+        return constrained[3 * t + (cornerOf(t, v) + 2) % 3];
+    }
+
+    /** Garante espaço para os vértices de índice menor que count (malhas editáveis). */
+    void ensureVertexCapacity(int count) {
+        if (count <= x.length) return;
+        int capacity = Math.max(count, 2 * x.length);
+        x = Arrays.copyOf(x, capacity);
+        y = Arrays.copyOf(y, capacity);
+        vertexTriangle = Arrays.copyOf(vertexTriangle, capacity);
+    }
+
+    // Triângulo do outro lado da aresta (a, b) do contorno da estrela de v (-1 se não for do contorno)
+    private int outerOf(int v, int a, int b, int k) {
+        for (int i = 0; i < k; i++) {
+            if (starLink[i] == a && starLink[(i + 1) % k] == b) {
+                int t = starTriangles[i];
+                return nbr[3 * t + cornerOf(t, v)];
+            }
+        }
+        return -1;
+    }
+
+    int cornerOf(int t, int v) {
+        if (tri[3 * t] == v) return 0;
+        if (tri[3 * t + 1] == v) return 1;
+        return 2;
+    }
+
+    private void recordChange(int t) {
+        changed = ensure(changed, changedCount + 1);
+        changed[changedCount++] = t;
+    }
+
+    private void freeSlot(int t) {
+        tri[3 * t] = FREE;
+        tri[3 * t + 1] = FREE;
+        tri[3 * t + 2] = FREE;
+        if (constrained != null) {
+            constrained[3 * t] = false;
+            constrained[3 * t + 1] = false;
+            constrained[3 * t + 2] = false;
+        }
+        freeSlots = ensure(freeSlots, freeCount + 1);
+        freeSlots[freeCount++] = t;
+    }
+
+    /**
+     * Caminhada por visibilidade a partir do último triângulo criado.
+     * Retorna o triângulo (real ou fantasma) que contém o ponto.
+     */
+    int locate(double px, double py) {
+        int t = lastTriangle;
+        if (isGhost(t)) t = nbr[3 * t + ghostIndex(t)];
+
+        int steps = 0;
+        int rotation = 0;
+        walk:
+        while (steps++ < 4 * triCount + 16) {
+            if (isGhost(t)) return t;
+
+            rotation = (rotation + 1) % 3;
+            for (int k = 0; k < 3; k++) {
+                int i = (k + rotation) % 3;
+                int a = tri[3 * t + (i + 1) % 3];
+                int b = tri[3 * t + (i + 2) % 3];
+                if (orient(a, b, px, py) < 0) {
+                    t = nbr[3 * t + i];
+                    continue walk;
+                }
+            }
+            return t;
+        }
+        return locateBruteForce(px, py);
+    }
+
+    // Recurso de segurança: nunca deveria ser usado numa malha de Delaunay válida
+    private int locateBruteForce(double px, double py) {
+        for (int t = 0; t < triCount; t++) {
+            if (isGhost(t) || isFree(t)) continue;
+            if (orient(tri[3 * t], tri[3 * t + 1], px, py) >= 0
+                    && orient(tri[3 * t + 1], tri[3 * t + 2], px, py) >= 0
+                    && orient(tri[3 * t + 2], tri[3 * t], px, py) >= 0) {
+                return t;
+            }
+        }
+        for (int t = 0; t < triCount; t++) {
+            if (isGhost(t) && !isFree(t)) {
+                int g = ghostIndex(t);
+                if (orient(tri[3 * t + (g + 1) % 3], tri[3 * t + (g + 2) % 3], px, py) > 0) return t;
+            }
+        }
+        return lastTriangle;
+    }
+
+    /** Testa se p está dentro do circuncírculo do triângulo t (semiplano externo, para fantasmas). */
+    boolean inCircumcircle(int t, int p) {
+        int a = tri[3 * t];
+        int b = tri[3 * t + 1];
+        int c = tri[3 * t + 2];
+
+        if (a == GHOST || b == GHOST || c == GHOST) {
+            int g = ghostIndex(t);
+            int u = tri[3 * t + (g + 1) % 3];
+            int v = tri[3 * t + (g + 2) % 3];
+            double o = orient(u, v, x[p], y[p]);
+            if (o > 0) return true;
+            if (o < 0) return false;
+            // Colinear com a aresta do fecho: só entra se estiver estritamente entre u e v
+            double dot = (x[p] - x[u]) * (x[v] - x[u]) + (y[p] - y[u]) * (y[v] - y[u]);
+            double len = (x[v] - x[u]) * (x[v] - x[u]) + (y[v] - y[u]) * (y[v] - y[u]);
+            return dot > 0 && dot < len;
+        }
+        return inCircle(x, y, rank, a, b, c, p);
+    }
+
+    double orient(int a, int b, int c) {
+        return orient(a, b, x[c], y[c]);
+    }
+
+    double orient(int a, int b, double px, double py) {
+        return orient(x, y, a, b, px, py);
+    }
+
+    static double orient(double[] x, double[] y, int a, int b, double px, double py) {
+        return GeometricPredicates.orient2d(x[a], y[a], x[b], y[b], px, py);
+    }
+
+    /**
+     * Teste do circuncírculo com desempate simbólico (Simulation of Simplicity): quando os quatro
+     * pontos são cocirculares, cada vértice é tratado como se sua elevação no paraboloide tivesse
+     * uma perturbação infinitesimal, maior quanto menor o índice global. Assim nunca há empate e a
+     * triangulação é única, independente da ordem de inserção.
+     */
+    static boolean inCircle(double[] x, double[] y, int[] rank, int a, int b, int c, int d) {
+        double det = incircle(x, y, a, b, c, d);
+        if (det != 0) return det > 0;
+
+        // Coeficiente da perturbação de cada vértice (derivada do determinante em relação à sua elevação)
+        int[] v = {a, b, c, d};
+        double[] coefficient = {
+                orient(x, y, d, b, x[c], y[c]),
+                -orient(x, y, d, a, x[c], y[c]),
+                orient(x, y, d, a, x[b], y[b]),
+                -orient(x, y, a, b, x[c], y[c])
+        };
+
+        // O termo dominante é o do vértice de menor índice com coeficiente não nulo
+        int best = -1;
+        for (int i = 0; i < 4; i++) {
+            if (coefficient[i] == 0) continue;
+            if (best < 0 || rankOf(rank, v[i]) < rankOf(rank, v[best])) best = i;
+        }
+        return best >= 0 && coefficient[best] > 0;
+    }
+
+    private static int rankOf(int[] rank, int v) {
+        return (rank == null) ? v : rank[v];
+    }
+
+    /** Positivo se d está dentro do círculo que passa por a, b, c (em sentido anti-horário). */
+    static double incircle(double[] x, double[] y, int a, int b, int c, int d) {
+        return GeometricPredicates.incircle(x[a], y[a], x[b], y[b], x[c], y[c], x[d], y[d]);
+    }
+
+    boolean isFree(int t) {
+        return tri[3 * t] == FREE;
+    }
+
+    boolean isGhost(int t) {
+        return tri[3 * t] == GHOST || tri[3 * t + 1] == GHOST || tri[3 * t + 2] == GHOST;
+    }
+
+    int ghostIndex(int t) {
+        if (tri[3 * t] == GHOST) return 0;
+        if (tri[3 * t + 1] == GHOST) return 1;
+        return 2;
+    }
+
+    /** Índice i em t tal que a aresta oposta a tri[3t+i] é (a, b), ou -1. */
+    int edgeIndex(int t, int a, int b) {
+        for (int i = 0; i < 3; i++) {
+            if (tri[3 * t + (i + 1) % 3] == a && tri[3 * t + (i + 2) % 3] == b) return i;
+        }
+        return -1;
+    }
+
+    int neighbourIndex(int t, int neighbour) {
+        if (nbr[3 * t] == neighbour) return 0;
+        if (nbr[3 * t + 1] == neighbour) return 1;
+        return 2;
+    }
+
+    private int newTriangle(int a, int b, int c) {
+        int t = newSlot();
+        tri[3 * t] = a;
+        tri[3 * t + 1] = b;
+        tri[3 * t + 2] = c;
+        return t;
+    }
+
+    private int newSlot() {
+        if (freeCount > 0) return freeSlots[--freeCount];
+        if (3 * (triCount + 1) > tri.length) {
+            int capacity = Math.max(16, triCount * 2);
+            tri = Arrays.copyOf(tri, 3 * capacity);
+            nbr = Arrays.copyOf(nbr, 3 * capacity);
+            visit = Arrays.copyOf(visit, capacity);
+            if (constrained != null) constrained = Arrays.copyOf(constrained, 3 * capacity);
+        }
+        return triCount++;
+    }
+
+    private void growBoundary() {
+        int capacity = boundaryA.length * 2;
+        boundaryA = Arrays.copyOf(boundaryA, capacity);
+        boundaryB = Arrays.copyOf(boundaryB, capacity);
+        boundaryN = Arrays.copyOf(boundaryN, capacity);
+        boundaryK = Arrays.copyOf(boundaryK, capacity);
+        boundaryC = Arrays.copyOf(boundaryC, capacity);
+    }
+
+    static int[] ensure(int[] array, int size) {
+        return (size <= array.length) ? array : Arrays.copyOf(array, Math.max(size, array.length * 2));
+    }
+}
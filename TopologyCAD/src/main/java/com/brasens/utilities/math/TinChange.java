@@ -0,0 +1,20 @@
+package com.brasens.utilities.math;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Alteração de uma {@link TinSurface}: posições de triângulo criadas, alteradas ou liberadas
+ * pela última edição. Se {@code rebuilt} for verdadeiro a superfície inteira mudou e as
+ * posições anteriores não valem mais.
+ */
+@Getter
+@AllArgsConstructor
+public class TinChange {
+    private final int[] slots;
+    private final boolean rebuilt;
+
+    public static TinChange rebuilt() {
+        return new TinChange(new int[0], true);
+    }
+}
@@ -0,0 +1,39 @@
+package com.brasens.utilities.math;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.Locale;
+
+/**
+ * Resultado de uma simplificação de TIN ({@link TinDecimator}): a malha reduzida e o relatório
+ * do erro. Os erros são as diferenças verticais entre a cota de cada vértice removido e a
+ * superfície reduzida naquele ponto.
+ */
+@Getter
+@AllArgsConstructor
+public class TinDecimation {
+    private final TinMesh mesh;
+    private final double tolerance;
+
+    private final double maxError;
+    private final double rmsError;
+
+    private final int originalVertexCount;
+    private final int vertexCount;
+    private final int originalTriangleCount;
+
+    public int getRemovedVertexCount() {
+        return originalVertexCount - vertexCount;
+    }
+
+    public int getTriangleCount() {
+        return mesh.getTriangleCount();
+    }
+
+    public String getSummary() {
+        double removed = (originalVertexCount > 0) ? 100.0 * getRemovedVertexCount() / originalVertexCount : 0;
+        return String.format(Locale.ROOT, "%d -> %d vértices (%.1f%% removidos), %d -> %d triângulos, erro máx. %.3f m, RMS %.3f m",
+                originalVertexCount, vertexCount, removed, originalTriangleCount, getTriangleCount(), maxError, rmsError);
+    }
+}
@@ -0,0 +1,388 @@
+package com.brasens.utilities.math;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Simplificação de TIN com erro vertical limitado, por inserção gulosa (Garland-Heckbert).
+ *
+ * A malha reduzida começa só com os vértices da borda (o mesmo domínio da original) e recebe, um
+ * a um, o vértice que está mais longe dela na vertical, até que nenhum vértice deixado de fora
+ * fique a mais que a tolerância da superfície. Cada triângulo guarda a lista dos vértices de fora
+ * que caem nele e o pior deles; uma fila de prioridade sobre os triângulos dá o próximo vértice.
+ * Uma inserção só redistribui os vértices da cavidade refeita.
+ *
+ * A malha de entrada deve cobrir o fecho convexo dos seus vértices, como as geradas por
+ * {@link DelaunayTriangulator} e {@link TinSurface}. As linhas de quebra não são preservadas.
+ */
+public final class TinDecimator {
+
+    private static final int FAN_STRIDE = 9;
+
+    private final TinMesh mesh;
+    private final TinBuilder builder;
+
+    // Vértices usados pela malha, renumerados em ordem de Hilbert (vértices vizinhos ficam próximos
+    // na memória); original[k] é o índice do vértice k na malha de entrada
+    private final int[] original;
+    private final double[] x;
+    private final double[] y;
+    private final double[] z;
+
+    // Vértices de fora por triângulo (lista ligada: head por posição, next por vértice)
+    private int[] head;
+    private final int[] next;
+    private final double[] error;
+
+    // Fila de prioridade (heap de máximo) das posições pelo pior erro dos seus vértices
+    private int[] heap;
+    private int[] heapPos;
+    private int[] worst;
+    private double[] worstError;
+    private int heapSize = 0;
+
+    private int[] buffer = new int[64];
+
+    // Triângulos refeitos pela última inserção: posição, cantos (x, y) e plano z = ax + by + c
+    private int[] fanSlots = new int[16];
+    private double[] fan = new double[16 * FAN_STRIDE];
+    private int fanCount = 0;
+
+    private int outsideCount = 0;
+    private double sumSquares = 0;
+
+    private TinDecimator(TinMesh mesh, int[] original, double[] x, double[] y, double[] z, TinBuilder builder) {
+        this.mesh = mesh;
+        this.original = original;
+        this.x = x;
+        this.y = y;
+        this.z = z;
+        this.builder = builder;
+        this.next = new int[x.length];
+        this.error = new double[x.length];
+        int slots = builder.tri.length / 3;
+        this.head = new int[slots];
+        this.heapPos = new int[slots];
+        this.worst = new int[slots];
+        this.worstError = new double[slots];
+        this.heap = new int[slots];
+        Arrays.fill(head, -1);
+        Arrays.fill(heapPos, -1);
+    }
+
+    /**
+     * Remove os vértices cuja ausência muda a superfície menos que a tolerância (em metros, na
+     * vertical). Os vértices mantidos conservam os índices e os pontos de origem da malha.
+     */
+    public static TinDecimation decimate(TinMesh mesh, double tolerance) {
+        return levels(mesh, tolerance).get(0);
+    }
+
+    /**
+     * Níveis de detalhe para as tolerâncias dadas, do mais grosso (maior tolerância) ao mais fino.
+     * Uma só passada: cada nível é a malha reduzida no momento em que o erro cai abaixo da sua
+     * tolerância, então cada nível contém todos os vértices do anterior.
+     */
+    public static List<TinDecimation> levels(TinMesh mesh, double... tolerances) {
+        double[] sorted = tolerances.clone();
+        Arrays.sort(sorted);
+        List<TinDecimation> levels = new ArrayList<>(sorted.length);
+
+        int n = mesh.getVertexCount();
+        int[] triangles = mesh.getTriangles();
+        boolean[] used = new boolean[n];
+        boolean[] boundary = new boolean[n];
+        for (int i = 0; i < triangles.length; i++) {
+            used[triangles[i]] = true;
+            if (mesh.getNeighbours()[i] < 0) {
+                boundary[triangles[i - i % 3 + (i % 3 + 1) % 3]] = true;
+                boundary[triangles[i - i % 3 + (i % 3 + 2) % 3]] = true;
+            }
+        }
+
+        // 1. Vértices usados, relativos ao centro (como na triangulação) e em ordem de Hilbert
+        double minX = Double.MAX_VALUE, minY = Double.MAX_VALUE;
+        double maxX = -Double.MAX_VALUE, maxY = -Double.MAX_VALUE;
+        int m = 0;
+        for (int v = 0; v < n; v++) {
+            if (!used[v]) continue;
+            minX = Math.min(minX, mesh.getX()[v]); maxX = Math.max(maxX, mesh.getX()[v]);
+            minY = Math.min(minY, mesh.getY()[v]); maxY = Math.max(maxY, mesh.getY()[v]);
+            m++;
+        }
+        double[] usedX = new double[m];
+        double[] usedY = new double[m];
+        int[] usedIds = new int[m];
+        double originX = GeometricPredicates.exactOrigin(minX, maxX);
+        double originY = GeometricPredicates.exactOrigin(minY, maxY);
+        for (int v = 0, k = 0; v < n; v++) {
+            if (!used[v]) continue;
+            usedX[k] = mesh.getX()[v] - originX;
+            usedY[k] = mesh.getY()[v] - originY;
+            usedIds[k++] = v;
+        }
+        long[] hilbert = DelaunayTriangulator.hilbertKeys(usedX, usedY);
+        long[] keys = new long[m];
+        for (int k = 0; k < m; k++) keys[k] = (hilbert[k] << 31) | k;
+        Arrays.sort(keys);
+
+        int[] original = new int[m];
+        double[] x = new double[m];
+        double[] y = new double[m];
+        double[] z = new double[m];
+        int[] border = new int[m];
+        int borderCount = 0;
+        for (int k = 0; k < m; k++) {
+            int u = (int) (keys[k] & 0x7FFFFFFFL);
+            original[k] = usedIds[u];
+            x[k] = usedX[u];
+            y[k] = usedY[u];
+            z[k] = mesh.getZ()[original[k]];
+            if (boundary[original[k]]) border[borderCount++] = k;
+        }
+
+        // 2. Malha inicial só com a borda
+        TinBuilder builder = (borderCount < 3) ? null : DelaunayTriangulator.build(x, y, Arrays.copyOf(border, borderCount));
+        if (builder == null) {
+            for (int k = sorted.length - 1; k >= 0; k--) {
+                levels.add(new TinDecimation(mesh, sorted[k], 0, 0, m, m, mesh.getTriangleCount()));
+            }
+            return levels;
+        }
+        builder.recordChanges = true;
+
+        // 3. Vértices internos distribuídos pelos triângulos (na ordem de Hilbert: caminhadas curtas)
+        TinDecimator decimator = new TinDecimator(mesh, original, x, y, z, builder);
+        for (int k = 0; k < m; k++) {
+            if (boundary[original[k]]) continue;
+            int t = builder.locate(x[k], y[k]);
+            if (builder.isGhost(t)) {
+                // Fora do fecho da borda: a malha não era convexa, o vértice fica
+                decimator.insertVertex(k);
+            } else {
+                decimator.assign(k, t, Math.abs(z[k] - decimator.interpolate(t, x[k], y[k])));
+            }
+        }
+        for (int t = 0; t < builder.triCount; t++) decimator.update(t);
+
+        // 4. Inserção gulosa do pior vértice; cada tolerância atingida vira um nível
+        int level = sorted.length - 1;
+        while (level >= 0) {
+            double maxError = decimator.maxError();
+            if (maxError <= sorted[level]) {
+                levels.add(decimator.snapshot(sorted[level]));
+                level--;
+                continue;
+            }
+            decimator.insertVertex(decimator.worst[decimator.heap[0]]);
+        }
+        return levels;
+    }
+
+    private double maxError() {
+        return (heapSize == 0) ? 0 : worstError[heap[0]];
+    }
+
+    // Malha reduzida atual, com os índices e os pontos de origem da malha de entrada
+    private TinDecimation snapshot(double tolerance) {
+        int[] triangles = new int[3 * builder.triCount];
+        int count = 0;
+        for (int t = 0; t < builder.triCount; t++) {
+            if (builder.isGhost(t) || builder.isFree(t)) continue;
+            for (int i = 0; i < 3; i++) triangles[3 * count + i] = original[builder.tri[3 * t + i]];
+            count++;
+        }
+        TinMesh reduced = TinMesh.fromTriangles(triangles, count, mesh.getX(), mesh.getY(), mesh.getZ(), mesh.getSources());
+        double rms = (outsideCount > 0) ? Math.sqrt(Math.max(0, sumSquares) / outsideCount) : 0;
+        int m = original.length;
+        return new TinDecimation(reduced, tolerance, maxError(), rms, m, m - outsideCount, mesh.getTriangleCount());
+    }
+
+    // Insere o vértice e redistribui os vértices de fora que estavam nos triângulos refeitos
+    private void insertVertex(int v) {
+        builder.changedCount = 0;
+        if (!builder.insert(v)) return;
+        ensureSlots();
+
+        int count = 0;
+        for (int k = 0; k < builder.changedCount; k++) {
+            int t = builder.changed[k];
+            for (int p = head[t]; p >= 0; p = next[p]) {
+                buffer = TinBuilder.ensure(buffer, count + 1);
+                buffer[count++] = p;
+            }
+            head[t] = -1;
+        }
+
+        cacheFan();
+        int stray = 0;
+        for (int k = 0; k < count; k++) {
+            int p = buffer[k];
+            outsideCount--;
+            sumSquares -= error[p] * error[p];
+            if (p == v) continue;
+            int f = containing(p);
+            if (f >= 0) {
+                int o = f * FAN_STRIDE;
+                assign(p, fanSlots[f], Math.abs(z[p] - (fan[o + 6] * x[p] + fan[o + 7] * y[p] + fan[o + 8])));
+            } else {
+                buffer[stray++] = p;
+            }
+        }
+        for (int k = 0; k < builder.changedCount; k++) update(builder.changed[k]);
+
+        // Caiu fora do fecho (malha de entrada não convexa): o vértice fica na malha
+        if (stray > 0) {
+            for (int p : Arrays.copyOf(buffer, stray)) insertVertex(p);
+        }
+    }
+
+    // Guarda os triângulos reais refeitos, para testar os vértices redistribuídos sem reler a malha
+    private void cacheFan() {
+        fanCount = 0;
+        for (int k = 0; k < builder.changedCount; k++) {
+            int t = builder.changed[k];
+            if (builder.isGhost(t) || builder.isFree(t)) continue;
+            fanSlots = TinBuilder.ensure(fanSlots, fanCount + 1);
+            if (fan.length < (fanCount + 1) * FAN_STRIDE) fan = Arrays.copyOf(fan, 2 * fan.length);
+
+            int a = builder.tri[3 * t], b = builder.tri[3 * t + 1], c = builder.tri[3 * t + 2];
+            double abx = x[b] - x[a], aby = y[b] - y[a], abz = z[b] - z[a];
+            double acx = x[c] - x[a], acy = y[c] - y[a], acz = z[c] - z[a];
+            double det = abx * acy - acx * aby;
+            double gx = (abz * acy - acz * aby) / det;
+            double gy = (abx * acz - acx * abz) / det;
+
+            int o = fanCount * FAN_STRIDE;
+            fan[o] = x[a]; fan[o + 1] = y[a];
+            fan[o + 2] = x[b]; fan[o + 3] = y[b];
+            fan[o + 4] = x[c]; fan[o + 5] = y[c];
+            fan[o + 6] = gx; fan[o + 7] = gy; fan[o + 8] = z[a] - gx * x[a] - gy * y[a];
+            fanSlots[fanCount++] = t;
+        }
+    }
+
+    // Triângulo refeito (índice em fanSlots) que contém o vértice; -1 se caiu fora do fecho
+    private int containing(int p) {
+        double px = x[p], py = y[p];
+        for (int f = 0; f < fanCount; f++) {
+            int o = f * FAN_STRIDE;
+            if ((fan[o + 2] - fan[o]) * (py - fan[o + 1]) - (fan[o + 3] - fan[o + 1]) * (px - fan[o]) >= 0
+                    && (fan[o + 4] - fan[o + 2]) * (py - fan[o + 3]) - (fan[o + 5] - fan[o + 3]) * (px - fan[o + 2]) >= 0
+                    && (fan[o] - fan[o + 4]) * (py - fan[o + 5]) - (fan[o + 1] - fan[o + 5]) * (px - fan[o + 4]) >= 0) {
+                return f;
+            }
+        }
+        // Sobre uma aresta o arredondamento pode recusar os dois lados: decide pelo predicado exato
+        for (int f = 0; f < fanCount; f++) {
+            int t = fanSlots[f];
+            int a = builder.tri[3 * t], b = builder.tri[3 * t + 1], c = builder.tri[3 * t + 2];
+            if (builder.orient(a, b, px, py) >= 0 && builder.orient(b, c, px, py) >= 0
+                    && builder.orient(c, a, px, py) >= 0) {
+                return f;
+            }
+        }
+        return -1;
+    }
+
+    private void assign(int p, int t, double e) {
+        error[p] = e;
+        next[p] = head[t];
+        head[t] = p;
+        outsideCount++;
+        sumSquares += e * e;
+    }
+
+    // Cota do plano do triângulo t em (px, py)
+    private double interpolate(int t, double px, double py) {
+        int a = builder.tri[3 * t], b = builder.tri[3 * t + 1], c = builder.tri[3 * t + 2];
+        double abx = x[b] - x[a], aby = y[b] - y[a];
+        double acx = x[c] - x[a], acy = y[c] - y[a];
+        double apx = px - x[a], apy = py - y[a];
+        double det = abx * acy - acx * aby;
+        double wb = (apx * acy - acx * apy) / det;
+        double wc = (abx * apy - apx * aby) / det;
+        return z[a] + wb * (z[b] - z[a]) + wc * (z[c] - z[a]);
+    }
+
+    // Recalcula o pior vértice do triângulo e a sua posição na fila
+    private void update(int t) {
+        int best = -1;
+        double bestError = -1;
+        if (!builder.isFree(t) && !builder.isGhost(t)) {
+            for (int p = head[t]; p >= 0; p = next[p]) {
+                if (error[p] > bestError) {
+                    best = p;
+                    bestError = error[p];
+                }
+            }
+        }
+        worst[t] = best;
+        worstError[t] = bestError;
+
+        if (best < 0) {
+            if (heapPos[t] >= 0) removeFromHeap(t);
+        } else if (heapPos[t] < 0) {
+            heapPos[t] = heapSize;
+            heap[heapSize++] = t;
+            siftUp(heapPos[t]);
+        } else {
+            siftUp(heapPos[t]);
+            siftDown(heapPos[t]);
+        }
+    }
+
+    private void removeFromHeap(int t) {
+        int i = heapPos[t];
+        heapPos[t] = -1;
+        int last = heap[--heapSize];
+        if (i == heapSize) return;
+        heap[i] = last;
+        heapPos[last] = i;
+        siftUp(i);
+        siftDown(heapPos[last]);
+    }
+
+    private void siftUp(int i) {
+        int t = heap[i];
+        while (i > 0) {
+            int parent = (i - 1) / 2;
+            if (worstError[heap[parent]] >= worstError[t]) break;
+            heap[i] = heap[parent];
+            heapPos[heap[i]] = i;
+            i = parent;
+        }
+        heap[i] = t;
+        heapPos[t] = i;
+    }
+
+    private void siftDown(int i) {
+        int t = heap[i];
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= heapSize) break;
+            if (child + 1 < heapSize && worstError[heap[child + 1]] > worstError[heap[child]]) child++;
+            if (worstError[heap[child]] <= worstError[t]) break;
+            heap[i] = heap[child];
+            heapPos[heap[i]] = i;
+            i = child;
+        }
+        heap[i] = t;
+        heapPos[t] = i;
+    }
+
+    // Acompanha o crescimento das posições de triângulo do construtor
+    private void ensureSlots() {
+        int slots = builder.tri.length / 3;
+        if (slots <= head.length) return;
+        int old = head.length;
+        head = Arrays.copyOf(head, slots);
+        heapPos = Arrays.copyOf(heapPos, slots);
+        worst = Arrays.copyOf(worst, slots);
+        worstError = Arrays.copyOf(worstError, slots);
+        heap = Arrays.copyOf(heap, slots);
+        Arrays.fill(head, old, slots, -1);
+        Arrays.fill(heapPos, old, slots, -1);
+    }
+}
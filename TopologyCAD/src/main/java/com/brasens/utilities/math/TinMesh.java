@@ -0,0 +1,174 @@
+package com.brasens.utilities.math;
+
+import com.brasens.model.objects.TopoPoint;
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Malha TIN compacta em vetores primitivos.
+ *
+ * Vértice v: (x[v], y[v], z[v]), na mesma ordem da lista de pontos de origem.
+ * Triângulo t: vértices triangles[3t..3t+2] em sentido anti-horário;
+ * neighbours[3t + i] é o triângulo oposto ao vértice i (-1 na borda do fecho).
+ */
+@Getter
+public class TinMesh {
+
+    private final double[] x;
+    private final double[] y;
+    private final double[] z;
+
+    private final int[] triangles;
+    private final int[] neighbours;
+
+    // Pontos originais (pode ser null para malhas que não vieram de TopoPoints)
+    private final List<TopoPoint> sources;
+
+    public TinMesh(double[] x, double[] y, double[] z, int[] triangles, int[] neighbours, List<TopoPoint> sources) {
+        this.x = x;
+        this.y = y;
+        this.z = z;
+        this.triangles = triangles;
+        this.neighbours = neighbours;
+        this.sources = sources;
+    }
+
+    public int getVertexCount() {
+        return x.length;
+    }
+
+    public int getTriangleCount() {
+        return triangles.length / 3;
+    }
+
+    public int vertex(int triangle, int corner) {
+        return triangles[3 * triangle + corner];
+    }
+
+    public int neighbour(int triangle, int corner) {
+        return neighbours[3 * triangle + corner];
+    }
+
+    /** Ponto de origem do vértice (ou um ponto novo com as coordenadas, se não houver origem). */
+    public TopoPoint getPoint(int v) {
+        if (sources != null) return sources.get(v);
+        return new TopoPoint("V" + v, x[v], y[v], z[v]);
+    }
+
+    public double getMinZ() {
+        double min = Double.MAX_VALUE;
+        for (int i = 0; i < triangles.length; i++) min = Math.min(min, z[triangles[i]]);
+        return min;
+    }
+
+    public double getMaxZ() {
+        double max = -Double.MAX_VALUE;
+        for (int i = 0; i < triangles.length; i++) max = Math.max(max, z[triangles[i]]);
+        return max;
+    }
+
+    /** Visão da malha como lista de Triangle (referenciando os pontos de origem). */
+    public List<Triangle> toTriangles() {
+        int count = getTriangleCount();
+        List<Triangle> list = new ArrayList<>(count);
+        for (int t = 0; t < count; t++) {
+            list.add(new Triangle(getPoint(vertex(t, 0)), getPoint(vertex(t, 1)), getPoint(vertex(t, 2))));
+        }
+        return list;
+    }
+
+    /** Extrai a malha final do construtor, descartando os triângulos fantasmas. */
+    static TinMesh fromBuilder(TinBuilder builder, double[] x, double[] y, double[] z, List<TopoPoint> sources) {
+        int[] triangles = new int[3 * builder.triCount];
+        int count = 0;
+        for (int t = 0; t < builder.triCount; t++) {
+            if (builder.isGhost(t) || builder.isFree(t)) continue;
+            System.arraycopy(builder.tri, 3 * t, triangles, 3 * count, 3);
+            count++;
+        }
+        return fromTriangles(triangles, count, x, y, z, sources);
+    }
+
+    /**
+     * Monta a malha a partir de uma lista de triângulos anti-horários, em ordem canônica: cada
+     * triângulo começa pelo seu menor vértice e a lista é ordenada por (v0, v1). A mesma
+     * triangulação gera sempre os mesmos vetores, seja qual for o caminho que a construiu.
+     */
+    static TinMesh fromTriangles(int[] input, int count, double[] x, double[] y, double[] z, List<TopoPoint> sources) {
+        int n = x.length;
+
+        // 1. Rotaciona cada triângulo para começar pelo menor vértice e conta por v0
+        int[] start = new int[n + 1];
+        for (int t = 0; t < count; t++) {
+            int a = input[3 * t], b = input[3 * t + 1], c = input[3 * t + 2];
+            if (b < a && b < c) {
+                input[3 * t] = b; input[3 * t + 1] = c; input[3 * t + 2] = a;
+            } else if (c < a && c < b) {
+                input[3 * t] = c; input[3 * t + 1] = a; input[3 * t + 2] = b;
+            }
+            start[input[3 * t] + 1]++;
+        }
+        for (int v = 0; v < n; v++) start[v + 1] += start[v];
+
+        // 2. Distribui por v0 (counting sort) e ordena cada grupo por v1
+        int[] triangles = new int[3 * count];
+        int[] fill = Arrays.copyOf(start, n);
+        for (int t = 0; t < count; t++) {
+            int pos = fill[input[3 * t]]++;
+            System.arraycopy(input, 3 * t, triangles, 3 * pos, 3);
+        }
+        for (int v = 0; v < n; v++) {
+            for (int i = start[v] + 1; i < start[v + 1]; i++) {
+                int b = triangles[3 * i + 1], c = triangles[3 * i + 2];
+                int j = i - 1;
+                while (j >= start[v] && triangles[3 * j + 1] > b) {
+                    triangles[3 * (j + 1) + 1] = triangles[3 * j + 1];
+                    triangles[3 * (j + 1) + 2] = triangles[3 * j + 2];
+                    j--;
+                }
+                triangles[3 * (j + 1) + 1] = b;
+                triangles[3 * (j + 1) + 2] = c;
+            }
+        }
+
+        return new TinMesh(x, y, z, triangles, computeNeighbours(triangles, n), sources);
+    }
+
+    // Vizinho oposto a cada vértice, encontrado pela lista de triângulos incidentes ao vértice seguinte
+    private static int[] computeNeighbours(int[] triangles, int vertexCount) {
+        int count = triangles.length / 3;
+
+        int[] start = new int[vertexCount + 1];
+        for (int v : triangles) start[v + 1]++;
+        for (int v = 0; v < vertexCount; v++) start[v + 1] += start[v];
+
+        int[] incident = new int[triangles.length];
+        int[] fill = Arrays.copyOf(start, vertexCount);
+        for (int i = 0; i < triangles.length; i++) incident[fill[triangles[i]]++] = i / 3;
+
+        int[] neighbours = new int[triangles.length];
+        Arrays.fill(neighbours, -1);
+        for (int t = 0; t < count; t++) {
+            for (int i = 0; i < 3; i++) {
+                int a = triangles[3 * t + (i + 1) % 3];
+                int b = triangles[3 * t + (i + 2) % 3];
+                for (int k = start[a]; k < start[a + 1]; k++) {
+                    int s = incident[k];
+                    if (s != t && (triangles[3 * s] == b || triangles[3 * s + 1] == b || triangles[3 * s + 2] == b)) {
+                        neighbours[3 * t + i] = s;
+                        break;
+                    }
+                }
+            }
+        }
+        return neighbours;
+    }
+
+    /** Malha vazia (menos de 3 pontos ou todos colineares). */
+    static TinMesh empty(double[] x, double[] y, double[] z, List<TopoPoint> sources) {
+        return new TinMesh(x, y, z, new int[0], new int[0], sources);
+    }
+}
@@ -0,0 +1,768 @@
+package com.brasens.utilities.math;
+
+import com.brasens.model.objects.TopoObject;
+import com.brasens.model.objects.TopoPoint;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Superfície TIN editável, mantida em sincronia com os pontos do desenho.
+ *
+ * Inserir, remover ou mover um ponto altera só a vizinhança dele (cavidade, estrela ou flips),
+ * e os ouvintes recebem as posições de triângulo alteradas para atualizar apenas essa área.
+ * As posições (slots) são estáveis entre edições: uma posição liberada pode ser reutilizada.
+ *
+ * Linhas de quebra (estradas, rios, muros...) entram como arestas restritas: cada segmento é
+ * recuperado trocando as diagonais que o cruzam, sem acrescentar pontos à malha. Um segmento que
+ * cruza outra linha de quebra é ignorado (exigiria um ponto novo na interseção).
+ */
+public class TinSurface {
+
+    // Versão do formato binário de encode()/restore()
+    private static final int FORMAT = 1;
+
+    private TinBuilder builder;
+    private double originX, originY;
+
+    // Vértice i da malha -> ponto do desenho (null = índice livre, reaproveitado pela próxima inclusão)
+    private final List<TopoPoint> vertices = new ArrayList<>();
+    private final Map<TopoPoint, Integer> vertexOf = new HashMap<>();
+    private int[] freeVertices = new int[16];
+    private int freeCount = 0;
+
+    // Pontos fora da malha: repetidos (mesma posição de outro vértice) ou sem triângulo possível,
+    // agrupados pela posição; só tentam entrar quando o vértice daquela posição sai dela
+    private final Map<Spot, List<TopoPoint>> pending = new HashMap<>();
+    private final Map<TopoPoint, Spot> pendingAt = new LinkedHashMap<>();
+
+    // Objetos cujos segmentos são forçados na malha
+    private final List<TopoObject> breaklines = new ArrayList<>();
+
+    private final List<Consumer<TinChange>> listeners = new ArrayList<>();
+
+    public TinSurface(List<TopoPoint> points) {
+        this(points, new ArrayList<>());
+    }
+
+    public TinSurface(List<TopoPoint> points, List<TopoObject> breaklines) {
+        this.breaklines.addAll(breaklines);
+        rebuild(points);
+    }
+
+    private TinSurface() {
+    }
+
+    /**
+     * Identifica o conteúdo que define a malha: as coordenadas (x, y) distintas dos pontos e os
+     * segmentos das linhas de quebra, na ordem em que são aplicados. Não depende da ordem dos
+     * pontos, de pontos repetidos nem das cotas (que são lidas dos próprios pontos).
+     * SHA-256 em hexadecimal.
+     */
+    public static String contentHash(List<TopoPoint> points, List<TopoObject> breaklines) {
+        int[] canonical = canonicalIndex(points);
+        return contentHash(points, breaklines, canonical, canonicalCoordinates(points, canonical));
+    }
+
+    private static String contentHash(List<TopoPoint> points, List<TopoObject> breaklines, int[] canonical, double[][] coordinates) {
+        Map<TopoPoint, Integer> indexOf = new IdentityHashMap<>();
+        for (int i = 0; i < points.size(); i++) indexOf.put(points.get(i), canonical[i]);
+
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            ByteBuffer buffer = ByteBuffer.allocate(8192);
+            buffer.putInt(coordinates[0].length);
+            for (int c = 0; c < coordinates[0].length; c++) {
+                reserve(digest, buffer, 16).putDouble(coordinates[0][c]).putDouble(coordinates[1][c]);
+            }
+            for (TopoObject obj : breaklines) {
+                reserve(digest, buffer, 8).putInt(obj.isClosed() ? 1 : 0).putInt(obj.getPoints().size());
+                for (TopoPoint p : obj.getPoints()) {
+                    reserve(digest, buffer, 4).putInt(indexOf.getOrDefault(p, -1));
+                }
+            }
+            digest.update(buffer.flip());
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // Esvazia o buffer no resumo quando não há espaço para mais bytes
+    private static ByteBuffer reserve(MessageDigest digest, ByteBuffer buffer, int bytes) {
+        if (buffer.remaining() < bytes) {
+            digest.update(buffer.flip());
+            buffer.clear();
+        }
+        return buffer;
+    }
+
+    /** Identificador do conteúdo desta superfície (ver {@link #contentHash}). */
+    public String getContentHash() {
+        return contentHash(getPoints(), breaklines);
+    }
+
+    /**
+     * Malha atual em binário compactado (deflate), para gravar junto do projeto. Os vértices são
+     * gravados pela posição nas coordenadas distintas ordenadas, então a malha pode ser restaurada
+     * sobre os mesmos pontos carregados de outra forma (ver {@link #restore}).
+     */
+    public byte[] encode() {
+        List<TopoPoint> points = getPoints();
+        int[] canonical = canonicalIndex(points);
+        int distinct = canonicalCoordinates(points, canonical)[0].length;
+
+        // Vértice da malha -> índice canônico
+        int[] canonicalOf = new int[vertices.size()];
+        for (int i = 0; i < points.size(); i++) {
+            Integer v = vertexOf.get(points.get(i));
+            if (v != null) canonicalOf[v] = canonical[i];
+        }
+
+        // 1. Triângulos a partir do menor vértice, agrupados por ele (counting sort)
+        int count = getTriangleCount();
+        int[] start = new int[distinct + 1];
+        for (int t = 0; t < getSlotCount(); t++) {
+            if (!isTriangle(t)) continue;
+            int a = Math.min(canonicalOf[builder.tri[3 * t]], Math.min(canonicalOf[builder.tri[3 * t + 1]], canonicalOf[builder.tri[3 * t + 2]]));
+            start[a + 1]++;
+        }
+        for (int c = 0; c < distinct; c++) start[c + 1] += start[c];
+
+        int[] triangles = new int[3 * count];
+        boolean[] constrained = new boolean[3 * count];
+        for (int t = 0; t < getSlotCount(); t++) {
+            if (!isTriangle(t)) continue;
+            int first = 0;
+            for (int i = 1; i < 3; i++) {
+                if (canonicalOf[builder.tri[3 * t + i]] < canonicalOf[builder.tri[3 * t + first]]) first = i;
+            }
+            int k = start[canonicalOf[builder.tri[3 * t + first]]]++;
+            for (int i = 0; i < 3; i++) {
+                triangles[3 * k + i] = canonicalOf[builder.tri[3 * t + (first + i) % 3]];
+                constrained[3 * k + i] = builder.constrained != null && builder.constrained[3 * t + (first + i) % 3];
+            }
+        }
+
+        // 2. Gravação: o primeiro vértice como incremento do anterior e os outros como diferença
+        //    para o primeiro, em inteiros de tamanho variável (quase todos cabem em 1 ou 2 bytes)
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new DeflaterOutputStream(bytes, deflater)))) {
+            out.writeInt(FORMAT);
+            out.writeInt(distinct);
+            out.writeInt(count);
+
+            int previous = 0;
+            for (int k = 0; k < count; k++) {
+                int a = triangles[3 * k];
+                writeVarint(out, a - previous);
+                writeVarint(out, zigzag(triangles[3 * k + 1] - a));
+                writeVarint(out, zigzag(triangles[3 * k + 2] - a));
+                previous = a;
+            }
+
+            byte[] bits = new byte[(constrained.length + 7) / 8];
+            for (int e = 0; e < constrained.length; e++) {
+                if (constrained[e]) bits[e >>> 3] |= (byte) (1 << (e & 7));
+            }
+            out.write(bits);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        } finally {
+            deflater.end();
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Recria a superfície gravada por {@link #encode()} sobre os pontos e linhas de quebra dados,
+     * sem triangular de novo.
+     * @param hash {@link #getContentHash()} da superfície no momento em que foi gravada
+     * @return null se os pontos ou as linhas de quebra mudaram desde então, ou se os dados estão
+     *         corrompidos
+     */
+    public static TinSurface restore(List<TopoPoint> points, List<TopoObject> breaklines, String hash, byte[] data) {
+        if (hash == null || data == null) return null;
+        int[] canonical = canonicalIndex(points);
+        double[][] coordinates = canonicalCoordinates(points, canonical);
+        if (!hash.equals(contentHash(points, breaklines, canonical, coordinates))) return null;
+        int distinct = coordinates[0].length;
+
+        int count;
+        int[] triangles;
+        boolean[] constrained;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new InflaterInputStream(new ByteArrayInputStream(data))))) {
+            if (in.readInt() != FORMAT || in.readInt() != distinct) return null;
+            count = in.readInt();
+            if (count < 0 || count > 2 * distinct) return null;
+
+            triangles = new int[3 * count];
+            int previous = 0;
+            for (int t = 0; t < count; t++) {
+                int a = previous + readVarint(in);
+                triangles[3 * t] = a;
+                triangles[3 * t + 1] = a + unzigzag(readVarint(in));
+                triangles[3 * t + 2] = a + unzigzag(readVarint(in));
+                previous = a;
+            }
+            byte[] bits = new byte[(3 * count + 7) / 8];
+            in.readFully(bits);
+            constrained = new boolean[3 * count];
+            boolean any = false;
+            for (int e = 0; e < constrained.length; e++) {
+                constrained[e] = (bits[e >>> 3] & (1 << (e & 7))) != 0;
+                any |= constrained[e];
+            }
+            if (!any) constrained = null;
+        } catch (IOException e) {
+            return null;
+        }
+
+        TinSurface surface = new TinSurface();
+        surface.breaklines.addAll(breaklines);
+        int n = points.size();
+        double minX = Double.MAX_VALUE, minY = Double.MAX_VALUE;
+        double maxX = -Double.MAX_VALUE, maxY = -Double.MAX_VALUE;
+        for (TopoPoint p : points) {
+            minX = Math.min(minX, p.getX()); maxX = Math.max(maxX, p.getX());
+            minY = Math.min(minY, p.getY()); maxY = Math.max(maxY, p.getY());
+        }
+        surface.originX = (n > 0) ? GeometricPredicates.exactOrigin(minX, maxX) : 0;
+        surface.originY = (n > 0) ? GeometricPredicates.exactOrigin(minY, maxY) : 0;
+
+        double[] x = new double[distinct];
+        double[] y = new double[distinct];
+        for (int c = 0; c < distinct; c++) {
+            x[c] = coordinates[0][c] - surface.originX;
+            y[c] = coordinates[1][c] - surface.originY;
+        }
+        if (count > 0) {
+            surface.builder = TinBuilder.fromTriangles(x, y, triangles, count, constrained);
+            if (surface.builder == null) return null;
+            surface.builder.recordChanges = true;
+        }
+
+        // O vértice c da malha é o primeiro ponto com essas coordenadas; os demais ficam pendentes
+        boolean[] used = new boolean[distinct];
+        for (int v : triangles) used[v] = true;
+        for (int c = 0; c < distinct; c++) surface.vertices.add(null);
+        for (int i = 0; i < n; i++) {
+            TopoPoint p = points.get(i);
+            int c = canonical[i];
+            if (used[c] && surface.vertices.get(c) == null) {
+                surface.vertices.set(c, p);
+                surface.vertexOf.put(p, c);
+            } else {
+                surface.addPending(p);
+            }
+        }
+        for (int c = distinct - 1; c >= 0; c--) {
+            if (surface.vertices.get(c) == null) surface.freeVertex(c);
+        }
+        return surface;
+    }
+
+    public void addListener(Consumer<TinChange> listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Consumer<TinChange> listener) {
+        listeners.remove(listener);
+    }
+
+    public boolean contains(TopoPoint p) {
+        return vertexOf.containsKey(p) || pendingAt.containsKey(p);
+    }
+
+    /** Insere o ponto na superfície (retriangulação da cavidade). */
+    public boolean addPoint(TopoPoint p) {
+        if (contains(p)) return false;
+        if (builder != null) builder.changedCount = 0;
+
+        // Sem malha, ou fora da faixa em que a origem atual subtrai sem arredondar: refaz
+        if (builder == null || !exactShift(p)) {
+            List<TopoPoint> all = getPoints();
+            all.add(p);
+            rebuild(all);
+            return true;
+        }
+
+        int v;
+        if (freeCount > 0) {
+            v = freeVertices[--freeCount];
+            vertices.set(v, p);
+        } else {
+            v = vertices.size();
+            vertices.add(p);
+            builder.ensureVertexCapacity(v + 1);
+        }
+        builder.x[v] = p.getX() - originX;
+        builder.y[v] = p.getY() - originY;
+
+        if (!builder.insert(v)) {
+            vertices.set(v, null);
+            freeVertex(v);
+            addPending(p);
+            return false;
+        }
+        vertexOf.put(p, v);
+        applyBreaklinesOf(p);
+        fireChange();
+        return true;
+    }
+
+    /** Remove o ponto da superfície (recorte de orelhas da estrela). */
+    public boolean removePoint(TopoPoint p) {
+        if (removePending(p)) return true;
+
+        Integer v = vertexOf.remove(p);
+        if (v == null) return false;
+        vertices.set(v, null);
+        Spot vacated = spotOf(v);
+        builder.changedCount = 0;
+
+        if (!builder.remove(v)) {
+            rebuild(getPoints());
+            return true;
+        }
+        freeVertex(v);
+        applyBreaklinesOf(p);
+        fireChange();
+        retryPending(vacated);
+        return true;
+    }
+
+    /**
+     * Atualiza a superfície depois que as coordenadas do ponto mudaram. Se o ponto continua
+     * dentro do polígono dos seus vizinhos, a malha é corrigida só por flips; senão ele é
+     * removido e reinserido na nova posição.
+     */
+    public boolean movePoint(TopoPoint p) {
+        Integer v = vertexOf.get(p);
+        if (v == null) {
+            if (!removePending(p)) return false;
+            return addPoint(p);
+        }
+
+        if (!exactShift(p)) {
+            rebuild(getPoints());
+            return true;
+        }
+
+        double px = p.getX() - originX;
+        double py = p.getY() - originY;
+        Spot vacated = spotOf(v);
+        builder.changedCount = 0;
+        if (builder.moveInPlace(v, px, py)) {
+            fireChange();
+            retryPending(vacated);
+            return true;
+        }
+
+        if (!builder.remove(v)) {
+            rebuild(getPoints());
+            return true;
+        }
+
+        builder.x[v] = px;
+        builder.y[v] = py;
+        if (!builder.insert(v)) {
+            // Caiu exatamente sobre outro vértice
+            vertexOf.remove(p);
+            vertices.set(v, null);
+            freeVertex(v);
+            addPending(p);
+        }
+        applyBreaklinesOf(p);
+        fireChange();
+        retryPending(vacated);
+        return true;
+    }
+
+    /**
+     * Força de novo os segmentos do objeto na malha (depois de pontos incluídos ou excluídos
+     * dele). Segmentos com pontos fora da superfície são ignorados.
+     */
+    public void applyBreakline(TopoObject obj) {
+        if (builder == null) return;
+        builder.changedCount = 0;
+        insertSegments(obj);
+        if (builder.changedCount > 0) fireChange();
+    }
+
+    /** Passa a forçar os segmentos do objeto na malha (objeto novo ou marcado como linha de quebra). */
+    public void addBreakline(TopoObject obj) {
+        if (breaklines.contains(obj)) return;
+        breaklines.add(obj);
+        applyBreakline(obj);
+    }
+
+    /**
+     * Deixa de forçar os segmentos do objeto; só a vizinhança deles volta a ser de Delaunay. Os
+     * segmentos de outras linhas de quebra que passam pelos mesmos pontos são forçados de novo.
+     */
+    public void removeBreakline(TopoObject obj) {
+        if (!breaklines.remove(obj) || builder == null) return;
+        builder.changedCount = 0;
+
+        List<TopoPoint> points = obj.getPoints();
+        int n = points.size();
+        int segments = (obj.isClosed() && n > 2) ? n : n - 1;
+        for (int i = 0; i < segments; i++) {
+            Integer a = vertexOf.get(points.get(i));
+            Integer b = vertexOf.get(points.get((i + 1) % n));
+            if (a == null || b == null || a.equals(b)) continue;
+            builder.removeConstraint(a, b);
+        }
+
+        Set<TopoPoint> touched = Collections.newSetFromMap(new IdentityHashMap<>());
+        touched.addAll(points);
+        for (TopoObject other : breaklines) {
+            for (TopoPoint p : other.getPoints()) {
+                if (touched.contains(p)) {
+                    insertSegments(other);
+                    break;
+                }
+            }
+        }
+        if (builder.changedCount > 0) fireChange();
+    }
+
+    /** Cópia compacta da superfície atual. */
+    public TinMesh toMesh() {
+        int n = vertices.size();
+        double[] x = new double[n];
+        double[] y = new double[n];
+        double[] z = new double[n];
+        for (int v = 0; v < n; v++) {
+            TopoPoint p = vertices.get(v);
+            if (p == null) continue;
+            x[v] = p.getX();
+            y[v] = p.getY();
+            z[v] = p.getZ();
+        }
+        if (builder == null) return TinMesh.empty(x, y, z, new ArrayList<>(vertices));
+        return TinMesh.fromBuilder(builder, x, y, z, new ArrayList<>(vertices));
+    }
+
+    // --- Acesso por posição (para consumidores incrementais) ---
+
+    public int getSlotCount() {
+        return (builder == null) ? 0 : builder.triCount;
+    }
+
+    /** A posição contém um triângulo real (nem livre, nem fantasma)? */
+    public boolean isTriangle(int slot) {
+        return builder != null && slot < builder.triCount && !builder.isFree(slot) && !builder.isGhost(slot);
+    }
+
+    public TopoPoint getPoint(int slot, int corner) {
+        return vertices.get(builder.tri[3 * slot + corner]);
+    }
+
+    public int getVertexCount() {
+        return vertices.size();
+    }
+
+    /** Ponto do vértice v da malha (null se foi removido). */
+    public TopoPoint getVertex(int v) {
+        return vertices.get(v);
+    }
+
+    /** Vértice do canto da posição (negativo no ponto no infinito dos triângulos fantasmas). */
+    public int getVertexIndex(int slot, int corner) {
+        return builder.tri[3 * slot + corner];
+    }
+
+    /**
+     * Arestas que cabem à posição no desenho: cada aresta da malha pertence a uma única posição,
+     * a que a percorre do vértice de menor índice para o de maior (do lado de fora do fecho essa
+     * posição é um triângulo fantasma). Bit i = aresta oposta ao canto i; 0 para posições livres.
+     */
+    public int getOwnedEdges(int slot) {
+        if (builder == null || slot >= builder.triCount || builder.isFree(slot)) return 0;
+        int mask = 0;
+        for (int i = 0; i < 3; i++) {
+            int a = builder.tri[3 * slot + (i + 1) % 3];
+            int b = builder.tri[3 * slot + (i + 2) % 3];
+            if (a >= 0 && a < b) mask |= 1 << i;
+        }
+        return mask;
+    }
+
+    /** Cópia dos vértices de cada posição; posições sem triângulo real ficam com -1. */
+    int[] copySlotTriangles() {
+        int[] triangles = new int[3 * getSlotCount()];
+        for (int t = 0; t < getSlotCount(); t++) {
+            if (isTriangle(t)) {
+                System.arraycopy(builder.tri, 3 * t, triangles, 3 * t, 3);
+            } else {
+                Arrays.fill(triangles, 3 * t, 3 * t + 3, -1);
+            }
+        }
+        return triangles;
+    }
+
+    public int getTriangleCount() {
+        int count = 0;
+        for (int t = 0; t < getSlotCount(); t++) if (isTriangle(t)) count++;
+        return count;
+    }
+
+    /** Pontos atualmente na superfície (incluindo os que aguardam inserção). */
+    public List<TopoPoint> getPoints() {
+        List<TopoPoint> points = new ArrayList<>(vertexOf.size() + pendingAt.size());
+        for (TopoPoint p : vertices) if (p != null) points.add(p);
+        points.addAll(pendingAt.keySet());
+        return points;
+    }
+
+    private void rebuild(List<TopoPoint> points) {
+        builder = null;
+        vertices.clear();
+        vertexOf.clear();
+        pending.clear();
+        pendingAt.clear();
+        freeCount = 0;
+
+        int n = points.size();
+        double minX = Double.MAX_VALUE, minY = Double.MAX_VALUE;
+        double maxX = -Double.MAX_VALUE, maxY = -Double.MAX_VALUE;
+        for (TopoPoint p : points) {
+            minX = Math.min(minX, p.getX()); maxX = Math.max(maxX, p.getX());
+            minY = Math.min(minY, p.getY()); maxY = Math.max(maxY, p.getY());
+        }
+        originX = (n > 0) ? GeometricPredicates.exactOrigin(minX, maxX) : 0;
+        originY = (n > 0) ? GeometricPredicates.exactOrigin(minY, maxY) : 0;
+
+        double[] x = new double[n];
+        double[] y = new double[n];
+        for (int i = 0; i < n; i++) {
+            x[i] = points.get(i).getX() - originX;
+            y[i] = points.get(i).getY() - originY;
+        }
+
+        int[] order = DelaunayTriangulator.insertionOrder(x, y);
+        builder = (n < 3) ? null : DelaunayTriangulator.build(x, y, order);
+
+        boolean[] inserted = new boolean[n];
+        if (builder != null) {
+            builder.recordChanges = true;
+            for (int v : order) inserted[v] = true;
+        }
+        for (int i = 0; i < n; i++) {
+            TopoPoint p = points.get(i);
+            vertices.add(inserted[i] ? p : null);
+            if (inserted[i]) {
+                vertexOf.put(p, i);
+            } else {
+                addPending(p);
+            }
+        }
+        for (int i = n - 1; i >= 0; i--) {
+            if (!inserted[i]) freeVertex(i);
+        }
+        if (builder != null) {
+            for (TopoObject obj : breaklines) insertSegments(obj);
+            builder.changedCount = 0;
+        }
+        fire(TinChange.rebuilt());
+    }
+
+    private boolean exactShift(TopoPoint p) {
+        return GeometricPredicates.exactShift(p.getX(), originX) && GeometricPredicates.exactShift(p.getY(), originY);
+    }
+
+    // Reinsere os segmentos das linhas de quebra que passam pelo ponto editado
+    private void applyBreaklinesOf(TopoPoint p) {
+        for (TopoObject obj : breaklines) {
+            if (obj.getPoints().contains(p)) insertSegments(obj);
+        }
+    }
+
+    private void insertSegments(TopoObject obj) {
+        List<TopoPoint> points = obj.getPoints();
+        int n = points.size();
+        int segments = (obj.isClosed() && n > 2) ? n : n - 1;
+        for (int i = 0; i < segments; i++) {
+            Integer a = vertexOf.get(points.get(i));
+            Integer b = vertexOf.get(points.get((i + 1) % n));
+            if (a == null || b == null || a.equals(b)) continue;
+            builder.insertConstraint(a, b);
+        }
+    }
+
+    private static void writeVarint(DataOutputStream out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    private static int readVarint(DataInputStream in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return value;
+        }
+        throw new IOException("Inteiro variável inválido");
+    }
+
+    private static int zigzag(int value) {
+        return (value << 1) ^ (value >> 31);
+    }
+
+    private static int unzigzag(int value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    // Posição de cada ponto na lista das coordenadas (x, y) distintas, em ordem da curva de Hilbert
+    // sobre a caixa envolvente (e de x e y dentro de cada célula): vértices próximos ficam com
+    // índices próximos, o que deixa as diferenças gravadas pequenas
+    private static int[] canonicalIndex(List<TopoPoint> points) {
+        int n = points.size();
+        double[] x = new double[n];
+        double[] y = new double[n];
+        for (int i = 0; i < n; i++) {
+            // + 0.0 troca -0.0 por 0.0, senão Double.compare os separaria
+            x[i] = points.get(i).getX() + 0.0;
+            y[i] = points.get(i).getY() + 0.0;
+        }
+
+        long[] hilbert = DelaunayTriangulator.hilbertKeys(x, y);
+        long[] keys = new long[n];
+        for (int i = 0; i < n; i++) keys[i] = (hilbert[i] << 31) | i;
+        Arrays.sort(keys);
+
+        int[] canonical = new int[n];
+        int c = -1;
+        int runStart = 0;
+        for (int k = 1; k <= n; k++) {
+            if (k < n && (keys[k] >>> 31) == (keys[runStart] >>> 31)) continue;
+            // Célula de Hilbert com poucos pontos: ordena por (x, y) por inserção
+            for (int a = runStart + 1; a < k; a++) {
+                long key = keys[a];
+                int b = a - 1;
+                while (b >= runStart && compare(x, y, (int) (keys[b] & 0x7FFFFFFFL), (int) (key & 0x7FFFFFFFL)) > 0) {
+                    keys[b + 1] = keys[b];
+                    b--;
+                }
+                keys[b + 1] = key;
+            }
+            for (int a = runStart; a < k; a++) {
+                int i = (int) (keys[a] & 0x7FFFFFFFL);
+                if (a == runStart || compare(x, y, (int) (keys[a - 1] & 0x7FFFFFFFL), i) != 0) c++;
+                canonical[i] = c;
+            }
+            runStart = k;
+        }
+        return canonical;
+    }
+
+    private static int compare(double[] x, double[] y, int i, int j) {
+        int byX = Double.compare(x[i], x[j]);
+        return (byX != 0) ? byX : Double.compare(y[i], y[j]);
+    }
+
+    // Coordenadas distintas {x[], y[]} na ordem de canonicalIndex
+    private static double[][] canonicalCoordinates(List<TopoPoint> points, int[] canonical) {
+        int distinct = 0;
+        for (int c : canonical) distinct = Math.max(distinct, c + 1);
+        double[][] coordinates = new double[2][distinct];
+        for (int i = 0; i < canonical.length; i++) {
+            coordinates[0][canonical[i]] = points.get(i).getX();
+            coordinates[1][canonical[i]] = points.get(i).getY();
+        }
+        return coordinates;
+    }
+
+    // Um ponto repetido pode entrar na malha quando o vértice que ocupava a posição sai dela; os
+    // demais da mesma posição voltam a esperar
+    private void retryPending(Spot vacated) {
+        List<TopoPoint> retry = pending.remove(vacated);
+        if (retry == null) return;
+        for (TopoPoint p : retry) pendingAt.remove(p);
+        for (TopoPoint p : retry) addPoint(p);
+    }
+
+    private void addPending(TopoPoint p) {
+        Spot spot = new Spot(p.getX(), p.getY());
+        pending.computeIfAbsent(spot, k -> new ArrayList<>(2)).add(p);
+        pendingAt.put(p, spot);
+    }
+
+    // A posição guardada é a da inclusão: o ponto pode ter sido movido desde então
+    private boolean removePending(TopoPoint p) {
+        Spot spot = pendingAt.remove(p);
+        if (spot == null) return false;
+        List<TopoPoint> waiting = pending.get(spot);
+        waiting.remove(p);
+        if (waiting.isEmpty()) pending.remove(spot);
+        return true;
+    }
+
+    // Posição atual do vértice no desenho (a origem é somada de volta sem arredondar)
+    private Spot spotOf(int v) {
+        return new Spot(builder.x[v] + originX, builder.y[v] + originY);
+    }
+
+    private void freeVertex(int v) {
+        if (freeCount == freeVertices.length) freeVertices = Arrays.copyOf(freeVertices, 2 * freeCount);
+        freeVertices[freeCount++] = v;
+    }
+
+    private void fireChange() {
+        fire(new TinChange(Arrays.copyOf(builder.changed, builder.changedCount), false));
+    }
+
+    private void fire(TinChange change) {
+        for (Consumer<TinChange> listener : listeners) listener.accept(change);
+    }
+
+    // Coordenadas (x, y) do desenho como chave; -0.0 e 0.0 são a mesma posição
+    private static final class Spot {
+        private final double x, y;
+
+        Spot(double x, double y) {
+            this.x = x + 0.0;
+            this.y = y + 0.0;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Spot)) return false;
+            Spot s = (Spot) o;
+            return Double.compare(x, s.x) == 0 && Double.compare(y, s.y) == 0;
+        }
+
+        @Override
+        public int hashCode() {
+            return Double.hashCode(x) * 31 + Double.hashCode(y);
+        }
+    }
+}
@@ -11,24 +11,20 @@ public class Triangle {
         this.p3 = p3;
     }
 
+    /**
+     * Testa se p está estritamente dentro do circuncírculo (predicados exatos, sem calcular o
+     * centro). Triângulos com os três pontos colineares não têm circuncírculo: retorna false.
+     */
     public boolean isInCircumcircle(TopoPoint p) {
-        double x1 = p1.getX(), y1 = p1.getY();
-        double x2 = p2.getX(), y2 = p2.getY();
-        double x3 = p3.getX(), y3 = p3.getY();
+        double orientation = GeometricPredicates.orient2d(
+                p1.getX(), p1.getY(), p2.getX(), p2.getY(), p3.getX(), p3.getY());
+        if (orientation == 0) return false;
 
-        double D = 2 * (x1 * (y2 - y3) + x2 * (y3 - y1) + x3 * (y1 - y2));
+        double det = GeometricPredicates.incircle(
+                p1.getX(), p1.getY(), p2.getX(), p2.getY(), p3.getX(), p3.getY(), p.getX(), p.getY());
 
-        // Evita divisão por zero (triângulos colineares/degenerados)
-        if (Math.abs(D) < 1e-9) return false;
-
-        double center_x = ((x1 * x1 + y1 * y1) * (y2 - y3) + (x2 * x2 + y2 * y2) * (y3 - y1) + (x3 * x3 + y3 * y3) * (y1 - y2)) / D;
-        double center_y = ((x1 * x1 + y1 * y1) * (x3 - x2) + (x2 * x2 + y2 * y2) * (x1 - x3) + (x3 * x3 + y3 * y3) * (x2 - x1)) / D;
-
-        double radiusSquared = (center_x - x1) * (center_x - x1) + (center_y - y1) * (center_y - y1);
-        double distSquared = (center_x - p.getX()) * (center_x - p.getX()) + (center_y - p.getY()) * (center_y - p.getY());
-
-        // Subtraímos uma tolerância pequena (epsilon) para robustez numérica
-        return distSquared <= (radiusSquared - 1e-9);
+        // O sinal do incircle depende do sentido do triângulo
+        return (orientation > 0) ? det > 0 : det < 0;
     }
 
     // Verifica se compartilha uma aresta (usado na triangulação)
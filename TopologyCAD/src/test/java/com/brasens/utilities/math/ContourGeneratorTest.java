@@ -0,0 +1,49 @@
+package com.brasens.utilities.math;
+
+import com.brasens.model.objects.TopoObject;
+import com.brasens.model.objects.TopoPoint;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ContourGeneratorTest {
+
+    @Test
+    void parallelOutputEqualsSequential() {
+        TinMesh mesh = DelaunayTriangulator.triangulateMesh(terrain(20000, 2), 4);
+        for (double interval : new double[]{0.25, 1.0}) {
+            List<String> sequential = describe(ContourGenerator.generateContours(mesh, interval, 1));
+            List<String> parallel = describe(ContourGenerator.generateContours(mesh, interval, 4));
+            assertThat(sequential).as("intervalo %s", interval).isNotEmpty();
+            assertThat(parallel).as("intervalo %s", interval).isEqualTo(sequential);
+        }
+    }
+
+    // Terreno ondulado em coordenadas UTM, com pontos espalhados ao acaso
+    static List<TopoPoint> terrain(int count, long seed) {
+        Random random = new Random(seed);
+        List<TopoPoint> points = new ArrayList<>(count);
+        for (int k = 0; k < count; k++) {
+            double x = random.nextDouble() * 500, y = random.nextDouble() * 500;
+            double z = 100 + 8 * Math.sin(x / 37) * Math.cos(y / 53) + 0.05 * x;
+            points.add(new TopoPoint("P" + k, 500000 + x, 7500000 + y, z));
+        }
+        return points;
+    }
+
+    // Cada curva com camada, tipo e vértices exatos, na ordem de saída
+    static List<String> describe(List<TopoObject> contours) {
+        List<String> lines = new ArrayList<>(contours.size());
+        for (TopoObject obj : contours) {
+            StringBuilder line = new StringBuilder()
+                    .append(obj.getLayerName()).append(' ').append(obj.getType()).append(' ').append(obj.isClosed());
+            for (TopoPoint p : obj.getPoints()) line.append(' ').append(p.getX()).append(',').append(p.getY()).append(',').append(p.getZ());
+            lines.add(line.toString());
+        }
+        return lines;
+    }
+}
@@ -0,0 +1,164 @@
+package com.brasens.utilities.math;
+
+import com.brasens.model.objects.TopoPoint;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class GeometricPredicatesTest {
+
+    @Test
+    void orient2dSignsSimpleCases() {
+        assertThat(GeometricPredicates.orient2d(0, 0, 1, 0, 0, 1)).isPositive();
+        assertThat(GeometricPredicates.orient2d(0, 0, 0, 1, 1, 0)).isNegative();
+        assertThat(GeometricPredicates.orient2d(0, 0, 1, 1, 2, 2)).isZero();
+    }
+
+    @Test
+    void orient2dMatchesExactArithmeticNearDegenerateLine() {
+        // Grade de pontos a poucos ulps da reta y = x (o caso clássico em que o cálculo direto erra)
+        double ulp = Math.ulp(0.5);
+        for (int i = 0; i < 64; i++) {
+            for (int j = 0; j < 64; j++) {
+                double px = 0.5 + i * ulp, py = 0.5 + j * ulp;
+                double sign = GeometricPredicates.orient2d(px, py, 12, 12, 24, 24);
+                assertThat(Math.signum(sign)).as("orient2d em (%d, %d)", i, j)
+                        .isEqualTo(exactOrient(px, py, 12, 12, 24, 24));
+            }
+        }
+    }
+
+    @Test
+    void incircleCocircularIsZero() {
+        // Quatro cantos de um quadrado e os pontos (±5, 0), (0, ±5), (3, 4) do círculo de raio 5
+        assertThat(GeometricPredicates.incircle(0, 0, 1, 0, 1, 1, 0, 1)).isZero();
+        assertThat(GeometricPredicates.incircle(5, 0, 0, 5, -5, 0, 3, 4)).isZero();
+        assertThat(GeometricPredicates.incircle(5, 0, 0, 5, -5, 0, 0, 0)).isPositive();
+        assertThat(GeometricPredicates.incircle(5, 0, 0, 5, -5, 0, 6, 6)).isNegative();
+    }
+
+    @Test
+    void incircleMatchesExactArithmeticOnPerturbedCircles() {
+        Random random = new Random(11);
+        for (int k = 0; k < 2000; k++) {
+            double cx = 500000 + random.nextInt(1000) * 0.01, cy = 7500000 + random.nextInt(1000) * 0.01;
+            double[] p = new double[8];
+            for (int i = 0; i < 4; i++) {
+                double angle = random.nextDouble() * 2 * Math.PI;
+                p[2 * i] = cx + 10 * Math.cos(angle);
+                p[2 * i + 1] = cy + 10 * Math.sin(angle);
+            }
+            double sign = GeometricPredicates.incircle(p[0], p[1], p[2], p[3], p[4], p[5], p[6], p[7]);
+            assertThat(Math.signum(sign)).as("incircle, caso %d", k)
+                    .isEqualTo(exactIncircle(p[0], p[1], p[2], p[3], p[4], p[5], p[6], p[7]));
+        }
+    }
+
+    @Test
+    void exactOriginNeverRoundsTheShift() {
+        // Intervalos que cruzam a origem ou abrangem várias potências de dois ficam sem deslocamento
+        assertThat(GeometricPredicates.exactOrigin(-4.3, 9.7)).isZero();
+        assertThat(GeometricPredicates.exactOrigin(0.1, 100)).isZero();
+        assertThat(GeometricPredicates.exactOrigin(500000.12, 510000.34)).isEqualTo(500000.12 / 2 + 510000.34 / 2);
+
+        Random random = new Random(5);
+        double[][] ranges = {{-4.3, 9.7}, {0.05, 30.05}, {-12.35, -0.35}, {1000, 1030}, {500000.12, 510000.34}};
+        for (double[] range : ranges) {
+            double origin = GeometricPredicates.exactOrigin(range[0], range[1]);
+            for (int k = 0; k < 1000; k++) {
+                double x = range[0] + random.nextInt(1000) * (range[1] - range[0]) / 1000;
+                assertThat(new BigDecimal(x - origin).compareTo(sub(x, origin)))
+                        .as("%s - %s", x, origin)
+                        .isZero();
+            }
+        }
+    }
+
+    @Test
+    void triangulationIsDelaunayInOriginalCoordinates() {
+        // Grade inteira em passos de 0,1 perto da origem: o deslocamento pelo centro arredondava
+        for (double offset : new double[]{0.05, -12.35, 0.3, 1000, 500000.05}) {
+            Random random = new Random(3);
+            List<TopoPoint> points = new ArrayList<>();
+            for (int k = 0; k < 6000; k++) {
+                int i = random.nextInt(300) - 17, j = random.nextInt(200) - 150;
+                points.add(new TopoPoint("P" + k, offset + i * 0.1, offset / 2 + j * 0.1, 0));
+            }
+            for (int threads : new int[]{1, 4}) {
+                TinMesh mesh = DelaunayTriangulator.triangulateMesh(points, threads);
+                assertThat(mesh.getTriangleCount()).isGreaterThan(0);
+                assertThat(nonDelaunayEdges(mesh)).as("deslocamento %s, %d threads", offset, threads).isZero();
+            }
+        }
+    }
+
+    @Test
+    void surfaceStaysDelaunayAfterEditsOutsideItsRange() {
+        // A origem da superfície só vale para a caixa original; pontos fora dela refazem a malha
+        Random random = new Random(8);
+        List<TopoPoint> points = new ArrayList<>();
+        for (int k = 0; k < 2000; k++) {
+            points.add(new TopoPoint("P" + k, 1000 + random.nextInt(300) * 0.1, 1000 + random.nextInt(300) * 0.1, 0));
+        }
+        TinSurface surface = new TinSurface(points);
+        for (int k = 0; k < 200; k++) {
+            surface.addPoint(new TopoPoint("N" + k, random.nextInt(2000) * 0.1 - 30, random.nextInt(2000) * 0.1 - 30, 0));
+        }
+        for (int k = 0; k < 1500; k++) {
+            TopoPoint p = points.get(k);
+            p.setX(random.nextInt(300) * 0.1 - 17.3);
+            p.setY(random.nextInt(300) * 0.1 - 12.1);
+            surface.movePoint(p);
+        }
+        assertThat(nonDelaunayEdges(surface.toMesh())).isZero();
+    }
+
+    // Arestas cujo vértice oposto no vizinho cai estritamente dentro do circuncírculo
+    static int nonDelaunayEdges(TinMesh mesh) {
+        double[] x = mesh.getX(), y = mesh.getY();
+        int bad = 0;
+        for (int t = 0; t < mesh.getTriangleCount(); t++) {
+            int a = mesh.vertex(t, 0), b = mesh.vertex(t, 1), c = mesh.vertex(t, 2);
+            double orientation = Math.signum(GeometricPredicates.orient2d(x[a], y[a], x[b], y[b], x[c], y[c]));
+            for (int corner = 0; corner < 3; corner++) {
+                int neighbour = mesh.neighbour(t, corner);
+                if (neighbour < 0) continue;
+                for (int k = 0; k < 3; k++) {
+                    int d = mesh.vertex(neighbour, k);
+                    if (d == a || d == b || d == c) continue;
+                    double inside = GeometricPredicates.incircle(x[a], y[a], x[b], y[b], x[c], y[c], x[d], y[d]);
+                    if (orientation * inside > 0) bad++;
+                }
+            }
+        }
+        return bad;
+    }
+
+    private static double exactOrient(double ax, double ay, double bx, double by, double cx, double cy) {
+        BigDecimal acx = sub(ax, cx), acy = sub(ay, cy), bcx = sub(bx, cx), bcy = sub(by, cy);
+        return acx.multiply(bcy).subtract(acy.multiply(bcx)).signum();
+    }
+
+    private static double exactIncircle(double ax, double ay, double bx, double by,
+                                        double cx, double cy, double dx, double dy) {
+        BigDecimal adx = sub(ax, dx), ady = sub(ay, dy);
+        BigDecimal bdx = sub(bx, dx), bdy = sub(by, dy);
+        BigDecimal cdx = sub(cx, dx), cdy = sub(cy, dy);
+        BigDecimal alift = adx.multiply(adx).add(ady.multiply(ady));
+        BigDecimal blift = bdx.multiply(bdx).add(bdy.multiply(bdy));
+        BigDecimal clift = cdx.multiply(cdx).add(cdy.multiply(cdy));
+        return alift.multiply(bdx.multiply(cdy).subtract(cdx.multiply(bdy)))
+                .add(blift.multiply(cdx.multiply(ady).subtract(adx.multiply(cdy))))
+                .add(clift.multiply(adx.multiply(bdy).subtract(bdx.multiply(ady))))
+                .signum();
+    }
+
+    private static BigDecimal sub(double a, double b) {
+        return new BigDecimal(a).subtract(new BigDecimal(b));
+    }
+}
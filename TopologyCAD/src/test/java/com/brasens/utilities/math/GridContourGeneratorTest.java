@@ -0,0 +1,72 @@
+package com.brasens.utilities.math;
+
+import com.brasens.model.objects.TopoObject;
+import com.brasens.model.objects.TopoPoint;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class GridContourGeneratorTest {
+
+    @Test
+    void demEqualsTheRasterizedSurface() {
+        List<TopoPoint> dem = dem(120, 90, 0.5);
+        TinMesh mesh = new TinSurface(dem).toMesh();
+        for (int parallelism : new int[]{1, 4}) {
+            List<TopoObject> direct = GridContourGenerator.generateFromDem(dem, 0.5, 0, parallelism, ContourMonitor.NONE);
+            List<TopoObject> rasterized = GridContourGenerator.generateContours(mesh, 0.5, 0.5, parallelism, ContourMonitor.NONE);
+            assertThat(direct).isNotNull();
+            assertThat(direct).isNotEmpty();
+            assertThat(ContourGeneratorTest.describe(direct)).isEqualTo(ContourGeneratorTest.describe(rasterized));
+        }
+    }
+
+    @Test
+    void pointsOffTheLatticeAreLeftToTheSurface() {
+        assertThat(GridContourGenerator.generateFromDem(ContourGeneratorTest.terrain(5000, 3), 1.0, 0, ContourMonitor.NONE)).isNull();
+
+        List<TopoPoint> missing = dem(40, 30, 1.0);
+        missing.remove(500);
+        assertThat(GridContourGenerator.generateFromDem(missing, 1.0, 0, ContourMonitor.NONE)).isNull();
+
+        List<TopoPoint> shifted = dem(40, 30, 1.0);
+        shifted.get(500).setX(shifted.get(500).getX() + 0.3);
+        assertThat(GridContourGenerator.generateFromDem(shifted, 1.0, 0, ContourMonitor.NONE)).isNull();
+    }
+
+    @Test
+    void contoursOfAPlaneLieOnThePlane() {
+        // A malha de um plano é o próprio plano: cada vértice da curva tem a cota do plano ali
+        List<TopoPoint> points = ContourGeneratorTest.terrain(4000, 4);
+        for (TopoPoint p : points) p.setZ(plane(p.getX(), p.getY()));
+        TinMesh mesh = new TinSurface(points).toMesh();
+
+        List<TopoObject> contours = GridContourGenerator.generateContours(mesh, 2.0, 3.0, 4, ContourMonitor.NONE);
+        assertThat(contours).isNotEmpty();
+        double worst = 0;
+        for (TopoObject contour : contours) {
+            for (TopoPoint p : contour.getPoints()) worst = Math.max(worst, Math.abs(plane(p.getX(), p.getY()) - p.getZ()));
+        }
+        assertThat(worst).isLessThanOrEqualTo(1e-3);
+    }
+
+    // Grade completa de nx x ny nós, com passo exato em binário
+    private static List<TopoPoint> dem(int nx, int ny, double cell) {
+        List<TopoPoint> points = new ArrayList<>(nx * ny);
+        for (int j = 0; j < ny; j++) {
+            for (int i = 0; i < nx; i++) {
+                double x = 250000 + i * cell, y = 7400000 + j * cell;
+                double z = 50 + 4 * Math.sin(i / 9.0) * Math.cos(j / 7.0) + 0.02 * i;
+                points.add(new TopoPoint("M" + (j * nx + i), x, y, z));
+            }
+        }
+        return points;
+    }
+
+    private static double plane(double x, double y) {
+        return 0.03 * (x - 500000) - 0.02 * (y - 7500000) + 120;
+    }
+}
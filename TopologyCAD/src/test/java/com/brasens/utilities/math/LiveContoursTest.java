@@ -0,0 +1,67 @@
+package com.brasens.utilities.math;
+
+import com.brasens.model.objects.TopoObject;
+import com.brasens.model.objects.TopoPoint;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LiveContoursTest {
+
+    @Test
+    void editedContoursMatchFreshOnes() {
+        List<TopoPoint> points = ContourGeneratorTest.terrain(4000, 9);
+        TinSurface surface = new TinSurface(points);
+        LiveContours live = new LiveContours(surface, 0.5);
+
+        Set<TopoObject> current = Collections.newSetFromMap(new IdentityHashMap<>());
+        current.addAll(live.build(ContourMonitor.NONE));
+        assertThat(live.follow(change -> {
+            change.getRemoved().forEach(current::remove);
+            current.addAll(change.getAdded());
+        })).isTrue();
+
+        // Inclusões, movimentos e exclusões, uma a uma, como no canvas
+        Random random = new Random(10);
+        List<TopoPoint> added = ContourGeneratorTest.terrain(300, 11);
+        for (TopoPoint p : added) surface.addPoint(p);
+        for (int k = 0; k < 300; k++) {
+            TopoPoint p = points.get(random.nextInt(points.size()));
+            p.setX(p.getX() + random.nextGaussian() * 3);
+            p.setY(p.getY() + random.nextGaussian() * 3);
+            p.setZ(p.getZ() + random.nextGaussian());
+            surface.movePoint(p);
+        }
+        for (int k = 0; k < 300; k++) surface.removePoint(points.get(k));
+
+        List<TopoObject> fresh = new LiveContours(surface, 0.5).build(ContourMonitor.NONE);
+        assertThat(segments(new ArrayList<>(current))).isEqualTo(segments(fresh));
+        live.close();
+    }
+
+    // Segmentos das curvas, com as pontas em ordem, independentes de onde cada cadeia começa
+    private static List<String> segments(List<TopoObject> contours) {
+        List<String> segments = new ArrayList<>();
+        for (TopoObject obj : contours) {
+            List<TopoPoint> pts = obj.getPoints();
+            int count = obj.isClosed() ? pts.size() : pts.size() - 1;
+            for (int i = 0; i < count; i++) {
+                String a = key(pts.get(i)), b = key(pts.get((i + 1) % pts.size()));
+                segments.add(obj.getLayerName() + " " + ((a.compareTo(b) < 0) ? a + " " + b : b + " " + a));
+            }
+        }
+        Collections.sort(segments);
+        return segments;
+    }
+
+    private static String key(TopoPoint p) {
+        return String.format("%.6f,%.6f,%.3f", p.getX(), p.getY(), p.getZ());
+    }
+}
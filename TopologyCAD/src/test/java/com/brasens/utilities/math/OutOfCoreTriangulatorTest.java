@@ -0,0 +1,93 @@
+package com.brasens.utilities.math;
+
+import com.brasens.model.objects.TopoPoint;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class OutOfCoreTriangulatorTest {
+
+    @Test
+    void clusteredCloudMatchesTheInMemoryTriangulation() throws IOException {
+        // Quase tudo num aglomerado pequeno: os ladrilhos por densidade média ficariam desiguais
+        Random random = new Random(21);
+        List<TopoPoint> points = new ArrayList<>();
+        for (int k = 0; k < 24000; k++) {
+            points.add(new TopoPoint("A" + k, 640000 + 3 * random.nextGaussian(), 7200000 + 2 * random.nextGaussian(), 10));
+        }
+        for (int k = 0; k < 6000; k++) {
+            points.add(new TopoPoint("B" + k, 640000 + random.nextDouble() * 900 - 450, 7200000 + random.nextDouble() * 700 - 350, 20));
+        }
+        Set<String> expected = triangles(DelaunayTriangulator.triangulateMesh(points, 1));
+
+        Path dir = Files.createTempDirectory("ooc-test");
+        try {
+            File cloud = dir.resolve("cloud.txt").toFile();
+            try (PrintWriter out = new PrintWriter(cloud, "UTF-8")) {
+                for (int k = 0; k < points.size(); k++) {
+                    TopoPoint p = points.get(k);
+                    out.println(k + " " + p.getX() + " " + p.getY() + " " + p.getZ());
+                }
+            }
+
+            // Ladrilhos pequenos com costura em vários níveis, e com a costura toda de uma vez
+            for (int seamPoints : new int[]{2000, Integer.MAX_VALUE}) {
+                File tinFile = dir.resolve("cloud-" + seamPoints + ".tin").toFile();
+                try (MappedTin tin = OutOfCoreTriangulator.triangulate(cloud, tinFile, 1000, seamPoints)) {
+                    assertThat(tin.getBlockCount()).isGreaterThan(1);
+                    assertThat(tin.getTriangleCount()).as("costura %d", seamPoints).isEqualTo((long) expected.size());
+                    assertThat(triangles(tin)).as("costura %d", seamPoints).isEqualTo(expected);
+                }
+            }
+        } finally {
+            try (Stream<Path> files = Files.walk(dir)) {
+                files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+            }
+        }
+    }
+
+    // Cada triângulo pelas coordenadas dos vértices, sem depender da numeração nem do canto inicial
+    private static Set<String> triangles(TinMesh mesh) {
+        Set<String> set = new HashSet<>();
+        for (int t = 0; t < mesh.getTriangleCount(); t++) {
+            String[] corners = new String[3];
+            for (int c = 0; c < 3; c++) {
+                int v = mesh.vertex(t, c);
+                corners[c] = mesh.getX()[v] + "," + mesh.getY()[v];
+            }
+            set.add(key(corners));
+        }
+        return set;
+    }
+
+    private static Set<String> triangles(MappedTin tin) {
+        Set<String> set = new HashSet<>();
+        for (long t = 0; t < tin.getTriangleCount(); t++) {
+            String[] corners = new String[3];
+            for (int c = 0; c < 3; c++) {
+                int v = tin.vertex(t, c);
+                corners[c] = tin.getX(v) + "," + tin.getY(v);
+            }
+            set.add(key(corners));
+        }
+        return set;
+    }
+
+    private static String key(String[] corners) {
+        java.util.Arrays.sort(corners);
+        return String.join(" ", corners);
+    }
+}
@@ -0,0 +1,97 @@
+package com.brasens.utilities.math;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TinBuilderTest {
+
+    @Test
+    void breaklinesStayAsEdgesAndTheRestStaysDelaunay() {
+        // Pontos soltos mais os vértices das linhas de quebra, no fim dos vetores
+        double[][] polyline = {{20, 30}, {40, 60}, {60, 55}, {80, 85}};
+        double[][] collinear = {{10, 10}, {30, 10}, {50, 10}, {70, 10}, {90, 10}};
+        double[][] crossing = {{30, 80}, {70, 20}};
+        int loose = 2000;
+        int n = loose + polyline.length + collinear.length + crossing.length;
+        double[] x = new double[n];
+        double[] y = new double[n];
+        Random random = new Random(11);
+        for (int i = 0; i < loose; i++) {
+            x[i] = random.nextDouble() * 100;
+            y[i] = random.nextDouble() * 100;
+        }
+        int polylineStart = loose;
+        int collinearStart = append(x, y, polylineStart, polyline);
+        int crossingStart = append(x, y, collinearStart, collinear);
+        append(x, y, crossingStart, crossing);
+
+        TinBuilder builder = DelaunayTriangulator.build(x, y, DelaunayTriangulator.insertionOrder(x, y));
+
+        for (int i = 0; i + 1 < polyline.length; i++) {
+            assertThat(builder.insertConstraint(polylineStart + i, polylineStart + i + 1)).isTrue();
+        }
+        // Um só segmento sobre cinco vértices colineares: vira quatro arestas restritas
+        assertThat(builder.insertConstraint(collinearStart, collinearStart + collinear.length - 1)).isTrue();
+        // Cruza a polilinha: exigiria um ponto novo, então é recusado sem mexer nela
+        assertThat(builder.insertConstraint(crossingStart, crossingStart + 1)).isFalse();
+
+        for (int i = 0; i + 1 < polyline.length; i++) {
+            assertThat(isConstrainedEdge(builder, polylineStart + i, polylineStart + i + 1)).as("polilinha %d", i).isTrue();
+        }
+        for (int i = 0; i + 1 < collinear.length; i++) {
+            assertThat(isConstrainedEdge(builder, collinearStart + i, collinearStart + i + 1)).as("colinear %d", i).isTrue();
+        }
+        assertThat(nonDelaunayFreeEdges(builder)).isZero();
+
+        // Sem as restrições, a malha volta a ser de Delaunay por inteiro
+        for (int i = 0; i + 1 < polyline.length; i++) {
+            assertThat(builder.removeConstraint(polylineStart + i, polylineStart + i + 1)).isTrue();
+        }
+        assertThat(builder.removeConstraint(collinearStart, collinearStart + collinear.length - 1)).isTrue();
+        assertThat(isConstrainedEdge(builder, collinearStart, collinearStart + 1)).isFalse();
+        assertThat(nonDelaunayFreeEdges(builder)).isZero();
+        assertThat(constrainedEdgeCount(builder)).isZero();
+    }
+
+    private static int append(double[] x, double[] y, int start, double[][] points) {
+        for (int i = 0; i < points.length; i++) {
+            x[start + i] = points[i][0];
+            y[start + i] = points[i][1];
+        }
+        return start + points.length;
+    }
+
+    private static boolean isConstrainedEdge(TinBuilder builder, int a, int b) {
+        int code = builder.findEdge(a, b);
+        return code >= 0 && builder.constrained[code];
+    }
+
+    private static int constrainedEdgeCount(TinBuilder builder) {
+        int count = 0;
+        for (int t = 0; t < builder.triCount; t++) {
+            if (builder.isFree(t)) continue;
+            for (int i = 0; i < 3; i++) if (builder.constrained[3 * t + i]) count++;
+        }
+        return count;
+    }
+
+    // Arestas não restritas entre triângulos reais cujo vértice oposto cai dentro do circuncírculo
+    private static int nonDelaunayFreeEdges(TinBuilder builder) {
+        int bad = 0;
+        for (int t = 0; t < builder.triCount; t++) {
+            if (builder.isFree(t) || builder.isGhost(t)) continue;
+            int a = builder.tri[3 * t], b = builder.tri[3 * t + 1], c = builder.tri[3 * t + 2];
+            for (int i = 0; i < 3; i++) {
+                int u = builder.nbr[3 * t + i];
+                if (builder.isGhost(u) || (builder.constrained != null && builder.constrained[3 * t + i])) continue;
+                int d = builder.tri[3 * u + builder.neighbourIndex(u, t)];
+                if (GeometricPredicates.incircle(builder.x[a], builder.y[a], builder.x[b], builder.y[b],
+                        builder.x[c], builder.y[c], builder.x[d], builder.y[d]) > 0) bad++;
+            }
+        }
+        return bad;
+    }
+}
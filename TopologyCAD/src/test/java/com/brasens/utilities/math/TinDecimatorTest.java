@@ -0,0 +1,43 @@
+package com.brasens.utilities.math;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TinDecimatorTest {
+
+    @Test
+    void verticalErrorStaysWithinTolerance() {
+        TinMesh mesh = DelaunayTriangulator.triangulateMesh(ContourGeneratorTest.terrain(3000, 4), 1);
+        for (double tolerance : new double[]{0.05, 0.2, 1.0}) {
+            TinDecimation decimation = TinDecimator.decimate(mesh, tolerance);
+            assertThat(decimation.getRemovedVertexCount()).as("tolerância %s", tolerance).isPositive();
+            assertThat(decimation.getMaxError()).as("tolerância %s", tolerance).isLessThanOrEqualTo(tolerance);
+
+            // Cada vértice da malha original contra a superfície reduzida naquele ponto
+            TinMesh reduced = decimation.getMesh();
+            double worst = 0;
+            for (int v = 0; v < mesh.getVertexCount(); v++) {
+                double z = elevation(reduced, mesh.getX()[v], mesh.getY()[v]);
+                assertThat(Double.isNaN(z)).as("vértice %d fora da malha reduzida", v).isFalse();
+                worst = Math.max(worst, Math.abs(z - mesh.getZ()[v]));
+            }
+            assertThat(worst).as("tolerância %s", tolerance).isLessThanOrEqualTo(tolerance + 1e-9);
+        }
+    }
+
+    // Cota interpolada no triângulo que contém (px, py); NaN fora da malha
+    private static double elevation(TinMesh mesh, double px, double py) {
+        double[] x = mesh.getX(), y = mesh.getY(), z = mesh.getZ();
+        for (int t = 0; t < mesh.getTriangleCount(); t++) {
+            int a = mesh.vertex(t, 0), b = mesh.vertex(t, 1), c = mesh.vertex(t, 2);
+            double det = (y[b] - y[c]) * (x[a] - x[c]) + (x[c] - x[b]) * (y[a] - y[c]);
+            double la = ((y[b] - y[c]) * (px - x[c]) + (x[c] - x[b]) * (py - y[c])) / det;
+            double lb = ((y[c] - y[a]) * (px - x[c]) + (x[a] - x[c]) * (py - y[c])) / det;
+            double lc = 1 - la - lb;
+            if (la < -1e-9 || lb < -1e-9 || lc < -1e-9) continue;
+            return la * z[a] + lb * z[b] + lc * z[c];
+        }
+        return Double.NaN;
+    }
+}
@@ -0,0 +1,102 @@
+package com.brasens.utilities.math;
+
+import com.brasens.model.TopoLineType;
+import com.brasens.model.objects.TopoObject;
+import com.brasens.model.objects.TopoPoint;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TinSurfaceTest {
+
+    @Test
+    void encodeRestoreRoundtrip() {
+        List<TopoPoint> points = ContourGeneratorTest.terrain(5000, 6);
+        List<TopoObject> breaklines = List.of(road(points.subList(0, 12)));
+        TinSurface surface = new TinSurface(points, breaklines);
+        byte[] data = surface.encode();
+        String hash = surface.getContentHash();
+
+        // Os pontos podem voltar em outra ordem (vêm dos objetos do projeto reaberto)
+        List<TopoPoint> shuffled = new ArrayList<>(points);
+        Collections.reverse(shuffled);
+        TinSurface restored = TinSurface.restore(shuffled, breaklines, hash, data);
+        assertThat(restored).isNotNull();
+        assertThat(restored.getTriangleCount()).isEqualTo(surface.getTriangleCount());
+        assertThat(triangles(restored)).isEqualTo(triangles(surface));
+        assertThat(restored.getContentHash()).isEqualTo(hash);
+    }
+
+    @Test
+    void restoreRejectsOtherPointsOrCorruptData() {
+        List<TopoPoint> points = ContourGeneratorTest.terrain(2000, 7);
+        TinSurface surface = new TinSurface(points);
+        byte[] data = surface.encode();
+        String hash = surface.getContentHash();
+
+        List<TopoPoint> fewer = new ArrayList<>(points.subList(1, points.size()));
+        assertThat(TinSurface.restore(fewer, List.of(), hash, data)).isNull();
+
+        byte[] corrupt = data.clone();
+        corrupt[corrupt.length / 2] ^= 0x5A;
+        assertThat(TinSurface.restore(points, List.of(), hash, corrupt)).isNull();
+        assertThat(TinSurface.restore(points, List.of(), hash, new byte[]{1, 2, 3})).isNull();
+    }
+
+    @Test
+    void duplicatePointsWaitWithoutGrowingTheMesh() {
+        List<TopoPoint> points = ContourGeneratorTest.terrain(3000, 8);
+        List<TopoPoint> copies = new ArrayList<>();
+        for (int k = 0; k < 300; k++) {
+            TopoPoint p = points.get(k);
+            copies.add(new TopoPoint("D" + k, p.getX(), p.getY(), p.getZ() + 1));
+        }
+        List<TopoPoint> all = new ArrayList<>(points);
+        all.addAll(copies);
+        TinSurface surface = new TinSurface(all);
+        int vertices = surface.toMesh().getVertexCount();
+
+        // Edições longe das cópias não mexem com elas, nem abrem novos índices de vértice
+        for (int k = 1000; k < 1500; k++) {
+            TopoPoint p = points.get(k);
+            p.setX(p.getX() + 0.5);
+            surface.movePoint(p);
+        }
+        assertThat(surface.toMesh().getVertexCount()).isEqualTo(vertices);
+        assertThat(surface.contains(copies.get(0))).isTrue();
+
+        // Sai o original: a cópia da mesma posição entra no lugar
+        for (int k = 0; k < 300; k++) surface.removePoint(points.get(k));
+        assertThat(surface.getPoints()).hasSize(all.size() - 300);
+        assertThat(surface.getTriangleCount()).isEqualTo(new TinSurface(surface.getPoints()).getTriangleCount());
+        assertThat(surface.toMesh().getVertexCount()).isEqualTo(vertices);
+        assertThat(GeometricPredicatesTest.nonDelaunayEdges(surface.toMesh())).isZero();
+    }
+
+    private static TopoObject road(List<TopoPoint> points) {
+        TopoObject road = new TopoObject(new ArrayList<>(points), false);
+        road.setType(TopoLineType.ESTRADA);
+        return road;
+    }
+
+    // Triângulos pelos nomes dos cantos, girados para começar no menor; em ordem
+    private static List<String> triangles(TinSurface surface) {
+        List<String> triangles = new ArrayList<>();
+        for (int t = 0; t < surface.getSlotCount(); t++) {
+            if (!surface.isTriangle(t)) continue;
+            String[] names = new String[3];
+            int first = 0;
+            for (int corner = 0; corner < 3; corner++) {
+                names[corner] = surface.getPoint(t, corner).getName();
+                if (names[corner].compareTo(names[first]) < 0) first = corner;
+            }
+            triangles.add(names[first] + " " + names[(first + 1) % 3] + " " + names[(first + 2) % 3]);
+        }
+        Collections.sort(triangles);
+        return triangles;
+    }
+}